@@ -4,7 +4,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.http.codec.multipart.Part;
 import org.springframework.http.client.MultipartBodyBuilder;
@@ -20,9 +23,12 @@ import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 import ru.hse.antiplag.apigateway.dto.FileUploadResponse;
+import ru.hse.antiplag.apigateway.dto.GatewayAnalysisJob;
 import ru.hse.antiplag.apigateway.dto.GatewayAnalysisResult;
 import org.springframework.util.LinkedMultiValueMap;
 
+import java.net.URI;
+
 /**
  * REST controller for handling requests to the API Gateway.
  * It forwards requests to the appropriate downstream services.
@@ -65,6 +71,53 @@ public class GatewayController {
         .doOnError(error -> logger.error("Error during analysis call for fileId: {}. Error: {}", fileId, error.getMessage()));
   }
 
+  /**
+   * Submits a background analysis of a file. The status of FileAnalysisService is passed on:
+   * 202 with the job and the gateway location to poll it, or 503 with {@code Retry-After} when
+   * too many jobs are queued.
+   *
+   * @param fileId the ID of the file to be analyzed.
+   * @return A Mono emitting the response with the GatewayAnalysisJob.
+   */
+  @PostMapping("/analyze/{fileId}/jobs")
+  public Mono<ResponseEntity<GatewayAnalysisJob>> submitAnalysisJob(@PathVariable String fileId) {
+    logger.info("API Gateway received request to submit analysis job for fileId: {}", fileId);
+    return fileAnalysisServiceWebClient.post()
+        .uri("/api/v1/analysis/{fileId}/jobs", fileId)
+        .exchangeToMono(response -> response.toEntity(GatewayAnalysisJob.class))
+        .map(GatewayController::toGatewayJobResponse)
+        .doOnSuccess(response -> logger.info("Analysis job submission for fileId: {} answered {}", fileId, response.getStatusCode()))
+        .doOnError(error -> logger.error("Error submitting analysis job for fileId: {}. Error: {}", fileId, error.getMessage()));
+  }
+
+  /**
+   * Polls a background analysis job.
+   *
+   * @param jobId the ID of the job.
+   * @return A Mono emitting the response with the GatewayAnalysisJob, 404 if there is no such job.
+   */
+  @GetMapping("/analysis/jobs/{jobId}")
+  public Mono<ResponseEntity<GatewayAnalysisJob>> getAnalysisJob(@PathVariable String jobId) {
+    return fileAnalysisServiceWebClient.get()
+        .uri("/api/v1/analysis/jobs/{jobId}", jobId)
+        .exchangeToMono(response -> response.toEntity(GatewayAnalysisJob.class))
+        .map(GatewayController::toGatewayJobResponse)
+        .doOnError(error -> logger.error("Error polling analysis job {}. Error: {}", jobId, error.getMessage()));
+  }
+
+  private static ResponseEntity<GatewayAnalysisJob> toGatewayJobResponse(ResponseEntity<GatewayAnalysisJob> response) {
+    ResponseEntity.BodyBuilder builder = ResponseEntity.status(response.getStatusCode());
+    String retryAfter = response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+    if (retryAfter != null) {
+      builder.header(HttpHeaders.RETRY_AFTER, retryAfter);
+    }
+    GatewayAnalysisJob job = response.getBody();
+    if (job != null && response.getStatusCode().isSameCodeAs(HttpStatus.ACCEPTED)) {
+      builder.location(URI.create("/api/gateway/analysis/jobs/" + job.getJobId()));
+    }
+    return builder.body(job);
+  }
+
   /**
    * Uploads a file by proxying the multipart request to the FileStorageService.
    *
@@ -0,0 +1,200 @@
+package ru.hse.antiplag.apigateway.dto;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Data Transfer Object for an analysis job running in FileAnalysisService.
+ */
+public class GatewayAnalysisJob {
+
+  private String jobId;
+  private String fileId;
+  private String status;
+  private GatewayAnalysisResult result;
+  private String error;
+  private LocalDateTime submittedAt;
+  private LocalDateTime finishedAt;
+
+  /**
+   * Default constructor for GatewayAnalysisJob.
+   * Required for deserialization.
+   */
+  public GatewayAnalysisJob() {
+  }
+
+  /**
+   * Constructs a new GatewayAnalysisJob.
+   *
+   * @param jobId  the ID of the job.
+   * @param fileId the ID of the analyzed file.
+   * @param status the status of the job: QUEUED, RUNNING, COMPLETED or FAILED.
+   */
+  public GatewayAnalysisJob(String jobId, String fileId, String status) {
+    this.jobId = jobId;
+    this.fileId = fileId;
+    this.status = status;
+  }
+
+  /**
+   * Gets the ID of the job.
+   *
+   * @return the ID of the job.
+   */
+  public String getJobId() {
+    return jobId;
+  }
+
+  /**
+   * Sets the ID of the job.
+   *
+   * @param jobId the new ID of the job.
+   */
+  public void setJobId(String jobId) {
+    this.jobId = jobId;
+  }
+
+  /**
+   * Gets the ID of the analyzed file.
+   *
+   * @return the ID of the file.
+   */
+  public String getFileId() {
+    return fileId;
+  }
+
+  /**
+   * Sets the ID of the analyzed file.
+   *
+   * @param fileId the new ID of the file.
+   */
+  public void setFileId(String fileId) {
+    this.fileId = fileId;
+  }
+
+  /**
+   * Gets the status of the job.
+   *
+   * @return the status of the job.
+   */
+  public String getStatus() {
+    return status;
+  }
+
+  /**
+   * Sets the status of the job.
+   *
+   * @param status the new status of the job.
+   */
+  public void setStatus(String status) {
+    this.status = status;
+  }
+
+  /**
+   * Gets the result of the analysis.
+   *
+   * @return the result, null until the job is completed.
+   */
+  public GatewayAnalysisResult getResult() {
+    return result;
+  }
+
+  /**
+   * Sets the result of the analysis.
+   *
+   * @param result the new result of the analysis.
+   */
+  public void setResult(GatewayAnalysisResult result) {
+    this.result = result;
+  }
+
+  /**
+   * Gets the reason of the failure.
+   *
+   * @return the reason, null unless the job failed.
+   */
+  public String getError() {
+    return error;
+  }
+
+  /**
+   * Sets the reason of the failure.
+   *
+   * @param error the new reason of the failure.
+   */
+  public void setError(String error) {
+    this.error = error;
+  }
+
+  /**
+   * Gets the time the job was submitted.
+   *
+   * @return the submission time.
+   */
+  public LocalDateTime getSubmittedAt() {
+    return submittedAt;
+  }
+
+  /**
+   * Sets the time the job was submitted.
+   *
+   * @param submittedAt the new submission time.
+   */
+  public void setSubmittedAt(LocalDateTime submittedAt) {
+    this.submittedAt = submittedAt;
+  }
+
+  /**
+   * Gets the time the job was completed or failed.
+   *
+   * @return the finish time, null before.
+   */
+  public LocalDateTime getFinishedAt() {
+    return finishedAt;
+  }
+
+  /**
+   * Sets the time the job was completed or failed.
+   *
+   * @param finishedAt the new finish time.
+   */
+  public void setFinishedAt(LocalDateTime finishedAt) {
+    this.finishedAt = finishedAt;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    GatewayAnalysisJob that = (GatewayAnalysisJob) o;
+    return Objects.equals(jobId, that.jobId) &&
+           Objects.equals(fileId, that.fileId) &&
+           Objects.equals(status, that.status) &&
+           Objects.equals(result, that.result) &&
+           Objects.equals(error, that.error) &&
+           Objects.equals(submittedAt, that.submittedAt) &&
+           Objects.equals(finishedAt, that.finishedAt);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(jobId, fileId, status, result, error, submittedAt, finishedAt);
+  }
+
+  @Override
+  public String toString() {
+    return "GatewayAnalysisJob{" +
+           "jobId='" + jobId + '\'' +
+           ", fileId='" + fileId + '\'' +
+           ", status='" + status + '\'' +
+           ", result=" + result +
+           ", error='" + error + '\'' +
+           ", submittedAt=" + submittedAt +
+           ", finishedAt=" + finishedAt +
+           '}';
+  }
+}
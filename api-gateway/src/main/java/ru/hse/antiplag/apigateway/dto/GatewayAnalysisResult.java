@@ -1,5 +1,7 @@
 package ru.hse.antiplag.apigateway.dto;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -9,6 +11,8 @@ public class GatewayAnalysisResult {
 
   private GatewayTextStatistics textStatistics;
   private String wordCloudPath;
+  private List<GatewayTermFrequency> topTerms = new ArrayList<>();
+  private String wordCloudStatus;
 
   /**
    * Default constructor for GatewayAnalysisResult.
@@ -63,6 +67,42 @@ public class GatewayAnalysisResult {
     this.wordCloudPath = wordCloudPath;
   }
 
+  /**
+   * Gets the most frequent terms.
+   *
+   * @return the most frequent terms, the most frequent first.
+   */
+  public List<GatewayTermFrequency> getTopTerms() {
+    return topTerms;
+  }
+
+  /**
+   * Sets the most frequent terms.
+   *
+   * @param topTerms the new most frequent terms.
+   */
+  public void setTopTerms(List<GatewayTermFrequency> topTerms) {
+    this.topTerms = topTerms;
+  }
+
+  /**
+   * Gets the word cloud status.
+   *
+   * @return the word cloud status: PENDING, READY, FAILED or NONE.
+   */
+  public String getWordCloudStatus() {
+    return wordCloudStatus;
+  }
+
+  /**
+   * Sets the word cloud status.
+   *
+   * @param wordCloudStatus the new word cloud status.
+   */
+  public void setWordCloudStatus(String wordCloudStatus) {
+    this.wordCloudStatus = wordCloudStatus;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -73,12 +113,14 @@ public class GatewayAnalysisResult {
     }
     GatewayAnalysisResult that = (GatewayAnalysisResult) o;
     return Objects.equals(textStatistics, that.textStatistics) &&
-           Objects.equals(wordCloudPath, that.wordCloudPath);
+           Objects.equals(wordCloudPath, that.wordCloudPath) &&
+           Objects.equals(topTerms, that.topTerms) &&
+           Objects.equals(wordCloudStatus, that.wordCloudStatus);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(textStatistics, wordCloudPath);
+    return Objects.hash(textStatistics, wordCloudPath, topTerms, wordCloudStatus);
   }
 
   @Override
@@ -86,6 +128,8 @@ public class GatewayAnalysisResult {
     return "GatewayAnalysisResult{" +
            "textStatistics=" + textStatistics +
            ", wordCloudPath='" + wordCloudPath + '\'' +
+           ", topTerms=" + topTerms +
+           ", wordCloudStatus='" + wordCloudStatus + '\'' +
            '}';
   }
 }
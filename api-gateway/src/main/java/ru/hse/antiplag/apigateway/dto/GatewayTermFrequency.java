@@ -0,0 +1,92 @@
+package ru.hse.antiplag.apigateway.dto;
+
+import java.util.Objects;
+
+/**
+ * Data Transfer Object for a term of the text with the number of its occurrences.
+ */
+public class GatewayTermFrequency {
+
+  private String term;
+  private int count;
+
+  /**
+   * Default constructor for GatewayTermFrequency.
+   * Required for deserialization.
+   */
+  public GatewayTermFrequency() {
+  }
+
+  /**
+   * Constructs a new GatewayTermFrequency.
+   *
+   * @param term  the term, in lower case.
+   * @param count the number of occurrences of the term.
+   */
+  public GatewayTermFrequency(String term, int count) {
+    this.term = term;
+    this.count = count;
+  }
+
+  /**
+   * Gets the term.
+   *
+   * @return the term.
+   */
+  public String getTerm() {
+    return term;
+  }
+
+  /**
+   * Sets the term.
+   *
+   * @param term the new term.
+   */
+  public void setTerm(String term) {
+    this.term = term;
+  }
+
+  /**
+   * Gets the number of occurrences.
+   *
+   * @return the number of occurrences.
+   */
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * Sets the number of occurrences.
+   *
+   * @param count the new number of occurrences.
+   */
+  public void setCount(int count) {
+    this.count = count;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    GatewayTermFrequency that = (GatewayTermFrequency) o;
+    return count == that.count &&
+           Objects.equals(term, that.term);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(term, count);
+  }
+
+  @Override
+  public String toString() {
+    return "GatewayTermFrequency{" +
+           "term='" + term + '\'' +
+           ", count=" + count +
+           '}';
+  }
+}
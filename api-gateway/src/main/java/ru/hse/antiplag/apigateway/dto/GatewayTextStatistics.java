@@ -10,6 +10,8 @@ public class GatewayTextStatistics {
   private int paragraphCount;
   private int wordCount;
   private int characterCount;
+  private int lineCount;
+  private int sentenceCount;
 
   /**
    * Default constructor for GatewayTextStatistics.
@@ -85,6 +87,42 @@ public class GatewayTextStatistics {
     this.characterCount = characterCount;
   }
 
+  /**
+   * Gets the line count.
+   *
+   * @return the line count.
+   */
+  public int getLineCount() {
+    return lineCount;
+  }
+
+  /**
+   * Sets the line count.
+   *
+   * @param lineCount the new line count.
+   */
+  public void setLineCount(int lineCount) {
+    this.lineCount = lineCount;
+  }
+
+  /**
+   * Gets the sentence count.
+   *
+   * @return the sentence count.
+   */
+  public int getSentenceCount() {
+    return sentenceCount;
+  }
+
+  /**
+   * Sets the sentence count.
+   *
+   * @param sentenceCount the new sentence count.
+   */
+  public void setSentenceCount(int sentenceCount) {
+    this.sentenceCount = sentenceCount;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -96,12 +134,14 @@ public class GatewayTextStatistics {
     GatewayTextStatistics that = (GatewayTextStatistics) o;
     return paragraphCount == that.paragraphCount &&
            wordCount == that.wordCount &&
-           characterCount == that.characterCount;
+           characterCount == that.characterCount &&
+           lineCount == that.lineCount &&
+           sentenceCount == that.sentenceCount;
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(paragraphCount, wordCount, characterCount);
+    return Objects.hash(paragraphCount, wordCount, characterCount, lineCount, sentenceCount);
   }
 
   @Override
@@ -110,6 +150,8 @@ public class GatewayTextStatistics {
            "paragraphCount=" + paragraphCount +
            ", wordCount=" + wordCount +
            ", characterCount=" + characterCount +
+           ", lineCount=" + lineCount +
+           ", sentenceCount=" + sentenceCount +
            '}';
   }
 }
@@ -4,6 +4,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
 
+import java.util.List;
 import java.util.UUID;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -19,13 +20,17 @@ import org.springframework.http.MediaType;
 import org.springframework.http.client.MultipartBodyBuilder;
 import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import ru.hse.antiplag.apigateway.dto.FileUploadResponse;
+import ru.hse.antiplag.apigateway.dto.GatewayAnalysisJob;
 import ru.hse.antiplag.apigateway.dto.GatewayAnalysisResult;
+import ru.hse.antiplag.apigateway.dto.GatewayTermFrequency;
 import ru.hse.antiplag.apigateway.dto.GatewayTextStatistics;
 
 /**
@@ -82,6 +87,7 @@ public class GatewayControllerTest {
   void analyzeFile_whenAnalysisSucceeds_shouldReturnResult() {
     GatewayTextStatistics stats = new GatewayTextStatistics(1, 10, 100);
     GatewayAnalysisResult mockResult = new GatewayAnalysisResult(stats, "/path/to/cloud-aboba.png");
+    mockResult.setTopTerms(List.of(new GatewayTermFrequency("aboba", 3), new GatewayTermFrequency("kek", 2)));
 
     when(responseSpecMock.bodyToMono(GatewayAnalysisResult.class)).thenReturn(Mono.just(mockResult));
 
@@ -162,4 +168,52 @@ public class GatewayControllerTest {
         .exchange()
         .expectStatus().is5xxServerError();
   }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void submitAnalysisJob_shouldPassAcceptedWithGatewayLocation() {
+    GatewayAnalysisJob job = new GatewayAnalysisJob("job-aboba", "job-file-aboba", "QUEUED");
+    WebClient.RequestBodyUriSpec analysisPostSpec = Mockito.mock(WebClient.RequestBodyUriSpec.class);
+    when(fileAnalysisServiceWebClient.post()).thenReturn(analysisPostSpec);
+    when(analysisPostSpec.uri(anyString(), Mockito.eq("job-file-aboba"))).thenReturn(analysisPostSpec);
+    when(analysisPostSpec.exchangeToMono(any())).thenReturn(Mono.just(ResponseEntity.accepted().body(job)));
+
+    webTestClient.post().uri("/api/gateway/analyze/job-file-aboba/jobs")
+        .exchange()
+        .expectStatus().isAccepted()
+        .expectHeader().location("/api/gateway/analysis/jobs/job-aboba")
+        .expectBody(GatewayAnalysisJob.class)
+        .isEqualTo(job);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void submitAnalysisJob_whenQueueIsFull_shouldPassRetryAfter() {
+    WebClient.RequestBodyUriSpec analysisPostSpec = Mockito.mock(WebClient.RequestBodyUriSpec.class);
+    when(fileAnalysisServiceWebClient.post()).thenReturn(analysisPostSpec);
+    when(analysisPostSpec.uri(anyString(), Mockito.eq("busy-file-aboba"))).thenReturn(analysisPostSpec);
+    when(analysisPostSpec.exchangeToMono(any())).thenReturn(Mono.just(
+        ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "5").build()));
+
+    webTestClient.post().uri("/api/gateway/analyze/busy-file-aboba/jobs")
+        .exchange()
+        .expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE)
+        .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "5");
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void getAnalysisJob_shouldPassJobStatus() {
+    GatewayAnalysisJob job = new GatewayAnalysisJob("job-kek", "file-kek", "COMPLETED");
+    job.setResult(new GatewayAnalysisResult(new GatewayTextStatistics(1, 2, 3), "/path/to/cloud-kek.png"));
+    WebClient.RequestHeadersSpec analysisJobGetSpec = Mockito.mock(WebClient.RequestHeadersSpec.class);
+    when(requestHeadersUriSpecMock.uri(anyString(), Mockito.eq("job-kek"))).thenReturn(analysisJobGetSpec);
+    when(analysisJobGetSpec.exchangeToMono(any())).thenReturn(Mono.just(ResponseEntity.ok(job)));
+
+    webTestClient.get().uri("/api/gateway/analysis/jobs/job-kek")
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody(GatewayAnalysisJob.class)
+        .isEqualTo(job);
+  }
 }
@@ -2,8 +2,10 @@ package ru.hse.antiplag.fileanalysisservice;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class FileAnalysisServiceApplication {
   public static void main(String[] args) {
       SpringApplication.run(FileAnalysisServiceApplication.class, args);
@@ -0,0 +1,149 @@
+package ru.hse.antiplag.fileanalysisservice.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.hse.antiplag.fileanalysisservice.dto.AnalysisResult;
+import ru.hse.antiplag.fileanalysisservice.dto.WordCloudStatus;
+import ru.hse.antiplag.fileanalysisservice.repository.AnalysisResultRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Bounded in-memory cache of analysis results in front of {@link AnalysisResultRepository}.
+ * A stored result only changes when its word cloud is done, so results with a
+ * {@link WordCloudStatus#PENDING} word cloud are not kept and the others stay valid until they
+ * are evicted.
+ *
+ * <p>Reading a result records the time of the access in memory only. The access times are
+ * written to {@code updated_at} every {@code analysis.result-cache.flush-interval}, with one
+ * {@code UPDATE} per {@code analysis.result-cache.flush-batch-size} results, so a read costs no
+ * database write. A batch is stamped with the latest access in it, so stored access times are
+ * as precise as the flush interval, and accesses not flushed yet are lost if the service dies.
+ */
+@Component
+public class AnalysisResultCache {
+
+  private static final Logger logger = LoggerFactory.getLogger(AnalysisResultCache.class);
+
+  private final AnalysisResultRepository analysisResultRepository;
+  private final int flushBatchSize;
+  private final Cache<String, AnalysisResult> results;
+  private final Map<String, LocalDateTime> pendingAccesses = new ConcurrentHashMap<>();
+
+  /**
+   * Constructs an {@code AnalysisResultCache}.
+   *
+   * @param analysisResultRepository the repository the access times are written to.
+   * @param maxSize the number of results kept in memory at most.
+   * @param flushBatchSize the number of access times written with one statement at most.
+   */
+  @Autowired
+  public AnalysisResultCache(
+      AnalysisResultRepository analysisResultRepository,
+      @Value("${analysis.result-cache.max-size:10000}") long maxSize,
+      @Value("${analysis.result-cache.flush-batch-size:500}") int flushBatchSize) {
+    this.analysisResultRepository = analysisResultRepository;
+    this.flushBatchSize = flushBatchSize;
+    this.results = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .build();
+  }
+
+  /**
+   * Gets the result of a file, loading it on a miss, and records the access. Concurrent misses
+   * of the same file load it once. Absent results are not cached.
+   *
+   * @param fileId the ID of the original file.
+   * @param loader loads the result on a cache miss.
+   * @return an {@link Optional} containing the result if found, or empty otherwise.
+   */
+  public Optional<AnalysisResult> get(String fileId, Function<String, Optional<AnalysisResult>> loader) {
+    AnalysisResult result = results.get(fileId, id -> loader.apply(id).orElse(null));
+    if (result != null) {
+      if (result.getWordCloudStatus() == WordCloudStatus.PENDING) {
+        results.invalidate(fileId);
+      }
+      pendingAccesses.put(fileId, LocalDateTime.now());
+    }
+    return Optional.ofNullable(result);
+  }
+
+  /**
+   * Adds the result of a file that has just been stored.
+   *
+   * @param fileId the ID of the original file.
+   * @param result the stored result.
+   */
+  public void put(String fileId, AnalysisResult result) {
+    if (result.getWordCloudStatus() == WordCloudStatus.PENDING) {
+      results.invalidate(fileId);
+      return;
+    }
+    results.put(fileId, result);
+  }
+
+  /**
+   * Gets the number of access times waiting to be written.
+   *
+   * @return the number of files read since the last flush.
+   */
+  public int getPendingAccessCount() {
+    return pendingAccesses.size();
+  }
+
+  /**
+   * Writes the recorded access times, oldest first, in batches. Access times that could not be
+   * written are kept for the next flush unless the file has been read again since.
+   */
+  @Scheduled(fixedDelayString = "${analysis.result-cache.flush-interval:PT30S}")
+  public void flushAccessTimes() {
+    List<Map.Entry<String, LocalDateTime>> accesses = new ArrayList<>(pendingAccesses.size());
+    for (Map.Entry<String, LocalDateTime> access : pendingAccesses.entrySet()) {
+      if (pendingAccesses.remove(access.getKey(), access.getValue())) {
+        accesses.add(access);
+      }
+    }
+    if (accesses.isEmpty()) {
+      return;
+    }
+    accesses.sort(Map.Entry.comparingByValue());
+    for (int from = 0; from < accesses.size(); from += flushBatchSize) {
+      List<Map.Entry<String, LocalDateTime>> batch = accesses.subList(from, Math.min(from + flushBatchSize, accesses.size()));
+      List<String> fileIds = new ArrayList<>(batch.size());
+      for (Map.Entry<String, LocalDateTime> access : batch) {
+        fileIds.add(access.getKey());
+      }
+      LocalDateTime accessedAt = batch.get(batch.size() - 1).getValue();
+      try {
+        analysisResultRepository.updateAccessTimes(fileIds, accessedAt);
+      } catch (RuntimeException e) {
+        logger.warn("Could not write access times of {} results: {}", fileIds.size(), e.getMessage());
+        for (Map.Entry<String, LocalDateTime> access : batch) {
+          pendingAccesses.putIfAbsent(access.getKey(), access.getValue());
+        }
+      }
+    }
+    logger.debug("Wrote access times of {} results", accesses.size());
+  }
+
+  /**
+   * Writes the access times recorded since the last flush.
+   */
+  @PreDestroy
+  public void shutdown() {
+    flushAccessTimes();
+  }
+}
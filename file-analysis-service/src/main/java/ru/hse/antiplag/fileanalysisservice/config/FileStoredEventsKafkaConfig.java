@@ -0,0 +1,40 @@
+package ru.hse.antiplag.fileanalysisservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.ExponentialBackOff;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the consumer of the events of stored files.
+ */
+@Configuration
+@ConditionalOnProperty(name = "analysis.events.kafka.enabled", havingValue = "true")
+public class FileStoredEventsKafkaConfig {
+
+  /**
+   * Creates the error handler of the listener containers. An event whose analysis failed, for
+   * example while the file storage service is down, is retried with an exponential backoff; once
+   * the retries are used up it is logged as an error and skipped, so the file is analyzed on request.
+   * Malformed events are skipped at once.
+   *
+   * @param initialInterval the delay before the first retry.
+   * @param maxInterval the longest delay between two retries.
+   * @param maxElapsedTime the time after which an event is no longer retried.
+   * @return the error handler, picked up by the auto-configured listener container factory.
+   */
+  @Bean
+  public DefaultErrorHandler fileStoredEventErrorHandler(
+      @Value("${analysis.events.kafka.retry.initial-interval:PT1S}") Duration initialInterval,
+      @Value("${analysis.events.kafka.retry.max-interval:PT1M}") Duration maxInterval,
+      @Value("${analysis.events.kafka.retry.max-elapsed-time:PT5M}") Duration maxElapsedTime) {
+    ExponentialBackOff backOff = new ExponentialBackOff(initialInterval.toMillis(), 2.0);
+    backOff.setMaxInterval(maxInterval.toMillis());
+    backOff.setMaxElapsedTime(maxElapsedTime.toMillis());
+    return new DefaultErrorHandler(backOff);
+  }
+}
@@ -1,16 +1,33 @@
 package ru.hse.antiplag.fileanalysisservice.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import ru.hse.antiplag.fileanalysisservice.dto.AnalysisJob;
 import ru.hse.antiplag.fileanalysisservice.dto.AnalysisResult;
+import ru.hse.antiplag.fileanalysisservice.dto.PassageMatch;
+import ru.hse.antiplag.fileanalysisservice.dto.SimilarFile;
+import ru.hse.antiplag.fileanalysisservice.dto.SimilarPair;
+import ru.hse.antiplag.fileanalysisservice.dto.SimilarityJob;
+import ru.hse.antiplag.fileanalysisservice.dto.SimilarityJobRequest;
+import ru.hse.antiplag.fileanalysisservice.service.AnalysisJobService;
 import ru.hse.antiplag.fileanalysisservice.service.FileAnalysisService;
+import ru.hse.antiplag.fileanalysisservice.service.SimilarityJobService;
 import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
 
+import java.net.URI;
+import java.util.List;
+
 /**
  * Controller for handling file analysis requests.
  */
@@ -19,15 +36,34 @@ import org.springframework.http.MediaType;
 public class FileAnalysisController {
 
   private final FileAnalysisService fileAnalysisService;
+  private final AnalysisJobService analysisJobService;
+  private final SimilarityJobService similarityJobService;
+  private final long retryAfterSeconds;
+  private final int maxSimilarityJobFiles;
+  private final int maxPairsPageSize;
 
   /**
    * Constructs a {@code FileAnalysisController}.
    *
    * @param fileAnalysisService the service to use for file analysis.
+   * @param analysisJobService the service running analysis jobs.
+   * @param similarityJobService the service running similarity jobs.
+   * @param retryAfterSeconds the delay suggested to clients whose job was rejected, in seconds.
+   * @param maxSimilarityJobFiles the number of files a similarity job compares at most.
+   * @param maxPairsPageSize the number of pairs of a similarity job returned at once at most.
    */
   @Autowired
-  public FileAnalysisController(FileAnalysisService fileAnalysisService) {
+  public FileAnalysisController(FileAnalysisService fileAnalysisService, AnalysisJobService analysisJobService,
+                                SimilarityJobService similarityJobService,
+                                @Value("${analysis.jobs.retry-after-seconds:5}") long retryAfterSeconds,
+                                @Value("${analysis.similarity-jobs.max-files:10000}") int maxSimilarityJobFiles,
+                                @Value("${analysis.similarity-jobs.max-page-size:1000}") int maxPairsPageSize) {
     this.fileAnalysisService = fileAnalysisService;
+    this.analysisJobService = analysisJobService;
+    this.similarityJobService = similarityJobService;
+    this.retryAfterSeconds = retryAfterSeconds;
+    this.maxSimilarityJobFiles = maxSimilarityJobFiles;
+    this.maxPairsPageSize = maxPairsPageSize;
   }
 
   /**
@@ -42,6 +78,153 @@ public class FileAnalysisController {
     return ResponseEntity.ok(result);
   }
 
+  /**
+   * Handles the request to find the files similar to a file.
+   *
+   * @param fileId the ID of the file to compare.
+   * @param threshold the smallest estimated Jaccard similarity of the word shingles, from 0 to 1.
+   * @return a {@link ResponseEntity} containing the similar files, the most similar first,
+   *         or 400 if the threshold is out of range.
+   */
+  @GetMapping("/{fileId}/similar")
+  public ResponseEntity<List<SimilarFile>> findSimilarFiles(@PathVariable String fileId,
+                                                            @RequestParam(defaultValue = "0.5") double threshold) {
+    if (!(threshold >= 0 && threshold <= 1)) {
+      return ResponseEntity.badRequest().build();
+    }
+    return ResponseEntity.ok(fileAnalysisService.findSimilarFiles(fileId, threshold));
+  }
+
+  /**
+   * Handles the request to find the passages of a file that occur in other files.
+   *
+   * @param fileId the ID of the file to compare.
+   * @return a {@link ResponseEntity} containing the matching files with the offsets of the
+   *         matched passages in both files.
+   */
+  @GetMapping("/{fileId}/matches")
+  public ResponseEntity<List<PassageMatch>> findMatchingPassages(@PathVariable String fileId) {
+    return ResponseEntity.ok(fileAnalysisService.findMatchingPassages(fileId));
+  }
+
+  /**
+   * Handles the request to compare two files in depth.
+   *
+   * @param fileId the ID of the compared file.
+   * @param otherFileId the ID of the file it is compared with.
+   * @param minWords the number of words a common passage has at least.
+   * @return a {@link ResponseEntity} containing the maximal common passages with their offsets in
+   *         both files, 400 if the minimum is not positive, or 404 if a file could not be downloaded.
+   */
+  @GetMapping("/compare/{fileId}/{otherFileId}")
+  public ResponseEntity<PassageMatch> compareFiles(@PathVariable String fileId, @PathVariable String otherFileId,
+                                                   @RequestParam(defaultValue = "8") int minWords) {
+    if (minWords < 1) {
+      return ResponseEntity.badRequest().build();
+    }
+    PassageMatch match = fileAnalysisService.compareFiles(fileId, otherFileId, minWords);
+    if (match == null) {
+      return ResponseEntity.notFound().build();
+    }
+    return ResponseEntity.ok(match);
+  }
+
+  /**
+   * Handles the request to analyze a file in the background.
+   *
+   * @param fileId the ID of the file to analyze.
+   * @return 202 with the {@link AnalysisJob} and its location to poll,
+   *         or 503 with {@code Retry-After} if too many jobs are queued.
+   */
+  @PostMapping("/{fileId}/jobs")
+  public ResponseEntity<AnalysisJob> submitAnalysisJob(@PathVariable String fileId) {
+    AnalysisJob job = analysisJobService.submit(fileId);
+    if (job == null) {
+      return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+          .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+          .build();
+    }
+    return ResponseEntity.accepted()
+        .location(URI.create("/api/v1/analysis/jobs/" + job.getJobId()))
+        .body(job);
+  }
+
+  /**
+   * Handles the request to poll an analysis job.
+   *
+   * @param jobId the ID of the job.
+   * @return a {@link ResponseEntity} containing the {@link AnalysisJob} with the result once it is completed.
+   */
+  @GetMapping("/jobs/{jobId}")
+  public ResponseEntity<AnalysisJob> getAnalysisJob(@PathVariable String jobId) {
+    AnalysisJob job = analysisJobService.getJob(jobId);
+    if (job == null) {
+      return ResponseEntity.notFound().build();
+    }
+    return ResponseEntity.ok(job);
+  }
+
+  /**
+   * Handles the request to compare every pair of a set of files in the background.
+   *
+   * @param request the IDs of the files and the smallest similarity of a stored pair.
+   * @return 202 with the {@link SimilarityJob} and its location to poll, 400 if there are no
+   *         files or too many of them or the threshold is out of range,
+   *         or 503 with {@code Retry-After} if too many jobs are queued.
+   */
+  @PostMapping("/similarity-jobs")
+  public ResponseEntity<SimilarityJob> submitSimilarityJob(@RequestBody SimilarityJobRequest request) {
+    List<String> fileIds = request.getFileIds();
+    double threshold = request.getThreshold();
+    if (fileIds == null || fileIds.isEmpty() || fileIds.size() > maxSimilarityJobFiles || fileIds.contains(null)
+        || !(threshold > 0 && threshold <= 1)) {
+      return ResponseEntity.badRequest().build();
+    }
+    SimilarityJob job = similarityJobService.submit(fileIds, threshold);
+    if (job == null) {
+      return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+          .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+          .build();
+    }
+    return ResponseEntity.accepted()
+        .location(URI.create("/api/v1/analysis/similarity-jobs/" + job.getJobId()))
+        .body(job);
+  }
+
+  /**
+   * Handles the request to poll a similarity job.
+   *
+   * @param jobId the ID of the job.
+   * @return a {@link ResponseEntity} containing the {@link SimilarityJob} with its progress.
+   */
+  @GetMapping("/similarity-jobs/{jobId}")
+  public ResponseEntity<SimilarityJob> getSimilarityJob(@PathVariable String jobId) {
+    SimilarityJob job = similarityJobService.getJob(jobId);
+    if (job == null) {
+      return ResponseEntity.notFound().build();
+    }
+    return ResponseEntity.ok(job);
+  }
+
+  /**
+   * Handles the request to read the pairs a similarity job stored so far.
+   *
+   * @param jobId the ID of the job.
+   * @param page the number of the page, from 0.
+   * @param size the number of pairs on a page.
+   * @return a {@link ResponseEntity} containing the pairs, the most similar first,
+   *         or 400 if the page is out of range.
+   */
+  @GetMapping("/similarity-jobs/{jobId}/pairs")
+  public ResponseEntity<List<SimilarPair>> getSimilarPairs(@PathVariable String jobId,
+                                                           @RequestParam(defaultValue = "0") int page,
+                                                           @RequestParam(defaultValue = "100") int size) {
+    if (page < 0 || size < 1 || size > maxPairsPageSize) {
+      return ResponseEntity.badRequest().build();
+    }
+    return ResponseEntity.ok(similarityJobService.getPairs(jobId, page, size));
+  }
+
   /**
    * Handles the request to retrieve a word cloud image.
    *
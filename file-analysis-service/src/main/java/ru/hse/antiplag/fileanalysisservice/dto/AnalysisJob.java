@@ -0,0 +1,156 @@
+package ru.hse.antiplag.fileanalysisservice.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for an analysis job, submitted to analyze a file in the background.
+ */
+public class AnalysisJob {
+  private String jobId;
+  private String fileId;
+  private AnalysisJobStatus status;
+  private AnalysisResult result;
+  private String error;
+  private LocalDateTime submittedAt;
+  private LocalDateTime finishedAt;
+
+  /**
+   * Default constructor.
+   */
+  public AnalysisJob() {
+  }
+
+  /**
+   * Constructor with all fields.
+   *
+   * @param jobId the ID of the job.
+   * @param fileId the ID of the analyzed file.
+   * @param status the status of the job.
+   * @param result the result of the analysis, null until the job is completed.
+   * @param error the reason of the failure, null unless the job failed.
+   * @param submittedAt the time the job was submitted.
+   * @param finishedAt the time the job was completed or failed, null before.
+   */
+  public AnalysisJob(String jobId, String fileId, AnalysisJobStatus status, AnalysisResult result, String error,
+                     LocalDateTime submittedAt, LocalDateTime finishedAt) {
+    this.jobId = jobId;
+    this.fileId = fileId;
+    this.status = status;
+    this.result = result;
+    this.error = error;
+    this.submittedAt = submittedAt;
+    this.finishedAt = finishedAt;
+  }
+
+  /**
+   * Gets the ID of the job.
+   * @return the ID of the job.
+   */
+  public String getJobId() {
+    return jobId;
+  }
+
+  /**
+   * Sets the ID of the job.
+   * @param jobId the ID of the job.
+   */
+  public void setJobId(String jobId) {
+    this.jobId = jobId;
+  }
+
+  /**
+   * Gets the ID of the analyzed file.
+   * @return the ID of the file.
+   */
+  public String getFileId() {
+    return fileId;
+  }
+
+  /**
+   * Sets the ID of the analyzed file.
+   * @param fileId the ID of the file.
+   */
+  public void setFileId(String fileId) {
+    this.fileId = fileId;
+  }
+
+  /**
+   * Gets the status of the job.
+   * @return the status of the job.
+   */
+  public AnalysisJobStatus getStatus() {
+    return status;
+  }
+
+  /**
+   * Sets the status of the job.
+   * @param status the status of the job.
+   */
+  public void setStatus(AnalysisJobStatus status) {
+    this.status = status;
+  }
+
+  /**
+   * Gets the result of the analysis.
+   * @return the result, null until the job is completed.
+   */
+  public AnalysisResult getResult() {
+    return result;
+  }
+
+  /**
+   * Sets the result of the analysis.
+   * @param result the result of the analysis.
+   */
+  public void setResult(AnalysisResult result) {
+    this.result = result;
+  }
+
+  /**
+   * Gets the reason of the failure.
+   * @return the reason, null unless the job failed.
+   */
+  public String getError() {
+    return error;
+  }
+
+  /**
+   * Sets the reason of the failure.
+   * @param error the reason of the failure.
+   */
+  public void setError(String error) {
+    this.error = error;
+  }
+
+  /**
+   * Gets the time the job was submitted.
+   * @return the submission time.
+   */
+  public LocalDateTime getSubmittedAt() {
+    return submittedAt;
+  }
+
+  /**
+   * Sets the time the job was submitted.
+   * @param submittedAt the submission time.
+   */
+  public void setSubmittedAt(LocalDateTime submittedAt) {
+    this.submittedAt = submittedAt;
+  }
+
+  /**
+   * Gets the time the job was completed or failed.
+   * @return the finish time, null before.
+   */
+  public LocalDateTime getFinishedAt() {
+    return finishedAt;
+  }
+
+  /**
+   * Sets the time the job was completed or failed.
+   * @param finishedAt the finish time.
+   */
+  public void setFinishedAt(LocalDateTime finishedAt) {
+    this.finishedAt = finishedAt;
+  }
+}
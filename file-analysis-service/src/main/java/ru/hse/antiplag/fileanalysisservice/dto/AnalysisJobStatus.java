@@ -0,0 +1,23 @@
+package ru.hse.antiplag.fileanalysisservice.dto;
+
+/**
+ * Status of an analysis job.
+ */
+public enum AnalysisJobStatus {
+  /**
+   * Waiting in the queue for a worker.
+   */
+  QUEUED,
+  /**
+   * Being analyzed.
+   */
+  RUNNING,
+  /**
+   * Analyzed, the result is available.
+   */
+  COMPLETED,
+  /**
+   * The analysis failed.
+   */
+  FAILED
+}
@@ -1,11 +1,16 @@
 package ru.hse.antiplag.fileanalysisservice.dto;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * DTO for the complete analysis result.
  */
 public class AnalysisResult {
   private TextStatistics textStatistics;
   private String wordCloudPath;
+  private List<TermFrequency> topTerms = new ArrayList<>();
+  private WordCloudStatus wordCloudStatus;
 
   /**
    * Default constructor.
@@ -22,6 +27,33 @@ public class AnalysisResult {
   public AnalysisResult(TextStatistics textStatistics, String wordCloudPath) {
     this.textStatistics = textStatistics;
     this.wordCloudPath = wordCloudPath;
+    this.wordCloudStatus = wordCloudPath != null && !wordCloudPath.isEmpty() ? WordCloudStatus.READY : WordCloudStatus.NONE;
+  }
+
+  /**
+   * Constructor with all fields, including the most frequent terms.
+   *
+   * @param textStatistics the calculated text statistics.
+   * @param wordCloudPath the path to the saved word cloud image.
+   * @param topTerms the most frequent terms, without stop words.
+   */
+  public AnalysisResult(TextStatistics textStatistics, String wordCloudPath, List<TermFrequency> topTerms) {
+    this(textStatistics, wordCloudPath);
+    this.topTerms = topTerms;
+  }
+
+  /**
+   * Constructor with all fields, including the status of the word cloud.
+   *
+   * @param textStatistics the calculated text statistics.
+   * @param wordCloudPath the path to the saved word cloud image, empty until it is ready.
+   * @param topTerms the most frequent terms, without stop words.
+   * @param wordCloudStatus the status of the word cloud.
+   */
+  public AnalysisResult(TextStatistics textStatistics, String wordCloudPath, List<TermFrequency> topTerms,
+                        WordCloudStatus wordCloudStatus) {
+    this(textStatistics, wordCloudPath, topTerms);
+    this.wordCloudStatus = wordCloudStatus;
   }
 
   /**
@@ -55,4 +87,36 @@ public class AnalysisResult {
   public void setWordCloudPath(String wordCloudPath) {
     this.wordCloudPath = wordCloudPath;
   }
+
+  /**
+   * Gets the most frequent terms.
+   * @return the most frequent terms, the most frequent first.
+   */
+  public List<TermFrequency> getTopTerms() {
+    return topTerms;
+  }
+
+  /**
+   * Sets the most frequent terms.
+   * @param topTerms the most frequent terms.
+   */
+  public void setTopTerms(List<TermFrequency> topTerms) {
+    this.topTerms = topTerms;
+  }
+
+  /**
+   * Gets the status of the word cloud.
+   * @return the status of the word cloud.
+   */
+  public WordCloudStatus getWordCloudStatus() {
+    return wordCloudStatus;
+  }
+
+  /**
+   * Sets the status of the word cloud.
+   * @param wordCloudStatus the status of the word cloud.
+   */
+  public void setWordCloudStatus(WordCloudStatus wordCloudStatus) {
+    this.wordCloudStatus = wordCloudStatus;
+  }
 }
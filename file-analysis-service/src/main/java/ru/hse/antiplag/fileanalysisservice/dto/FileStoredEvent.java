@@ -0,0 +1,96 @@
+package ru.hse.antiplag.fileanalysisservice.dto;
+
+/**
+ * DTO for the event the file storage service publishes when a new file has been stored.
+ */
+public class FileStoredEvent {
+  private String fileId;
+  private String hash;
+  private long size;
+  private String contentType;
+
+  /**
+   * Default constructor.
+   */
+  public FileStoredEvent() {
+  }
+
+  /**
+   * Constructor with all fields.
+   *
+   * @param fileId the ID of the stored file.
+   * @param hash SHA-256 hash of the file content.
+   * @param size size of the file content, in bytes.
+   * @param contentType content type of the file.
+   */
+  public FileStoredEvent(String fileId, String hash, long size, String contentType) {
+    this.fileId = fileId;
+    this.hash = hash;
+    this.size = size;
+    this.contentType = contentType;
+  }
+
+  /**
+   * Gets the ID of the stored file.
+   * @return the file ID.
+   */
+  public String getFileId() {
+    return fileId;
+  }
+
+  /**
+   * Sets the ID of the stored file.
+   * @param fileId the file ID.
+   */
+  public void setFileId(String fileId) {
+    this.fileId = fileId;
+  }
+
+  /**
+   * Gets the hash of the file content.
+   * @return the SHA-256 hash.
+   */
+  public String getHash() {
+    return hash;
+  }
+
+  /**
+   * Sets the hash of the file content.
+   * @param hash the SHA-256 hash.
+   */
+  public void setHash(String hash) {
+    this.hash = hash;
+  }
+
+  /**
+   * Gets the size of the file content.
+   * @return the size in bytes.
+   */
+  public long getSize() {
+    return size;
+  }
+
+  /**
+   * Sets the size of the file content.
+   * @param size the size in bytes.
+   */
+  public void setSize(long size) {
+    this.size = size;
+  }
+
+  /**
+   * Gets the content type of the file.
+   * @return the content type, or null if the upload did not name one.
+   */
+  public String getContentType() {
+    return contentType;
+  }
+
+  /**
+   * Sets the content type of the file.
+   * @param contentType the content type.
+   */
+  public void setContentType(String contentType) {
+    this.contentType = contentType;
+  }
+}
@@ -0,0 +1,97 @@
+package ru.hse.antiplag.fileanalysisservice.dto;
+
+/**
+ * DTO for a passage of a file that matches a passage of another file. Offsets count the
+ * characters of the decoded texts, the end is exclusive.
+ */
+public class MatchedPassage {
+  private int start;
+  private int end;
+  private int otherStart;
+  private int otherEnd;
+
+  /**
+   * Default constructor.
+   */
+  public MatchedPassage() {
+  }
+
+  /**
+   * Constructor with all fields.
+   *
+   * @param start the offset of the passage in the compared file.
+   * @param end the offset after the passage in the compared file.
+   * @param otherStart the offset of the passage in the matching file.
+   * @param otherEnd the offset after the passage in the matching file.
+   */
+  public MatchedPassage(int start, int end, int otherStart, int otherEnd) {
+    this.start = start;
+    this.end = end;
+    this.otherStart = otherStart;
+    this.otherEnd = otherEnd;
+  }
+
+  /**
+   * Gets the offset of the passage in the compared file.
+   * @return the start offset.
+   */
+  public int getStart() {
+    return start;
+  }
+
+  /**
+   * Sets the offset of the passage in the compared file.
+   * @param start the start offset.
+   */
+  public void setStart(int start) {
+    this.start = start;
+  }
+
+  /**
+   * Gets the offset after the passage in the compared file.
+   * @return the end offset.
+   */
+  public int getEnd() {
+    return end;
+  }
+
+  /**
+   * Sets the offset after the passage in the compared file.
+   * @param end the end offset.
+   */
+  public void setEnd(int end) {
+    this.end = end;
+  }
+
+  /**
+   * Gets the offset of the passage in the matching file.
+   * @return the start offset.
+   */
+  public int getOtherStart() {
+    return otherStart;
+  }
+
+  /**
+   * Sets the offset of the passage in the matching file.
+   * @param otherStart the start offset.
+   */
+  public void setOtherStart(int otherStart) {
+    this.otherStart = otherStart;
+  }
+
+  /**
+   * Gets the offset after the passage in the matching file.
+   * @return the end offset.
+   */
+  public int getOtherEnd() {
+    return otherEnd;
+  }
+
+  /**
+   * Sets the offset after the passage in the matching file.
+   * @param otherEnd the end offset.
+   */
+  public void setOtherEnd(int otherEnd) {
+    this.otherEnd = otherEnd;
+  }
+}
@@ -0,0 +1,80 @@
+package ru.hse.antiplag.fileanalysisservice.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO for a file that has passages in common with the compared file.
+ */
+public class PassageMatch {
+  private String fileId;
+  private int matchedCharacters;
+  private List<MatchedPassage> passages = new ArrayList<>();
+
+  /**
+   * Default constructor.
+   */
+  public PassageMatch() {
+  }
+
+  /**
+   * Constructor with all fields.
+   *
+   * @param fileId the ID of the matching file.
+   * @param matchedCharacters the number of characters of the compared file in matched passages.
+   * @param passages the matched passages, in the order of the compared file.
+   */
+  public PassageMatch(String fileId, int matchedCharacters, List<MatchedPassage> passages) {
+    this.fileId = fileId;
+    this.matchedCharacters = matchedCharacters;
+    this.passages = passages;
+  }
+
+  /**
+   * Gets the ID of the matching file.
+   * @return the file ID.
+   */
+  public String getFileId() {
+    return fileId;
+  }
+
+  /**
+   * Sets the ID of the matching file.
+   * @param fileId the file ID.
+   */
+  public void setFileId(String fileId) {
+    this.fileId = fileId;
+  }
+
+  /**
+   * Gets the number of characters of the compared file in matched passages.
+   * @return the number of matched characters.
+   */
+  public int getMatchedCharacters() {
+    return matchedCharacters;
+  }
+
+  /**
+   * Sets the number of characters of the compared file in matched passages.
+   * @param matchedCharacters the number of matched characters.
+   */
+  public void setMatchedCharacters(int matchedCharacters) {
+    this.matchedCharacters = matchedCharacters;
+  }
+
+  /**
+   * Gets the matched passages.
+   * @return the matched passages, in the order of the compared file.
+   */
+  public List<MatchedPassage> getPassages() {
+    return passages;
+  }
+
+  /**
+   * Sets the matched passages.
+   * @param passages the matched passages.
+   */
+  public void setPassages(List<MatchedPassage> passages) {
+    this.passages = passages;
+  }
+}
@@ -0,0 +1,58 @@
+package ru.hse.antiplag.fileanalysisservice.dto;
+
+/**
+ * DTO for a file whose text is similar to the text of another file.
+ */
+public class SimilarFile {
+  private String fileId;
+  private double similarity;
+
+  /**
+   * Default constructor.
+   */
+  public SimilarFile() {
+  }
+
+  /**
+   * Constructor with all fields.
+   *
+   * @param fileId the ID of the similar file.
+   * @param similarity the estimated Jaccard similarity of the word shingles, from 0 to 1.
+   */
+  public SimilarFile(String fileId, double similarity) {
+    this.fileId = fileId;
+    this.similarity = similarity;
+  }
+
+  /**
+   * Gets the ID of the similar file.
+   * @return the file ID.
+   */
+  public String getFileId() {
+    return fileId;
+  }
+
+  /**
+   * Sets the ID of the similar file.
+   * @param fileId the file ID.
+   */
+  public void setFileId(String fileId) {
+    this.fileId = fileId;
+  }
+
+  /**
+   * Gets the estimated Jaccard similarity of the word shingles.
+   * @return the similarity, from 0 to 1.
+   */
+  public double getSimilarity() {
+    return similarity;
+  }
+
+  /**
+   * Sets the estimated Jaccard similarity of the word shingles.
+   * @param similarity the similarity, from 0 to 1.
+   */
+  public void setSimilarity(double similarity) {
+    this.similarity = similarity;
+  }
+}
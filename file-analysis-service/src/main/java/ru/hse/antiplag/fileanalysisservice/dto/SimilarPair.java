@@ -0,0 +1,77 @@
+package ru.hse.antiplag.fileanalysisservice.dto;
+
+/**
+ * DTO for two files of a similarity job whose texts are similar.
+ */
+public class SimilarPair {
+  private String fileId;
+  private String otherFileId;
+  private double similarity;
+
+  /**
+   * Default constructor.
+   */
+  public SimilarPair() {
+  }
+
+  /**
+   * Constructor with all fields.
+   *
+   * @param fileId the ID of the larger file of the pair.
+   * @param otherFileId the ID of the other file.
+   * @param similarity the Jaccard similarity of the fingerprints of the files, from 0 to 1.
+   */
+  public SimilarPair(String fileId, String otherFileId, double similarity) {
+    this.fileId = fileId;
+    this.otherFileId = otherFileId;
+    this.similarity = similarity;
+  }
+
+  /**
+   * Gets the ID of the larger file of the pair.
+   * @return the file ID.
+   */
+  public String getFileId() {
+    return fileId;
+  }
+
+  /**
+   * Sets the ID of the larger file of the pair.
+   * @param fileId the file ID.
+   */
+  public void setFileId(String fileId) {
+    this.fileId = fileId;
+  }
+
+  /**
+   * Gets the ID of the other file.
+   * @return the file ID.
+   */
+  public String getOtherFileId() {
+    return otherFileId;
+  }
+
+  /**
+   * Sets the ID of the other file.
+   * @param otherFileId the file ID.
+   */
+  public void setOtherFileId(String otherFileId) {
+    this.otherFileId = otherFileId;
+  }
+
+  /**
+   * Gets the Jaccard similarity of the fingerprints of the files.
+   * @return the similarity, from 0 to 1.
+   */
+  public double getSimilarity() {
+    return similarity;
+  }
+
+  /**
+   * Sets the Jaccard similarity of the fingerprints of the files.
+   * @param similarity the similarity, from 0 to 1.
+   */
+  public void setSimilarity(double similarity) {
+    this.similarity = similarity;
+  }
+}
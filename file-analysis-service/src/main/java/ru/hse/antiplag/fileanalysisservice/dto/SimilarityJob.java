@@ -0,0 +1,235 @@
+package ru.hse.antiplag.fileanalysisservice.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO for a similarity job, comparing every pair of a set of files in the background. The
+ * counters show the progress of a running job; the pairs found are stored as they are found.
+ */
+public class SimilarityJob {
+  private String jobId;
+  private AnalysisJobStatus status;
+  private double threshold;
+  private int fileCount;
+  private int loadedFiles;
+  private int comparedFiles;
+  private long pairCount;
+  private List<String> skippedFileIds;
+  private String error;
+  private LocalDateTime submittedAt;
+  private LocalDateTime finishedAt;
+
+  /**
+   * Default constructor.
+   */
+  public SimilarityJob() {
+  }
+
+  /**
+   * Constructor with all fields.
+   *
+   * @param jobId the ID of the job.
+   * @param status the status of the job.
+   * @param threshold the smallest Jaccard similarity of a stored pair.
+   * @param fileCount the number of distinct files to compare.
+   * @param loadedFiles the number of files whose fingerprints are loaded.
+   * @param comparedFiles the number of files compared with all smaller ones.
+   * @param pairCount the number of pairs stored so far.
+   * @param skippedFileIds the IDs of the files without fingerprints, left out of the comparison.
+   * @param error the reason of the failure, null unless the job failed.
+   * @param submittedAt the time the job was submitted.
+   * @param finishedAt the time the job was completed or failed, null before.
+   */
+  public SimilarityJob(String jobId, AnalysisJobStatus status, double threshold, int fileCount, int loadedFiles,
+                       int comparedFiles, long pairCount, List<String> skippedFileIds, String error,
+                       LocalDateTime submittedAt, LocalDateTime finishedAt) {
+    this.jobId = jobId;
+    this.status = status;
+    this.threshold = threshold;
+    this.fileCount = fileCount;
+    this.loadedFiles = loadedFiles;
+    this.comparedFiles = comparedFiles;
+    this.pairCount = pairCount;
+    this.skippedFileIds = skippedFileIds;
+    this.error = error;
+    this.submittedAt = submittedAt;
+    this.finishedAt = finishedAt;
+  }
+
+  /**
+   * Gets the ID of the job.
+   * @return the ID of the job.
+   */
+  public String getJobId() {
+    return jobId;
+  }
+
+  /**
+   * Sets the ID of the job.
+   * @param jobId the ID of the job.
+   */
+  public void setJobId(String jobId) {
+    this.jobId = jobId;
+  }
+
+  /**
+   * Gets the status of the job.
+   * @return the status of the job.
+   */
+  public AnalysisJobStatus getStatus() {
+    return status;
+  }
+
+  /**
+   * Sets the status of the job.
+   * @param status the status of the job.
+   */
+  public void setStatus(AnalysisJobStatus status) {
+    this.status = status;
+  }
+
+  /**
+   * Gets the smallest Jaccard similarity of a stored pair.
+   * @return the threshold.
+   */
+  public double getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * Sets the smallest Jaccard similarity of a stored pair.
+   * @param threshold the threshold.
+   */
+  public void setThreshold(double threshold) {
+    this.threshold = threshold;
+  }
+
+  /**
+   * Gets the number of distinct files to compare.
+   * @return the number of files.
+   */
+  public int getFileCount() {
+    return fileCount;
+  }
+
+  /**
+   * Sets the number of distinct files to compare.
+   * @param fileCount the number of files.
+   */
+  public void setFileCount(int fileCount) {
+    this.fileCount = fileCount;
+  }
+
+  /**
+   * Gets the number of files whose fingerprints are loaded.
+   * @return the number of loaded files.
+   */
+  public int getLoadedFiles() {
+    return loadedFiles;
+  }
+
+  /**
+   * Sets the number of files whose fingerprints are loaded.
+   * @param loadedFiles the number of loaded files.
+   */
+  public void setLoadedFiles(int loadedFiles) {
+    this.loadedFiles = loadedFiles;
+  }
+
+  /**
+   * Gets the number of files compared with all smaller ones.
+   * @return the number of compared files.
+   */
+  public int getComparedFiles() {
+    return comparedFiles;
+  }
+
+  /**
+   * Sets the number of files compared with all smaller ones.
+   * @param comparedFiles the number of compared files.
+   */
+  public void setComparedFiles(int comparedFiles) {
+    this.comparedFiles = comparedFiles;
+  }
+
+  /**
+   * Gets the number of pairs stored so far.
+   * @return the number of pairs.
+   */
+  public long getPairCount() {
+    return pairCount;
+  }
+
+  /**
+   * Sets the number of pairs stored so far.
+   * @param pairCount the number of pairs.
+   */
+  public void setPairCount(long pairCount) {
+    this.pairCount = pairCount;
+  }
+
+  /**
+   * Gets the IDs of the files left out of the comparison.
+   * @return the file IDs.
+   */
+  public List<String> getSkippedFileIds() {
+    return skippedFileIds;
+  }
+
+  /**
+   * Sets the IDs of the files left out of the comparison.
+   * @param skippedFileIds the file IDs.
+   */
+  public void setSkippedFileIds(List<String> skippedFileIds) {
+    this.skippedFileIds = skippedFileIds;
+  }
+
+  /**
+   * Gets the reason of the failure.
+   * @return the reason, null unless the job failed.
+   */
+  public String getError() {
+    return error;
+  }
+
+  /**
+   * Sets the reason of the failure.
+   * @param error the reason of the failure.
+   */
+  public void setError(String error) {
+    this.error = error;
+  }
+
+  /**
+   * Gets the time the job was submitted.
+   * @return the submission time.
+   */
+  public LocalDateTime getSubmittedAt() {
+    return submittedAt;
+  }
+
+  /**
+   * Sets the time the job was submitted.
+   * @param submittedAt the submission time.
+   */
+  public void setSubmittedAt(LocalDateTime submittedAt) {
+    this.submittedAt = submittedAt;
+  }
+
+  /**
+   * Gets the time the job was completed or failed.
+   * @return the finish time, null before.
+   */
+  public LocalDateTime getFinishedAt() {
+    return finishedAt;
+  }
+
+  /**
+   * Sets the time the job was completed or failed.
+   * @param finishedAt the finish time.
+   */
+  public void setFinishedAt(LocalDateTime finishedAt) {
+    this.finishedAt = finishedAt;
+  }
+}
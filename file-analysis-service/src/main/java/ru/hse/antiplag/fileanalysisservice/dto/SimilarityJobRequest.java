@@ -0,0 +1,60 @@
+package ru.hse.antiplag.fileanalysisservice.dto;
+
+import java.util.List;
+
+/**
+ * DTO for a request to compare every pair of a set of files.
+ */
+public class SimilarityJobRequest {
+  private List<String> fileIds;
+  private double threshold = 0.5;
+
+  /**
+   * Default constructor.
+   */
+  public SimilarityJobRequest() {
+  }
+
+  /**
+   * Constructor with all fields.
+   *
+   * @param fileIds the IDs of the files to compare.
+   * @param threshold the smallest Jaccard similarity of a stored pair, greater than 0 and at most 1.
+   */
+  public SimilarityJobRequest(List<String> fileIds, double threshold) {
+    this.fileIds = fileIds;
+    this.threshold = threshold;
+  }
+
+  /**
+   * Gets the IDs of the files to compare.
+   * @return the file IDs.
+   */
+  public List<String> getFileIds() {
+    return fileIds;
+  }
+
+  /**
+   * Sets the IDs of the files to compare.
+   * @param fileIds the file IDs.
+   */
+  public void setFileIds(List<String> fileIds) {
+    this.fileIds = fileIds;
+  }
+
+  /**
+   * Gets the smallest Jaccard similarity of a stored pair.
+   * @return the threshold, greater than 0 and at most 1.
+   */
+  public double getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * Sets the smallest Jaccard similarity of a stored pair.
+   * @param threshold the threshold, greater than 0 and at most 1.
+   */
+  public void setThreshold(double threshold) {
+    this.threshold = threshold;
+  }
+}
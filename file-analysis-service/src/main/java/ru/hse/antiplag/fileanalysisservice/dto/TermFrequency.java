@@ -0,0 +1,58 @@
+package ru.hse.antiplag.fileanalysisservice.dto;
+
+/**
+ * DTO for a term of the text with the number of its occurrences.
+ */
+public class TermFrequency {
+  private String term;
+  private int count;
+
+  /**
+   * Default constructor.
+   */
+  public TermFrequency() {
+  }
+
+  /**
+   * Constructor with all fields.
+   *
+   * @param term the term, in lower case.
+   * @param count number of occurrences of the term.
+   */
+  public TermFrequency(String term, int count) {
+    this.term = term;
+    this.count = count;
+  }
+
+  /**
+   * Gets the term.
+   * @return the term.
+   */
+  public String getTerm() {
+    return term;
+  }
+
+  /**
+   * Sets the term.
+   * @param term the term.
+   */
+  public void setTerm(String term) {
+    this.term = term;
+  }
+
+  /**
+   * Gets the number of occurrences.
+   * @return number of occurrences.
+   */
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * Sets the number of occurrences.
+   * @param count number of occurrences.
+   */
+  public void setCount(int count) {
+    this.count = count;
+  }
+}
@@ -7,6 +7,8 @@ public class TextStatistics {
   private int paragraphCount;
   private int wordCount;
   private int characterCount;
+  private int lineCount;
+  private int sentenceCount;
 
   /**
    * Default constructor.
@@ -27,6 +29,21 @@ public class TextStatistics {
     this.characterCount = characterCount;
   }
 
+  /**
+   * Constructor with all fields, including line and sentence counts.
+   *
+   * @param paragraphCount number of paragraphs.
+   * @param wordCount number of words.
+   * @param characterCount number of characters.
+   * @param lineCount number of lines.
+   * @param sentenceCount number of sentences.
+   */
+  public TextStatistics(int paragraphCount, int wordCount, int characterCount, int lineCount, int sentenceCount) {
+    this(paragraphCount, wordCount, characterCount);
+    this.lineCount = lineCount;
+    this.sentenceCount = sentenceCount;
+  }
+
   /**
    * Gets the number of paragraphs.
    * @return number of paragraphs.
@@ -74,4 +91,36 @@ public class TextStatistics {
   public void setCharacterCount(int characterCount) {
     this.characterCount = characterCount;
   }
+
+  /**
+   * Gets the number of lines.
+   * @return number of lines.
+   */
+  public int getLineCount() {
+    return lineCount;
+  }
+
+  /**
+   * Sets the number of lines.
+   * @param lineCount number of lines.
+   */
+  public void setLineCount(int lineCount) {
+    this.lineCount = lineCount;
+  }
+
+  /**
+   * Gets the number of sentences.
+   * @return number of sentences.
+   */
+  public int getSentenceCount() {
+    return sentenceCount;
+  }
+
+  /**
+   * Sets the number of sentences.
+   * @param sentenceCount number of sentences.
+   */
+  public void setSentenceCount(int sentenceCount) {
+    this.sentenceCount = sentenceCount;
+  }
 }
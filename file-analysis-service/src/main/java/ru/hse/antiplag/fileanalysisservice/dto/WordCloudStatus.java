@@ -0,0 +1,23 @@
+package ru.hse.antiplag.fileanalysisservice.dto;
+
+/**
+ * Status of the word cloud of an analysis result.
+ */
+public enum WordCloudStatus {
+  /**
+   * Queued for rendering, the statistics are available already.
+   */
+  PENDING,
+  /**
+   * Rendered and stored, the path is available.
+   */
+  READY,
+  /**
+   * Rendering or storing failed after all retries.
+   */
+  FAILED,
+  /**
+   * The text has no terms to draw.
+   */
+  NONE
+}
@@ -0,0 +1,93 @@
+package ru.hse.antiplag.fileanalysisservice.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * Entity representing the claim of one service instance to analyze a file. Other instances
+ * wait for the result instead of analyzing the same file, until the lease is released or expires.
+ */
+@Entity
+@Table(name = "analysis_leases")
+public class AnalysisLeaseEntity {
+
+  @Id
+  @Column(name = "file_id", nullable = false, unique = true)
+  private String fileId;
+
+  @Column(name = "owner", nullable = false)
+  private String owner;
+
+  @Column(name = "expires_at", nullable = false)
+  private LocalDateTime expiresAt;
+
+  /**
+   * Default constructor for JPA.
+   */
+  public AnalysisLeaseEntity() {
+  }
+
+  /**
+   * Constructs a new AnalysisLeaseEntity.
+   *
+   * @param fileId the id of the file being analyzed
+   * @param owner the id of the instance analyzing it
+   * @param expiresAt the time after which another instance may take the lease over
+   */
+  public AnalysisLeaseEntity(String fileId, String owner, LocalDateTime expiresAt) {
+    this.fileId = fileId;
+    this.owner = owner;
+    this.expiresAt = expiresAt;
+  }
+
+  /**
+   * Gets the ID of the file being analyzed.
+   * @return the file ID.
+   */
+  public String getFileId() {
+    return fileId;
+  }
+
+  /**
+   * Sets the ID of the file being analyzed.
+   * @param fileId the file ID.
+   */
+  public void setFileId(String fileId) {
+    this.fileId = fileId;
+  }
+
+  /**
+   * Gets the ID of the instance holding the lease.
+   * @return the owner ID.
+   */
+  public String getOwner() {
+    return owner;
+  }
+
+  /**
+   * Sets the ID of the instance holding the lease.
+   * @param owner the owner ID.
+   */
+  public void setOwner(String owner) {
+    this.owner = owner;
+  }
+
+  /**
+   * Gets the expiration time of the lease.
+   * @return the expiration time.
+   */
+  public LocalDateTime getExpiresAt() {
+    return expiresAt;
+  }
+
+  /**
+   * Sets the expiration time of the lease.
+   * @param expiresAt the expiration time.
+   */
+  public void setExpiresAt(LocalDateTime expiresAt) {
+    this.expiresAt = expiresAt;
+  }
+}
@@ -2,22 +2,35 @@ package ru.hse.antiplag.fileanalysisservice.entity;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import jakarta.persistence.Lob;
+import ru.hse.antiplag.fileanalysisservice.dto.WordCloudStatus;
 import java.time.LocalDateTime;
 
 /**
- * Entity representing the result of a file analysis.
+ * Entity representing the result of a file analysis. Each result records the SHA-256 hash of
+ * the analyzed content and the version of the analyzer that produced it, so that files with
+ * the same content share one analysis and results of an older analyzer can be recognized.
  */
 @Entity
-@Table(name = "analysis_results")
+@Table(name = "analysis_results",
+    indexes = @Index(name = "idx_analysis_results_content", columnList = "content_hash, analyzer_version"))
 public class AnalysisResultEntity {
 
   @Id
   @Column(name = "file_id", nullable = false, unique = true)
   private String fileId;
 
+  @Column(name = "content_hash", length = 64)
+  private String contentHash;
+
+  @Column(name = "analyzer_version")
+  private Integer analyzerVersion;
+
   @Column(name = "paragraph_count", nullable = false)
   private int paragraphCount;
 
@@ -27,10 +40,26 @@ public class AnalysisResultEntity {
   @Column(name = "character_count", nullable = false)
   private int characterCount;
 
+  @Column(name = "line_count")
+  private Integer lineCount;
+
+  @Column(name = "sentence_count")
+  private Integer sentenceCount;
+
+  @Column(name = "term_vector")
+  private byte[] termVector;
+
+  @Column(name = "min_hash")
+  private byte[] minHash;
+
   @Lob
   @Column(name = "word_cloud_path")
   private String wordCloudPath;
 
+  @Enumerated(EnumType.STRING)
+  @Column(name = "word_cloud_status", length = 16)
+  private WordCloudStatus wordCloudStatus;
+
   @Column(name = "created_at", nullable = false)
   private LocalDateTime createdAt;
 
@@ -78,6 +107,39 @@ public class AnalysisResultEntity {
     this.fileId = fileId;
   }
 
+  /**
+   * Gets the SHA-256 hash of the analyzed content, null for results stored before it was kept.
+   * @return the content hash.
+   */
+  public String getContentHash() {
+    return contentHash;
+  }
+
+  /**
+   * Sets the SHA-256 hash of the analyzed content.
+   * @param contentHash the content hash.
+   */
+  public void setContentHash(String contentHash) {
+    this.contentHash = contentHash;
+  }
+
+  /**
+   * Gets the version of the analyzer that produced the result, null for results stored before
+   * versions were kept.
+   * @return the analyzer version.
+   */
+  public Integer getAnalyzerVersion() {
+    return analyzerVersion;
+  }
+
+  /**
+   * Sets the version of the analyzer that produced the result.
+   * @param analyzerVersion the analyzer version.
+   */
+  public void setAnalyzerVersion(Integer analyzerVersion) {
+    this.analyzerVersion = analyzerVersion;
+  }
+
   /**
    * Gets the paragraph count.
    * @return the paragraph count.
@@ -126,6 +188,72 @@ public class AnalysisResultEntity {
     this.characterCount = characterCount;
   }
 
+  /**
+   * Gets the line count, null for results stored before lines were counted.
+   * @return the line count.
+   */
+  public Integer getLineCount() {
+    return lineCount;
+  }
+
+  /**
+   * Sets the line count.
+   * @param lineCount the line count.
+   */
+  public void setLineCount(Integer lineCount) {
+    this.lineCount = lineCount;
+  }
+
+  /**
+   * Gets the sentence count, null for results stored before sentences were counted.
+   * @return the sentence count.
+   */
+  public Integer getSentenceCount() {
+    return sentenceCount;
+  }
+
+  /**
+   * Sets the sentence count.
+   * @param sentenceCount the sentence count.
+   */
+  public void setSentenceCount(Integer sentenceCount) {
+    this.sentenceCount = sentenceCount;
+  }
+
+  /**
+   * Gets the term frequency vector encoded by {@code TermVectorCodec}, null for results stored
+   * before terms were kept.
+   * @return the encoded term frequency vector.
+   */
+  public byte[] getTermVector() {
+    return termVector;
+  }
+
+  /**
+   * Sets the encoded term frequency vector.
+   * @param termVector the encoded term frequency vector.
+   */
+  public void setTermVector(byte[] termVector) {
+    this.termVector = termVector;
+  }
+
+  /**
+   * Gets the MinHash signature of the word shingles encoded by {@code MinHash}, null for empty
+   * texts and results stored before signatures were kept.
+   * @return the encoded MinHash signature.
+   */
+  public byte[] getMinHash() {
+    return minHash;
+  }
+
+  /**
+   * Sets the encoded MinHash signature.
+   * @param minHash the encoded MinHash signature.
+   */
+  public void setMinHash(byte[] minHash) {
+    this.minHash = minHash;
+  }
+
   /**
    * Gets the path to the word cloud image.
    * @return the path to the word cloud image.
@@ -142,6 +270,23 @@ public class AnalysisResultEntity {
     this.wordCloudPath = wordCloudPath;
   }
 
+  /**
+   * Gets the status of the word cloud, null for results stored before the word cloud was
+   * rendered in the background.
+   * @return the status of the word cloud.
+   */
+  public WordCloudStatus getWordCloudStatus() {
+    return wordCloudStatus;
+  }
+
+  /**
+   * Sets the status of the word cloud.
+   * @param wordCloudStatus the status of the word cloud.
+   */
+  public void setWordCloudStatus(WordCloudStatus wordCloudStatus) {
+    this.wordCloudStatus = wordCloudStatus;
+  }
+
   /**
    * Gets the creation timestamp.
    * @return the creation timestamp.
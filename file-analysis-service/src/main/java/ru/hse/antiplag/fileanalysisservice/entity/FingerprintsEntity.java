@@ -0,0 +1,114 @@
+package ru.hse.antiplag.fileanalysisservice.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * Entity holding the winnowing fingerprints of an analyzed file. They are kept apart from the
+ * analysis result, which is read far more often and would otherwise carry them along.
+ */
+@Entity
+@Table(name = "document_fingerprints",
+    indexes = @Index(name = "idx_document_fingerprints_created", columnList = "created_at, file_id"))
+public class FingerprintsEntity {
+
+  @Id
+  @Column(name = "file_id", nullable = false, unique = true)
+  private String fileId;
+
+  @Column(name = "fingerprints", nullable = false)
+  private byte[] fingerprints;
+
+  @Column(name = "truncated")
+  private Boolean truncated;
+
+  @Column(name = "created_at", nullable = false)
+  private LocalDateTime createdAt;
+
+  /**
+   * Default constructor for JPA.
+   */
+  public FingerprintsEntity() {
+  }
+
+  /**
+   * Constructs a new FingerprintsEntity.
+   *
+   * @param fileId the id of the analyzed file
+   * @param fingerprints the fingerprints encoded by {@code Fingerprints}
+   */
+  public FingerprintsEntity(String fileId, byte[] fingerprints) {
+    this.fileId = fileId;
+    this.fingerprints = fingerprints;
+    this.createdAt = LocalDateTime.now();
+  }
+
+  /**
+   * Gets the ID of the analyzed file.
+   * @return the file ID.
+   */
+  public String getFileId() {
+    return fileId;
+  }
+
+  /**
+   * Sets the ID of the analyzed file.
+   * @param fileId the file ID.
+   */
+  public void setFileId(String fileId) {
+    this.fileId = fileId;
+  }
+
+  /**
+   * Gets the fingerprints encoded by {@code Fingerprints}.
+   * @return the encoded fingerprints.
+   */
+  public byte[] getFingerprints() {
+    return fingerprints;
+  }
+
+  /**
+   * Sets the encoded fingerprints.
+   * @param fingerprints the encoded fingerprints.
+   */
+  public void setFingerprints(byte[] fingerprints) {
+    this.fingerprints = fingerprints;
+  }
+
+  /**
+   * Checks whether the fingerprints cover only the beginning of the file, which was longer than
+   * the analysis keeps fingerprints for.
+   * @return true if the fingerprints are truncated, null for fingerprints stored before this was recorded.
+   */
+  public Boolean getTruncated() {
+    return truncated;
+  }
+
+  /**
+   * Sets whether the fingerprints cover only the beginning of the file.
+   * @param truncated true if the fingerprints are truncated.
+   */
+  public void setTruncated(Boolean truncated) {
+    this.truncated = truncated;
+  }
+
+  /**
+   * Gets the creation timestamp.
+   * @return the creation timestamp.
+   */
+  public LocalDateTime getCreatedAt() {
+    return createdAt;
+  }
+
+  /**
+   * Sets the creation timestamp.
+   * @param createdAt the creation timestamp.
+   */
+  public void setCreatedAt(LocalDateTime createdAt) {
+    this.createdAt = createdAt;
+  }
+}
@@ -0,0 +1,138 @@
+package ru.hse.antiplag.fileanalysisservice.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+
+/**
+ * Entity holding a pair of similar files found by a similarity job. Identifiers come from a
+ * sequence allocated in blocks, so the pairs of a job are inserted in JDBC batches.
+ */
+@Entity
+@Table(name = "similar_pairs",
+    indexes = @Index(name = "idx_similar_pairs_job", columnList = "job_id, similarity"))
+public class SimilarPairEntity {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "similar_pairs_seq")
+  @SequenceGenerator(name = "similar_pairs_seq", sequenceName = "similar_pairs_seq", allocationSize = 500)
+  private Long id;
+
+  @Column(name = "job_id", nullable = false, length = 36)
+  private String jobId;
+
+  @Column(name = "file_id", nullable = false)
+  private String fileId;
+
+  @Column(name = "other_file_id", nullable = false)
+  private String otherFileId;
+
+  @Column(name = "similarity", nullable = false)
+  private double similarity;
+
+  /**
+   * Default constructor for JPA.
+   */
+  public SimilarPairEntity() {
+  }
+
+  /**
+   * Constructs a new SimilarPairEntity.
+   *
+   * @param jobId the id of the job that found the pair
+   * @param fileId the id of the larger file of the pair
+   * @param otherFileId the id of the other file
+   * @param similarity the Jaccard similarity of the fingerprints of the files
+   */
+  public SimilarPairEntity(String jobId, String fileId, String otherFileId, double similarity) {
+    this.jobId = jobId;
+    this.fileId = fileId;
+    this.otherFileId = otherFileId;
+    this.similarity = similarity;
+  }
+
+  /**
+   * Gets the ID of the pair.
+   * @return the ID.
+   */
+  public Long getId() {
+    return id;
+  }
+
+  /**
+   * Sets the ID of the pair.
+   * @param id the ID.
+   */
+  public void setId(Long id) {
+    this.id = id;
+  }
+
+  /**
+   * Gets the ID of the job that found the pair.
+   * @return the job ID.
+   */
+  public String getJobId() {
+    return jobId;
+  }
+
+  /**
+   * Sets the ID of the job that found the pair.
+   * @param jobId the job ID.
+   */
+  public void setJobId(String jobId) {
+    this.jobId = jobId;
+  }
+
+  /**
+   * Gets the ID of the larger file of the pair.
+   * @return the file ID.
+   */
+  public String getFileId() {
+    return fileId;
+  }
+
+  /**
+   * Sets the ID of the larger file of the pair.
+   * @param fileId the file ID.
+   */
+  public void setFileId(String fileId) {
+    this.fileId = fileId;
+  }
+
+  /**
+   * Gets the ID of the other file.
+   * @return the file ID.
+   */
+  public String getOtherFileId() {
+    return otherFileId;
+  }
+
+  /**
+   * Sets the ID of the other file.
+   * @param otherFileId the file ID.
+   */
+  public void setOtherFileId(String otherFileId) {
+    this.otherFileId = otherFileId;
+  }
+
+  /**
+   * Gets the Jaccard similarity of the fingerprints of the files.
+   * @return the similarity, from 0 to 1.
+   */
+  public double getSimilarity() {
+    return similarity;
+  }
+
+  /**
+   * Sets the Jaccard similarity of the fingerprints of the files.
+   * @param similarity the similarity, from 0 to 1.
+   */
+  public void setSimilarity(double similarity) {
+    this.similarity = similarity;
+  }
+}
@@ -0,0 +1,92 @@
+package ru.hse.antiplag.fileanalysisservice.events;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+import ru.hse.antiplag.fileanalysisservice.dto.FileStoredEvent;
+import ru.hse.antiplag.fileanalysisservice.repository.AnalysisResultRepository;
+import ru.hse.antiplag.fileanalysisservice.service.FileAnalysisService;
+
+import java.util.List;
+
+/**
+ * Analyzes new files as soon as the file storage service announces them, so the result is
+ * stored before anyone asks for it. Only files whose content type is one of
+ * {@code analysis.events.content-types} are analyzed; among others this skips the word cloud
+ * images this service uploads itself.
+ *
+ * <p>Every consumer of the group analyzes its events one at a time on the listener thread, and
+ * only polls for more once the previous batch is done, so the broker holds the backlog rather
+ * than this service. {@code analysis.events.kafka.concurrency} sets the number of consumers,
+ * which is bounded by the number of partitions of the topic.
+ *
+ * <p>An analysis that stored no result, because the file could not be downloaded, fails the
+ * event, so the error handler of {@code FileStoredEventsKafkaConfig} retries it with a backoff.
+ */
+@Component
+@ConditionalOnProperty(name = "analysis.events.kafka.enabled", havingValue = "true")
+public class FileStoredEventListener {
+
+  private static final Logger logger = LoggerFactory.getLogger(FileStoredEventListener.class);
+
+  private final FileAnalysisService fileAnalysisService;
+  private final AnalysisResultRepository analysisResultRepository;
+  private final List<MediaType> contentTypes;
+
+  /**
+   * Constructs a {@code FileStoredEventListener}.
+   *
+   * @param fileAnalysisService the service analyzing the files.
+   * @param analysisResultRepository the repository the results are stored in.
+   * @param contentTypes the content types of the files to analyze, wildcards allowed.
+   */
+  @Autowired
+  public FileStoredEventListener(
+      FileAnalysisService fileAnalysisService,
+      AnalysisResultRepository analysisResultRepository,
+      @Value("${analysis.events.content-types:text/*}") String[] contentTypes) {
+    this.fileAnalysisService = fileAnalysisService;
+    this.analysisResultRepository = analysisResultRepository;
+    this.contentTypes = MediaType.parseMediaTypes(List.of(contentTypes));
+  }
+
+  /**
+   * Analyzes a new file if its content type is one to analyze.
+   *
+   * @param event the event of the new file.
+   * @throws IllegalStateException if no result of the file was stored.
+   */
+  @KafkaListener(
+      topics = "${analysis.events.kafka.topic:file-stored}",
+      concurrency = "${analysis.events.kafka.concurrency:2}")
+  public void onFileStored(FileStoredEvent event) {
+    if (event.getFileId() == null || !isAnalyzed(event.getContentType())) {
+      logger.debug("Skipping stored file {} of type {}", event.getFileId(), event.getContentType());
+      return;
+    }
+    logger.info("Analyzing stored file {} ahead of a request", event.getFileId());
+    fileAnalysisService.analyzeFile(event.getFileId());
+    if (!analysisResultRepository.existsByFileId(event.getFileId())) {
+      throw new IllegalStateException("Could not analyze stored file " + event.getFileId());
+    }
+  }
+
+  private boolean isAnalyzed(String contentType) {
+    if (contentType == null) {
+      return false;
+    }
+    MediaType mediaType;
+    try {
+      mediaType = MediaType.parseMediaType(contentType);
+    } catch (InvalidMediaTypeException e) {
+      return false;
+    }
+    return contentTypes.stream().anyMatch(type -> type.includes(mediaType));
+  }
+}
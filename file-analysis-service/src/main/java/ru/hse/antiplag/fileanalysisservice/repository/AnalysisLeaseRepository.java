@@ -0,0 +1,77 @@
+package ru.hse.antiplag.fileanalysisservice.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hse.antiplag.fileanalysisservice.entity.AnalysisLeaseEntity;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Spring Data JPA repository for the {@link AnalysisLeaseEntity} entity. Every method is one
+ * statement, so two instances claiming the same file never both succeed.
+ */
+@Repository
+public interface AnalysisLeaseRepository extends JpaRepository<AnalysisLeaseEntity, String> {
+
+  /**
+   * Creates a lease unless there is one for the file already.
+   *
+   * @param fileId the ID of the file to analyze.
+   * @param owner the ID of the instance claiming the file.
+   * @param expiresAt the expiration time of the lease.
+   * @return 1 if the lease was created, 0 if the file is leased already.
+   */
+  @Modifying
+  @Transactional
+  @Query(value = "insert into analysis_leases (file_id, owner, expires_at) values (:fileId, :owner, :expiresAt) "
+      + "on conflict (file_id) do nothing", nativeQuery = true)
+  int insertIfAbsent(@Param("fileId") String fileId, @Param("owner") String owner,
+                     @Param("expiresAt") LocalDateTime expiresAt);
+
+  /**
+   * Takes over the lease of a file if it has expired.
+   *
+   * @param fileId the ID of the file to analyze.
+   * @param owner the ID of the instance claiming the file.
+   * @param expiresAt the new expiration time of the lease.
+   * @param now the current time.
+   * @return 1 if the lease was taken over, 0 if it is still held.
+   */
+  @Modifying
+  @Transactional
+  @Query("update AnalysisLeaseEntity l set l.owner = :owner, l.expiresAt = :expiresAt "
+      + "where l.fileId = :fileId and l.expiresAt < :now")
+  int takeOverExpired(@Param("fileId") String fileId, @Param("owner") String owner,
+                      @Param("expiresAt") LocalDateTime expiresAt, @Param("now") LocalDateTime now);
+
+  /**
+   * Extends the leases of files held by the given instance.
+   *
+   * @param fileIds the IDs of the files being analyzed.
+   * @param owner the ID of the instance holding the leases.
+   * @param expiresAt the new expiration time of the leases.
+   * @return the number of leases extended; a lease taken over or released meanwhile is not.
+   */
+  @Modifying
+  @Transactional
+  @Query("update AnalysisLeaseEntity l set l.expiresAt = :expiresAt where l.fileId in :fileIds and l.owner = :owner")
+  int renew(@Param("fileIds") Collection<String> fileIds, @Param("owner") String owner,
+            @Param("expiresAt") LocalDateTime expiresAt);
+
+  /**
+   * Deletes the lease of a file if it is held by the given instance.
+   *
+   * @param fileId the ID of the analyzed file.
+   * @param owner the ID of the instance that held the lease.
+   * @return 1 if the lease was deleted, 0 if it was not held by the instance.
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from AnalysisLeaseEntity l where l.fileId = :fileId and l.owner = :owner")
+  int deleteByFileIdAndOwner(@Param("fileId") String fileId, @Param("owner") String owner);
+}
@@ -1,9 +1,18 @@
 package ru.hse.antiplag.fileanalysisservice.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hse.antiplag.fileanalysisservice.dto.WordCloudStatus;
 import ru.hse.antiplag.fileanalysisservice.entity.AnalysisResultEntity;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -19,4 +28,96 @@ public interface AnalysisResultRepository extends JpaRepository<AnalysisResultEn
    * @return an {@link Optional} containing the analysis result if found, or empty otherwise.
    */
   Optional<AnalysisResultEntity> findByFileId(String fileId);
+
+  /**
+   * Checks whether an analysis result of the given file is stored.
+   *
+   * @param fileId the ID of the original file.
+   * @return true if a result is stored.
+   */
+  boolean existsByFileId(String fileId);
+
+  /**
+   * Finds any analysis result of the given content made by the given analyzer version.
+   *
+   * @param contentHash the SHA-256 hash of the content.
+   * @param analyzerVersion the version of the analyzer.
+   * @return an {@link Optional} containing an analysis result if found, or empty otherwise.
+   */
+  Optional<AnalysisResultEntity> findFirstByContentHashAndAnalyzerVersion(String contentHash, Integer analyzerVersion);
+
+  /**
+   * Finds the IDs of files whose results were made by an analyzer older than the given version,
+   * in the order of the IDs and starting after the given one.
+   *
+   * @param analyzerVersion the current version of the analyzer.
+   * @param afterFileId the ID to start after, an empty string to start from the beginning.
+   * @param pageable the number of IDs to return.
+   * @return the IDs of files with outdated results.
+   */
+  @Query("select r.fileId from AnalysisResultEntity r "
+      + "where (r.analyzerVersion is null or r.analyzerVersion < :analyzerVersion) and r.fileId > :afterFileId "
+      + "order by r.fileId")
+  List<String> findOutdatedFileIds(@Param("analyzerVersion") int analyzerVersion,
+                                   @Param("afterFileId") String afterFileId, Pageable pageable);
+
+  /**
+   * Finds the MinHash signatures of the results created at or after the given time, in the
+   * order of creation and starting after the given file ID among the results created then.
+   *
+   * @param createdAfter the creation time to start from.
+   * @param afterFileId the ID to start after among the results created at that time, an empty string for all.
+   * @param pageable the number of signatures to return.
+   * @return the stored signatures.
+   */
+  @Query("select r.fileId as fileId, r.minHash as minHash, r.createdAt as createdAt from AnalysisResultEntity r "
+      + "where r.minHash is not null "
+      + "and (r.createdAt > :createdAfter or (r.createdAt = :createdAfter and r.fileId > :afterFileId)) "
+      + "order by r.createdAt, r.fileId")
+  List<StoredSignature> findSignaturesCreatedAfter(@Param("createdAfter") LocalDateTime createdAfter,
+                                                   @Param("afterFileId") String afterFileId, Pageable pageable);
+
+  /**
+   * Finds results whose word cloud has been pending since before the given time.
+   *
+   * @param createdBefore the time the results were created before.
+   * @param pageable the number of results to return.
+   * @return the results with a stalled word cloud.
+   */
+  @Query("select r from AnalysisResultEntity r where r.wordCloudStatus = ru.hse.antiplag.fileanalysisservice.dto.WordCloudStatus.PENDING "
+      + "and r.createdAt < :createdBefore order by r.createdAt")
+  List<AnalysisResultEntity> findStalledWordClouds(@Param("createdBefore") LocalDateTime createdBefore, Pageable pageable);
+
+  /**
+   * Completes the pending word cloud of a file and of the files with the same content analyzed
+   * by the same analyzer version, which share it.
+   *
+   * @param fileId the ID of the file the word cloud was rendered for.
+   * @param contentHash the SHA-256 hash of its content, may be null.
+   * @param analyzerVersion the version of the analyzer that produced its result.
+   * @param wordCloudPath the path to the word cloud image, empty if it failed.
+   * @param wordCloudStatus the final status of the word cloud.
+   * @return the number of updated results.
+   */
+  @Modifying
+  @Transactional
+  @Query("update AnalysisResultEntity r set r.wordCloudPath = :wordCloudPath, r.wordCloudStatus = :wordCloudStatus "
+      + "where (r.fileId = :fileId or (r.contentHash = :contentHash and r.analyzerVersion = :analyzerVersion)) "
+      + "and r.wordCloudStatus = ru.hse.antiplag.fileanalysisservice.dto.WordCloudStatus.PENDING")
+  int completeWordCloud(@Param("fileId") String fileId, @Param("contentHash") String contentHash,
+                        @Param("analyzerVersion") Integer analyzerVersion, @Param("wordCloudPath") String wordCloudPath,
+                        @Param("wordCloudStatus") WordCloudStatus wordCloudStatus);
+
+  /**
+   * Moves the update timestamp of the given results forward to the given time, in one statement.
+   * Results updated later than that keep their timestamp.
+   *
+   * @param fileIds the IDs of the original files.
+   * @param accessedAt the time the results were last read.
+   * @return the number of updated results.
+   */
+  @Modifying
+  @Transactional
+  @Query("update AnalysisResultEntity r set r.updatedAt = :accessedAt where r.fileId in :fileIds and r.updatedAt < :accessedAt")
+  int updateAccessTimes(@Param("fileIds") Collection<String> fileIds, @Param("accessedAt") LocalDateTime accessedAt);
 }
@@ -0,0 +1,33 @@
+package ru.hse.antiplag.fileanalysisservice.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.hse.antiplag.fileanalysisservice.entity.FingerprintsEntity;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Spring Data JPA repository for the {@link FingerprintsEntity} entity.
+ */
+@Repository
+public interface FingerprintsRepository extends JpaRepository<FingerprintsEntity, String> {
+
+  /**
+   * Finds the fingerprints created at or after the given time, in the order of creation and
+   * starting after the given file ID among the ones created then.
+   *
+   * @param createdAfter the creation time to start from.
+   * @param afterFileId the ID to start after among the fingerprints created at that time, an empty string for all.
+   * @param pageable the number of files to return.
+   * @return the stored fingerprints.
+   */
+  @Query("select f from FingerprintsEntity f "
+      + "where f.createdAt > :createdAfter or (f.createdAt = :createdAfter and f.fileId > :afterFileId) "
+      + "order by f.createdAt, f.fileId")
+  List<FingerprintsEntity> findCreatedAfter(@Param("createdAfter") LocalDateTime createdAfter,
+                                            @Param("afterFileId") String afterFileId, Pageable pageable);
+}
@@ -0,0 +1,24 @@
+package ru.hse.antiplag.fileanalysisservice.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import ru.hse.antiplag.fileanalysisservice.entity.SimilarPairEntity;
+
+import java.util.List;
+
+/**
+ * Spring Data JPA repository for the {@link SimilarPairEntity} entity.
+ */
+@Repository
+public interface SimilarPairRepository extends JpaRepository<SimilarPairEntity, Long> {
+
+  /**
+   * Finds the pairs found by a job, the most similar first.
+   *
+   * @param jobId the ID of the job.
+   * @param pageable the page of pairs to return.
+   * @return the stored pairs.
+   */
+  List<SimilarPairEntity> findByJobIdOrderBySimilarityDescIdAsc(String jobId, Pageable pageable);
+}
@@ -0,0 +1,30 @@
+package ru.hse.antiplag.fileanalysisservice.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection of an analysis result on its MinHash signature.
+ */
+public interface StoredSignature {
+
+  /**
+   * Gets the original file ID.
+   *
+   * @return the file ID.
+   */
+  String getFileId();
+
+  /**
+   * Gets the encoded MinHash signature.
+   *
+   * @return the encoded MinHash signature.
+   */
+  byte[] getMinHash();
+
+  /**
+   * Gets the creation timestamp of the result.
+   *
+   * @return the creation timestamp.
+   */
+  LocalDateTime getCreatedAt();
+}
@@ -0,0 +1,26 @@
+package ru.hse.antiplag.fileanalysisservice.service;
+
+import ru.hse.antiplag.fileanalysisservice.dto.AnalysisJob;
+
+/**
+ * Service interface for analyzing files in the background.
+ */
+public interface AnalysisJobService {
+
+  /**
+   * Submits a job to analyze the file with the given ID. While a job for the same file is
+   * queued or running, that job is returned instead of a new one.
+   *
+   * @param fileId the ID of the file to analyze.
+   * @return the submitted job, or null if the queue is full.
+   */
+  AnalysisJob submit(String fileId);
+
+  /**
+   * Gets the current state of a job.
+   *
+   * @param jobId the ID of the job.
+   * @return the job, or null if there is no such job or it expired.
+   */
+  AnalysisJob getJob(String jobId);
+}
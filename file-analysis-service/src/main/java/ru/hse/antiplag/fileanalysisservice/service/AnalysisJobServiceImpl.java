@@ -0,0 +1,137 @@
+package ru.hse.antiplag.fileanalysisservice.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import ru.hse.antiplag.fileanalysisservice.dto.AnalysisJob;
+import ru.hse.antiplag.fileanalysisservice.dto.AnalysisJobStatus;
+import ru.hse.antiplag.fileanalysisservice.dto.AnalysisResult;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implementation of the {@link AnalysisJobService} interface.
+ * Jobs run on a fixed pool of workers behind a bounded queue; when the queue is full a job is
+ * rejected right away instead of piling up, and the caller is expected to retry later. Jobs are
+ * kept in memory and forgotten {@code analysis.jobs.retention} after they finish, their results
+ * stay stored by {@link FileAnalysisService}.
+ */
+@Service
+public class AnalysisJobServiceImpl implements AnalysisJobService {
+
+  private static final Logger logger = LoggerFactory.getLogger(AnalysisJobServiceImpl.class);
+
+  private final FileAnalysisService fileAnalysisService;
+  private final Duration retention;
+  private final ThreadPoolExecutor executor;
+  private final Map<String, AnalysisJob> jobs = new ConcurrentHashMap<>();
+  private final Map<String, String> activeJobIds = new ConcurrentHashMap<>();
+
+  /**
+   * Constructs an {@code AnalysisJobServiceImpl}.
+   *
+   * @param fileAnalysisService the service analyzing the files.
+   * @param threads the number of jobs running at once.
+   * @param queueCapacity the number of jobs waiting for a worker at most.
+   * @param retention how long a finished job can be polled.
+   */
+  @Autowired
+  public AnalysisJobServiceImpl(
+      FileAnalysisService fileAnalysisService,
+      @Value("${analysis.jobs.threads:4}") int threads,
+      @Value("${analysis.jobs.queue-capacity:100}") int queueCapacity,
+      @Value("${analysis.jobs.retention:PT10M}") Duration retention) {
+    this.fileAnalysisService = fileAnalysisService;
+    this.retention = retention;
+    this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("analysis-job-"),
+        new ThreadPoolExecutor.AbortPolicy());
+  }
+
+  @Override
+  public AnalysisJob submit(String fileId) {
+    String[] createdJobId = new String[1];
+    String jobId = activeJobIds.computeIfAbsent(fileId, key -> {
+      AnalysisJob job = new AnalysisJob(UUID.randomUUID().toString(), fileId, AnalysisJobStatus.QUEUED, null, null,
+          LocalDateTime.now(), null);
+      jobs.put(job.getJobId(), job);
+      createdJobId[0] = job.getJobId();
+      return job.getJobId();
+    });
+    if (createdJobId[0] == null) {
+      logger.info("Analysis of fileId: {} is already submitted as job {}", fileId, jobId);
+      return jobs.get(jobId);
+    }
+    try {
+      executor.execute(() -> run(jobId));
+    } catch (RejectedExecutionException e) {
+      jobs.remove(jobId);
+      activeJobIds.remove(fileId, jobId);
+      logger.warn("Rejected analysis of fileId: {}, {} jobs are already queued", fileId, executor.getQueue().size());
+      return null;
+    }
+    logger.info("Submitted analysis of fileId: {} as job {}", fileId, jobId);
+    return jobs.get(jobId);
+  }
+
+  @Override
+  public AnalysisJob getJob(String jobId) {
+    return jobs.get(jobId);
+  }
+
+  private void run(String jobId) {
+    AnalysisJob job = jobs.get(jobId);
+    String fileId = job.getFileId();
+    jobs.put(jobId, withStatus(job, AnalysisJobStatus.RUNNING, null, null));
+    try {
+      AnalysisResult result = fileAnalysisService.analyzeFile(fileId);
+      jobs.put(jobId, withStatus(job, AnalysisJobStatus.COMPLETED, result, null));
+      logger.info("Job {} analyzed fileId: {}", jobId, fileId);
+    } catch (Exception e) {
+      jobs.put(jobId, withStatus(job, AnalysisJobStatus.FAILED, null, e.getMessage()));
+      logger.error("Job {} failed to analyze fileId: {}: {}", jobId, fileId, e.getMessage(), e);
+    } finally {
+      activeJobIds.remove(fileId, jobId);
+    }
+  }
+
+  /**
+   * Creates the next state of a job. Every state is a new object, so a job being serialized
+   * for a poll is never changed halfway.
+   */
+  private static AnalysisJob withStatus(AnalysisJob job, AnalysisJobStatus status, AnalysisResult result, String error) {
+    boolean finished = status == AnalysisJobStatus.COMPLETED || status == AnalysisJobStatus.FAILED;
+    return new AnalysisJob(job.getJobId(), job.getFileId(), status, result, error, job.getSubmittedAt(),
+        finished ? LocalDateTime.now() : null);
+  }
+
+  /**
+   * Forgets jobs that finished more than the retention ago.
+   */
+  @Scheduled(fixedDelayString = "${analysis.jobs.cleanup-interval:PT1M}")
+  public void deleteExpiredJobs() {
+    LocalDateTime expiredBefore = LocalDateTime.now().minus(retention);
+    jobs.values().removeIf(job -> job.getFinishedAt() != null && job.getFinishedAt().isBefore(expiredBefore));
+  }
+
+  /**
+   * Stops the workers, interrupting running jobs.
+   */
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,134 @@
+package ru.hse.antiplag.fileanalysisservice.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import ru.hse.antiplag.fileanalysisservice.repository.AnalysisLeaseRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Leases on files being analyzed, kept in the {@code analysis_leases} table so that instances
+ * of this service sharing the database analyze a file once. A lease expires
+ * {@code analysis.lease.duration} after it was taken, and the instance holding it extends it
+ * every third of that while the analysis runs, so only the lease of an instance that died is
+ * taken over, however long the analysis takes. If the table cannot be reached a lease is granted anyway: analyzing a file twice is better
+ * than not analyzing it.
+ */
+@Component
+public class AnalysisLeases {
+
+  private static final Logger logger = LoggerFactory.getLogger(AnalysisLeases.class);
+
+  private final AnalysisLeaseRepository analysisLeaseRepository;
+  private final boolean enabled;
+  private final Duration duration;
+  private final String owner = UUID.randomUUID().toString();
+  private final Set<String> held = ConcurrentHashMap.newKeySet();
+  private final ScheduledExecutorService renewal;
+
+  /**
+   * Constructs an {@code AnalysisLeases}.
+   *
+   * @param analysisLeaseRepository the repository of leases.
+   * @param enabled whether leases are taken at all; without them every instance analyzes on its own.
+   * @param duration how long a lease lasts unless it is renewed.
+   */
+  @Autowired
+  public AnalysisLeases(
+      AnalysisLeaseRepository analysisLeaseRepository,
+      @Value("${analysis.lease.enabled:true}") boolean enabled,
+      @Value("${analysis.lease.duration:PT1M}") Duration duration) {
+    this.analysisLeaseRepository = analysisLeaseRepository;
+    this.enabled = enabled;
+    this.duration = duration;
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("analysis-lease-renewal-");
+    threadFactory.setDaemon(true);
+    this.renewal = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    if (enabled) {
+      long period = Math.max(1, duration.toMillis() / 3);
+      renewal.scheduleAtFixedRate(this::renewHeld, period, period, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Tries to lease a file for analysis.
+   *
+   * @param fileId the ID of the file to analyze.
+   * @return true if this instance may analyze the file, false if another instance is analyzing it.
+   */
+  public boolean tryAcquire(String fileId) {
+    if (!enabled) {
+      return true;
+    }
+    LocalDateTime now = LocalDateTime.now();
+    LocalDateTime expiresAt = now.plus(duration);
+    try {
+      boolean acquired = analysisLeaseRepository.insertIfAbsent(fileId, owner, expiresAt) > 0
+          || analysisLeaseRepository.takeOverExpired(fileId, owner, expiresAt, now) > 0;
+      if (acquired) {
+        held.add(fileId);
+      }
+      return acquired;
+    } catch (RuntimeException e) {
+      logger.warn("Could not lease fileId: {} for analysis, analyzing without a lease: {}", fileId, e.getMessage());
+      return true;
+    }
+  }
+
+  /**
+   * Releases the lease of a file taken by {@link #tryAcquire(String)}.
+   *
+   * @param fileId the ID of the analyzed file.
+   */
+  public void release(String fileId) {
+    if (!enabled) {
+      return;
+    }
+    held.remove(fileId);
+    try {
+      analysisLeaseRepository.deleteByFileIdAndOwner(fileId, owner);
+    } catch (RuntimeException e) {
+      logger.warn("Could not release lease of fileId: {}, it expires in {}: {}", fileId, duration, e.getMessage());
+    }
+  }
+
+  /**
+   * Extends the leases held by this instance by {@code analysis.lease.duration} from now.
+   * Runs every third of the duration, so a lease survives two failed renewals in a row.
+   */
+  public void renewHeld() {
+    if (held.isEmpty()) {
+      return;
+    }
+    List<String> fileIds = List.copyOf(held);
+    try {
+      int renewed = analysisLeaseRepository.renew(fileIds, owner, LocalDateTime.now().plus(duration));
+      if (renewed < fileIds.size()) {
+        logger.warn("Renewed {} of {} analysis leases, the others were released or taken over", renewed, fileIds.size());
+      }
+    } catch (RuntimeException e) {
+      logger.warn("Could not renew {} analysis leases: {}", fileIds.size(), e.getMessage());
+    }
+  }
+
+  /**
+   * Stops renewing the leases.
+   */
+  @PreDestroy
+  public void shutdown() {
+    renewal.shutdownNow();
+  }
+}
@@ -0,0 +1,78 @@
+package ru.hse.antiplag.fileanalysisservice.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.hse.antiplag.fileanalysisservice.repository.AnalysisResultRepository;
+import ru.hse.antiplag.fileanalysisservice.text.TextAnalysis;
+
+import java.util.List;
+
+/**
+ * Recomputes, in the background, the results made by an older version of the analyzer. Every
+ * {@code analysis.upgrade.interval} it reanalyzes at most {@code analysis.upgrade.batch-size}
+ * files, walking the outdated results in the order of their file IDs, so an upgrade never
+ * floods the file storage service and the outdated results keep being served until their turn.
+ * A file that fails is retried on the next walk.
+ */
+@Component
+@ConditionalOnProperty(name = "analysis.upgrade.enabled", havingValue = "true")
+public class AnalysisUpgrader {
+
+  private static final Logger logger = LoggerFactory.getLogger(AnalysisUpgrader.class);
+
+  private final AnalysisResultRepository analysisResultRepository;
+  private final FileAnalysisService fileAnalysisService;
+  private final int batchSize;
+  private String lastFileId = "";
+
+  /**
+   * Constructs an {@code AnalysisUpgrader}.
+   *
+   * @param analysisResultRepository the repository of analysis results.
+   * @param fileAnalysisService the service analyzing files.
+   * @param batchSize the number of files reanalyzed per run at most.
+   */
+  @Autowired
+  public AnalysisUpgrader(
+      AnalysisResultRepository analysisResultRepository,
+      FileAnalysisService fileAnalysisService,
+      @Value("${analysis.upgrade.batch-size:10}") int batchSize) {
+    this.analysisResultRepository = analysisResultRepository;
+    this.fileAnalysisService = fileAnalysisService;
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Reanalyzes the next batch of files with outdated results.
+   *
+   * @return the number of files reanalyzed.
+   */
+  @Scheduled(fixedDelayString = "${analysis.upgrade.interval:PT1M}")
+  public synchronized int upgradeBatch() {
+    List<String> fileIds = analysisResultRepository.findOutdatedFileIds(TextAnalysis.VERSION, lastFileId,
+        PageRequest.of(0, batchSize));
+    if (fileIds.isEmpty()) {
+      lastFileId = "";
+      return 0;
+    }
+    int upgraded = 0;
+    for (String fileId : fileIds) {
+      lastFileId = fileId;
+      try {
+        fileAnalysisService.reanalyzeFile(fileId);
+        upgraded++;
+      } catch (RuntimeException e) {
+        logger.warn("Could not reanalyze fileId: {} with analyzer version {}: {}", fileId, TextAnalysis.VERSION,
+            e.getMessage());
+      }
+    }
+    logger.info("Reanalyzed {} of {} files with outdated results", upgraded, fileIds.size());
+    return upgraded;
+  }
+}
@@ -0,0 +1,246 @@
+package ru.hse.antiplag.fileanalysisservice.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import ru.hse.antiplag.fileanalysisservice.dto.WordCloudStatus;
+import ru.hse.antiplag.fileanalysisservice.entity.AnalysisResultEntity;
+import ru.hse.antiplag.fileanalysisservice.repository.AnalysisResultRepository;
+import ru.hse.antiplag.fileanalysisservice.text.TermCount;
+import ru.hse.antiplag.fileanalysisservice.text.TermVectorCodec;
+import ru.hse.antiplag.fileanalysisservice.wordcloud.WordCloudRenderer;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders and stores word clouds after the statistics of a file have been stored, so the
+ * statistics are returned without waiting for the image. Rendering runs on its own pool of
+ * {@code analysis.wordcloud.threads} low-priority threads; a failed attempt is retried up to
+ * {@code analysis.wordcloud.max-attempts} times with an exponential backoff starting at
+ * {@code analysis.wordcloud.retry-backoff}, and the result is updated to
+ * {@link WordCloudStatus#READY} or {@link WordCloudStatus#FAILED} when it is done.
+ *
+ * <p>The terms are read back from the stored term vector, so nothing is held in memory while a
+ * word cloud waits. Word clouds left pending by a restart, or not queued because the queue was
+ * full, are queued again once they have been pending for {@code analysis.wordcloud.pending-timeout}.
+ */
+@Component
+public class DeferredWordClouds {
+
+  private static final Logger logger = LoggerFactory.getLogger(DeferredWordClouds.class);
+
+  private final WebClient fileStorageWebClient;
+  private final WordCloudRenderer wordCloudRenderer;
+  private final AnalysisResultRepository analysisResultRepository;
+  private final int maxWords;
+  private final int maxAttempts;
+  private final Duration retryBackoff;
+  private final int queueCapacity;
+  private final Duration pendingTimeout;
+  private final ScheduledThreadPoolExecutor executor;
+  private final Set<String> queued = ConcurrentHashMap.newKeySet();
+
+  private static class FileStorageUploadResponse {
+    private UUID id;
+
+    public UUID getId() {
+      return id;
+    }
+
+    public void setId(UUID id) {
+      this.id = id;
+    }
+  }
+
+  /**
+   * Constructs a {@code DeferredWordClouds}.
+   *
+   * @param fileStorageWebClient the web client for file storage service.
+   * @param wordCloudRenderer the renderer of word cloud images.
+   * @param analysisResultRepository the repository of analysis results.
+   * @param maxWords the number of most frequent terms a word cloud is made of.
+   * @param threads the number of word clouds rendered at once.
+   * @param maxAttempts the number of times a word cloud is tried at most.
+   * @param retryBackoff the delay before the first retry, doubled for every next one.
+   * @param queueCapacity the number of word clouds waiting for a thread at most.
+   * @param pendingTimeout how long a word cloud may be pending before it is queued again.
+   */
+  @Autowired
+  public DeferredWordClouds(
+      @Qualifier("fileStorageWebClient") WebClient fileStorageWebClient,
+      WordCloudRenderer wordCloudRenderer,
+      AnalysisResultRepository analysisResultRepository,
+      @Value("${analysis.wordcloud.max-words:200}") int maxWords,
+      @Value("${analysis.wordcloud.threads:1}") int threads,
+      @Value("${analysis.wordcloud.max-attempts:4}") int maxAttempts,
+      @Value("${analysis.wordcloud.retry-backoff:PT2S}") Duration retryBackoff,
+      @Value("${analysis.wordcloud.queue-capacity:1000}") int queueCapacity,
+      @Value("${analysis.wordcloud.pending-timeout:PT10M}") Duration pendingTimeout) {
+    this.fileStorageWebClient = fileStorageWebClient;
+    this.wordCloudRenderer = wordCloudRenderer;
+    this.analysisResultRepository = analysisResultRepository;
+    this.maxWords = maxWords;
+    this.maxAttempts = maxAttempts;
+    this.retryBackoff = retryBackoff;
+    this.queueCapacity = queueCapacity;
+    this.pendingTimeout = pendingTimeout;
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("wordcloud-");
+    threadFactory.setThreadPriority(Thread.MIN_PRIORITY);
+    this.executor = new ScheduledThreadPoolExecutor(threads, threadFactory);
+  }
+
+  /**
+   * Queues the word cloud of a stored result with a {@link WordCloudStatus#PENDING} word cloud.
+   * Does nothing if it is queued already or the queue is full.
+   *
+   * @param entity the stored result.
+   */
+  public void schedule(AnalysisResultEntity entity) {
+    String key = key(entity);
+    if (executor.getQueue().size() >= queueCapacity) {
+      logger.warn("Word cloud queue is full, fileId: {} waits for the next recovery", entity.getFileId());
+      return;
+    }
+    if (!queued.add(key)) {
+      return;
+    }
+    try {
+      executor.execute(() -> attempt(entity, 1));
+    } catch (RejectedExecutionException e) {
+      queued.remove(key);
+      logger.warn("Word cloud of fileId: {} was not queued, the service is stopping", entity.getFileId());
+    }
+  }
+
+  /**
+   * Gets the number of word clouds queued or being rendered.
+   *
+   * @return the number of queued word clouds.
+   */
+  public int getQueuedCount() {
+    return queued.size();
+  }
+
+  /**
+   * Queues again the word clouds that have been pending for longer than the pending timeout.
+   */
+  @Scheduled(fixedDelayString = "${analysis.wordcloud.recovery-interval:PT5M}")
+  public void requeueStalled() {
+    List<AnalysisResultEntity> stalled = analysisResultRepository.findStalledWordClouds(
+        LocalDateTime.now().minus(pendingTimeout), PageRequest.of(0, queueCapacity));
+    for (AnalysisResultEntity entity : stalled) {
+      schedule(entity);
+    }
+  }
+
+  private void attempt(AnalysisResultEntity entity, int attempt) {
+    String fileId = entity.getFileId();
+    try {
+      String wordCloudFileId = renderAndStore(fileId, topTerms(entity));
+      complete(entity, "/api/gateway/analysis/wordcloud/" + wordCloudFileId, WordCloudStatus.READY);
+      logger.info("Stored word cloud of fileId: {} as {}", fileId, wordCloudFileId);
+    } catch (Exception e) {
+      if (executor.isShutdown()) {
+        queued.remove(key(entity));
+        return;
+      }
+      if (attempt >= maxAttempts) {
+        logger.error("Giving up on the word cloud of fileId: {} after {} attempts: {}", fileId, attempt, e.getMessage());
+        complete(entity, "", WordCloudStatus.FAILED);
+        return;
+      }
+      long delay = retryBackoff.toMillis() << (attempt - 1);
+      logger.warn("Word cloud of fileId: {} failed, attempt {} of {}, retrying in {} ms: {}", fileId, attempt,
+          maxAttempts, delay, e.getMessage());
+      executor.schedule(() -> attempt(entity, attempt + 1), delay, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void complete(AnalysisResultEntity entity, String wordCloudPath, WordCloudStatus status) {
+    try {
+      analysisResultRepository.completeWordCloud(entity.getFileId(), entity.getContentHash(),
+          entity.getAnalyzerVersion(), wordCloudPath, status);
+    } catch (RuntimeException e) {
+      logger.error("Could not store the word cloud status of fileId: {}: {}", entity.getFileId(), e.getMessage());
+    } finally {
+      queued.remove(key(entity));
+    }
+  }
+
+  private List<TermCount> topTerms(AnalysisResultEntity entity) {
+    if (entity.getTermVector() == null) {
+      throw new IllegalStateException("No terms stored for fileId " + entity.getFileId());
+    }
+    List<TermCount> terms = new ArrayList<>(TermVectorCodec.decode(entity.getTermVector()));
+    terms.sort(TermCount.BY_FREQUENCY);
+    return terms.subList(0, Math.min(maxWords, terms.size()));
+  }
+
+  /**
+   * Renders the word cloud and uploads it to the file storage service.
+   *
+   * @return the ID of the stored image
+   */
+  private String renderAndStore(String originalFileId, List<TermCount> terms) {
+    logger.info("Rendering word cloud of {} terms for originalFileId: {}", terms.size(), originalFileId);
+    byte[] imageBytes = wordCloudRenderer.render(terms);
+    if (imageBytes == null || imageBytes.length == 0) {
+      throw new IllegalStateException("Received empty word cloud image");
+    }
+
+    MultipartBodyBuilder bodyBuilder = new MultipartBodyBuilder();
+    bodyBuilder.part("file", new ByteArrayResource(imageBytes))
+        .filename("wordcloud_" + originalFileId + ".png")
+        .contentType(MediaType.IMAGE_PNG);
+
+    FileStorageUploadResponse fsResponse = fileStorageWebClient.post()
+        .uri("/upload")
+        .contentType(MediaType.MULTIPART_FORM_DATA)
+        .body(BodyInserters.fromMultipartData(bodyBuilder.build()))
+        .retrieve()
+        .bodyToMono(FileStorageUploadResponse.class)
+        .block();
+    if (fsResponse == null || fsResponse.getId() == null) {
+      throw new IllegalStateException("Received no ID from FileStorageService");
+    }
+    return fsResponse.getId().toString();
+  }
+
+  /**
+   * Files with the same content share one word cloud, so they are queued once.
+   */
+  private static String key(AnalysisResultEntity entity) {
+    return entity.getContentHash() != null
+        ? entity.getContentHash() + ":" + entity.getAnalyzerVersion()
+        : entity.getFileId();
+  }
+
+  /**
+   * Stops rendering. Word clouds still pending are queued again after a restart.
+   */
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+}
@@ -1,6 +1,10 @@
 package ru.hse.antiplag.fileanalysisservice.service;
 
 import ru.hse.antiplag.fileanalysisservice.dto.AnalysisResult;
+import ru.hse.antiplag.fileanalysisservice.dto.PassageMatch;
+import ru.hse.antiplag.fileanalysisservice.dto.SimilarFile;
+
+import java.util.List;
 
 /**
  * Service interface for file analysis operations.
@@ -15,6 +19,45 @@ public interface FileAnalysisService {
    */
   AnalysisResult analyzeFile(String fileId);
 
+  /**
+   * Analyzes the file with the given ID again if its stored result was made by an older version
+   * of the analyzer.
+   *
+   * @param fileId the ID of the file to analyze.
+   * @return the result of the current analyzer.
+   */
+  AnalysisResult reanalyzeFile(String fileId);
+
+  /**
+   * Finds the analyzed files whose text is similar to the text of the file with the given ID,
+   * analyzing it first if needed.
+   *
+   * @param fileId the ID of the file to compare.
+   * @param threshold the smallest estimated Jaccard similarity returned, from 0 to 1.
+   * @return the similar files, the most similar first.
+   */
+  List<SimilarFile> findSimilarFiles(String fileId, double threshold);
+
+  /**
+   * Finds the passages of the file with the given ID that occur in other analyzed files,
+   * analyzing it first if needed.
+   *
+   * @param fileId the ID of the file to compare.
+   * @return the matching files with the matched passages, the ones with the most matched characters first.
+   */
+  List<PassageMatch> findMatchingPassages(String fileId);
+
+  /**
+   * Finds the maximal common passages of two files.
+   *
+   * @param fileId the ID of the compared file.
+   * @param otherFileId the ID of the file it is compared with.
+   * @param minWords the number of words a common passage has at least.
+   * @return the common passages with their offsets in both files, in the order of the compared
+   *         file, or null if a file could not be downloaded.
+   */
+  PassageMatch compareFiles(String fileId, String otherFileId, int minWords);
+
   /**
    * Retrieves the word cloud image as a resource.
    *
@@ -4,28 +4,40 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
-import org.springframework.http.client.MultipartBodyBuilder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.FileCopyUtils;
-import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.scheduler.Schedulers;
+import ru.hse.antiplag.fileanalysisservice.cache.AnalysisResultCache;
 import ru.hse.antiplag.fileanalysisservice.dto.AnalysisResult;
+import ru.hse.antiplag.fileanalysisservice.dto.PassageMatch;
+import ru.hse.antiplag.fileanalysisservice.dto.SimilarFile;
+import ru.hse.antiplag.fileanalysisservice.dto.TermFrequency;
 import ru.hse.antiplag.fileanalysisservice.dto.TextStatistics;
-import ru.hse.antiplag.fileanalysisservice.dto.WordCloudRequest;
+import ru.hse.antiplag.fileanalysisservice.dto.WordCloudStatus;
 import ru.hse.antiplag.fileanalysisservice.entity.AnalysisResultEntity;
 import ru.hse.antiplag.fileanalysisservice.repository.AnalysisResultRepository;
-
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.nio.charset.StandardCharsets;
-import java.time.LocalDateTime;
+import ru.hse.antiplag.fileanalysisservice.similarity.CommonSubstrings;
+import ru.hse.antiplag.fileanalysisservice.text.Fingerprints;
+import ru.hse.antiplag.fileanalysisservice.text.MinHash;
+import ru.hse.antiplag.fileanalysisservice.text.StopWords;
+import ru.hse.antiplag.fileanalysisservice.text.TermCount;
+import ru.hse.antiplag.fileanalysisservice.text.TermCounter;
+import ru.hse.antiplag.fileanalysisservice.text.TermVectorCodec;
+import ru.hse.antiplag.fileanalysisservice.text.TextAnalysis;
+import ru.hse.antiplag.fileanalysisservice.text.TextStatisticsScanner;
+import ru.hse.antiplag.fileanalysisservice.text.Utf8StreamDecoder;
+import ru.hse.antiplag.fileanalysisservice.text.WordTokens;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.function.Consumer;
 
 /**
  * Implementation of the {@link FileAnalysisService} interface.
@@ -34,29 +46,30 @@ import java.util.UUID;
 public class FileAnalysisServiceImpl implements FileAnalysisService {
 
   private static final Logger logger = LoggerFactory.getLogger(FileAnalysisServiceImpl.class);
+  private static final int CONTENT_PREFETCH = 16;
 
   private final WebClient fileStorageWebClient;
-  private final WebClient wordCloudWebClient;
   private final AnalysisResultRepository analysisResultRepository;
-
-  private static class FileStorageUploadResponse {
-    private UUID id;
-    private String fileName;
-
-    public UUID getId() {
-      return id;
-    }
-
-    public void setId(UUID id) {
-      this.id = id;
-    }
-
-    public String getFileName() {
-      return fileName;
+  private final AnalysisResultCache analysisResultCache;
+  private final InFlightAnalyses inFlightAnalyses;
+  private final DeferredWordClouds deferredWordClouds;
+  private final SimilarityIndex similarityIndex;
+  private final PassageIndex passageIndex;
+  private final int maxDistinctTerms;
+  private final int topTermCount;
+  private final int maxComparedPassages;
+  private final int maxFingerprints;
+  private final StopWords stopWords;
+
+  private static class FileStorageMetadataResponse {
+    private String hash;
+
+    public String getHash() {
+      return hash;
     }
 
-    public void setFileName(String fileName) {
-      this.fileName = fileName;
+    public void setHash(String hash) {
+      this.hash = hash;
     }
   }
 
@@ -64,190 +77,386 @@ public class FileAnalysisServiceImpl implements FileAnalysisService {
    * Constructs a {@code FileAnalysisServiceImpl}.
    *
    * @param fileStorageWebClient the web client for file storage service.
-   * @param wordCloudWebClient the web client for word cloud service.
+   * @param analysisResultRepository the repository of analysis results.
+   * @param analysisResultCache the in-memory cache of stored analysis results.
+   * @param inFlightAnalyses the coordination of concurrent analyses of the same file.
+   * @param deferredWordClouds the queue rendering word clouds after the statistics are stored.
+   * @param similarityIndex the index of the MinHash signatures of stored results.
+   * @param passageIndex the store and index of the winnowing fingerprints of analyzed files.
+   * @param maxDistinctTerms the number of distinct terms kept per file at most.
+   * @param topTermCount the number of most frequent terms returned with the result.
+   * @param maxComparedPassages the number of common passages of two compared files returned at most.
+   * @param maxFingerprints the number of winnowing fingerprints kept per file at most.
+   * @param stopWordLanguages the languages whose stop words are not counted as terms.
    */
   @Autowired
   public FileAnalysisServiceImpl(
       @Qualifier("fileStorageWebClient") WebClient fileStorageWebClient,
-      @Qualifier("wordCloudWebClient") WebClient wordCloudWebClient,
-      AnalysisResultRepository analysisResultRepository) {
+      AnalysisResultRepository analysisResultRepository,
+      AnalysisResultCache analysisResultCache,
+      InFlightAnalyses inFlightAnalyses,
+      DeferredWordClouds deferredWordClouds,
+      SimilarityIndex similarityIndex,
+      PassageIndex passageIndex,
+      @Value("${analysis.terms.max-distinct:100000}") int maxDistinctTerms,
+      @Value("${analysis.terms.top:20}") int topTermCount,
+      @Value("${analysis.compare.max-passages:1000}") int maxComparedPassages,
+      @Value("${analysis.passages.max-fingerprints:1000000}") int maxFingerprints,
+      @Value("${analysis.terms.stop-words:ru,en}") String[] stopWordLanguages) {
     this.fileStorageWebClient = fileStorageWebClient;
-    this.wordCloudWebClient = wordCloudWebClient;
     this.analysisResultRepository = analysisResultRepository;
+    this.analysisResultCache = analysisResultCache;
+    this.inFlightAnalyses = inFlightAnalyses;
+    this.deferredWordClouds = deferredWordClouds;
+    this.similarityIndex = similarityIndex;
+    this.passageIndex = passageIndex;
+    this.maxDistinctTerms = maxDistinctTerms;
+    this.topTermCount = topTermCount;
+    this.maxComparedPassages = maxComparedPassages;
+    this.maxFingerprints = maxFingerprints;
+    this.stopWords = StopWords.load(stopWordLanguages);
   }
 
   /**
-   * Analyzes the file with the given ID.
+   * Analyzes the file with the given ID. Runs outside of a transaction: the download, the word
+   * cloud and its upload take seconds, and every repository call commits on its own, so no
+   * database connection is held while they run. A stored result is served by
+   * {@link AnalysisResultCache}, which only reads the database on a miss and writes the access
+   * time later, in a batch with others. Concurrent calls for a file that is not analyzed yet
+   * share one analysis through {@link InFlightAnalyses}, on this instance and across instances.
+   * A result made by an older analyzer version is still served until it is reanalyzed.
+   *
+   * <p>A new result is stored and returned as soon as the statistics are counted, with a
+   * {@link WordCloudStatus#PENDING} word cloud that {@link DeferredWordClouds} renders later, so
+   * the response never waits for the image.
    *
    * @param fileId the ID of the file to analyze.
    * @return the result of the analysis.
    */
   @Override
-  @Transactional
   public AnalysisResult analyzeFile(String fileId) {
     logger.info("Attempting to analyze file with ID: {}", fileId);
 
-    Optional<AnalysisResultEntity> existingResultOpt = analysisResultRepository.findByFileId(fileId);
-    if (existingResultOpt.isPresent()) {
-      AnalysisResultEntity existingEntity = existingResultOpt.get();
+    Optional<AnalysisResult> existingResult = findStoredResult(fileId);
+    if (existingResult.isPresent()) {
       logger.info("Found existing analysis result for fileId: {}. Returning cached data.", fileId);
-      existingEntity.setUpdatedAt(LocalDateTime.now());
-      analysisResultRepository.save(existingEntity);
-      return convertToDto(existingEntity);
+      return existingResult.get();
+    }
+    return inFlightAnalyses.analyzeOnce(fileId, this::findStoredResult, this::analyzeContent);
+  }
+
+  /**
+   * Analyzes the file with the given ID again if its stored result was made by an older version
+   * of the analyzer. Bypasses {@link AnalysisResultCache}, which may hold the outdated result,
+   * and replaces the result there.
+   *
+   * @param fileId the ID of the file to analyze.
+   * @return the result of the current analyzer.
+   */
+  @Override
+  public AnalysisResult reanalyzeFile(String fileId) {
+    return inFlightAnalyses.analyzeOnce(fileId, this::findCurrentResult, this::analyzeContent);
+  }
+
+  /**
+   * Finds the files similar to the file with the given ID in {@link SimilarityIndex}. The
+   * signature is read from the stored result of the current analyzer; a file without one is
+   * analyzed first, and a file with an empty text has no similar files.
+   *
+   * @param fileId the ID of the file to compare.
+   * @param threshold the smallest estimated Jaccard similarity returned, from 0 to 1.
+   * @return the similar files, the most similar first.
+   */
+  @Override
+  public List<SimilarFile> findSimilarFiles(String fileId, double threshold) {
+    byte[] minHash = findAnalyzedEntity(fileId).map(AnalysisResultEntity::getMinHash).orElse(null);
+    if (minHash == null) {
+      logger.info("No signature for fileId: {}, no similar files", fileId);
+      return new ArrayList<>();
+    }
+    return similarityIndex.findSimilar(fileId, MinHash.decode(minHash), threshold);
+  }
+
+  /**
+   * Finds the passages of the file with the given ID that occur in other files in
+   * {@link PassageIndex}. The fingerprints are stored with the result of the current analyzer;
+   * a file without one is analyzed first, and a file with a text shorter than one k-gram has no
+   * matches.
+   *
+   * @param fileId the ID of the file to compare.
+   * @return the matching files with the matched passages, the ones with the most matched characters first.
+   */
+  @Override
+  public List<PassageMatch> findMatchingPassages(String fileId) {
+    if (findAnalyzedEntity(fileId).isEmpty()) {
+      return new ArrayList<>();
+    }
+    return passageIndex.findMatches(fileId);
+  }
+
+  /**
+   * Compares two files with {@link CommonSubstrings}. Both files are downloaded and split into
+   * words as they arrive; only the hashes and offsets of the words are kept in memory.
+   *
+   * @param fileId the ID of the compared file.
+   * @param otherFileId the ID of the file it is compared with.
+   * @param minWords the number of words a common passage has at least.
+   * @return the common passages with their offsets in both files, or null if a file could not be downloaded.
+   */
+  @Override
+  public PassageMatch compareFiles(String fileId, String otherFileId, int minWords) {
+    WordTokens text = fetchWords(fileId);
+    WordTokens other = text == null ? null : fetchWords(otherFileId);
+    if (other == null) {
+      return null;
+    }
+    long startedAt = System.nanoTime();
+    PassageMatch match = CommonSubstrings.find(text, otherFileId, other, minWords, maxComparedPassages);
+    logger.info("Compared fileId: {} ({} words) with fileId: {} ({} words) in {} ms, {} passages",
+        fileId, text.size(), otherFileId, other.size(), (System.nanoTime() - startedAt) / 1_000_000,
+        match.getPassages().size());
+    return match;
+  }
+
+  /**
+   * Finds the stored result of the current analyzer, analyzing the file first if there is none.
+   */
+  private Optional<AnalysisResultEntity> findAnalyzedEntity(String fileId) {
+    Optional<AnalysisResultEntity> current = findCurrentEntity(fileId);
+    if (current.isEmpty()) {
+      reanalyzeFile(fileId);
+      current = findCurrentEntity(fileId);
+    }
+    return current;
+  }
+
+  private Optional<AnalysisResultEntity> findCurrentEntity(String fileId) {
+    return analysisResultRepository.findByFileId(fileId)
+        .filter(entity -> Integer.valueOf(TextAnalysis.VERSION).equals(entity.getAnalyzerVersion()));
+  }
+
+  private Optional<AnalysisResult> findStoredResult(String fileId) {
+    return analysisResultCache.get(fileId, id -> analysisResultRepository.findByFileId(id).map(this::convertToDto));
+  }
+
+  private Optional<AnalysisResult> findCurrentResult(String fileId) {
+    return findCurrentEntity(fileId).map(this::cache);
+  }
+
+  /**
+   * Analyzes a file that has no stored result of the current analyzer, and stores the result.
+   * The content hash is looked up first: if the same content was analyzed under another file ID
+   * by the current analyzer, that result is stored for this file too and nothing is downloaded.
+   */
+  private AnalysisResult analyzeContent(String fileId) {
+    String contentHash = fetchContentHash(fileId);
+    if (contentHash != null) {
+      Optional<AnalysisResultEntity> sameContent =
+          analysisResultRepository.findFirstByContentHashAndAnalyzerVersion(contentHash, TextAnalysis.VERSION);
+      if (sameContent.isPresent()) {
+        logger.info("Content of fileId: {} was analyzed as fileId: {}. Reusing the result.", fileId,
+            sameContent.get().getFileId());
+        AnalysisResultEntity copy = copyFor(fileId, sameContent.get());
+        analysisResultRepository.save(copy);
+        index(copy);
+        passageIndex.copy(sameContent.get().getFileId(), fileId);
+        return cache(copy);
+      }
     }
 
     logger.info("No cached result for fileId: {}. Proceeding with full analysis.", fileId);
-    String fileContent = fetchFileContent(fileId);
+    TextAnalysis analysis = fetchAndAnalyzeContent(fileId);
 
-    if (fileContent == null) {
+    if (analysis == null) {
       logger.warn("File content is null for fileId: {}. Cannot perform analysis.", fileId);
       return new AnalysisResult(new TextStatistics(0, 0, 0), "");
     }
-    if (fileContent.trim().isEmpty()){
+    TextStatisticsScanner scanner = analysis.getStatistics();
+    if (!scanner.hasContent()){
         logger.info("File content is empty for fileId: {}. Caching empty stats.", fileId);
-        AnalysisResultEntity emptyEntity = new AnalysisResultEntity(fileId, 0,0,0, "");
+        AnalysisResultEntity emptyEntity = versioned(new AnalysisResultEntity(fileId, 0,0,0, ""), contentHash);
+        emptyEntity.setWordCloudStatus(WordCloudStatus.NONE);
         analysisResultRepository.save(emptyEntity);
-        return convertToDto(emptyEntity);
+        return cache(emptyEntity);
     }
 
-    int paragraphCount = calculateParagraphCount(fileContent);
-    int wordCount = calculateWordCount(fileContent);
-    int characterCount = fileContent.length();
-
-    TextStatistics stats = new TextStatistics(paragraphCount, wordCount, characterCount);
+    TextStatistics stats = scanner.toTextStatistics();
     logger.info("Calculated statistics for fileId: {}: {}", fileId, stats);
 
-    String wordCloudFileId = generateAndStoreWordCloud(fileId, fileContent);
-    String wordCloudPath = "";
-    if (wordCloudFileId != null && !wordCloudFileId.isEmpty()) {
-      wordCloudPath = "/api/gateway/analysis/wordcloud/" + wordCloudFileId;
-    } else if (wordCloudFileId == null && (fileContent != null && !fileContent.trim().isEmpty())) {
-      logger.warn("Word cloud generation/storage failed for non-empty fileId: {}. Returning stats without saving.", fileId);
-      TextStatistics currentStats = new TextStatistics(paragraphCount, wordCount, characterCount);
-      return new AnalysisResult(currentStats, "");
+    TermCounter terms = analysis.getTerms();
+    boolean hasTerms = terms.getDistinctTermCount() > 0;
+    AnalysisResultEntity newEntity = versioned(new AnalysisResultEntity(fileId, stats.getParagraphCount(),
+        stats.getWordCount(), stats.getCharacterCount(), ""), contentHash);
+    newEntity.setLineCount(stats.getLineCount());
+    newEntity.setSentenceCount(stats.getSentenceCount());
+    newEntity.setTermVector(TermVectorCodec.encode(terms.allTerms()));
+    int[] signature = analysis.getMinHash().signature();
+    if (signature != null) {
+      newEntity.setMinHash(MinHash.encode(signature));
     }
-
-    AnalysisResultEntity newEntity = new AnalysisResultEntity(fileId, paragraphCount, wordCount, characterCount, wordCloudPath);
+    newEntity.setWordCloudStatus(hasTerms ? WordCloudStatus.PENDING : WordCloudStatus.NONE);
     analysisResultRepository.save(newEntity);
     logger.info("Saved new analysis result for fileId: {}", fileId);
+    if (hasTerms) {
+      deferredWordClouds.schedule(newEntity);
+    }
+    index(newEntity);
+    Fingerprints fingerprints = analysis.getFingerprints();
+    if (analysis.isFingerprintsTruncated()) {
+      logger.warn("Kept {} fingerprints of fileId: {}, only its beginning is searched for matching passages",
+          fingerprints.size(), fileId);
+    }
+    if (fingerprints.size() > 0) {
+      passageIndex.store(fileId, fingerprints, analysis.isFingerprintsTruncated());
+    }
 
-    return convertToDto(newEntity);
+    return cache(newEntity);
   }
 
-  private String fetchFileContent(String fileId) {
-    try {
-      logger.debug("Fetching file content for fileId: {}", fileId);
-      Resource resource = fileStorageWebClient.get()
-          .uri("/download/{fileId}", fileId)
-          .retrieve()
-          .bodyToMono(Resource.class)
-          .block();
-
-      if (resource == null || !resource.exists() || !resource.isReadable()) {
-        logger.warn("Resource not found or not readable for fileId: {}", fileId);
-        return null;
-      }
-
-      try (Reader reader = new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8)) {
-        return FileCopyUtils.copyToString(reader);
-      } catch (IOException e) {
-        logger.error("IOException while reading resource for fileId: {}: {}", fileId, e.getMessage(), e);
-        return null;
-      }
+  private static AnalysisResultEntity versioned(AnalysisResultEntity entity, String contentHash) {
+    entity.setContentHash(contentHash);
+    entity.setAnalyzerVersion(TextAnalysis.VERSION);
+    return entity;
+  }
 
-    } catch (Exception e) {
-      logger.error("Error fetching file content for fileId: {}: {}", fileId, e.getMessage());
-      return null;
-    }
+  private static AnalysisResultEntity copyFor(String fileId, AnalysisResultEntity source) {
+    AnalysisResultEntity copy = versioned(new AnalysisResultEntity(fileId, source.getParagraphCount(),
+        source.getWordCount(), source.getCharacterCount(), source.getWordCloudPath()), source.getContentHash());
+    copy.setLineCount(source.getLineCount());
+    copy.setSentenceCount(source.getSentenceCount());
+    copy.setTermVector(source.getTermVector());
+    copy.setMinHash(source.getMinHash());
+    copy.setWordCloudStatus(source.getWordCloudStatus());
+    return copy;
   }
 
-  private String generateAndStoreWordCloud(String originalFileId, String textContent) {
-    if (textContent == null || textContent.trim().isEmpty()) {
-      logger.info("Text content is empty for fileId: {}. Skipping word cloud generation.", originalFileId);
-      return null;
+  private void index(AnalysisResultEntity entity) {
+    if (entity.getMinHash() != null) {
+      similarityIndex.put(entity.getFileId(), MinHash.decode(entity.getMinHash()));
     }
-    try {
-      WordCloudRequest request = new WordCloudRequest(textContent);
-      request.setFormat("png");
-
-      logger.info("Requesting word cloud for originalFileId: {}", originalFileId);
-      byte[] imageBytes = wordCloudWebClient.post()
-          .contentType(MediaType.APPLICATION_JSON)
-          .body(BodyInserters.fromValue(request))
-          .retrieve()
-          .bodyToMono(byte[].class)
-          .block();
-
-      if (imageBytes == null || imageBytes.length == 0) {
-        logger.warn("Received empty image bytes from word cloud API for originalFileId: {}", originalFileId);
-        return null;
-      }
-      logger.info("Successfully received word cloud image for originalFileId: {}. Size: {} bytes", originalFileId, imageBytes.length);
+  }
 
-      MultipartBodyBuilder bodyBuilder = new MultipartBodyBuilder();
-      bodyBuilder.part("file", new ByteArrayResource(imageBytes))
-          .filename("wordcloud_" + originalFileId + ".png");
+  private AnalysisResult cache(AnalysisResultEntity entity) {
+    AnalysisResult result = convertToDto(entity);
+    analysisResultCache.put(entity.getFileId(), result);
+    return result;
+  }
 
-      logger.info("Uploading word cloud image to FileStorageService for originalFileId: {}", originalFileId);
-      FileStorageUploadResponse fsResponse = fileStorageWebClient.post()
-          .uri("/upload")
-          .contentType(MediaType.MULTIPART_FORM_DATA)
-          .body(BodyInserters.fromMultipartData(bodyBuilder.build()))
+  /**
+   * Gets the SHA-256 hash of the file content from the file storage service.
+   *
+   * @return the hash, or null if the metadata could not be fetched
+   */
+  private String fetchContentHash(String fileId) {
+    try {
+      FileStorageMetadataResponse metadata = fileStorageWebClient.get()
+          .uri("/{fileId}/metadata", fileId)
           .retrieve()
-          .bodyToMono(FileStorageUploadResponse.class)
+          .bodyToMono(FileStorageMetadataResponse.class)
           .block();
-
-      if (fsResponse != null && fsResponse.getId() != null) {
-        logger.info("Successfully uploaded word cloud image. Stored file ID: {}", fsResponse.getId());
-        return fsResponse.getId().toString();
-      } else {
-        logger.warn("Failed to upload word cloud image or received no ID from FileStorageService for originalFileId: {}", originalFileId);
-        return null;
-      }
-
+      return metadata != null ? metadata.getHash() : null;
     } catch (Exception e) {
-      logger.error("Error generating or storing word cloud for originalFileId: {}: {}", originalFileId, e.getMessage(), e);
+      logger.warn("Could not fetch the content hash of fileId: {}: {}", fileId, e.getMessage());
       return null;
     }
   }
 
-  private int calculateParagraphCount(String content) {
-    if (content == null || content.trim().isEmpty()) {
-      return 0;
+  /**
+   * Downloads the file and analyzes it while it arrives, see {@link #fetchContent}.
+   *
+   * @return the analysis, or null if the file could not be downloaded or is empty
+   */
+  private TextAnalysis fetchAndAnalyzeContent(String fileId) {
+    TextAnalysis analysis = new TextAnalysis(maxDistinctTerms, stopWords, maxFingerprints);
+    if (!fetchContent(fileId, analysis::accept)) {
+      return null;
     }
-    String normalizedContent = content.replace("\r\n", "\n").replace("\r", "\n");
-    String effectivelyTrimmedContent = normalizedContent.trim();
-
-    if (effectivelyTrimmedContent.isEmpty()) {
-        return 0;
+    if (analysis.getByteCount() == 0) {
+      logger.warn("Resource not found or empty for fileId: {}", fileId);
+      return null;
     }
+    analysis.finish();
+    logger.debug("Analyzed {} bytes of fileId: {}, {} distinct terms", analysis.getByteCount(), fileId,
+        analysis.getTerms().getDistinctTermCount());
+    return analysis;
+  }
 
-    String[] paragraphs = effectivelyTrimmedContent.split("(\n\s*){2,}");
-
-    int actualParagraphs = 0;
-    for (String p : paragraphs) {
-        if (!p.trim().isEmpty()) {
-            actualParagraphs++;
-        }
+  /**
+   * Downloads the file and splits its text into words while it arrives.
+   *
+   * @return the words, or null if the file could not be downloaded
+   */
+  private WordTokens fetchWords(String fileId) {
+    WordTokens words = new WordTokens();
+    Utf8StreamDecoder decoder = new Utf8StreamDecoder(words);
+    if (!fetchContent(fileId, decoder::decode)) {
+      return null;
     }
-    return actualParagraphs > 0 ? actualParagraphs : 1;
+    decoder.finish();
+    return words;
   }
 
-  private int calculateWordCount(String content) {
-    if (content == null) return 0;
-    String trimmedContent = content.trim();
-    if (trimmedContent.isEmpty()) return 0;
-    String[] words = trimmedContent.split("\\s+");
-    return words.length;
+  /**
+   * Downloads the file and passes its content on as it arrives. The body is consumed as a
+   * stream of buffers on the bounded elastic scheduler with a bounded prefetch, so memory does
+   * not depend on the file size and the consumer does not hold an I/O thread. Every buffer is
+   * released as soon as it is consumed.
+   *
+   * @return true if the whole file was downloaded
+   */
+  private boolean fetchContent(String fileId, Consumer<ByteBuffer> consumer) {
+    try {
+      logger.debug("Fetching file content for fileId: {}", fileId);
+      fileStorageWebClient.get()
+          .uri("/download/{fileId}", fileId)
+          .retrieve()
+          .bodyToFlux(DataBuffer.class)
+          .publishOn(Schedulers.boundedElastic(), CONTENT_PREFETCH)
+          .doOnNext(buffer -> {
+            try (DataBuffer.ByteBufferIterator byteBuffers = buffer.readableByteBuffers()) {
+              byteBuffers.forEachRemaining(consumer);
+            } finally {
+              DataBufferUtils.release(buffer);
+            }
+          })
+          .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+          .then()
+          .block();
+      return true;
+    } catch (Exception e) {
+      logger.error("Error fetching file content for fileId: {}: {}", fileId, e.getMessage());
+      return false;
+    }
   }
 
   private AnalysisResult convertToDto(AnalysisResultEntity entity) {
     TextStatistics stats = new TextStatistics(
         entity.getParagraphCount(),
         entity.getWordCount(),
-        entity.getCharacterCount()
+        entity.getCharacterCount(),
+        entity.getLineCount() != null ? entity.getLineCount() : 0,
+        entity.getSentenceCount() != null ? entity.getSentenceCount() : 0
     );
-    return new AnalysisResult(stats, entity.getWordCloudPath());
+    List<TermFrequency> topTerms = new ArrayList<>();
+    if (entity.getTermVector() != null) {
+      List<TermCount> terms = new ArrayList<>(TermVectorCodec.decode(entity.getTermVector()));
+      terms.sort(TermCount.BY_FREQUENCY);
+      topTerms = toTermFrequencies(terms.subList(0, Math.min(topTermCount, terms.size())));
+    }
+    WordCloudStatus wordCloudStatus = entity.getWordCloudStatus();
+    if (wordCloudStatus == null) {
+      wordCloudStatus = entity.getWordCloudPath() != null && !entity.getWordCloudPath().isEmpty()
+          ? WordCloudStatus.READY : WordCloudStatus.NONE;
+    }
+    return new AnalysisResult(stats, entity.getWordCloudPath(), topTerms, wordCloudStatus);
+  }
+
+  private static List<TermFrequency> toTermFrequencies(List<TermCount> terms) {
+    List<TermFrequency> frequencies = new ArrayList<>(terms.size());
+    for (TermCount term : terms) {
+      frequencies.add(new TermFrequency(term.getTerm(), term.getCount()));
+    }
+    return frequencies;
   }
 
   @Override
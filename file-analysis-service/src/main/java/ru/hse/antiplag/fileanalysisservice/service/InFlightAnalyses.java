@@ -0,0 +1,206 @@
+package ru.hse.antiplag.fileanalysisservice.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.hse.antiplag.fileanalysisservice.dto.AnalysisResult;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Single-flight coordination of analyses of the same file. On this instance the first caller
+ * for a file leads the flight and the callers arriving while it runs wait for its result
+ * instead of downloading the file and rendering another word cloud. Across instances the
+ * leader has to lease the file from {@link AnalysisLeases}; while another instance holds the
+ * lease it polls for the stored result every {@code analysis.single-flight.poll-interval}.
+ * Having got the lease, it checks for a stored result once more, as the previous holder may
+ * have just stored it. If a leader fails, one of its followers takes over.
+ *
+ * <p>Nobody gives up on a running analysis: the holder renews its lease for as long as the
+ * analysis runs, and the lease only expires if the holder died. Callers waiting for a leader
+ * on this instance check for a stored result every {@code analysis.single-flight.wait-timeout}
+ * and go on waiting if there is none yet.
+ *
+ * <p>The number of analyses run and of callers served by another caller's analysis are
+ * published as {@code analysis.single.flight.*} metrics, with their ratio as a gauge.
+ */
+@Component
+public class InFlightAnalyses implements MeterBinder {
+
+  private static final Logger logger = LoggerFactory.getLogger(InFlightAnalyses.class);
+
+  private final ConcurrentMap<String, CompletableFuture<AnalysisResult>> flights = new ConcurrentHashMap<>();
+  private final AnalysisLeases analysisLeases;
+  private final Duration waitTimeout;
+  private final Duration pollInterval;
+  private final AtomicLong ledAnalyses = new AtomicLong();
+  private final AtomicLong sharedOnInstance = new AtomicLong();
+  private final AtomicLong sharedAcrossInstances = new AtomicLong();
+
+  /**
+   * Constructs an {@code InFlightAnalyses}.
+   *
+   * @param analysisLeases the leases coordinating instances.
+   * @param waitTimeout how long a caller waits for an analysis run by someone else before it
+   *     checks for a stored result and reports that it still waits.
+   * @param pollInterval how often a caller checks for a result analyzed by another instance.
+   */
+  @Autowired
+  public InFlightAnalyses(
+      AnalysisLeases analysisLeases,
+      @Value("${analysis.single-flight.wait-timeout:PT30S}") Duration waitTimeout,
+      @Value("${analysis.single-flight.poll-interval:PT0.5S}") Duration pollInterval) {
+    this.analysisLeases = analysisLeases;
+    this.waitTimeout = waitTimeout;
+    this.pollInterval = pollInterval;
+  }
+
+  /**
+   * Analyzes a file unless someone else is analyzing it already, in which case their result is
+   * returned.
+   *
+   * @param fileId the ID of the file to analyze.
+   * @param findStored finds the stored result of the file, if any.
+   * @param analyze analyzes the file.
+   * @return the result of the analysis.
+   * @throws IllegalStateException if the caller was interrupted while waiting for another caller.
+   */
+  public AnalysisResult analyzeOnce(String fileId, Function<String, Optional<AnalysisResult>> findStored,
+                                    Function<String, AnalysisResult> analyze) {
+    while (true) {
+      CompletableFuture<AnalysisResult> future = new CompletableFuture<>();
+      CompletableFuture<AnalysisResult> existing = flights.putIfAbsent(fileId, future);
+      if (existing != null) {
+        Optional<AnalysisResult> shared = await(fileId, existing, findStored);
+        if (shared.isPresent()) {
+          sharedOnInstance.incrementAndGet();
+          return shared.get();
+        }
+        continue;
+      }
+      AnalysisResult result = null;
+      try {
+        result = lead(fileId, findStored, analyze);
+        return result;
+      } finally {
+        flights.remove(fileId, future);
+        future.complete(result);
+      }
+    }
+  }
+
+  private AnalysisResult lead(String fileId, Function<String, Optional<AnalysisResult>> findStored,
+                              Function<String, AnalysisResult> analyze) {
+    Instant started = Instant.now();
+    Instant nextReport = started.plus(waitTimeout);
+    while (!analysisLeases.tryAcquire(fileId)) {
+      if (Instant.now().isAfter(nextReport)) {
+        logger.info("fileId: {} is still being analyzed by another instance after {}", fileId,
+            Duration.between(started, Instant.now()));
+        nextReport = Instant.now().plus(waitTimeout);
+      }
+      sleep(fileId);
+      Optional<AnalysisResult> stored = findStored.apply(fileId);
+      if (stored.isPresent()) {
+        logger.info("fileId: {} was analyzed by another instance", fileId);
+        sharedAcrossInstances.incrementAndGet();
+        return stored.get();
+      }
+    }
+    try {
+      Optional<AnalysisResult> stored = findStored.apply(fileId);
+      if (stored.isPresent()) {
+        return stored.get();
+      }
+      ledAnalyses.incrementAndGet();
+      return analyze.apply(fileId);
+    } finally {
+      analysisLeases.release(fileId);
+    }
+  }
+
+  /**
+   * Waits for the leader of a flight for as long as it runs, checking for a stored result every
+   * {@code waitTimeout}.
+   *
+   * @return the result of the leader, or empty if it failed
+   */
+  private Optional<AnalysisResult> await(String fileId, CompletableFuture<AnalysisResult> future,
+                                         Function<String, Optional<AnalysisResult>> findStored) {
+    Instant started = Instant.now();
+    while (true) {
+      try {
+        return Optional.ofNullable(future.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for a concurrent analysis of fileId " + fileId, e);
+      } catch (TimeoutException e) {
+        Optional<AnalysisResult> stored = findStored.apply(fileId);
+        if (stored.isPresent()) {
+          return stored;
+        }
+        logger.info("Still waiting for a concurrent analysis of fileId: {} after {}", fileId,
+            Duration.between(started, Instant.now()));
+      } catch (ExecutionException e) {
+        return Optional.empty();
+      }
+    }
+  }
+
+  private void sleep(String fileId) {
+    try {
+      Thread.sleep(pollInterval.toMillis());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for another instance to analyze fileId " + fileId, e);
+    }
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("analysis.in.flight", flights, ConcurrentMap::size)
+        .description("Distinct files being analyzed on this instance right now")
+        .register(registry);
+    FunctionCounter.builder("analysis.single.flight.led", ledAnalyses, AtomicLong::get)
+        .description("Analyses run by this instance")
+        .register(registry);
+    FunctionCounter.builder("analysis.single.flight.shared", sharedOnInstance, AtomicLong::get)
+        .description("Callers that got the result of a concurrent analysis of the same file")
+        .tag("scope", "instance")
+        .register(registry);
+    FunctionCounter.builder("analysis.single.flight.shared", sharedAcrossInstances, AtomicLong::get)
+        .description("Callers that got the result of a concurrent analysis of the same file")
+        .tag("scope", "cluster")
+        .register(registry);
+    Gauge.builder("analysis.single.flight.dedup.ratio", this, InFlightAnalyses::getDedupRatio)
+        .description("Share of analysis callers served by another caller's analysis")
+        .register(registry);
+  }
+
+  /**
+   * Gets the share of callers that did not have to run an analysis of their own.
+   *
+   * @return the ratio of shared analyses to all analyses waited for, 0 if there were none.
+   */
+  public double getDedupRatio() {
+    long shared = sharedOnInstance.get() + sharedAcrossInstances.get();
+    long total = shared + ledAnalyses.get();
+    return total == 0 ? 0 : (double) shared / total;
+  }
+}
@@ -0,0 +1,235 @@
+package ru.hse.antiplag.fileanalysisservice.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import ru.hse.antiplag.fileanalysisservice.dto.PassageMatch;
+import ru.hse.antiplag.fileanalysisservice.entity.FingerprintsEntity;
+import ru.hse.antiplag.fileanalysisservice.repository.FingerprintsRepository;
+import ru.hse.antiplag.fileanalysisservice.similarity.SegmentedFingerprintIndex;
+import ru.hse.antiplag.fileanalysisservice.text.Fingerprints;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Stores the winnowing fingerprints of analyzed files and keeps them in a
+ * {@link SegmentedFingerprintIndex} under {@code analysis.passages.index-dir} to find the
+ * passages files have in common. Like {@link SimilarityIndex}, every
+ * {@code analysis.passages.refresh-interval} it loads the fingerprints stored since the last
+ * refresh, by any instance. The index on disk remembers how far it had loaded, so after a
+ * restart only the fingerprints stored since its last flush are read again. Flushes and merges
+ * run on a background thread.
+ */
+@Component
+public class PassageIndex implements MeterBinder {
+
+  private static final Logger logger = LoggerFactory.getLogger(PassageIndex.class);
+  private static final Duration REFRESH_OVERLAP = Duration.ofMinutes(1);
+
+  private final FingerprintsRepository fingerprintsRepository;
+  private final SegmentedFingerprintIndex index;
+  private final int maxFilesPerFingerprint;
+  private final int maxResults;
+  private final int loadBatchSize;
+  private final ExecutorService maintenance =
+      Executors.newSingleThreadExecutor(new CustomizableThreadFactory("passage-index-"));
+  private final AtomicBoolean maintenanceQueued = new AtomicBoolean();
+  private LocalDateTime loadedUntil;
+
+  /**
+   * Constructs a {@code PassageIndex}.
+   *
+   * @param fingerprintsRepository the repository of fingerprints.
+   * @param maxFilesPerFingerprint the number of files a fingerprint may occur in before it is ignored as boilerplate.
+   * @param maxResults the number of matching files returned at most.
+   * @param loadBatchSize the number of files whose fingerprints are read from the database at once.
+   * @param indexDirectory the directory of the index segments.
+   * @param flushPostings the number of postings kept in memory before they are flushed to a segment.
+   * @param mergeFactor the number of segments of about the same size merged together.
+   */
+  @Autowired
+  public PassageIndex(
+      FingerprintsRepository fingerprintsRepository,
+      @Value("${analysis.passages.max-files-per-fingerprint:100}") int maxFilesPerFingerprint,
+      @Value("${analysis.passages.max-results:50}") int maxResults,
+      @Value("${analysis.passages.load-batch-size:100}") int loadBatchSize,
+      @Value("${analysis.passages.index-dir:data/passage-index}") Path indexDirectory,
+      @Value("${analysis.passages.flush-postings:1000000}") int flushPostings,
+      @Value("${analysis.passages.merge-factor:4}") int mergeFactor) {
+    this.fingerprintsRepository = fingerprintsRepository;
+    this.maxFilesPerFingerprint = maxFilesPerFingerprint;
+    this.maxResults = maxResults;
+    this.loadBatchSize = loadBatchSize;
+    try {
+      this.index = new SegmentedFingerprintIndex(indexDirectory, flushPostings, mergeFactor);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to open the passage index in " + indexDirectory, e);
+    }
+    this.loadedUntil = LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC)
+        .plus(Duration.ofMillis(index.getCheckpoint()));
+    logger.info("Opened the passage index in {}: {} files in {} segments",
+        indexDirectory, index.size(), index.segmentCount());
+  }
+
+  /**
+   * Stores and indexes the fingerprints of a file, replacing the ones it had.
+   *
+   * @param fileId the ID of the file.
+   * @param fingerprints the fingerprints of the file.
+   * @param truncated whether the fingerprints cover only the beginning of the file.
+   */
+  public void store(String fileId, Fingerprints fingerprints, boolean truncated) {
+    FingerprintsEntity entity = new FingerprintsEntity(fileId, Fingerprints.encode(fingerprints));
+    entity.setTruncated(truncated);
+    fingerprintsRepository.save(entity);
+    put(fileId, fingerprints);
+  }
+
+  /**
+   * Stores and indexes the fingerprints of a file for another file with the same content.
+   *
+   * @param sourceFileId the ID of the file whose fingerprints are copied.
+   * @param fileId the ID of the file with the same content.
+   */
+  public void copy(String sourceFileId, String fileId) {
+    fingerprintsRepository.findById(sourceFileId).ifPresent(source -> {
+      FingerprintsEntity entity = new FingerprintsEntity(fileId, source.getFingerprints());
+      entity.setTruncated(source.getTruncated());
+      fingerprintsRepository.save(entity);
+      put(fileId, Fingerprints.decode(source.getFingerprints()));
+    });
+  }
+
+  /**
+   * Finds the passages of a file that occur in other files.
+   *
+   * @param fileId the ID of the file, left out of the result.
+   * @return the matching files, the ones with the most matched characters first, or an empty
+   *         list if the file has no stored fingerprints.
+   */
+  public List<PassageMatch> findMatches(String fileId) {
+    Optional<FingerprintsEntity> stored = fingerprintsRepository.findById(fileId);
+    if (stored.isEmpty()) {
+      return new ArrayList<>();
+    }
+    Fingerprints fingerprints = Fingerprints.decode(stored.get().getFingerprints());
+    put(fileId, fingerprints);
+    return index.query(fingerprints, fileId, maxFilesPerFingerprint, maxResults);
+  }
+
+  /**
+   * Gets the number of files in the index.
+   *
+   * @return the number of indexed files.
+   */
+  public int size() {
+    return index.size();
+  }
+
+  /**
+   * Loads the fingerprints stored since the last refresh.
+   *
+   * @return the number of files whose fingerprints changed the index.
+   */
+  @Scheduled(fixedDelayString = "${analysis.passages.refresh-interval:PT1M}")
+  public synchronized int refresh() {
+    LocalDateTime createdAfter = loadedUntil.minus(REFRESH_OVERLAP);
+    String afterFileId = "";
+    int added = 0;
+    List<FingerprintsEntity> page;
+    do {
+      page = fingerprintsRepository.findCreatedAfter(createdAfter, afterFileId, PageRequest.of(0, loadBatchSize));
+      for (FingerprintsEntity stored : page) {
+        try {
+          if (put(stored.getFileId(), Fingerprints.decode(stored.getFingerprints()))) {
+            added++;
+          }
+        } catch (IllegalArgumentException e) {
+          logger.warn("Skipping the fingerprints of fileId: {}: {}", stored.getFileId(), e.getMessage());
+        }
+        createdAfter = stored.getCreatedAt();
+        afterFileId = stored.getFileId();
+      }
+    } while (page.size() == loadBatchSize);
+    if (createdAfter.isAfter(loadedUntil)) {
+      loadedUntil = createdAfter;
+      index.setCheckpoint(loadedUntil.toInstant(ZoneOffset.UTC).toEpochMilli());
+    }
+    if (added > 0) {
+      logger.info("Indexed the fingerprints of {} files, {} files in the passage index", added, index.size());
+    }
+    return added;
+  }
+
+  /**
+   * Flushes the fingerprints in memory and merges segments while a size tier is full.
+   */
+  public void maintain() {
+    maintenanceQueued.set(false);
+    try {
+      if (index.flush()) {
+        logger.info("Flushed the passage index, {} segments", index.segmentCount());
+      }
+      while (index.merge()) {
+        logger.info("Merged passage index segments, {} segments", index.segmentCount());
+      }
+    } catch (IOException e) {
+      logger.error("Failed to write the passage index: {}", e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Stops the maintenance and flushes the fingerprints in memory, so they are not loaded again
+   * after a restart.
+   */
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    maintenance.shutdown();
+    maintenance.awaitTermination(1, TimeUnit.MINUTES);
+    maintain();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("analysis.passages.indexed", this, PassageIndex::size)
+        .description("Files in the passage index of this instance")
+        .register(registry);
+    Gauge.builder("analysis.passages.segments", index, SegmentedFingerprintIndex::segmentCount)
+        .description("Segments of the passage index on disk")
+        .register(registry);
+  }
+
+  private boolean put(String fileId, Fingerprints fingerprints) {
+    boolean changed = index.put(fileId, fingerprints);
+    if (changed && index.needsFlush() && maintenanceQueued.compareAndSet(false, true)) {
+      try {
+        maintenance.execute(this::maintain);
+      } catch (RejectedExecutionException e) {
+        maintenanceQueued.set(false);
+      }
+    }
+    return changed;
+  }
+}
@@ -0,0 +1,136 @@
+package ru.hse.antiplag.fileanalysisservice.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.hse.antiplag.fileanalysisservice.dto.SimilarFile;
+import ru.hse.antiplag.fileanalysisservice.repository.AnalysisResultRepository;
+import ru.hse.antiplag.fileanalysisservice.repository.StoredSignature;
+import ru.hse.antiplag.fileanalysisservice.similarity.LshIndex;
+import ru.hse.antiplag.fileanalysisservice.text.MinHash;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * In-memory {@link LshIndex} of the MinHash signatures of all stored results. Results analyzed
+ * on this instance are put right away; the first refresh loads the signatures stored before
+ * the start, and every {@code analysis.similarity.refresh-interval} the ones stored since,
+ * including those of other instances, in pages of {@code analysis.similarity.load-batch-size}.
+ * Each refresh starts a minute before the newest signature seen, so a result committed a
+ * little out of order is not missed; signatures seen already are skipped.
+ */
+@Component
+public class SimilarityIndex implements MeterBinder {
+
+  private static final Logger logger = LoggerFactory.getLogger(SimilarityIndex.class);
+  private static final Duration REFRESH_OVERLAP = Duration.ofMinutes(1);
+
+  private final AnalysisResultRepository analysisResultRepository;
+  private final LshIndex index;
+  private final int maxResults;
+  private final int loadBatchSize;
+  private LocalDateTime loadedUntil = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+  /**
+   * Constructs a {@code SimilarityIndex}.
+   *
+   * @param analysisResultRepository the repository of analysis results.
+   * @param bands the number of bands a signature is cut into.
+   * @param maxResults the number of similar files returned at most.
+   * @param loadBatchSize the number of signatures read from the database at once.
+   */
+  @Autowired
+  public SimilarityIndex(
+      AnalysisResultRepository analysisResultRepository,
+      @Value("${analysis.similarity.bands:16}") int bands,
+      @Value("${analysis.similarity.max-results:100}") int maxResults,
+      @Value("${analysis.similarity.load-batch-size:1000}") int loadBatchSize) {
+    this.analysisResultRepository = analysisResultRepository;
+    this.index = new LshIndex(bands);
+    this.maxResults = maxResults;
+    this.loadBatchSize = loadBatchSize;
+  }
+
+  /**
+   * Puts the signature of a file, replacing the one it had.
+   *
+   * @param fileId the ID of the file.
+   * @param signature the MinHash signature of the file.
+   */
+  public void put(String fileId, int[] signature) {
+    index.put(fileId, signature);
+  }
+
+  /**
+   * Finds the files similar to a file.
+   *
+   * @param fileId the ID of the file, left out of the result.
+   * @param signature the MinHash signature of the file.
+   * @param threshold the smallest estimated similarity returned, from 0 to 1.
+   * @return the similar files, the most similar first.
+   */
+  public List<SimilarFile> findSimilar(String fileId, int[] signature, double threshold) {
+    index.put(fileId, signature);
+    return index.query(signature, threshold, fileId, maxResults);
+  }
+
+  /**
+   * Gets the number of files in the index.
+   *
+   * @return the number of indexed files.
+   */
+  public int size() {
+    return index.size();
+  }
+
+  /**
+   * Loads the signatures stored since the last refresh.
+   *
+   * @return the number of signatures that changed the index.
+   */
+  @Scheduled(fixedDelayString = "${analysis.similarity.refresh-interval:PT1M}")
+  public synchronized int refresh() {
+    LocalDateTime createdAfter = loadedUntil.minus(REFRESH_OVERLAP);
+    String afterFileId = "";
+    int added = 0;
+    List<StoredSignature> page;
+    do {
+      page = analysisResultRepository.findSignaturesCreatedAfter(createdAfter, afterFileId,
+          PageRequest.of(0, loadBatchSize));
+      for (StoredSignature stored : page) {
+        try {
+          if (index.put(stored.getFileId(), MinHash.decode(stored.getMinHash()))) {
+            added++;
+          }
+        } catch (IllegalArgumentException e) {
+          logger.warn("Skipping the signature of fileId: {}: {}", stored.getFileId(), e.getMessage());
+        }
+        createdAfter = stored.getCreatedAt();
+        afterFileId = stored.getFileId();
+      }
+    } while (page.size() == loadBatchSize);
+    if (createdAfter.isAfter(loadedUntil)) {
+      loadedUntil = createdAfter;
+    }
+    if (added > 0) {
+      logger.info("Indexed {} signatures, {} files in the similarity index", added, index.size());
+    }
+    return added;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("analysis.similarity.indexed", this, SimilarityIndex::size)
+        .description("Files in the similarity index of this instance")
+        .register(registry);
+  }
+}
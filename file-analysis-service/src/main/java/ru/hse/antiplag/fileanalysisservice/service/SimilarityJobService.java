@@ -0,0 +1,40 @@
+package ru.hse.antiplag.fileanalysisservice.service;
+
+import ru.hse.antiplag.fileanalysisservice.dto.SimilarPair;
+import ru.hse.antiplag.fileanalysisservice.dto.SimilarityJob;
+
+import java.util.List;
+
+/**
+ * Service interface for comparing every pair of a set of files in the background.
+ */
+public interface SimilarityJobService {
+
+  /**
+   * Submits a job to find the pairs of files at least as similar as the threshold.
+   *
+   * @param fileIds the IDs of the files to compare, duplicates are ignored.
+   * @param threshold the smallest Jaccard similarity of a stored pair, greater than 0 and at most 1.
+   * @return the submitted job, or null if the queue is full.
+   */
+  SimilarityJob submit(List<String> fileIds, double threshold);
+
+  /**
+   * Gets the current state and progress of a job.
+   *
+   * @param jobId the ID of the job.
+   * @return the job, or null if there is no such job or it expired.
+   */
+  SimilarityJob getJob(String jobId);
+
+  /**
+   * Gets the pairs stored by a job so far, the most similar first. The pairs are kept after
+   * the job expires.
+   *
+   * @param jobId the ID of the job.
+   * @param page the number of the page, from 0.
+   * @param size the number of pairs on a page.
+   * @return the pairs on the page.
+   */
+  List<SimilarPair> getPairs(String jobId, int page, int size);
+}
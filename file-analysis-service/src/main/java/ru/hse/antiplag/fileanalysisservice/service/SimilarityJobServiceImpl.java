@@ -0,0 +1,308 @@
+package ru.hse.antiplag.fileanalysisservice.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import ru.hse.antiplag.fileanalysisservice.dto.AnalysisJobStatus;
+import ru.hse.antiplag.fileanalysisservice.dto.SimilarPair;
+import ru.hse.antiplag.fileanalysisservice.dto.SimilarityJob;
+import ru.hse.antiplag.fileanalysisservice.entity.FingerprintsEntity;
+import ru.hse.antiplag.fileanalysisservice.entity.SimilarPairEntity;
+import ru.hse.antiplag.fileanalysisservice.repository.FingerprintsRepository;
+import ru.hse.antiplag.fileanalysisservice.repository.SimilarPairRepository;
+import ru.hse.antiplag.fileanalysisservice.similarity.AllPairsSimilarity;
+import ru.hse.antiplag.fileanalysisservice.text.Fingerprints;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Implementation of the {@link SimilarityJobService} interface.
+ * A file is compared by the set of its winnowing fingerprints, as stored by {@link PassageIndex}:
+ * equal passages give equal fingerprints, so the Jaccard similarity of the sets estimates the
+ * share of the text two files have in common. Files without stored fingerprints are analyzed
+ * first, and left out if that does not give them any.
+ *
+ * <p>Jobs run one at a time behind a bounded queue; the pairs of a job are found by
+ * {@link AllPairsSimilarity} on a fork-join pool of {@code analysis.similarity-jobs.parallelism}
+ * workers, while the thread of the job stores them in batches as they arrive. The queue between
+ * them is bounded, so workers wait for the database rather than fill the heap. Jobs are kept in
+ * memory and forgotten {@code analysis.similarity-jobs.retention} after they finish, their pairs
+ * stay in the database.
+ */
+@Service
+public class SimilarityJobServiceImpl implements SimilarityJobService {
+
+  private static final Logger logger = LoggerFactory.getLogger(SimilarityJobServiceImpl.class);
+  private static final long POLL_MILLIS = 100;
+
+  private final FingerprintsRepository fingerprintsRepository;
+  private final SimilarPairRepository similarPairRepository;
+  private final FileAnalysisService fileAnalysisService;
+  private final int loadBatchSize;
+  private final int writeBatchSize;
+  private final Duration retention;
+  private final ThreadPoolExecutor executor;
+  private final ForkJoinPool pool;
+  private final Map<String, RunningJob> jobs = new ConcurrentHashMap<>();
+
+  /**
+   * Constructs a {@code SimilarityJobServiceImpl}.
+   *
+   * @param fingerprintsRepository the repository of the fingerprints of analyzed files.
+   * @param similarPairRepository the repository the pairs found are stored in.
+   * @param fileAnalysisService the service analyzing files without fingerprints.
+   * @param parallelism the number of workers comparing files, 0 for one per processor.
+   * @param queueCapacity the number of jobs waiting for the running one at most.
+   * @param loadBatchSize the number of files whose fingerprints are read from the database at once.
+   * @param writeBatchSize the number of pairs stored at once.
+   * @param retention how long a finished job can be polled.
+   */
+  @Autowired
+  public SimilarityJobServiceImpl(
+      FingerprintsRepository fingerprintsRepository,
+      SimilarPairRepository similarPairRepository,
+      FileAnalysisService fileAnalysisService,
+      @Value("${analysis.similarity-jobs.parallelism:0}") int parallelism,
+      @Value("${analysis.similarity-jobs.queue-capacity:10}") int queueCapacity,
+      @Value("${analysis.similarity-jobs.load-batch-size:500}") int loadBatchSize,
+      @Value("${analysis.similarity-jobs.write-batch-size:500}") int writeBatchSize,
+      @Value("${analysis.similarity-jobs.retention:PT1H}") Duration retention) {
+    this.fingerprintsRepository = fingerprintsRepository;
+    this.similarPairRepository = similarPairRepository;
+    this.fileAnalysisService = fileAnalysisService;
+    this.loadBatchSize = loadBatchSize;
+    this.writeBatchSize = writeBatchSize;
+    this.retention = retention;
+    this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("similarity-job-"),
+        new ThreadPoolExecutor.AbortPolicy());
+    this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors(),
+        forkJoinPool -> {
+          ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+          thread.setName("similarity-worker-" + thread.getPoolIndex());
+          return thread;
+        }, null, false);
+  }
+
+  @Override
+  public SimilarityJob submit(List<String> fileIds, double threshold) {
+    RunningJob job = new RunningJob(UUID.randomUUID().toString(), new ArrayList<>(new LinkedHashSet<>(fileIds)),
+        threshold);
+    jobs.put(job.jobId, job);
+    try {
+      executor.execute(() -> run(job));
+    } catch (RejectedExecutionException e) {
+      jobs.remove(job.jobId);
+      logger.warn("Rejected similarity job over {} files, {} jobs are already queued", job.fileIds.size(),
+          executor.getQueue().size());
+      return null;
+    }
+    logger.info("Submitted similarity job {} over {} files with threshold {}", job.jobId, job.fileIds.size(),
+        threshold);
+    return job.snapshot();
+  }
+
+  @Override
+  public SimilarityJob getJob(String jobId) {
+    RunningJob job = jobs.get(jobId);
+    return job == null ? null : job.snapshot();
+  }
+
+  @Override
+  public List<SimilarPair> getPairs(String jobId, int page, int size) {
+    List<SimilarPair> pairs = new ArrayList<>();
+    for (SimilarPairEntity entity : similarPairRepository.findByJobIdOrderBySimilarityDescIdAsc(jobId,
+        PageRequest.of(page, size))) {
+      pairs.add(new SimilarPair(entity.getFileId(), entity.getOtherFileId(), entity.getSimilarity()));
+    }
+    return pairs;
+  }
+
+  private void run(RunningJob job) {
+    job.status = AnalysisJobStatus.RUNNING;
+    long startedAt = System.nanoTime();
+    try {
+      List<String> fileIds = new ArrayList<>();
+      long[][] sets = load(job, fileIds);
+      compare(job, fileIds, sets);
+      job.status = AnalysisJobStatus.COMPLETED;
+      logger.info("Similarity job {} compared {} files in {} ms, {} pairs", job.jobId, sets.length,
+          (System.nanoTime() - startedAt) / 1_000_000, job.pairCount.get());
+    } catch (Exception e) {
+      Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+      job.error = cause.getMessage();
+      job.status = AnalysisJobStatus.FAILED;
+      logger.error("Similarity job {} failed: {}", job.jobId, cause.getMessage(), cause);
+    } finally {
+      job.finishedAt = LocalDateTime.now();
+    }
+  }
+
+  /**
+   * Reads the fingerprints of the files of a job in batches and keeps their distinct hashes.
+   *
+   * @param fileIds receives the IDs of the files that have fingerprints, in the order of the sets
+   * @return the sorted distinct fingerprint hashes of every file
+   */
+  private long[][] load(RunningJob job, List<String> fileIds) {
+    List<long[]> sets = new ArrayList<>();
+    for (int from = 0; from < job.fileIds.size(); from += loadBatchSize) {
+      List<String> batch = job.fileIds.subList(from, Math.min(from + loadBatchSize, job.fileIds.size()));
+      Map<String, FingerprintsEntity> stored = new HashMap<>();
+      for (FingerprintsEntity entity : fingerprintsRepository.findAllById(batch)) {
+        stored.put(entity.getFileId(), entity);
+      }
+      for (String fileId : batch) {
+        FingerprintsEntity entity = stored.containsKey(fileId) ? stored.get(fileId) : analyzeAndFind(fileId);
+        if (entity == null) {
+          job.skippedFileIds.add(fileId);
+        } else {
+          fileIds.add(fileId);
+          sets.add(hashes(Fingerprints.decode(entity.getFingerprints())));
+        }
+        job.loadedFiles.incrementAndGet();
+      }
+    }
+    return sets.toArray(new long[0][]);
+  }
+
+  private FingerprintsEntity analyzeAndFind(String fileId) {
+    try {
+      fileAnalysisService.analyzeFile(fileId);
+      return fingerprintsRepository.findById(fileId).orElse(null);
+    } catch (Exception e) {
+      logger.warn("Could not analyze fileId: {} for a similarity job: {}", fileId, e.getMessage());
+      return null;
+    }
+  }
+
+  private static long[] hashes(Fingerprints fingerprints) {
+    long[] hashes = new long[fingerprints.size()];
+    for (int i = 0; i < hashes.length; i++) {
+      hashes[i] = fingerprints.getHash(i);
+    }
+    return Arrays.stream(hashes).sorted().distinct().toArray();
+  }
+
+  /**
+   * Finds the similar pairs on the pool and stores them in batches from the thread of the job
+   * until the search is over and every pair is stored.
+   */
+  private void compare(RunningJob job, List<String> fileIds, long[][] sets) throws Exception {
+    BlockingQueue<SimilarPairEntity> pairs = new ArrayBlockingQueue<>(writeBatchSize * 4);
+    AtomicBoolean aborted = new AtomicBoolean();
+    ForkJoinTask<?> search = pool.submit(() -> AllPairsSimilarity.find(sets, job.threshold, pool,
+        (set, otherSet, similarity) -> put(pairs,
+            new SimilarPairEntity(job.jobId, fileIds.get(set), fileIds.get(otherSet), similarity), aborted),
+        job.comparedFiles::addAndGet));
+    try {
+      List<SimilarPairEntity> batch = new ArrayList<>(writeBatchSize);
+      while (!search.isDone() || !pairs.isEmpty()) {
+        SimilarPairEntity pair = pairs.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (pair != null) {
+          batch.add(pair);
+          pairs.drainTo(batch, writeBatchSize - 1);
+          similarPairRepository.saveAll(batch);
+          job.pairCount.addAndGet(batch.size());
+          batch.clear();
+        }
+      }
+      search.get();
+    } finally {
+      aborted.set(true);
+    }
+  }
+
+  /**
+   * Hands a pair over to the thread of the job, waiting while the queue is full unless the job
+   * is aborted.
+   */
+  private static void put(BlockingQueue<SimilarPairEntity> pairs, SimilarPairEntity pair, AtomicBoolean aborted) {
+    try {
+      while (!pairs.offer(pair, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+        if (aborted.get()) {
+          throw new CancellationException("The similarity job was aborted");
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CancellationException("The similarity job was interrupted");
+    }
+  }
+
+  /**
+   * Forgets jobs that finished more than the retention ago.
+   */
+  @Scheduled(fixedDelayString = "${analysis.similarity-jobs.cleanup-interval:PT1M}")
+  public void deleteExpiredJobs() {
+    LocalDateTime expiredBefore = LocalDateTime.now().minus(retention);
+    jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(expiredBefore));
+  }
+
+  /**
+   * Stops the running job and the workers.
+   */
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+    pool.shutdownNow();
+  }
+
+  /**
+   * State of a job, updated by its thread and the workers while it runs.
+   */
+  private static final class RunningJob {
+
+    private final String jobId;
+    private final List<String> fileIds;
+    private final double threshold;
+    private final LocalDateTime submittedAt = LocalDateTime.now();
+    private final List<String> skippedFileIds = new CopyOnWriteArrayList<>();
+    private final AtomicInteger loadedFiles = new AtomicInteger();
+    private final AtomicInteger comparedFiles = new AtomicInteger();
+    private final AtomicLong pairCount = new AtomicLong();
+    private volatile AnalysisJobStatus status = AnalysisJobStatus.QUEUED;
+    private volatile String error;
+    private volatile LocalDateTime finishedAt;
+
+    RunningJob(String jobId, List<String> fileIds, double threshold) {
+      this.jobId = jobId;
+      this.fileIds = fileIds;
+      this.threshold = threshold;
+    }
+
+    SimilarityJob snapshot() {
+      return new SimilarityJob(jobId, status, threshold, fileIds.size(), loadedFiles.get(), comparedFiles.get(),
+          pairCount.get(), new ArrayList<>(skippedFileIds), error, submittedAt, finishedAt);
+    }
+  }
+}
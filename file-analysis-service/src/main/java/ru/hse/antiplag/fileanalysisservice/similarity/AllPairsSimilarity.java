@@ -0,0 +1,363 @@
+package ru.hse.antiplag.fileanalysisservice.similarity;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Finds all pairs of sets whose Jaccard similarity is at least a threshold, with the prefix and
+ * length filtering of the AllPairs algorithm, on a fork-join pool.
+ *
+ * <p>Elements are ordered by ascending document frequency, so every set starts with its
+ * rarest elements. Two sets {@code x} and {@code y} with {@code J(x, y) >= t} share at least
+ * {@code ceil(t * |x|)} elements, so they share one of the first {@code |x| - ceil(t * |x|) + 1}
+ * elements of each of them, and {@code |y| >= t * |x|}. Only these prefixes are indexed; a set
+ * probes the index with its own prefix, looks at the smaller sets long enough to reach the
+ * threshold, and counts the whole overlap of each candidate. Elements common to many sets, such
+ * as the text of an assignment, are the last to fall into a prefix, so they rarely make pairs
+ * candidates.
+ *
+ * <p>The index is built once and only read afterwards, so the sets are probed independently and
+ * the work is split among the workers of the pool; larger sets, which cost more, are stolen in
+ * smaller pieces. Memory is about two longs per element of all sets while the elements are
+ * ranked, and a few integers per shared element afterwards.
+ */
+public final class AllPairsSimilarity {
+
+  private static final int LEAF_SIZE = 8;
+  private static final double EPSILON = 1e-9;
+
+  private AllPairsSimilarity() {
+  }
+
+  /**
+   * Receives the pairs found, from any worker of the pool.
+   */
+  @FunctionalInterface
+  public interface PairConsumer {
+
+    /**
+     * Receives a pair.
+     *
+     * @param set        index of the larger set of the pair
+     * @param otherSet   index of the other set
+     * @param similarity Jaccard similarity of the sets
+     */
+    void accept(int set, int otherSet, double similarity);
+  }
+
+  /**
+   * Finds all pairs of sets at least as similar as the threshold.
+   *
+   * @param sets      the sets, each sorted in ascending order without duplicates
+   * @param threshold the smallest Jaccard similarity reported, greater than 0 and at most 1
+   * @param pool      the pool the work runs on
+   * @param consumer  receives every pair once, in no particular order
+   * @param progress  receives the number of sets compared with all smaller ones, as they are
+   * @throws IllegalArgumentException if the threshold is out of range
+   */
+  public static void find(long[][] sets, double threshold, ForkJoinPool pool, PairConsumer consumer,
+                          IntConsumer progress) {
+    if (!(threshold > 0 && threshold <= 1)) {
+      throw new IllegalArgumentException("The threshold must be greater than 0 and at most 1, got " + threshold);
+    }
+    int[][] shared = rankSharedElements(sets, pool);
+    Integer[] boxed = new Integer[sets.length];
+    for (int i = 0; i < boxed.length; i++) {
+      boxed[i] = i;
+    }
+    Arrays.sort(boxed, (a, b) -> sets[a].length != sets[b].length
+        ? Integer.compare(sets[a].length, sets[b].length) : Integer.compare(a, b));
+    int[] order = new int[boxed.length];
+    int[] sizes = new int[boxed.length];
+    for (int position = 0; position < order.length; position++) {
+      order[position] = boxed[position];
+      sizes[position] = sets[order[position]].length;
+    }
+    PrefixIndex index = new PrefixIndex(shared, order, sizes, threshold);
+    pool.invoke(new Range(0, order.length, (from, to) -> {
+      Probe probe = new Probe(shared, order, sizes, index, threshold, consumer);
+      for (int position = from; position < to; position++) {
+        probe.probe(position);
+      }
+      progress.accept(to - from);
+    }));
+  }
+
+  /**
+   * Gets the number of elements a set of this size shares at least with every set similar enough.
+   */
+  static int minOverlap(double threshold, int size) {
+    return Math.max(1, (int) Math.ceil(threshold * size - EPSILON));
+  }
+
+  /**
+   * Gets the number of the elements of a set in its prefix that other sets have too. The
+   * elements no other set has are the rarest, so they come first and fill the prefix before
+   * the shared ones.
+   */
+  static int sharedPrefixLength(int size, int sharedCount, double threshold) {
+    if (size == 0) {
+      return 0;
+    }
+    return Math.max(0, size - minOverlap(threshold, size) + 1 - (size - sharedCount));
+  }
+
+  /**
+   * Renumbers the elements that are in more than one set by ascending document frequency, rarer
+   * elements first, and drops the others: an element of a single set never adds to an overlap,
+   * and in most texts nearly all fingerprints are such.
+   *
+   * @return the numbers of the shared elements of every set, in ascending order
+   */
+  private static int[][] rankSharedElements(long[][] sets, ForkJoinPool pool) {
+    int total = 0;
+    for (long[] set : sets) {
+      total = Math.addExact(total, set.length);
+    }
+    long[] elements = new long[total];
+    int offset = 0;
+    for (long[] set : sets) {
+      System.arraycopy(set, 0, elements, offset, set.length);
+      offset += set.length;
+    }
+    pool.submit(() -> Arrays.parallelSort(elements)).join();
+    int sharedCount = 0;
+    int[] frequencies = new int[16];
+    for (int i = 0, run; i < total; i += run) {
+      run = 1;
+      while (i + run < total && elements[i + run] == elements[i]) {
+        run++;
+      }
+      if (run > 1) {
+        if (sharedCount == frequencies.length) {
+          frequencies = Arrays.copyOf(frequencies, sharedCount * 2);
+        }
+        elements[sharedCount] = elements[i];
+        frequencies[sharedCount++] = run;
+      }
+    }
+    long[] byFrequency = new long[sharedCount];
+    for (int i = 0; i < sharedCount; i++) {
+      byFrequency[i] = (long) frequencies[i] << 32 | i;
+    }
+    Arrays.sort(byFrequency);
+    int capacity = Integer.highestOneBit(Math.max(1, sharedCount)) << 2;
+    long[] keys = new long[capacity];
+    int[] ranks = new int[capacity];
+    for (int rank = 0; rank < sharedCount; rank++) {
+      long element = elements[(int) byFrequency[rank]];
+      int slot = slot(element, capacity);
+      while (ranks[slot] != 0) {
+        slot = (slot + 1) & (capacity - 1);
+      }
+      keys[slot] = element;
+      ranks[slot] = rank + 1;
+    }
+    int[][] shared = new int[sets.length][];
+    pool.invoke(new Range(0, sets.length, (from, to) -> {
+      int[] buffer = new int[16];
+      for (int s = from; s < to; s++) {
+        int count = 0;
+        for (long element : sets[s]) {
+          int slot = slot(element, capacity);
+          while (ranks[slot] != 0 && keys[slot] != element) {
+            slot = (slot + 1) & (capacity - 1);
+          }
+          if (ranks[slot] != 0) {
+            if (count == buffer.length) {
+              buffer = Arrays.copyOf(buffer, count * 2);
+            }
+            buffer[count++] = ranks[slot] - 1;
+          }
+        }
+        int[] set = Arrays.copyOf(buffer, count);
+        Arrays.sort(set);
+        shared[s] = set;
+      }
+    }));
+    return shared;
+  }
+
+  /**
+   * Gets the slot of an element in the open addressing table of the shared elements. The table
+   * is at most half full, so looking up an element of a single set, the common case, mostly
+   * ends at the first slot.
+   */
+  private static int slot(long element, int capacity) {
+    long mixed = element * 0x9e3779b97f4a7c15L;
+    return (int) (mixed >>> 32) & (capacity - 1);
+  }
+
+  /**
+   * Inverted index of the prefixes of all sets: for every shared element, the positions in size
+   * order of the sets whose prefix contains it, in ascending order.
+   */
+  private static final class PrefixIndex {
+
+    private final int[] offsets;
+    private final int[] positions;
+
+    PrefixIndex(int[][] shared, int[] order, int[] sizes, double threshold) {
+      int elementCount = 0;
+      for (int[] set : shared) {
+        if (set.length > 0) {
+          elementCount = Math.max(elementCount, set[set.length - 1] + 1);
+        }
+      }
+      offsets = new int[elementCount + 1];
+      for (int position = 0; position < order.length; position++) {
+        int[] set = shared[order[position]];
+        for (int i = 0; i < sharedPrefixLength(sizes[position], set.length, threshold); i++) {
+          offsets[set[i] + 1]++;
+        }
+      }
+      for (int element = 0; element < elementCount; element++) {
+        offsets[element + 1] += offsets[element];
+      }
+      positions = new int[offsets[elementCount]];
+      int[] next = Arrays.copyOf(offsets, elementCount);
+      for (int position = 0; position < order.length; position++) {
+        int[] set = shared[order[position]];
+        for (int i = 0; i < sharedPrefixLength(sizes[position], set.length, threshold); i++) {
+          positions[next[set[i]]++] = position;
+        }
+      }
+    }
+  }
+
+  /**
+   * Compares the sets at given positions with the smaller ones. Keeps the candidates of one set
+   * at a time, so every worker needs one.
+   */
+  private static final class Probe {
+
+    private final int[][] shared;
+    private final int[] order;
+    private final int[] sizes;
+    private final PrefixIndex index;
+    private final double threshold;
+    private final PairConsumer consumer;
+    private final boolean[] seen;
+    private final int[] candidates;
+
+    Probe(int[][] shared, int[] order, int[] sizes, PrefixIndex index, double threshold, PairConsumer consumer) {
+      this.shared = shared;
+      this.order = order;
+      this.sizes = sizes;
+      this.index = index;
+      this.threshold = threshold;
+      this.consumer = consumer;
+      this.seen = new boolean[order.length];
+      this.candidates = new int[order.length];
+    }
+
+    void probe(int position) {
+      int[] set = shared[order[position]];
+      int size = sizes[position];
+      int prefix = sharedPrefixLength(size, set.length, threshold);
+      int smallest = lowerBound(sizes, 0, position, minOverlap(threshold, size));
+      int candidateCount = 0;
+      for (int i = 0; i < prefix; i++) {
+        int from = index.offsets[set[i]];
+        int to = index.offsets[set[i] + 1];
+        for (int p = lowerBound(index.positions, from, to, smallest); p < to; p++) {
+          int other = index.positions[p];
+          if (other >= position) {
+            break;
+          }
+          if (!seen[other]) {
+            seen[other] = true;
+            candidates[candidateCount++] = other;
+          }
+        }
+      }
+      for (int c = 0; c < candidateCount; c++) {
+        int other = candidates[c];
+        seen[other] = false;
+        int otherSize = sizes[other];
+        int required = (int) Math.ceil(threshold / (1 + threshold) * (size + otherSize) - EPSILON);
+        int overlap = overlap(set, shared[order[other]], required);
+        if (overlap >= required) {
+          double similarity = (double) overlap / (size + otherSize - overlap);
+          if (similarity >= threshold - EPSILON) {
+            consumer.accept(order[position], order[other], similarity);
+          }
+        }
+      }
+    }
+
+    /**
+     * Counts the elements of two sorted sets in common, giving up once the rest cannot reach
+     * the required overlap.
+     */
+    private static int overlap(int[] a, int[] b, int required) {
+      int i = 0;
+      int j = 0;
+      int overlap = 0;
+      while (i < a.length && j < b.length) {
+        if (overlap + Math.min(a.length - i, b.length - j) < required) {
+          return overlap;
+        }
+        if (a[i] == b[j]) {
+          overlap++;
+          i++;
+          j++;
+        } else if (a[i] < b[j]) {
+          i++;
+        } else {
+          j++;
+        }
+      }
+      return overlap;
+    }
+
+    private static int lowerBound(int[] values, int from, int to, int value) {
+      while (from < to) {
+        int middle = (from + to) >>> 1;
+        if (values[middle] < value) {
+          from = middle + 1;
+        } else {
+          to = middle;
+        }
+      }
+      return from;
+    }
+  }
+
+  /**
+   * Work on a range of indices.
+   */
+  @FunctionalInterface
+  private interface RangeBody {
+    void run(int from, int to);
+  }
+
+  /**
+   * Splits a range of indices in halves down to {@value #LEAF_SIZE} indices, so idle workers
+   * steal what is left of the busy ones.
+   */
+  private static final class Range extends RecursiveAction {
+
+    private final int from;
+    private final int to;
+    private final RangeBody body;
+
+    Range(int from, int to, RangeBody body) {
+      this.from = from;
+      this.to = to;
+      this.body = body;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= LEAF_SIZE) {
+        body.run(from, to);
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(new Range(from, middle, body), new Range(middle, to, body));
+    }
+  }
+}
@@ -0,0 +1,177 @@
+package ru.hse.antiplag.fileanalysisservice.similarity;
+
+import ru.hse.antiplag.fileanalysisservice.dto.MatchedPassage;
+import ru.hse.antiplag.fileanalysisservice.dto.PassageMatch;
+import ru.hse.antiplag.fileanalysisservice.text.WordTokens;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds the maximal common passages of two texts in linear time. The words of both texts,
+ * numbered by their hashes, are joined by a separator, and the suffix array of the result with
+ * its LCP array is built. In suffix order, the longest match of a suffix of the first text in
+ * the second one is with the nearest suffix of the second text above or below it, the smallest
+ * LCP on the way, so one scan in each direction gives the longest match at every word of the
+ * first text.
+ *
+ * <p>A match is reported where it is not the tail of the match one word before, so it can be
+ * extended neither to the right nor to the left: every maximal common run of at least the
+ * minimum number of words is reported once for every place it occurs in the first text, with
+ * one of its occurrences in the second text. Memory is a few integers per word of both texts.
+ */
+public final class CommonSubstrings {
+
+  private static final int SEPARATOR = 1;
+  private static final int FIRST_WORD = 2;
+
+  private CommonSubstrings() {
+  }
+
+  /**
+   * Finds the maximal common passages of two texts.
+   *
+   * @param text        the words of the compared text
+   * @param otherFileId the ID of the file of the other text
+   * @param other       the words of the other text
+   * @param minWords    the number of words a common passage has at least
+   * @param limit       the number of passages returned at most, the longest ones are kept
+   * @return the common passages in the order of the compared text, with their offsets in both
+   *         original texts
+   */
+  public static PassageMatch find(WordTokens text, String otherFileId, WordTokens other, int minWords, int limit) {
+    int length = text.size();
+    int otherLength = other.size();
+    if (length < minWords || otherLength < minWords) {
+      return new PassageMatch(otherFileId, 0, new ArrayList<>());
+    }
+    int n = length + 1 + otherLength;
+    int[] s = new int[n];
+    WordNumbers numbers = new WordNumbers();
+    for (int i = 0; i < length; i++) {
+      s[i] = numbers.numberOf(text.getHash(i));
+    }
+    s[length] = SEPARATOR;
+    for (int i = 0; i < otherLength; i++) {
+      s[length + 1 + i] = numbers.numberOf(other.getHash(i));
+    }
+    int[] sa = SuffixArray.build(s, numbers.upper());
+    int[] lcp = SuffixArray.lcp(s, sa);
+    int[] lengths = new int[length];
+    int[] partners = new int[length];
+    int running = 0;
+    int partner = -1;
+    for (int k = 0; k < n; k++) {
+      if (k > 0) {
+        running = Math.min(running, lcp[k - 1]);
+      }
+      int suffix = sa[k];
+      if (suffix > length) {
+        running = Integer.MAX_VALUE;
+        partner = suffix - length - 1;
+      } else if (suffix < length && partner >= 0) {
+        lengths[suffix] = running;
+        partners[suffix] = partner;
+      }
+    }
+    running = 0;
+    partner = -1;
+    for (int k = n - 1; k >= 0; k--) {
+      if (k < n - 1) {
+        running = Math.min(running, lcp[k]);
+      }
+      int suffix = sa[k];
+      if (suffix > length) {
+        running = Integer.MAX_VALUE;
+        partner = suffix - length - 1;
+      } else if (suffix < length && partner >= 0 && running > lengths[suffix]) {
+        lengths[suffix] = running;
+        partners[suffix] = partner;
+      }
+    }
+    return toPassageMatch(text, otherFileId, other, lengths, partners, minWords, limit);
+  }
+
+  private static PassageMatch toPassageMatch(WordTokens text, String otherFileId, WordTokens other,
+                                             int[] lengths, int[] partners, int minWords, int limit) {
+    long[] found = new long[16];
+    int count = 0;
+    for (int i = 0; i < lengths.length; i++) {
+      if (lengths[i] >= minWords && (i == 0 || lengths[i - 1] <= lengths[i])) {
+        if (count == found.length) {
+          found = Arrays.copyOf(found, count * 2);
+        }
+        found[count++] = (long) (Integer.MAX_VALUE - lengths[i]) << 32 | i;
+      }
+    }
+    if (count > limit) {
+      Arrays.sort(found, 0, count);
+      count = limit;
+    }
+    int[] starts = new int[count];
+    for (int i = 0; i < count; i++) {
+      starts[i] = (int) found[i];
+    }
+    Arrays.sort(starts);
+    List<MatchedPassage> passages = new ArrayList<>(count);
+    for (int start : starts) {
+      int last = start + lengths[start] - 1;
+      int otherStart = partners[start];
+      int otherLast = otherStart + lengths[start] - 1;
+      passages.add(new MatchedPassage(text.getStart(start), text.getEnd(last),
+          other.getStart(otherStart), other.getEnd(otherLast)));
+    }
+    return new PassageMatch(otherFileId, PassageCollector.coveredCharacters(passages), passages);
+  }
+
+  /**
+   * Numbers the distinct word hashes from {@link #FIRST_WORD} in the order they are seen, in an
+   * open addressing table.
+   */
+  private static final class WordNumbers {
+
+    private long[] hashes = new long[1024];
+    private int[] numbers = new int[1024];
+    private int count;
+
+    int numberOf(long hash) {
+      int mask = hashes.length - 1;
+      int slot = (int) (hash ^ (hash >>> 32)) & mask;
+      while (numbers[slot] != 0) {
+        if (hashes[slot] == hash) {
+          return numbers[slot];
+        }
+        slot = (slot + 1) & mask;
+      }
+      hashes[slot] = hash;
+      numbers[slot] = FIRST_WORD + count++;
+      if (count * 2 > hashes.length) {
+        grow();
+      }
+      return FIRST_WORD + count - 1;
+    }
+
+    int upper() {
+      return FIRST_WORD + count - 1;
+    }
+
+    private void grow() {
+      long[] oldHashes = hashes;
+      int[] oldNumbers = numbers;
+      hashes = new long[oldHashes.length * 2];
+      numbers = new int[hashes.length];
+      int mask = hashes.length - 1;
+      for (int i = 0; i < oldHashes.length; i++) {
+        if (oldNumbers[i] != 0) {
+          int slot = (int) (oldHashes[i] ^ (oldHashes[i] >>> 32)) & mask;
+          while (numbers[slot] != 0) {
+            slot = (slot + 1) & mask;
+          }
+          hashes[slot] = oldHashes[i];
+          numbers[slot] = oldNumbers[i];
+        }
+      }
+    }
+  }
+}
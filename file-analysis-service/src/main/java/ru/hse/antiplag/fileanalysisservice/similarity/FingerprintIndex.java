@@ -0,0 +1,275 @@
+package ru.hse.antiplag.fileanalysisservice.similarity;
+
+import ru.hse.antiplag.fileanalysisservice.dto.PassageMatch;
+import ru.hse.antiplag.fileanalysisservice.text.Fingerprints;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index from winnowing fingerprints to the files and offsets where they occur. A query
+ * looks up every fingerprint of the compared file and walks the postings of that fingerprint
+ * only, so it costs time in proportion to the fingerprints of the compared file and their
+ * matches, whatever the size of the corpus. Matching fingerprints whose k-grams overlap in both
+ * files are merged into passages.
+ *
+ * <p>Fingerprints are kept in an open addressing table from the hash to the head of a chain of
+ * postings, all in primitive arrays. Fingerprints found in more files than the query allows are
+ * skipped as boilerplate, as the text of an assignment is. Files put again with other
+ * fingerprints leave their old postings behind, marked as removed. {@link SegmentedFingerprintIndex}
+ * uses it as the buffer of recent files that is flushed to a segment on disk.
+ */
+public class FingerprintIndex {
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<String, Integer> documentsByFileId = new HashMap<>();
+  private String[] fileIds = new String[INITIAL_CAPACITY];
+  private long[] digests = new long[INITIAL_CAPACITY];
+  private int documentCount;
+  private long[] keys = new long[INITIAL_CAPACITY];
+  private int[] heads = new int[INITIAL_CAPACITY];
+  private int[] counts = new int[INITIAL_CAPACITY];
+  private int keyCount;
+  private int[] postingDocuments = new int[INITIAL_CAPACITY];
+  private int[] postingStarts = new int[INITIAL_CAPACITY];
+  private int[] postingEnds = new int[INITIAL_CAPACITY];
+  private int[] postingNext = new int[INITIAL_CAPACITY];
+  private int postingCount;
+
+  /**
+   * Puts the fingerprints of a file, replacing the ones it had.
+   *
+   * @param fileId       the ID of the file
+   * @param fingerprints the fingerprints of the file
+   * @return true if the index changed, false if the file was there with the same fingerprints
+   */
+  public boolean put(String fileId, Fingerprints fingerprints) {
+    long digest = fingerprints.digest();
+    lock.writeLock().lock();
+    try {
+      Integer existing = documentsByFileId.get(fileId);
+      if (existing != null) {
+        if (digests[existing] == digest) {
+          return false;
+        }
+        fileIds[existing] = null;
+      }
+      int document = documentCount++;
+      if (document == fileIds.length) {
+        fileIds = Arrays.copyOf(fileIds, document * 2);
+        digests = Arrays.copyOf(digests, document * 2);
+      }
+      fileIds[document] = fileId;
+      digests[document] = digest;
+      documentsByFileId.put(fileId, document);
+      for (int i = 0; i < fingerprints.size(); i++) {
+        addPosting(fingerprints.getHash(i), document, fingerprints.getStart(i), fingerprints.getEnd(i));
+      }
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Finds the passages of a file that occur in other files.
+   *
+   * @param fingerprints   the fingerprints of the compared file
+   * @param excludedFileId the ID of a file left out of the result, may be null
+   * @param maxFiles       the number of files a fingerprint may occur in at most to be used
+   * @param limit          the number of files returned at most
+   * @return the matching files, the ones with the most matched characters first
+   */
+  public List<PassageMatch> query(Fingerprints fingerprints, String excludedFileId, int maxFiles, int limit) {
+    PassageCollector matches = new PassageCollector();
+    lock.readLock().lock();
+    try {
+      for (int i = 0; i < fingerprints.size(); i++) {
+        long hash = fingerprints.getHash(i);
+        if (fileCount(hash) > maxFiles) {
+          continue;
+        }
+        int start = fingerprints.getStart(i);
+        int end = fingerprints.getEnd(i);
+        forEachPosting(hash, (fileId, otherStart, otherEnd) -> {
+          if (!fileId.equals(excludedFileId)) {
+            matches.add(fileId, start, end, otherStart, otherEnd);
+          }
+        });
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    return matches.toPassageMatches(limit);
+  }
+
+  /**
+   * Gets the number of files in the index.
+   *
+   * @return number of files
+   */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return documentsByFileId.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the number of postings, including the ones of removed files.
+   *
+   * @return number of postings
+   */
+  int postingCount() {
+    lock.readLock().lock();
+    try {
+      return postingCount;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the number of files a fingerprint was put for, including removed ones.
+   */
+  int fileCount(long hash) {
+    lock.readLock().lock();
+    try {
+      int slot = findSlot(key(hash));
+      return keys[slot] == 0 ? 0 : counts[slot];
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Visits the postings of a fingerprint in the files that were not removed.
+   */
+  void forEachPosting(long hash, PostingVisitor visitor) {
+    lock.readLock().lock();
+    try {
+      int slot = findSlot(key(hash));
+      if (keys[slot] == 0) {
+        return;
+      }
+      for (int posting = heads[slot]; posting >= 0; posting = postingNext[posting]) {
+        String fileId = fileIds[postingDocuments[posting]];
+        if (fileId != null) {
+          visitor.visit(fileId, postingStarts[posting], postingEnds[posting]);
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Writes the files that were not removed, with their postings, to a new segment.
+   */
+  void writeTo(SegmentWriter writer) throws IOException {
+    lock.readLock().lock();
+    try {
+      int[] documents = new int[documentCount];
+      for (int document = 0; document < documentCount; document++) {
+        documents[document] = fileIds[document] == null ? -1 : writer.addDocument(fileIds[document], digests[document]);
+      }
+      long[] sortedKeys = new long[keyCount];
+      int next = 0;
+      for (int slot = 0; slot < keys.length; slot++) {
+        if (keys[slot] != 0) {
+          sortedKeys[next++] = keys[slot] ^ Long.MIN_VALUE;
+        }
+      }
+      Arrays.sort(sortedKeys);
+      PostingList postings = new PostingList();
+      for (long sortedKey : sortedKeys) {
+        long key = sortedKey ^ Long.MIN_VALUE;
+        postings.clear();
+        for (int posting = heads[findSlot(key)]; posting >= 0; posting = postingNext[posting]) {
+          int document = documents[postingDocuments[posting]];
+          if (document >= 0) {
+            postings.add(document, postingStarts[posting], postingEnds[posting]);
+          }
+        }
+        if (postings.size() > 0) {
+          postings.reverse();
+          writer.addKey(key, postings);
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Maps a fingerprint hash to its key in the tables, keeping 0 free to mark empty slots.
+   */
+  static long key(long hash) {
+    return hash == 0 ? 1 : hash;
+  }
+
+  private int findSlot(long key) {
+    int mask = keys.length - 1;
+    int slot = (int) (key ^ (key >>> 32)) & mask;
+    while (keys[slot] != 0 && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void addPosting(long hash, int document, int start, int end) {
+    if (postingCount == postingDocuments.length) {
+      int capacity = postingCount * 2;
+      postingDocuments = Arrays.copyOf(postingDocuments, capacity);
+      postingStarts = Arrays.copyOf(postingStarts, capacity);
+      postingEnds = Arrays.copyOf(postingEnds, capacity);
+      postingNext = Arrays.copyOf(postingNext, capacity);
+    }
+    long key = key(hash);
+    int slot = findSlot(key);
+    int posting = postingCount++;
+    postingDocuments[posting] = document;
+    postingStarts[posting] = start;
+    postingEnds[posting] = end;
+    if (keys[slot] == 0) {
+      keys[slot] = key;
+      heads[slot] = -1;
+      keyCount++;
+    }
+    postingNext[posting] = heads[slot];
+    heads[slot] = posting;
+    if (postingNext[posting] < 0 || postingDocuments[postingNext[posting]] != document) {
+      counts[slot]++;
+    }
+    if (keyCount * 2 > keys.length) {
+      growKeys();
+    }
+  }
+
+  private void growKeys() {
+    long[] oldKeys = keys;
+    int[] oldHeads = heads;
+    int[] oldCounts = counts;
+    keys = new long[oldKeys.length * 2];
+    heads = new int[keys.length];
+    counts = new int[keys.length];
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] == 0) {
+        continue;
+      }
+      int slot = findSlot(oldKeys[i]);
+      keys[slot] = oldKeys[i];
+      heads[slot] = oldHeads[i];
+      counts[slot] = oldCounts[i];
+    }
+  }
+}
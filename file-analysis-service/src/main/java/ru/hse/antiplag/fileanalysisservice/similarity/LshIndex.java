@@ -0,0 +1,264 @@
+package ru.hse.antiplag.fileanalysisservice.similarity;
+
+import ru.hse.antiplag.fileanalysisservice.dto.SimilarFile;
+import ru.hse.antiplag.fileanalysisservice.text.MinHash;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Banded locality-sensitive hashing index of MinHash signatures. A signature is cut into
+ * {@code bands} bands of {@code MinHash.SIZE / bands} rows, and two files become candidates
+ * when all rows of at least one band agree, which for Jaccard similarity {@code s} happens with
+ * probability {@code 1 - (1 - s^rows)^bands}. A query therefore looks at one bucket per band
+ * and the files in it, never at the whole corpus, and the candidates are then scored by their
+ * signatures.
+ *
+ * <p>Everything is kept in primitive arrays: the buckets of a band are an open addressing
+ * table from the 32-bit hash of the band to the head of a chain of postings, and only the low
+ * 16 bits of every signature value are kept for scoring, which changes the estimate by less
+ * than 0.0001. A file takes about {@code 2 * MinHash.SIZE + 20 * bands} bytes plus its ID.
+ * Files put again with another signature leave their old postings behind, marked as removed.
+ */
+public class LshIndex {
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final int bands;
+  private final int rows;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<String, Integer> documentsByFileId = new HashMap<>();
+  private String[] fileIds = new String[INITIAL_CAPACITY];
+  private short[] sketches = new short[INITIAL_CAPACITY * MinHash.SIZE];
+  private int documentCount;
+  private final int[][] bucketKeys;
+  private final int[][] bucketHeads;
+  private final int[] bucketCounts;
+  private int[] postingDocuments = new int[INITIAL_CAPACITY];
+  private int[] postingNext = new int[INITIAL_CAPACITY];
+  private int postingCount;
+
+  /**
+   * Constructor for LshIndex.
+   *
+   * @param bands number of bands a signature is cut into, a divisor of {@code MinHash.SIZE}
+   * @throws IllegalArgumentException if the bands do not divide the signature evenly
+   */
+  public LshIndex(int bands) {
+    if (bands <= 0 || MinHash.SIZE % bands != 0) {
+      throw new IllegalArgumentException("The number of bands must divide " + MinHash.SIZE + ", got " + bands);
+    }
+    this.bands = bands;
+    this.rows = MinHash.SIZE / bands;
+    this.bucketKeys = new int[bands][INITIAL_CAPACITY];
+    this.bucketHeads = new int[bands][INITIAL_CAPACITY];
+    this.bucketCounts = new int[bands];
+  }
+
+  /**
+   * Puts the signature of a file, replacing the one it had.
+   *
+   * @param fileId    the ID of the file
+   * @param signature the MinHash signature of the file
+   * @return true if the index changed, false if the file was there with the same signature
+   */
+  public boolean put(String fileId, int[] signature) {
+    lock.writeLock().lock();
+    try {
+      Integer existing = documentsByFileId.get(fileId);
+      if (existing != null) {
+        if (sketchEquals(existing, signature)) {
+          return false;
+        }
+        fileIds[existing] = null;
+      }
+      int document = documentCount++;
+      if (document == fileIds.length) {
+        fileIds = Arrays.copyOf(fileIds, document * 2);
+        sketches = Arrays.copyOf(sketches, document * 2 * MinHash.SIZE);
+      }
+      fileIds[document] = fileId;
+      for (int i = 0; i < MinHash.SIZE; i++) {
+        sketches[document * MinHash.SIZE + i] = (short) signature[i];
+      }
+      documentsByFileId.put(fileId, document);
+      if (postingCount + bands > postingDocuments.length) {
+        postingDocuments = Arrays.copyOf(postingDocuments, postingDocuments.length * 2);
+        postingNext = Arrays.copyOf(postingNext, postingNext.length * 2);
+      }
+      for (int band = 0; band < bands; band++) {
+        addPosting(band, bandKey(signature, band), document);
+      }
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Finds the files whose estimated similarity to a signature reaches the threshold. Files
+   * below about {@code (1 / bands)^(1 / rows)} are likely to be missed, as they seldom share a
+   * band.
+   *
+   * @param signature      the MinHash signature to compare with
+   * @param threshold      the smallest similarity returned, from 0 to 1
+   * @param excludedFileId the ID of a file left out of the result, may be null
+   * @param limit          the number of files returned at most
+   * @return the similar files, the most similar first
+   */
+  public List<SimilarFile> query(int[] signature, double threshold, String excludedFileId, int limit) {
+    lock.readLock().lock();
+    try {
+      int[] candidates = new int[16];
+      int candidateCount = 0;
+      for (int band = 0; band < bands; band++) {
+        int slot = findBucket(band, bandKey(signature, band));
+        if (slot < 0) {
+          continue;
+        }
+        for (int posting = bucketHeads[band][slot]; posting >= 0; posting = postingNext[posting]) {
+          if (candidateCount == candidates.length) {
+            candidates = Arrays.copyOf(candidates, candidateCount * 2);
+          }
+          candidates[candidateCount++] = postingDocuments[posting];
+        }
+      }
+      Arrays.sort(candidates, 0, candidateCount);
+      List<SimilarFile> similar = new ArrayList<>();
+      for (int i = 0; i < candidateCount; i++) {
+        int document = candidates[i];
+        if (i > 0 && document == candidates[i - 1]) {
+          continue;
+        }
+        String fileId = fileIds[document];
+        if (fileId == null || fileId.equals(excludedFileId)) {
+          continue;
+        }
+        double similarity = similarity(document, signature);
+        if (similarity >= threshold) {
+          similar.add(new SimilarFile(fileId, similarity));
+        }
+      }
+      similar.sort(Comparator.comparingDouble(SimilarFile::getSimilarity).reversed()
+          .thenComparing(SimilarFile::getFileId));
+      return similar.size() > limit ? new ArrayList<>(similar.subList(0, limit)) : similar;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the number of files in the index.
+   *
+   * @return number of files
+   */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return documentsByFileId.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private double similarity(int document, int[] signature) {
+    int offset = document * MinHash.SIZE;
+    int equal = 0;
+    for (int i = 0; i < MinHash.SIZE; i++) {
+      if (sketches[offset + i] == (short) signature[i]) {
+        equal++;
+      }
+    }
+    return (double) equal / MinHash.SIZE;
+  }
+
+  private boolean sketchEquals(int document, int[] signature) {
+    int offset = document * MinHash.SIZE;
+    for (int i = 0; i < MinHash.SIZE; i++) {
+      if (sketches[offset + i] != (short) signature[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Hashes the rows of a band, keeping 0 free to mark empty buckets. Two bands that differ may
+   * get the same key; that only adds a candidate, which is then scored like any other.
+   */
+  private int bandKey(int[] signature, int band) {
+    long hash = band;
+    for (int i = band * rows; i < (band + 1) * rows; i++) {
+      hash = (hash ^ (signature[i] & 0xffffffffL)) * 0x9e3779b97f4a7c15L;
+      hash ^= hash >>> 29;
+    }
+    int key = (int) (hash ^ (hash >>> 32));
+    return key == 0 ? 1 : key;
+  }
+
+  private int findBucket(int band, int key) {
+    int[] keys = bucketKeys[band];
+    int mask = keys.length - 1;
+    int slot = key & mask;
+    while (keys[slot] != 0) {
+      if (keys[slot] == key) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  private void addPosting(int band, int key, int document) {
+    int[] keys = bucketKeys[band];
+    int mask = keys.length - 1;
+    int slot = key & mask;
+    while (keys[slot] != 0 && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    int posting = postingCount++;
+    postingDocuments[posting] = document;
+    if (keys[slot] == 0) {
+      keys[slot] = key;
+      postingNext[posting] = -1;
+      bucketHeads[band][slot] = posting;
+      if (++bucketCounts[band] * 4 > keys.length * 3) {
+        growBuckets(band);
+      }
+    } else {
+      postingNext[posting] = bucketHeads[band][slot];
+      bucketHeads[band][slot] = posting;
+    }
+  }
+
+  /**
+   * Doubles the bucket table of a band. Tables are filled up to three quarters rather than half,
+   * as they take most of the memory of the index.
+   */
+  private void growBuckets(int band) {
+    int[] oldKeys = bucketKeys[band];
+    int[] oldHeads = bucketHeads[band];
+    int[] keys = new int[oldKeys.length * 2];
+    int[] heads = new int[keys.length];
+    int mask = keys.length - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] == 0) {
+        continue;
+      }
+      int slot = oldKeys[i] & mask;
+      while (keys[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = oldKeys[i];
+      heads[slot] = oldHeads[i];
+    }
+    bucketKeys[band] = keys;
+    bucketHeads[band] = heads;
+  }
+}
@@ -0,0 +1,118 @@
+package ru.hse.antiplag.fileanalysisservice.similarity;
+
+import ru.hse.antiplag.fileanalysisservice.dto.MatchedPassage;
+import ru.hse.antiplag.fileanalysisservice.dto.PassageMatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matching fingerprints collected by a query, merged into passages per file at the end. Matches
+ * must be added in the order of the compared file; the sort by file keeps that order, so a
+ * passage can be closed as soon as a match starts after it.
+ */
+final class PassageCollector {
+
+  private final Map<String, Integer> documents = new HashMap<>();
+  private final List<String> fileIds = new ArrayList<>();
+  private int[] matchDocuments = new int[64];
+  private int[] starts = new int[64];
+  private int[] ends = new int[64];
+  private int[] otherStarts = new int[64];
+  private int[] otherEnds = new int[64];
+  private int size;
+
+  /**
+   * Adds a fingerprint of the compared file found in another file.
+   */
+  void add(String fileId, int start, int end, int otherStart, int otherEnd) {
+    Integer document = documents.get(fileId);
+    if (document == null) {
+      document = fileIds.size();
+      documents.put(fileId, document);
+      fileIds.add(fileId);
+    }
+    if (size == matchDocuments.length) {
+      matchDocuments = Arrays.copyOf(matchDocuments, size * 2);
+      starts = Arrays.copyOf(starts, size * 2);
+      ends = Arrays.copyOf(ends, size * 2);
+      otherStarts = Arrays.copyOf(otherStarts, size * 2);
+      otherEnds = Arrays.copyOf(otherEnds, size * 2);
+    }
+    matchDocuments[size] = document;
+    starts[size] = start;
+    ends[size] = end;
+    otherStarts[size] = otherStart;
+    otherEnds[size] = otherEnd;
+    size++;
+  }
+
+  /**
+   * Merges the matches into passages.
+   *
+   * @param limit the number of files returned at most
+   * @return the matching files, the ones with the most matched characters first
+   */
+  List<PassageMatch> toPassageMatches(int limit) {
+    long[] order = new long[size];
+    for (int i = 0; i < size; i++) {
+      order[i] = (long) matchDocuments[i] << 32 | i;
+    }
+    Arrays.sort(order);
+    List<PassageMatch> result = new ArrayList<>();
+    int next = 0;
+    while (next < size) {
+      int document = (int) (order[next] >>> 32);
+      List<MatchedPassage> passages = new ArrayList<>();
+      List<MatchedPassage> open = new ArrayList<>();
+      for (; next < size && (int) (order[next] >>> 32) == document; next++) {
+        merge((int) order[next], open, passages);
+      }
+      passages.addAll(open);
+      passages.sort(Comparator.comparingInt(MatchedPassage::getStart).thenComparingInt(MatchedPassage::getOtherStart));
+      result.add(new PassageMatch(fileIds.get(document), coveredCharacters(passages), passages));
+    }
+    result.sort(Comparator.comparingInt(PassageMatch::getMatchedCharacters).reversed()
+        .thenComparing(PassageMatch::getFileId));
+    return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+  }
+
+  private void merge(int match, List<MatchedPassage> open, List<MatchedPassage> closed) {
+    MatchedPassage extended = null;
+    for (int i = open.size() - 1; i >= 0; i--) {
+      MatchedPassage passage = open.get(i);
+      if (passage.getEnd() < starts[match]) {
+        closed.add(open.remove(i));
+      } else if (extended == null && otherStarts[match] <= passage.getOtherEnd()
+          && otherEnds[match] >= passage.getOtherStart()) {
+        passage.setEnd(Math.max(passage.getEnd(), ends[match]));
+        passage.setOtherStart(Math.min(passage.getOtherStart(), otherStarts[match]));
+        passage.setOtherEnd(Math.max(passage.getOtherEnd(), otherEnds[match]));
+        extended = passage;
+      }
+    }
+    if (extended == null) {
+      open.add(new MatchedPassage(starts[match], ends[match], otherStarts[match], otherEnds[match]));
+    }
+  }
+
+  /**
+   * Counts the characters of the compared file covered by passages sorted by start.
+   */
+  static int coveredCharacters(List<MatchedPassage> passages) {
+    int covered = 0;
+    int coveredUntil = 0;
+    for (MatchedPassage passage : passages) {
+      int from = Math.max(passage.getStart(), coveredUntil);
+      if (passage.getEnd() > from) {
+        covered += passage.getEnd() - from;
+        coveredUntil = passage.getEnd();
+      }
+    }
+    return covered;
+  }
+}
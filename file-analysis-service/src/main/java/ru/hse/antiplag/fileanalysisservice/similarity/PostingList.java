@@ -0,0 +1,64 @@
+package ru.hse.antiplag.fileanalysisservice.similarity;
+
+import java.util.Arrays;
+
+/**
+ * Reusable list of the postings of one fingerprint: the document, in the numbering of a
+ * segment, and the offsets of the k-gram in it.
+ */
+final class PostingList {
+
+  private int[] documents = new int[16];
+  private int[] starts = new int[16];
+  private int[] ends = new int[16];
+  private int size;
+
+  void add(int document, int start, int end) {
+    if (size == documents.length) {
+      documents = Arrays.copyOf(documents, size * 2);
+      starts = Arrays.copyOf(starts, size * 2);
+      ends = Arrays.copyOf(ends, size * 2);
+    }
+    documents[size] = document;
+    starts[size] = start;
+    ends[size] = end;
+    size++;
+  }
+
+  /**
+   * Reverses the postings, for chains that were built newest first.
+   */
+  void reverse() {
+    for (int i = 0, j = size - 1; i < j; i++, j--) {
+      swap(documents, i, j);
+      swap(starts, i, j);
+      swap(ends, i, j);
+    }
+  }
+
+  void clear() {
+    size = 0;
+  }
+
+  int size() {
+    return size;
+  }
+
+  int getDocument(int index) {
+    return documents[index];
+  }
+
+  int getStart(int index) {
+    return starts[index];
+  }
+
+  int getEnd(int index) {
+    return ends[index];
+  }
+
+  private static void swap(int[] values, int i, int j) {
+    int value = values[i];
+    values[i] = values[j];
+    values[j] = value;
+  }
+}
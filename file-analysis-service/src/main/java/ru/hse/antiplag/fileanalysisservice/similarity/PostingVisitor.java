@@ -0,0 +1,17 @@
+package ru.hse.antiplag.fileanalysisservice.similarity;
+
+/**
+ * Visitor of the postings of a fingerprint.
+ */
+@FunctionalInterface
+interface PostingVisitor {
+
+  /**
+   * Visits an occurrence of the fingerprint.
+   *
+   * @param fileId the ID of the file the fingerprint occurs in
+   * @param start  offset of the first character of its k-gram in the file
+   * @param end    offset after the last character of its k-gram in the file
+   */
+  void visit(String fileId, int start, int end);
+}
@@ -0,0 +1,305 @@
+package ru.hse.antiplag.fileanalysisservice.similarity;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * Immutable segment of the fingerprint index on disk, read through a memory mapping, so its
+ * postings stay out of the heap and are paged in by the operating system as queries touch them.
+ * Opening a segment reads its header and document table only.
+ *
+ * <p>Keys are stored in ascending unsigned order, each followed by its posting list. Every
+ * {@value #BLOCK_SIZE}th key starts a block and is listed in the sparse directory with its
+ * offset, so a lookup is a binary search of the directory and a scan of one block. Within a
+ * block a key is the distance from the previous one. A posting list holds the number of
+ * documents and postings, then for every posting the distance from the previous document, the
+ * start, as the distance from the previous start in the same document, and the length of the
+ * k-gram, all as unsigned varints:
+ *
+ * <pre>
+ * header(64) replacedIds(8)*
+ * { keyDelta length fileCount postingCount { documentDelta start length }* }*
+ * directory { firstKey(8) offset(8) }*
+ * documents { fileIdLength fileId digest(8) }*
+ * </pre>
+ *
+ * <p>Documents of files put again later are marked as removed in memory; merging drops them.
+ */
+final class Segment {
+
+  static final int MAGIC = 0x46505849;
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 64;
+  static final int BLOCK_SIZE = 32;
+  static final String SUFFIX = ".seg";
+  static final String TEMPORARY_SUFFIX = ".tmp";
+
+  private final Path path;
+  private final MappedByteBuffer buffer;
+  private final long id;
+  private final long sequence;
+  private final long checkpoint;
+  private final long[] replaces;
+  private final int dataStart;
+  private final int directoryOffset;
+  private final int directoryCount;
+  private final String[] fileIds;
+  private final long[] digests;
+  private final BitSet removed;
+
+  private Segment(Path path, MappedByteBuffer buffer) throws IOException {
+    this.path = path;
+    this.buffer = buffer;
+    if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not a fingerprint segment: " + path);
+    }
+    if (buffer.getInt(4) != VERSION) {
+      throw new IOException("Unsupported fingerprint segment version " + buffer.getInt(4) + ": " + path);
+    }
+    this.id = buffer.getLong(8);
+    this.sequence = buffer.getLong(16);
+    this.checkpoint = buffer.getLong(24);
+    this.replaces = new long[buffer.getInt(32)];
+    int documentCount = buffer.getInt(36);
+    this.directoryCount = buffer.getInt(44);
+    this.directoryOffset = (int) buffer.getLong(48);
+    int documentsOffset = (int) buffer.getLong(56);
+    for (int i = 0; i < replaces.length; i++) {
+      replaces[i] = buffer.getLong(HEADER_SIZE + i * 8);
+    }
+    this.dataStart = HEADER_SIZE + replaces.length * 8;
+    this.fileIds = new String[documentCount];
+    this.digests = new long[documentCount];
+    int[] position = {documentsOffset};
+    for (int document = 0; document < documentCount; document++) {
+      byte[] fileId = new byte[readVarint(position)];
+      buffer.get(position[0], fileId);
+      position[0] += fileId.length;
+      fileIds[document] = new String(fileId, StandardCharsets.UTF_8);
+      digests[document] = buffer.getLong(position[0]);
+      position[0] += 8;
+    }
+    this.removed = new BitSet(documentCount);
+  }
+
+  /**
+   * Maps a segment.
+   *
+   * @param path path of the segment
+   * @return the segment
+   * @throws IOException if the file cannot be read or is not a segment
+   */
+  static Segment open(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return new Segment(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    } catch (IndexOutOfBoundsException e) {
+      throw new IOException("Truncated fingerprint segment: " + path, e);
+    }
+  }
+
+  Path getPath() {
+    return path;
+  }
+
+  long getId() {
+    return id;
+  }
+
+  long getSequence() {
+    return sequence;
+  }
+
+  long getCheckpoint() {
+    return checkpoint;
+  }
+
+  long[] getReplaces() {
+    return replaces;
+  }
+
+  long sizeInBytes() {
+    return buffer.capacity();
+  }
+
+  int documentCount() {
+    return fileIds.length;
+  }
+
+  String getFileId(int document) {
+    return fileIds[document];
+  }
+
+  long getDigest(int document) {
+    return digests[document];
+  }
+
+  boolean isRemoved(int document) {
+    return removed.get(document);
+  }
+
+  void remove(int document) {
+    removed.set(document);
+  }
+
+  /**
+   * Finds the posting list of a key.
+   *
+   * @param key the key, as returned by {@link FingerprintIndex#key(long)}
+   * @return offset of the posting list, or -1 if the segment does not have the key
+   */
+  int find(long key) {
+    int low = 0;
+    int high = directoryCount - 1;
+    int block = -1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (Long.compareUnsigned(directoryKey(middle), key) <= 0) {
+        block = middle;
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    if (block < 0) {
+      return -1;
+    }
+    int[] position = {(int) buffer.getLong(directoryOffset + block * 16 + 8)};
+    long current = directoryKey(block);
+    for (int i = 0; i < BLOCK_SIZE && position[0] < directoryOffset; i++) {
+      current += readVarlong(position);
+      int length = readVarint(position);
+      if (current == key) {
+        return position[0];
+      }
+      if (Long.compareUnsigned(current, key) > 0) {
+        return -1;
+      }
+      position[0] += length;
+    }
+    return -1;
+  }
+
+  /**
+   * Gets the number of documents in a posting list, including removed ones.
+   */
+  int fileCount(int postings) {
+    return readVarint(new int[] {postings});
+  }
+
+  /**
+   * Visits the postings of a posting list in the documents that were not removed.
+   */
+  void forEachPosting(int postings, PostingVisitor visitor) {
+    int[] position = {postings};
+    readVarint(position);
+    int count = readVarint(position);
+    int document = 0;
+    int start = 0;
+    for (int i = 0; i < count; i++) {
+      int documentDelta = readVarint(position);
+      document += documentDelta;
+      start = i > 0 && documentDelta == 0 ? start + readVarint(position) : readVarint(position);
+      int end = start + readVarint(position);
+      if (!removed.get(document)) {
+        visitor.visit(fileIds[document], start, end);
+      }
+    }
+  }
+
+  /**
+   * Adds the postings of a posting list to another list, renumbering their documents.
+   *
+   * @param postings  offset of the posting list
+   * @param documents new number of every document, negative for the ones left out
+   * @param into      the list the postings are added to
+   */
+  void readPostings(int postings, int[] documents, PostingList into) {
+    int[] position = {postings};
+    readVarint(position);
+    int count = readVarint(position);
+    int document = 0;
+    int start = 0;
+    for (int i = 0; i < count; i++) {
+      int documentDelta = readVarint(position);
+      document += documentDelta;
+      start = i > 0 && documentDelta == 0 ? start + readVarint(position) : readVarint(position);
+      int end = start + readVarint(position);
+      if (documents[document] >= 0) {
+        into.add(documents[document], start, end);
+      }
+    }
+  }
+
+  /**
+   * Creates a cursor over the keys of the segment in ascending order.
+   */
+  Cursor cursor() {
+    return new Cursor();
+  }
+
+  private long directoryKey(int block) {
+    return buffer.getLong(directoryOffset + block * 16);
+  }
+
+  private int readVarint(int[] position) {
+    return (int) readVarlong(position);
+  }
+
+  private long readVarlong(int[] position) {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = buffer.get(position[0]++);
+      value |= (long) (b & 0x7f) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IllegalStateException("Malformed varint in " + path);
+  }
+
+  /**
+   * Cursor over the keys of a segment, used to merge segments.
+   */
+  final class Cursor {
+
+    private final int[] position = {dataStart};
+    private long key;
+    private int postings;
+    private int index;
+
+    /**
+     * Moves to the next key.
+     *
+     * @return false if there are no more keys
+     */
+    boolean next() {
+      if (position[0] >= directoryOffset) {
+        return false;
+      }
+      long delta = readVarlong(position);
+      key = index % BLOCK_SIZE == 0 ? directoryKey(index / BLOCK_SIZE) : key + delta;
+      int length = readVarint(position);
+      postings = position[0];
+      position[0] += length;
+      index++;
+      return true;
+    }
+
+    Segment getSegment() {
+      return Segment.this;
+    }
+
+    long getKey() {
+      return key;
+    }
+
+    int getPostings() {
+      return postings;
+    }
+  }
+}
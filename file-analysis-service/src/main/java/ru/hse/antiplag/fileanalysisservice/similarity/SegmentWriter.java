@@ -0,0 +1,233 @@
+package ru.hse.antiplag.fileanalysisservice.similarity;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes a {@link Segment} in one pass. Documents may be added at any time, keys in ascending
+ * unsigned order with their postings sorted by document and start. The segment is written to a
+ * temporary file that is moved into place by {@link #finish()}, so a crash never leaves a
+ * partial segment behind.
+ */
+final class SegmentWriter implements AutoCloseable {
+
+  private final Path path;
+  private final Path temporary;
+  private final FileChannel channel;
+  private final ByteBuffer header = ByteBuffer.allocate(Segment.HEADER_SIZE);
+  private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+  private final List<String> fileIds = new ArrayList<>();
+  private long[] digests = new long[16];
+  private long[] directoryKeys = new long[16];
+  private long[] directoryOffsets = new long[16];
+  private int directoryCount;
+  private byte[] scratch = new byte[64];
+  private int scratchSize;
+  private long written;
+  private int keyCount;
+  private long previousKey;
+  private boolean finished;
+
+  /**
+   * Constructor for SegmentWriter.
+   *
+   * @param path       path of the segment
+   * @param id         ID of the segment
+   * @param sequence   ID of the newest flush whose files the segment contains
+   * @param checkpoint checkpoint of the files the segment contains
+   * @param replaces   IDs of the segments merged into this one
+   * @throws IOException if the temporary file cannot be created
+   */
+  SegmentWriter(Path path, long id, long sequence, long checkpoint, long[] replaces) throws IOException {
+    this.path = path;
+    this.temporary = path.resolveSibling(path.getFileName() + Segment.TEMPORARY_SUFFIX);
+    this.channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+    header.putInt(Segment.MAGIC).putInt(Segment.VERSION).putLong(id).putLong(sequence).putLong(checkpoint);
+    buffer.position(Segment.HEADER_SIZE);
+    for (long replaced : replaces) {
+      ensureRemaining(8);
+      buffer.putLong(replaced);
+    }
+    header.putInt(replaces.length);
+  }
+
+  /**
+   * Adds a document.
+   *
+   * @param fileId the ID of the file
+   * @param digest digest of the fingerprints of the file
+   * @return number of the document in the segment
+   */
+  int addDocument(String fileId, long digest) {
+    int document = fileIds.size();
+    if (document == digests.length) {
+      digests = Arrays.copyOf(digests, document * 2);
+    }
+    fileIds.add(fileId);
+    digests[document] = digest;
+    return document;
+  }
+
+  /**
+   * Adds a key with its postings.
+   *
+   * @param key      the key, greater than the previous one as an unsigned number
+   * @param postings postings sorted by document and start
+   * @throws IOException if the segment cannot be written
+   */
+  void addKey(long key, PostingList postings) throws IOException {
+    if (keyCount > 0 && Long.compareUnsigned(key, previousKey) <= 0) {
+      throw new IllegalStateException("Keys must be added in ascending order");
+    }
+    encodePostings(postings);
+    if (keyCount % Segment.BLOCK_SIZE == 0) {
+      if (directoryCount == directoryKeys.length) {
+        directoryKeys = Arrays.copyOf(directoryKeys, directoryCount * 2);
+        directoryOffsets = Arrays.copyOf(directoryOffsets, directoryCount * 2);
+      }
+      directoryKeys[directoryCount] = key;
+      directoryOffsets[directoryCount] = position();
+      directoryCount++;
+      previousKey = key;
+    }
+    ensureRemaining(20);
+    putVarlong(key - previousKey);
+    putVarlong(scratchSize);
+    for (int offset = 0; offset < scratchSize; ) {
+      ensureRemaining(1);
+      int length = Math.min(scratchSize - offset, buffer.remaining());
+      buffer.put(scratch, offset, length);
+      offset += length;
+    }
+    previousKey = key;
+    keyCount++;
+  }
+
+  /**
+   * Writes the directory, the documents and the header and moves the segment into place.
+   *
+   * @return size of the segment in bytes
+   * @throws IOException if the segment cannot be written or is larger than a mapping allows
+   */
+  long finish() throws IOException {
+    long directoryOffset = position();
+    for (int i = 0; i < directoryCount; i++) {
+      ensureRemaining(16);
+      buffer.putLong(directoryKeys[i]).putLong(directoryOffsets[i]);
+    }
+    long documentsOffset = position();
+    for (int document = 0; document < fileIds.size(); document++) {
+      byte[] fileId = fileIds.get(document).getBytes(StandardCharsets.UTF_8);
+      ensureRemaining(10);
+      putVarlong(fileId.length);
+      for (int offset = 0; offset < fileId.length; ) {
+        ensureRemaining(1);
+        int length = Math.min(fileId.length - offset, buffer.remaining());
+        buffer.put(fileId, offset, length);
+        offset += length;
+      }
+      ensureRemaining(8);
+      buffer.putLong(digests[document]);
+    }
+    long size = position();
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Segment " + path + " is larger than 2 GiB");
+    }
+    flushBuffer();
+    header.putInt(fileIds.size()).putInt(keyCount).putInt(directoryCount)
+        .putLong(directoryOffset).putLong(documentsOffset).flip();
+    while (header.hasRemaining()) {
+      channel.write(header, Segment.HEADER_SIZE - header.remaining());
+    }
+    channel.force(true);
+    channel.close();
+    Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+    finished = true;
+    return size;
+  }
+
+  /**
+   * Deletes the temporary file of a segment that was not finished.
+   */
+  @Override
+  public void close() throws IOException {
+    if (!finished) {
+      channel.close();
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  private void encodePostings(PostingList postings) {
+    scratchSize = 0;
+    int fileCount = 0;
+    for (int i = 0; i < postings.size(); i++) {
+      if (i == 0 || postings.getDocument(i) != postings.getDocument(i - 1)) {
+        fileCount++;
+      }
+    }
+    writeScratch(fileCount);
+    writeScratch(postings.size());
+    int previousDocument = 0;
+    int previousStart = 0;
+    for (int i = 0; i < postings.size(); i++) {
+      int document = postings.getDocument(i);
+      int start = postings.getStart(i);
+      if (document < previousDocument || i > 0 && document == previousDocument && start < previousStart) {
+        throw new IllegalStateException("Postings must be sorted by document and start");
+      }
+      boolean sameDocument = i > 0 && document == previousDocument;
+      writeScratch(document - previousDocument);
+      writeScratch(sameDocument ? start - previousStart : start);
+      writeScratch(postings.getEnd(i) - start);
+      previousDocument = document;
+      previousStart = start;
+    }
+  }
+
+  private void writeScratch(int value) {
+    if (scratchSize + 5 > scratch.length) {
+      scratch = Arrays.copyOf(scratch, scratch.length * 2);
+    }
+    while ((value & ~0x7f) != 0) {
+      scratch[scratchSize++] = (byte) ((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    scratch[scratchSize++] = (byte) value;
+  }
+
+  private void putVarlong(long value) {
+    while ((value & ~0x7fL) != 0) {
+      buffer.put((byte) ((value & 0x7f) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  private long position() {
+    return written + buffer.position();
+  }
+
+  private void ensureRemaining(int bytes) throws IOException {
+    if (buffer.remaining() < bytes) {
+      flushBuffer();
+    }
+  }
+
+  private void flushBuffer() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      written += channel.write(buffer);
+    }
+    buffer.clear();
+  }
+}
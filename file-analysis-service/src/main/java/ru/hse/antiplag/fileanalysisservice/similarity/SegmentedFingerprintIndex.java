@@ -0,0 +1,510 @@
+package ru.hse.antiplag.fileanalysisservice.similarity;
+
+import ru.hse.antiplag.fileanalysisservice.dto.PassageMatch;
+import ru.hse.antiplag.fileanalysisservice.text.Fingerprints;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Fingerprint index that keeps its postings on disk, so it can outgrow the heap. Files are put
+ * into an in-memory {@link FingerprintIndex} that is flushed to a new immutable {@link Segment}
+ * once it holds {@code flushPostings} postings. Segments of about the same size are merged in
+ * groups of {@code mergeFactor}, so the number of segments a query looks into grows with the
+ * logarithm of the index size. Opening the index maps the segments and reads their document
+ * tables only; the heap holds the ID of every file and the recent postings.
+ *
+ * <p>Every segment records a checkpoint, an opaque number set by the caller with
+ * {@link #setCheckpoint(long)} and written by the next flush. Callers loading files from
+ * elsewhere use it to know which files the index had on disk before a restart.
+ *
+ * <p>A file put again is removed from the segment it was in. If that file still waits in a
+ * buffer being flushed, both versions match until the flush is done.
+ */
+public class SegmentedFingerprintIndex {
+
+  private static final long MIN_TIER_BYTES = 1 << 20;
+  private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+  private final Path directory;
+  private final int flushPostings;
+  private final int mergeFactor;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Object maintenanceLock = new Object();
+  private final Map<String, Location> locations = new HashMap<>();
+  private final List<Segment> segments = new ArrayList<>();
+  private final List<Buffer> flushing = new ArrayList<>();
+  private FingerprintIndex buffer = new FingerprintIndex();
+  private long nextId;
+  private long checkpoint;
+
+  /**
+   * Constructor for SegmentedFingerprintIndex. Opens the segments in the directory, creating it
+   * if needed, and deletes the ones a merge replaced and unfinished ones.
+   *
+   * @param directory     directory of the segments
+   * @param flushPostings number of postings in memory that triggers a flush
+   * @param mergeFactor   number of segments of about the same size merged together
+   * @throws IOException if the directory or a segment cannot be read
+   */
+  public SegmentedFingerprintIndex(Path directory, int flushPostings, int mergeFactor) throws IOException {
+    if (mergeFactor < 2) {
+      throw new IllegalArgumentException("Merge factor must be at least 2");
+    }
+    this.directory = directory;
+    this.flushPostings = flushPostings;
+    this.mergeFactor = mergeFactor;
+    Files.createDirectories(directory);
+    List<Segment> opened = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        if (name.endsWith(Segment.TEMPORARY_SUFFIX)) {
+          Files.delete(file);
+        } else if (name.endsWith(Segment.SUFFIX)) {
+          opened.add(Segment.open(file));
+        }
+      }
+    }
+    Set<Long> replaced = new HashSet<>();
+    for (Segment segment : opened) {
+      for (long id : segment.getReplaces()) {
+        replaced.add(id);
+      }
+    }
+    opened.sort(Comparator.comparingLong(Segment::getSequence).thenComparingLong(Segment::getId));
+    for (Segment segment : opened) {
+      nextId = Math.max(nextId, segment.getId() + 1);
+      if (replaced.contains(segment.getId())) {
+        Files.delete(segment.getPath());
+        continue;
+      }
+      checkpoint = Math.max(checkpoint, segment.getCheckpoint());
+      segments.add(segment);
+      for (int document = 0; document < segment.documentCount(); document++) {
+        Location previous = locations.put(segment.getFileId(document),
+            new Location(segment, document, segment.getDigest(document)));
+        if (previous != null) {
+          ((Segment) previous.source).remove(previous.document);
+        }
+      }
+    }
+  }
+
+  /**
+   * Puts the fingerprints of a file, replacing the ones it had.
+   *
+   * @param fileId       the ID of the file
+   * @param fingerprints the fingerprints of the file
+   * @return true if the index changed, false if the file was there with the same fingerprints
+   */
+  public boolean put(String fileId, Fingerprints fingerprints) {
+    long digest = fingerprints.digest();
+    lock.writeLock().lock();
+    try {
+      Location previous = locations.get(fileId);
+      if (previous != null && previous.digest == digest) {
+        return false;
+      }
+      if (previous != null && previous.source instanceof Segment segment) {
+        segment.remove(previous.document);
+      }
+      buffer.put(fileId, fingerprints);
+      locations.put(fileId, new Location(buffer, -1, digest));
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Finds the passages of a file that occur in other files.
+   *
+   * @param fingerprints   the fingerprints of the compared file
+   * @param excludedFileId the ID of a file left out of the result, may be null
+   * @param maxFiles       the number of files a fingerprint may occur in at most to be used
+   * @param limit          the number of files returned at most
+   * @return the matching files, the ones with the most matched characters first
+   */
+  public List<PassageMatch> query(Fingerprints fingerprints, String excludedFileId, int maxFiles, int limit) {
+    PassageCollector matches = new PassageCollector();
+    lock.readLock().lock();
+    try {
+      List<FingerprintIndex> buffers = new ArrayList<>();
+      buffers.add(buffer);
+      for (Buffer flushed : flushing) {
+        buffers.add(flushed.index);
+      }
+      int[] postings = new int[segments.size()];
+      for (int i = 0; i < fingerprints.size(); i++) {
+        long hash = fingerprints.getHash(i);
+        long key = FingerprintIndex.key(hash);
+        int files = 0;
+        for (FingerprintIndex index : buffers) {
+          files += index.fileCount(hash);
+        }
+        for (int j = 0; j < postings.length; j++) {
+          postings[j] = segments.get(j).find(key);
+          if (postings[j] >= 0) {
+            files += segments.get(j).fileCount(postings[j]);
+          }
+        }
+        if (files > maxFiles) {
+          continue;
+        }
+        int start = fingerprints.getStart(i);
+        int end = fingerprints.getEnd(i);
+        PostingVisitor visitor = (fileId, otherStart, otherEnd) -> {
+          if (!fileId.equals(excludedFileId)) {
+            matches.add(fileId, start, end, otherStart, otherEnd);
+          }
+        };
+        for (FingerprintIndex index : buffers) {
+          index.forEachPosting(hash, visitor);
+        }
+        for (int j = 0; j < postings.length; j++) {
+          if (postings[j] >= 0) {
+            segments.get(j).forEachPosting(postings[j], visitor);
+          }
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    return matches.toPassageMatches(limit);
+  }
+
+  /**
+   * Gets the number of files in the index.
+   *
+   * @return number of files
+   */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return locations.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the number of segments on disk.
+   *
+   * @return number of segments
+   */
+  public int segmentCount() {
+    lock.readLock().lock();
+    try {
+      return segments.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the greatest checkpoint written by a flush.
+   *
+   * @return the checkpoint, 0 if there are no segments
+   */
+  public long getCheckpoint() {
+    lock.readLock().lock();
+    try {
+      return checkpoint;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Sets the checkpoint the next flush writes. The caller sets it once the files it stands for
+   * are put.
+   *
+   * @param checkpoint the checkpoint
+   */
+  public void setCheckpoint(long checkpoint) {
+    lock.writeLock().lock();
+    try {
+      this.checkpoint = checkpoint;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Tells if the postings in memory reached the flush threshold.
+   *
+   * @return true if {@link #flush()} should be called
+   */
+  public boolean needsFlush() {
+    lock.readLock().lock();
+    try {
+      return buffer.postingCount() >= flushPostings;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Writes the files in memory to a new segment. Queries and puts go on while the segment is
+   * written.
+   *
+   * @return true if a segment was written
+   * @throws IOException if the segment cannot be written; the files stay in memory and are
+   *                     written by the next flush
+   */
+  public boolean flush() throws IOException {
+    synchronized (maintenanceLock) {
+      lock.writeLock().lock();
+      try {
+        if (buffer.size() > 0) {
+          flushing.add(new Buffer(buffer, checkpoint));
+          buffer = new FingerprintIndex();
+        }
+      } finally {
+        lock.writeLock().unlock();
+      }
+      boolean flushed = false;
+      while (true) {
+        Buffer next;
+        long id;
+        lock.readLock().lock();
+        try {
+          if (flushing.isEmpty()) {
+            return flushed;
+          }
+          next = flushing.get(0);
+          id = nextId;
+        } finally {
+          lock.readLock().unlock();
+        }
+        Path path = segmentPath(id);
+        try (SegmentWriter writer = new SegmentWriter(path, id, id, next.checkpoint, new long[0])) {
+          next.index.writeTo(writer);
+          writer.finish();
+        }
+        Segment segment = Segment.open(path);
+        lock.writeLock().lock();
+        try {
+          nextId = id + 1;
+          flushing.remove(0);
+          segments.add(segment);
+          for (int document = 0; document < segment.documentCount(); document++) {
+            String fileId = segment.getFileId(document);
+            Location location = locations.get(fileId);
+            if (location != null && location.source == next.index) {
+              locations.put(fileId, new Location(segment, document, location.digest));
+            } else {
+              segment.remove(document);
+            }
+          }
+        } finally {
+          lock.writeLock().unlock();
+        }
+        flushed = true;
+      }
+    }
+  }
+
+  /**
+   * Merges the smallest {@code mergeFactor} segments of a size tier that has that many, leaving
+   * out removed files. Queries and puts go on while the merged segment is written. The merged
+   * segment lists every segment it replaces, directly or through earlier merges, so one left
+   * behind by a crash is deleted on open.
+   *
+   * @return true if segments were merged
+   * @throws IOException if the merged segment cannot be written; the segments stay as they are
+   */
+  public boolean merge() throws IOException {
+    synchronized (maintenanceLock) {
+      List<Segment> inputs;
+      int[][] documents;
+      long id;
+      lock.readLock().lock();
+      try {
+        inputs = selectMerge();
+        if (inputs == null) {
+          return false;
+        }
+        id = nextId;
+        documents = new int[inputs.size()][];
+        for (int i = 0; i < inputs.size(); i++) {
+          Segment input = inputs.get(i);
+          documents[i] = new int[input.documentCount()];
+          for (int document = 0; document < documents[i].length; document++) {
+            documents[i][document] = input.isRemoved(document) ? -1 : 0;
+          }
+        }
+      } finally {
+        lock.readLock().unlock();
+      }
+      long sequence = 0;
+      long mergedCheckpoint = 0;
+      List<Long> replacedIds = new ArrayList<>();
+      for (Segment input : inputs) {
+        sequence = Math.max(sequence, input.getSequence());
+        mergedCheckpoint = Math.max(mergedCheckpoint, input.getCheckpoint());
+        replacedIds.add(input.getId());
+        for (long replaced : input.getReplaces()) {
+          replacedIds.add(replaced);
+        }
+      }
+      long[] replaces = replacedIds.stream().mapToLong(Long::longValue).toArray();
+      Path path = segmentPath(id);
+      try (SegmentWriter writer = new SegmentWriter(path, id, sequence, mergedCheckpoint, replaces)) {
+        for (int i = 0; i < inputs.size(); i++) {
+          for (int document = 0; document < documents[i].length; document++) {
+            if (documents[i][document] >= 0) {
+              Segment input = inputs.get(i);
+              documents[i][document] = writer.addDocument(input.getFileId(document), input.getDigest(document));
+            }
+          }
+        }
+        mergeKeys(inputs, documents, writer);
+        writer.finish();
+      }
+      Segment merged = Segment.open(path);
+      lock.writeLock().lock();
+      try {
+        nextId = id + 1;
+        for (int i = 0; i < inputs.size(); i++) {
+          Segment input = inputs.get(i);
+          for (int document = 0; document < documents[i].length; document++) {
+            int mergedDocument = documents[i][document];
+            if (mergedDocument < 0) {
+              continue;
+            }
+            String fileId = input.getFileId(document);
+            Location location = locations.get(fileId);
+            if (location != null && location.source == input && location.document == document) {
+              locations.put(fileId, new Location(merged, mergedDocument, location.digest));
+            } else {
+              merged.remove(mergedDocument);
+            }
+          }
+        }
+        segments.removeAll(inputs);
+        segments.add(merged);
+      } finally {
+        lock.writeLock().unlock();
+      }
+      for (Segment input : inputs) {
+        Files.deleteIfExists(input.getPath());
+      }
+      return true;
+    }
+  }
+
+  private List<Segment> selectMerge() {
+    List<Segment> bySize = new ArrayList<>(segments);
+    bySize.sort(Comparator.comparingLong(Segment::sizeInBytes));
+    for (int from = 0; from + mergeFactor <= bySize.size(); ) {
+      int tier = tier(bySize.get(from).sizeInBytes());
+      int to = from;
+      while (to < bySize.size() && tier(bySize.get(to).sizeInBytes()) == tier) {
+        to++;
+      }
+      if (to - from >= mergeFactor) {
+        List<Segment> selected = new ArrayList<>(bySize.subList(from, from + mergeFactor));
+        long size = 0;
+        for (Segment segment : selected) {
+          size += segment.sizeInBytes();
+        }
+        if (size <= MAX_SEGMENT_BYTES) {
+          return selected;
+        }
+      }
+      from = to;
+    }
+    return null;
+  }
+
+  private int tier(long size) {
+    if (size <= MIN_TIER_BYTES) {
+      return 0;
+    }
+    return 1 + (int) (Math.log((double) size / MIN_TIER_BYTES) / Math.log(mergeFactor));
+  }
+
+  /**
+   * Writes the keys of the inputs in ascending order, the postings of every key in the order
+   * of the inputs, which is the order of the new document numbers.
+   */
+  private static void mergeKeys(List<Segment> inputs, int[][] documents, SegmentWriter writer) throws IOException {
+    Map<Segment, Integer> indexes = new HashMap<>();
+    for (int i = 0; i < inputs.size(); i++) {
+      indexes.put(inputs.get(i), i);
+    }
+    PriorityQueue<Segment.Cursor> cursors = new PriorityQueue<>(
+        Comparator.<Segment.Cursor>comparingLong(cursor -> cursor.getKey() ^ Long.MIN_VALUE)
+            .thenComparingInt(cursor -> indexes.get(cursor.getSegment())));
+    for (Segment input : inputs) {
+      Segment.Cursor cursor = input.cursor();
+      if (cursor.next()) {
+        cursors.add(cursor);
+      }
+    }
+    PostingList postings = new PostingList();
+    while (!cursors.isEmpty()) {
+      long key = cursors.peek().getKey();
+      postings.clear();
+      while (!cursors.isEmpty() && cursors.peek().getKey() == key) {
+        Segment.Cursor cursor = cursors.poll();
+        cursor.getSegment().readPostings(cursor.getPostings(), documents[indexes.get(cursor.getSegment())], postings);
+        if (cursor.next()) {
+          cursors.add(cursor);
+        }
+      }
+      if (postings.size() > 0) {
+        writer.addKey(key, postings);
+      }
+    }
+  }
+
+  private Path segmentPath(long id) {
+    return directory.resolve(String.format("segment-%012d%s", id, Segment.SUFFIX));
+  }
+
+  /**
+   * Where the current fingerprints of a file are: a segment and its document there, or a
+   * buffer in memory.
+   */
+  private static final class Location {
+
+    private final Object source;
+    private final int document;
+    private final long digest;
+
+    private Location(Object source, int document, long digest) {
+      this.source = source;
+      this.document = document;
+      this.digest = digest;
+    }
+  }
+
+  /**
+   * Buffer being flushed with the checkpoint at the time it stopped taking files.
+   */
+  private static final class Buffer {
+
+    private final FingerprintIndex index;
+    private final long checkpoint;
+
+    private Buffer(FingerprintIndex index, long checkpoint) {
+      this.index = index;
+      this.checkpoint = checkpoint;
+    }
+  }
+}
@@ -0,0 +1,189 @@
+package ru.hse.antiplag.fileanalysisservice.similarity;
+
+import java.util.Arrays;
+
+/**
+ * Suffix array of an integer string built in linear time by induced sorting (SA-IS), and the
+ * LCP array of adjacent suffixes built in linear time by Kasai's algorithm.
+ */
+final class SuffixArray {
+
+  private static final int NAIVE_THRESHOLD = 10;
+
+  private SuffixArray() {
+  }
+
+  /**
+   * Sorts the suffixes of a string.
+   *
+   * @param s     the string, values from 0 to {@code upper}
+   * @param upper the greatest value in the string
+   * @return start of every suffix in ascending order of the suffixes
+   */
+  static int[] build(int[] s, int upper) {
+    int n = s.length;
+    if (n < NAIVE_THRESHOLD) {
+      return naive(s);
+    }
+    int[] sa = new int[n];
+    boolean[] ls = new boolean[n];
+    for (int i = n - 2; i >= 0; i--) {
+      ls[i] = s[i] == s[i + 1] ? ls[i + 1] : s[i] < s[i + 1];
+    }
+    int[] sumL = new int[upper + 1];
+    int[] sumS = new int[upper + 1];
+    for (int i = 0; i < n; i++) {
+      if (!ls[i]) {
+        sumS[s[i]]++;
+      } else {
+        sumL[s[i] + 1]++;
+      }
+    }
+    for (int i = 0; i <= upper; i++) {
+      sumS[i] += sumL[i];
+      if (i < upper) {
+        sumL[i + 1] += sumS[i];
+      }
+    }
+    int[] lmsMap = new int[n + 1];
+    Arrays.fill(lmsMap, -1);
+    int m = 0;
+    for (int i = 1; i < n; i++) {
+      if (!ls[i - 1] && ls[i]) {
+        lmsMap[i] = m++;
+      }
+    }
+    int[] lms = new int[m];
+    for (int i = 1, next = 0; i < n; i++) {
+      if (!ls[i - 1] && ls[i]) {
+        lms[next++] = i;
+      }
+    }
+    induce(s, sa, ls, sumL, sumS, lms, m);
+    if (m > 0) {
+      int[] sortedLms = new int[m];
+      int next = 0;
+      for (int v : sa) {
+        if (lmsMap[v] != -1) {
+          sortedLms[next++] = v;
+        }
+      }
+      int[] recursive = new int[m];
+      int recursiveUpper = 0;
+      recursive[lmsMap[sortedLms[0]]] = 0;
+      for (int i = 1; i < m; i++) {
+        int left = sortedLms[i - 1];
+        int right = sortedLms[i];
+        int endLeft = lmsMap[left] + 1 < m ? lms[lmsMap[left] + 1] : n;
+        int endRight = lmsMap[right] + 1 < m ? lms[lmsMap[right] + 1] : n;
+        boolean same = true;
+        if (endLeft - left != endRight - right) {
+          same = false;
+        } else {
+          while (left < endLeft && s[left] == s[right]) {
+            left++;
+            right++;
+          }
+          if (left == n || s[left] != s[right]) {
+            same = false;
+          }
+        }
+        if (!same) {
+          recursiveUpper++;
+        }
+        recursive[lmsMap[sortedLms[i]]] = recursiveUpper;
+      }
+      int[] recursiveSa = build(recursive, recursiveUpper);
+      for (int i = 0; i < m; i++) {
+        sortedLms[i] = lms[recursiveSa[i]];
+      }
+      induce(s, sa, ls, sumL, sumS, sortedLms, m);
+    }
+    return sa;
+  }
+
+  /**
+   * Computes the longest common prefix of every two adjacent suffixes.
+   *
+   * @param s  the string
+   * @param sa its suffix array
+   * @return at {@code i}, the longest common prefix of the suffixes at {@code sa[i]} and {@code sa[i + 1]}
+   */
+  static int[] lcp(int[] s, int[] sa) {
+    int n = s.length;
+    int[] rank = new int[n];
+    for (int i = 0; i < n; i++) {
+      rank[sa[i]] = i;
+    }
+    int[] lcp = new int[Math.max(0, n - 1)];
+    int h = 0;
+    for (int i = 0; i < n; i++) {
+      if (h > 0) {
+        h--;
+      }
+      if (rank[i] == 0) {
+        continue;
+      }
+      int j = sa[rank[i] - 1];
+      while (j + h < n && i + h < n && s[j + h] == s[i + h]) {
+        h++;
+      }
+      lcp[rank[i] - 1] = h;
+    }
+    return lcp;
+  }
+
+  private static void induce(int[] s, int[] sa, boolean[] ls, int[] sumL, int[] sumS, int[] lms, int count) {
+    int n = s.length;
+    Arrays.fill(sa, -1);
+    int[] buckets = sumS.clone();
+    for (int i = 0; i < count; i++) {
+      int d = lms[i];
+      if (d != n) {
+        sa[buckets[s[d]]++] = d;
+      }
+    }
+    System.arraycopy(sumL, 0, buckets, 0, sumL.length);
+    sa[buckets[s[n - 1]]++] = n - 1;
+    for (int i = 0; i < n; i++) {
+      int v = sa[i];
+      if (v >= 1 && !ls[v - 1]) {
+        sa[buckets[s[v - 1]]++] = v - 1;
+      }
+    }
+    System.arraycopy(sumL, 0, buckets, 0, sumL.length);
+    for (int i = n - 1; i >= 0; i--) {
+      int v = sa[i];
+      if (v >= 1 && ls[v - 1]) {
+        sa[--buckets[s[v - 1] + 1]] = v - 1;
+      }
+    }
+  }
+
+  private static int[] naive(int[] s) {
+    Integer[] suffixes = new Integer[s.length];
+    for (int i = 0; i < s.length; i++) {
+      suffixes[i] = i;
+    }
+    Arrays.sort(suffixes, (a, b) -> {
+      if (a.equals(b)) {
+        return 0;
+      }
+      int i = a;
+      int j = b;
+      while (i < s.length && j < s.length) {
+        if (s[i] != s[j]) {
+          return Integer.compare(s[i], s[j]);
+        }
+        i++;
+        j++;
+      }
+      return i == s.length ? -1 : 1;
+    });
+    int[] sa = new int[s.length];
+    for (int i = 0; i < s.length; i++) {
+      sa[i] = suffixes[i];
+    }
+    return sa;
+  }
+}
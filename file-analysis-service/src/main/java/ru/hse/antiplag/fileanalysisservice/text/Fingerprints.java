@@ -0,0 +1,185 @@
+package ru.hse.antiplag.fileanalysisservice.text;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Winnowing fingerprints of a text in the order of their positions: the 64-bit hash of a
+ * k-gram and the character offsets where the k-gram starts and ends in the text. The binary
+ * form stored with the analysis result writes every start as the distance from the previous
+ * one and every end as the distance from its start, both as unsigned varints, and the hash as
+ * 8 bytes:
+ *
+ * <pre>
+ * version(1) count { startDelta length hash(8) }*
+ * </pre>
+ */
+public class Fingerprints {
+
+  private static final int VERSION = 1;
+
+  private long[] hashes;
+  private int[] starts;
+  private int[] ends;
+  private int size;
+
+  /**
+   * Constructor for empty Fingerprints.
+   */
+  public Fingerprints() {
+    this(16);
+  }
+
+  private Fingerprints(int capacity) {
+    this.hashes = new long[capacity];
+    this.starts = new int[capacity];
+    this.ends = new int[capacity];
+  }
+
+  /**
+   * Adds a fingerprint after the ones added before.
+   *
+   * @param hash  hash of the k-gram
+   * @param start offset of the first character of the k-gram
+   * @param end   offset after the last character of the k-gram
+   */
+  public void add(long hash, int start, int end) {
+    if (size == hashes.length) {
+      hashes = Arrays.copyOf(hashes, size * 2);
+      starts = Arrays.copyOf(starts, size * 2);
+      ends = Arrays.copyOf(ends, size * 2);
+    }
+    hashes[size] = hash;
+    starts[size] = start;
+    ends[size] = end;
+    size++;
+  }
+
+  /**
+   * Gets the number of fingerprints.
+   *
+   * @return number of fingerprints
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the hash of a fingerprint.
+   *
+   * @param index index of the fingerprint
+   * @return hash of the k-gram
+   */
+  public long getHash(int index) {
+    return hashes[index];
+  }
+
+  /**
+   * Gets the start of a fingerprint.
+   *
+   * @param index index of the fingerprint
+   * @return offset of the first character of the k-gram
+   */
+  public int getStart(int index) {
+    return starts[index];
+  }
+
+  /**
+   * Gets the end of a fingerprint.
+   *
+   * @param index index of the fingerprint
+   * @return offset after the last character of the k-gram
+   */
+  public int getEnd(int index) {
+    return ends[index];
+  }
+
+  /**
+   * Hashes all fingerprints, so a text fingerprinted again can be told from the one before.
+   *
+   * @return digest of the fingerprints
+   */
+  public long digest() {
+    long digest = size;
+    for (int i = 0; i < size; i++) {
+      digest = (digest ^ hashes[i] ^ ((long) starts[i] << 32 | ends[i])) * 0x9e3779b97f4a7c15L;
+    }
+    return digest;
+  }
+
+  /**
+   * Encodes fingerprints for storage.
+   *
+   * @param fingerprints the fingerprints
+   * @return the encoded fingerprints
+   */
+  public static byte[] encode(Fingerprints fingerprints) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(16 + fingerprints.size * 11);
+    out.write(VERSION);
+    writeVarint(out, fingerprints.size);
+    int previousStart = 0;
+    for (int i = 0; i < fingerprints.size; i++) {
+      writeVarint(out, fingerprints.starts[i] - previousStart);
+      writeVarint(out, fingerprints.ends[i] - fingerprints.starts[i]);
+      long hash = fingerprints.hashes[i];
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        out.write((int) (hash >>> shift));
+      }
+      previousStart = fingerprints.starts[i];
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Decodes stored fingerprints.
+   *
+   * @param data the encoded fingerprints
+   * @return the fingerprints
+   * @throws IllegalArgumentException if the data is not encoded fingerprints
+   */
+  public static Fingerprints decode(byte[] data) {
+    if (data.length == 0 || data[0] != VERSION) {
+      throw new IllegalArgumentException("Unsupported fingerprints version");
+    }
+    int[] position = {1};
+    int size = readVarint(data, position);
+    Fingerprints fingerprints = new Fingerprints(Math.max(1, Math.min(size, data.length / 10)));
+    int start = 0;
+    for (int i = 0; i < size; i++) {
+      start += readVarint(data, position);
+      int end = start + readVarint(data, position);
+      if (position[0] + 8 > data.length) {
+        throw new IllegalArgumentException("Truncated fingerprints");
+      }
+      long hash = 0;
+      for (int b = 0; b < 8; b++) {
+        hash = hash << 8 | (data[position[0]++] & 0xff);
+      }
+      fingerprints.add(hash, start, end);
+    }
+    return fingerprints;
+  }
+
+  private static void writeVarint(ByteArrayOutputStream out, int value) {
+    while ((value & ~0x7f) != 0) {
+      out.write((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.write(value);
+  }
+
+  private static int readVarint(byte[] data, int[] position) {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      if (position[0] >= data.length) {
+        throw new IllegalArgumentException("Truncated fingerprints");
+      }
+      byte b = data[position[0]++];
+      value |= (b & 0x7f) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Malformed varint in fingerprints");
+  }
+}
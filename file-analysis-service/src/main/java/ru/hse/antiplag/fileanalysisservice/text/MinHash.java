@@ -0,0 +1,113 @@
+package ru.hse.antiplag.fileanalysisservice.text;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * MinHash signature of a set of shingle hashes. For each of {@value #SIZE} hash functions the
+ * signature keeps the smallest value over the set, and the share of positions where two
+ * signatures agree estimates the Jaccard similarity of the two sets, with a standard error of
+ * at most {@code 0.5 / sqrt(SIZE)}.
+ *
+ * <p>The hash functions are {@code (a * x + b) >>> 32} with fixed odd {@code a}, so signatures
+ * stored by one instance compare with signatures of another; changing them or {@link #SIZE}
+ * needs a new {@link TextAnalysis#VERSION}.
+ */
+public class MinHash {
+
+  /**
+   * Number of hash functions, the length of a signature.
+   */
+  public static final int SIZE = 64;
+
+  private static final long[] MULTIPLIERS = new long[SIZE];
+  private static final long[] INCREMENTS = new long[SIZE];
+
+  static {
+    SplittableRandom random = new SplittableRandom(0x6d696e68617368L);
+    for (int i = 0; i < SIZE; i++) {
+      MULTIPLIERS[i] = random.nextLong() | 1;
+      INCREMENTS[i] = random.nextLong();
+    }
+  }
+
+  private final int[] minimums = new int[SIZE];
+  private boolean empty = true;
+
+  /**
+   * Constructor for an empty MinHash.
+   */
+  public MinHash() {
+    Arrays.fill(minimums, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Adds a shingle to the set.
+   *
+   * @param shingle well mixed 64-bit hash of the shingle
+   */
+  public void add(long shingle) {
+    empty = false;
+    for (int i = 0; i < SIZE; i++) {
+      int value = (int) ((shingle * MULTIPLIERS[i] + INCREMENTS[i]) >>> 32);
+      if (value < minimums[i]) {
+        minimums[i] = value;
+      }
+    }
+  }
+
+  /**
+   * Gets the signature of the shingles added so far.
+   *
+   * @return the signature of {@value #SIZE} values, or null if no shingle was added
+   */
+  public int[] signature() {
+    return empty ? null : minimums.clone();
+  }
+
+  /**
+   * Estimates the Jaccard similarity of the sets behind two signatures.
+   *
+   * @param a signature of one set
+   * @param b signature of the other set
+   * @return share of positions where the signatures agree, from 0 to 1
+   */
+  public static double similarity(int[] a, int[] b) {
+    int equal = 0;
+    for (int i = 0; i < SIZE; i++) {
+      if (a[i] == b[i]) {
+        equal++;
+      }
+    }
+    return (double) equal / SIZE;
+  }
+
+  /**
+   * Encodes a signature for storage, four big-endian bytes per value.
+   *
+   * @param signature the signature
+   * @return the encoded signature
+   */
+  public static byte[] encode(int[] signature) {
+    ByteBuffer buffer = ByteBuffer.allocate(SIZE * Integer.BYTES);
+    buffer.asIntBuffer().put(signature);
+    return buffer.array();
+  }
+
+  /**
+   * Decodes a stored signature.
+   *
+   * @param data the encoded signature
+   * @return the signature
+   * @throws IllegalArgumentException if the data is not an encoded signature
+   */
+  public static int[] decode(byte[] data) {
+    if (data.length != SIZE * Integer.BYTES) {
+      throw new IllegalArgumentException("Expected a MinHash signature of " + SIZE + " values, got " + data.length + " bytes");
+    }
+    int[] signature = new int[SIZE];
+    ByteBuffer.wrap(data).asIntBuffer().get(signature);
+    return signature;
+  }
+}
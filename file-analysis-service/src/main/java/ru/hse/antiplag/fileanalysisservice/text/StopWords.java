@@ -0,0 +1,88 @@
+package ru.hse.antiplag.fileanalysisservice.text;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Words too common to say anything about a text, such as prepositions and pronouns. They are
+ * kept as a sorted array of the hashes {@link TermCounter} computes for every term, so a term is
+ * checked without making a string of it. The lists are read from {@code stopwords/<language>.txt}
+ * on the class path, one word per line.
+ */
+public final class StopWords {
+
+  /**
+   * No stop words.
+   */
+  public static final StopWords NONE = new StopWords(new long[0]);
+
+  private final long[] hashes;
+
+  private StopWords(long[] hashes) {
+    this.hashes = hashes;
+  }
+
+  /**
+   * Loads the stop words of the given languages.
+   *
+   * @param languages language codes, such as {@code ru} and {@code en}
+   * @return stop words of all the languages
+   * @throws IllegalArgumentException if there is no list for a language
+   */
+  public static StopWords load(String... languages) {
+    long[] hashes = new long[256];
+    int size = 0;
+    for (String language : languages) {
+      if (language.isBlank()) {
+        continue;
+      }
+      String resource = "stopwords/" + language.trim() + ".txt";
+      InputStream stream = StopWords.class.getClassLoader().getResourceAsStream(resource);
+      if (stream == null) {
+        throw new IllegalArgumentException("No stop words for language: " + language);
+      }
+      try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          String word = line.trim();
+          if (word.isEmpty()) {
+            continue;
+          }
+          if (size == hashes.length) {
+            hashes = Arrays.copyOf(hashes, size * 2);
+          }
+          hashes[size++] = TermCounter.hash(word.toLowerCase());
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to read " + resource, e);
+      }
+    }
+    long[] sorted = Arrays.copyOf(hashes, size);
+    Arrays.sort(sorted);
+    return new StopWords(sorted);
+  }
+
+  /**
+   * Checks whether a term is a stop word.
+   *
+   * @param termHash hash of the term, as computed by {@link TermCounter}
+   * @return true if the term is a stop word
+   */
+  boolean contains(long termHash) {
+    return hashes.length > 0 && Arrays.binarySearch(hashes, termHash) >= 0;
+  }
+
+  /**
+   * Gets the number of stop words.
+   *
+   * @return number of stop words
+   */
+  public int size() {
+    return hashes.length;
+  }
+}
@@ -0,0 +1,50 @@
+package ru.hse.antiplag.fileanalysisservice.text;
+
+import java.util.Comparator;
+
+/**
+ * A term of a text with the number of its occurrences.
+ */
+public class TermCount {
+
+  /**
+   * Orders the most frequent terms first, ties alphabetically.
+   */
+  public static final Comparator<TermCount> BY_FREQUENCY =
+      Comparator.comparingInt(TermCount::getCount).reversed().thenComparing(TermCount::getTerm);
+
+  private final String term;
+  private final int count;
+
+  /**
+   * Constructor for TermCount.
+   *
+   * @param term  the term, in lower case
+   * @param count number of occurrences of the term
+   */
+  public TermCount(String term, int count) {
+    this.term = term;
+    this.count = count;
+  }
+
+  /**
+   * Gets the term.
+   * @return the term.
+   */
+  public String getTerm() {
+    return term;
+  }
+
+  /**
+   * Gets the number of occurrences.
+   * @return the number of occurrences.
+   */
+  public int getCount() {
+    return count;
+  }
+
+  @Override
+  public String toString() {
+    return term + ":" + count;
+  }
+}
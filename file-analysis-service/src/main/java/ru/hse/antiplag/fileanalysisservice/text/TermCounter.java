@@ -0,0 +1,229 @@
+package ru.hse.antiplag.fileanalysisservice.text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Counts the terms of a text that arrives in pieces. A term is a run of letters and digits,
+ * counted in lower case and cut to {@value #MAX_TERM_LENGTH} characters; stop words are skipped.
+ * Memory is bounded by the number of distinct terms: once there are more than the limit, the
+ * rarest terms are dropped, which keeps the frequent ones a word cloud is made of.
+ *
+ * <p>Counts are kept in an open addressing table keyed by a 64-bit hash of the term, which is
+ * computed while the characters arrive. Linear probing runs over a primitive array of hashes,
+ * and a string is only created the first time a term is seen, not for every occurrence. Terms
+ * are told apart by the hash alone; a collision of two 64-bit hashes is not worth a check.
+ */
+public class TermCounter implements TextSink {
+
+  static final int MAX_TERM_LENGTH = 64;
+
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final int maxTerms;
+  private final StopWords stopWords;
+  private final char[] term = new char[MAX_TERM_LENGTH];
+  private int termLength;
+  private long termHash = FNV_OFFSET;
+  private long[] hashes = new long[INITIAL_CAPACITY];
+  private int[] counts = new int[INITIAL_CAPACITY];
+  private String[] terms = new String[INITIAL_CAPACITY];
+  private int size;
+  private int pruneLevel;
+
+  /**
+   * Constructor for TermCounter that keeps stop words.
+   *
+   * @param maxTerms number of distinct terms to keep at most
+   */
+  public TermCounter(int maxTerms) {
+    this(maxTerms, StopWords.NONE);
+  }
+
+  /**
+   * Constructor for TermCounter.
+   *
+   * @param maxTerms  number of distinct terms to keep at most
+   * @param stopWords words that are not counted
+   */
+  public TermCounter(int maxTerms, StopWords stopWords) {
+    this.maxTerms = maxTerms;
+    this.stopWords = stopWords;
+  }
+
+  /**
+   * Hashes a term the way it is hashed while counting.
+   *
+   * @param term the term, in lower case
+   * @return hash of the term, never 0
+   */
+  static long hash(CharSequence term) {
+    long hash = FNV_OFFSET;
+    int length = Math.min(term.length(), MAX_TERM_LENGTH);
+    for (int i = 0; i < length; i++) {
+      hash = (hash ^ term.charAt(i)) * FNV_PRIME;
+    }
+    return finish(hash);
+  }
+
+  /**
+   * Spreads the bits of an FNV-1a hash, whose low bits pick the slot, and keeps 0 free to mark
+   * empty slots.
+   */
+  private static long finish(long hash) {
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    return hash == 0 ? 1 : hash;
+  }
+
+  @Override
+  public void accept(CharSequence text, int start, int end) {
+    for (int i = start; i < end; i++) {
+      char c = text.charAt(i);
+      if (Character.isLetterOrDigit(c)) {
+        if (termLength < MAX_TERM_LENGTH) {
+          char lower = Character.toLowerCase(c);
+          term[termLength++] = lower;
+          termHash = (termHash ^ lower) * FNV_PRIME;
+        }
+      } else if (termLength > 0) {
+        endTerm();
+      }
+    }
+  }
+
+  @Override
+  public void finish() {
+    if (termLength > 0) {
+      endTerm();
+    }
+  }
+
+  private void endTerm() {
+    long hash = finish(termHash);
+    if (!stopWords.contains(hash)) {
+      count(hash);
+    }
+    termLength = 0;
+    termHash = FNV_OFFSET;
+  }
+
+  private void count(long hash) {
+    int mask = hashes.length - 1;
+    int slot = (int) hash & mask;
+    while (hashes[slot] != 0) {
+      if (hashes[slot] == hash) {
+        counts[slot]++;
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+    hashes[slot] = hash;
+    counts[slot] = 1;
+    terms[slot] = new String(term, 0, termLength);
+    size++;
+    if (size > maxTerms) {
+      prune();
+    } else if (size > hashes.length / 2) {
+      rehash(hashes.length * 2, 0);
+    }
+  }
+
+  /**
+   * Drops the rarest terms until a quarter of the limit is free again. Every prune drops terms
+   * seen one more time than the previous one, so a term that keeps coming back survives.
+   */
+  private void prune() {
+    while (size > maxTerms - maxTerms / 4) {
+      rehash(hashes.length, ++pruneLevel);
+    }
+  }
+
+  /**
+   * Moves the terms seen more than {@code minCount} times to a table of the given capacity.
+   */
+  private void rehash(int capacity, int minCount) {
+    long[] oldHashes = hashes;
+    int[] oldCounts = counts;
+    String[] oldTerms = terms;
+    hashes = new long[capacity];
+    counts = new int[capacity];
+    terms = new String[capacity];
+    size = 0;
+    int mask = capacity - 1;
+    for (int i = 0; i < oldHashes.length; i++) {
+      if (oldHashes[i] == 0 || oldCounts[i] <= minCount) {
+        continue;
+      }
+      int slot = (int) oldHashes[i] & mask;
+      while (hashes[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      hashes[slot] = oldHashes[i];
+      counts[slot] = oldCounts[i];
+      terms[slot] = oldTerms[i];
+      size++;
+    }
+  }
+
+  /**
+   * Gets the number of distinct terms kept.
+   *
+   * @return number of distinct terms
+   */
+  public int getDistinctTermCount() {
+    return size;
+  }
+
+  /**
+   * Gets the most frequent terms, ties ordered alphabetically.
+   *
+   * @param limit number of terms to return at most
+   * @return terms with their counts, the most frequent first
+   */
+  public List<TermCount> topTerms(int limit) {
+    if (limit <= 0) {
+      return new ArrayList<>();
+    }
+    PriorityQueue<TermCount> top = new PriorityQueue<>(Math.min(limit, size) + 1, TermCount.BY_FREQUENCY.reversed());
+    for (int i = 0; i < hashes.length; i++) {
+      if (hashes[i] == 0) {
+        continue;
+      }
+      if (top.size() == limit) {
+        TermCount last = top.peek();
+        if (counts[i] < last.getCount() || counts[i] == last.getCount() && terms[i].compareTo(last.getTerm()) > 0) {
+          continue;
+        }
+        top.poll();
+      }
+      top.add(new TermCount(terms[i], counts[i]));
+    }
+    List<TermCount> result = new ArrayList<>(top);
+    result.sort(TermCount.BY_FREQUENCY);
+    return result;
+  }
+
+  /**
+   * Gets all terms kept, the term frequency vector of the text.
+   *
+   * @return terms with their counts, in alphabetical order
+   */
+  public List<TermCount> allTerms() {
+    TermCount[] result = new TermCount[size];
+    int next = 0;
+    for (int i = 0; i < hashes.length; i++) {
+      if (hashes[i] != 0) {
+        result[next++] = new TermCount(terms[i], counts[i]);
+      }
+    }
+    Arrays.sort(result, Comparator.comparing(TermCount::getTerm));
+    return Arrays.asList(result);
+  }
+}
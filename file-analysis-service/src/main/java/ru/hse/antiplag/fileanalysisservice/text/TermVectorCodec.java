@@ -0,0 +1,106 @@
+package ru.hse.antiplag.fileanalysisservice.text;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Binary form of a term frequency vector, stored with the analysis result so the terms of a file
+ * can be used again without reading the file. Terms are written in alphabetical order, each as
+ * the number of leading UTF-8 bytes it shares with the previous term, the remaining bytes and
+ * its count, all lengths and counts as unsigned varints:
+ *
+ * <pre>
+ * version(1) termCount { sharedPrefix suffixLength suffix count }*
+ * </pre>
+ */
+public final class TermVectorCodec {
+
+  private static final int VERSION = 1;
+
+  private TermVectorCodec() {
+  }
+
+  /**
+   * Encodes a term frequency vector.
+   *
+   * @param terms terms with their counts, in alphabetical order
+   * @return the encoded vector
+   */
+  public static byte[] encode(List<TermCount> terms) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(16 + terms.size() * 8);
+    out.write(VERSION);
+    writeVarint(out, terms.size());
+    byte[] previous = new byte[0];
+    for (TermCount term : terms) {
+      byte[] bytes = term.getTerm().getBytes(StandardCharsets.UTF_8);
+      int shared = Arrays.mismatch(previous, bytes);
+      if (shared < 0) {
+        shared = bytes.length;
+      }
+      writeVarint(out, shared);
+      writeVarint(out, bytes.length - shared);
+      out.write(bytes, shared, bytes.length - shared);
+      writeVarint(out, term.getCount());
+      previous = bytes;
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Decodes a term frequency vector.
+   *
+   * @param data the encoded vector
+   * @return terms with their counts, in the order they were encoded
+   * @throws IllegalArgumentException if the data is not an encoded vector
+   */
+  public static List<TermCount> decode(byte[] data) {
+    if (data.length == 0 || data[0] != VERSION) {
+      throw new IllegalArgumentException("Unsupported term vector version");
+    }
+    int[] position = {1};
+    int size = readVarint(data, position);
+    List<TermCount> terms = new ArrayList<>(size);
+    byte[] term = new byte[TermCounter.MAX_TERM_LENGTH * 3];
+    for (int i = 0; i < size; i++) {
+      int shared = readVarint(data, position);
+      int suffix = readVarint(data, position);
+      if (shared + suffix > term.length) {
+        term = Arrays.copyOf(term, shared + suffix);
+      }
+      if (position[0] + suffix > data.length) {
+        throw new IllegalArgumentException("Truncated term vector");
+      }
+      System.arraycopy(data, position[0], term, shared, suffix);
+      position[0] += suffix;
+      int count = readVarint(data, position);
+      terms.add(new TermCount(new String(term, 0, shared + suffix, StandardCharsets.UTF_8), count));
+    }
+    return terms;
+  }
+
+  private static void writeVarint(ByteArrayOutputStream out, int value) {
+    while ((value & ~0x7f) != 0) {
+      out.write((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.write(value);
+  }
+
+  private static int readVarint(byte[] data, int[] position) {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      if (position[0] >= data.length) {
+        throw new IllegalArgumentException("Truncated term vector");
+      }
+      byte b = data[position[0]++];
+      value |= (b & 0x7f) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Malformed varint in term vector");
+  }
+}
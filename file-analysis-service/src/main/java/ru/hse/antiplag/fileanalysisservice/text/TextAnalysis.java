@@ -0,0 +1,137 @@
+package ru.hse.antiplag.fileanalysisservice.text;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Analysis of a UTF-8 text that is read buffer by buffer: the bytes are decoded incrementally
+ * and every decoded piece goes to the statistics scanner, the term counter, the word shingles
+ * of the MinHash signature and the winnowing fingerprints, so the text is never held in memory
+ * as a whole.
+ */
+public class TextAnalysis {
+
+  /**
+   * Version of the analysis stored with every result. Bump it whenever a change here, in the
+   * statistics, the term counting or the word cloud changes the results, and the results of
+   * older versions are recomputed in the background. Version 2 added the MinHash signature,
+   * version 3 the winnowing fingerprints.
+   */
+  public static final int VERSION = 3;
+
+  private final TextStatisticsScanner statistics = new TextStatisticsScanner();
+  private final TermCounter terms;
+  private final MinHash minHash = new MinHash();
+  private final WordShingles shingles = new WordShingles(WordShingles.SIZE, minHash::add);
+  private final Winnowing winnowing;
+  private final Utf8StreamDecoder decoder;
+  private long byteCount;
+
+  /**
+   * Constructor for TextAnalysis keeping the default number of fingerprints at most.
+   *
+   * @param maxTerms  number of distinct terms to keep at most
+   * @param stopWords words that are not counted as terms
+   */
+  public TextAnalysis(int maxTerms, StopWords stopWords) {
+    this(maxTerms, stopWords, Winnowing.MAX_FINGERPRINTS);
+  }
+
+  /**
+   * Constructor for TextAnalysis.
+   *
+   * @param maxTerms        number of distinct terms to keep at most
+   * @param stopWords       words that are not counted as terms
+   * @param maxFingerprints number of winnowing fingerprints to keep at most
+   */
+  public TextAnalysis(int maxTerms, StopWords stopWords, int maxFingerprints) {
+    this.terms = new TermCounter(maxTerms, stopWords);
+    this.winnowing = new Winnowing(Winnowing.KGRAM_LENGTH, Winnowing.WINDOW, maxFingerprints);
+    this.decoder = new Utf8StreamDecoder(new TextSink() {
+      @Override
+      public void accept(CharSequence text, int start, int end) {
+        statistics.accept(text, start, end);
+        terms.accept(text, start, end);
+        shingles.accept(text, start, end);
+        winnowing.accept(text, start, end);
+      }
+
+      @Override
+      public void finish() {
+        terms.finish();
+        shingles.finish();
+        winnowing.finish();
+      }
+    });
+  }
+
+  /**
+   * Analyzes the next bytes of the text.
+   *
+   * @param bytes next bytes of the text, consumed completely
+   */
+  public void accept(ByteBuffer bytes) {
+    byteCount += bytes.remaining();
+    decoder.decode(bytes);
+  }
+
+  /**
+   * Analyzes the end of the text. Must be called once, after all bytes are accepted.
+   */
+  public void finish() {
+    decoder.finish();
+  }
+
+  /**
+   * Gets the number of bytes analyzed.
+   *
+   * @return number of bytes
+   */
+  public long getByteCount() {
+    return byteCount;
+  }
+
+  /**
+   * Gets the statistics of the text.
+   *
+   * @return statistics scanner of the text
+   */
+  public TextStatisticsScanner getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * Gets the term counts of the text.
+   *
+   * @return term counter of the text
+   */
+  public TermCounter getTerms() {
+    return terms;
+  }
+
+  /**
+   * Gets the MinHash signature of the word shingles of the text.
+   *
+   * @return MinHash of the text
+   */
+  public MinHash getMinHash() {
+    return minHash;
+  }
+
+  /**
+   * Gets the winnowing fingerprints of the text.
+   *
+   * @return fingerprints of the text
+   */
+  public Fingerprints getFingerprints() {
+    return winnowing.getFingerprints();
+  }
+
+  /**
+   * Checks whether the fingerprints stopped before the end of the text, see {@link Winnowing}.
+   *
+   * @return true if only the beginning of the text is fingerprinted
+   */
+  public boolean isFingerprintsTruncated() {
+    return winnowing.isTruncated();
+  }
+}
@@ -0,0 +1,22 @@
+package ru.hse.antiplag.fileanalysisservice.text;
+
+/**
+ * Consumer of a text that arrives in pieces, such as a decoded download.
+ */
+public interface TextSink {
+
+  /**
+   * Feeds the next piece of the text.
+   *
+   * @param text  piece of the text
+   * @param start index of the first character to consume
+   * @param end   index after the last character to consume
+   */
+  void accept(CharSequence text, int start, int end);
+
+  /**
+   * Signals that the text has ended.
+   */
+  default void finish() {
+  }
+}
@@ -0,0 +1,209 @@
+package ru.hse.antiplag.fileanalysisservice.text;
+
+import ru.hse.antiplag.fileanalysisservice.dto.TextStatistics;
+
+/**
+ * Counts paragraphs, words, characters, lines and sentences of a text in a single pass, without
+ * regular expressions, intermediate strings or per-token allocation. The text may be fed in
+ * several pieces, the state between them is kept by the scanner.
+ *
+ * <p>Paragraph and word counts match the previous regex based implementation exactly:
+ * <ul>
+ *   <li>a paragraph is a run of text containing a character above {@code ' '}, paragraphs are
+ *   separated by two or more line breaks with only spaces between them, where {@code \r\n} and a
+ *   lone {@code \r} are line breaks too;</li>
+ *   <li>a word is a run of characters other than {@code [ \t\n\x0B\f\r]} inside the text with
+ *   the leading and trailing characters up to {@code ' '} removed.</li>
+ * </ul>
+ * A line ends with {@code \n}, {@code \r} or {@code \r\n}, the last line needs no terminator.
+ * A sentence is a run of text with a letter or a digit, ended by {@code .}, {@code !},
+ * {@code ?}, an ellipsis or the end of the text.
+ */
+public class TextStatisticsScanner implements TextSink {
+
+  private int characterCount;
+  private boolean carriageReturn;
+
+  private int paragraphCount;
+  private boolean paragraphBreak = true;
+  private boolean blankLine;
+
+  private int wordCount;
+  private boolean inWord;
+  private boolean wordHasText;
+  private boolean seenWord;
+  private int controlWords;
+
+  private int lineCount;
+  private boolean lineOpen;
+
+  private int sentenceCount;
+  private boolean sentenceOpen;
+
+  /**
+   * Scans a whole text.
+   *
+   * @param text text to scan
+   * @return scanner holding the statistics of the text
+   */
+  public static TextStatisticsScanner scan(CharSequence text) {
+    TextStatisticsScanner scanner = new TextStatisticsScanner();
+    scanner.accept(text, 0, text.length());
+    return scanner;
+  }
+
+  @Override
+  public void accept(CharSequence text, int start, int end) {
+    characterCount += end - start;
+    for (int i = start; i < end; i++) {
+      char c = text.charAt(i);
+      if (c > ' ') {
+        acceptText(c);
+      } else if (c == '\n' || c == '\r') {
+        acceptLineBreak(c);
+      } else {
+        acceptBlank(c);
+      }
+    }
+  }
+
+  private void acceptText(char c) {
+    carriageReturn = false;
+    if (paragraphBreak) {
+      paragraphCount++;
+      paragraphBreak = false;
+    }
+    blankLine = false;
+    inWord = true;
+    wordHasText = true;
+    lineOpen = true;
+    if (isLetterOrDigit(c)) {
+      sentenceOpen = true;
+    } else if (sentenceOpen && (c == '.' || c == '!' || c == '?' || c == '\u2026')) {
+      sentenceCount++;
+      sentenceOpen = false;
+    }
+  }
+
+  private void acceptLineBreak(char c) {
+    if (c == '\n' && carriageReturn) {
+      carriageReturn = false;
+      return;
+    }
+    carriageReturn = c == '\r';
+    if (blankLine) {
+      paragraphBreak = true;
+    }
+    blankLine = true;
+    endWord();
+    lineCount++;
+    lineOpen = false;
+  }
+
+  private void acceptBlank(char c) {
+    carriageReturn = false;
+    if (c != ' ') {
+      blankLine = false;
+    }
+    if (c == ' ' || c == '\t' || c == '\u000B' || c == '\f') {
+      endWord();
+    } else {
+      inWord = true;
+    }
+    lineOpen = true;
+  }
+
+  /**
+   * Ends the current word. A word made only of control characters counts only between two
+   * words with text, because trimming drops it at either end of the text.
+   */
+  private void endWord() {
+    if (!inWord) {
+      return;
+    }
+    if (wordHasText) {
+      wordCount += seenWord ? controlWords + 1 : 1;
+      seenWord = true;
+      controlWords = 0;
+    } else {
+      controlWords++;
+    }
+    inWord = false;
+    wordHasText = false;
+  }
+
+  private static boolean isLetterOrDigit(char c) {
+    if (c < 0x80) {
+      return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+    return Character.isLetterOrDigit(c);
+  }
+
+  /**
+   * Checks whether the text has any character above {@code ' '}, that is whether it is not
+   * empty after trimming.
+   *
+   * @return true if the text has content
+   */
+  public boolean hasContent() {
+    return paragraphCount > 0;
+  }
+
+  /**
+   * Gets the number of characters, as UTF-16 code units.
+   *
+   * @return number of characters
+   */
+  public int getCharacterCount() {
+    return characterCount;
+  }
+
+  /**
+   * Gets the number of paragraphs.
+   *
+   * @return number of paragraphs
+   */
+  public int getParagraphCount() {
+    return paragraphCount;
+  }
+
+  /**
+   * Gets the number of words, including the word the text ends with.
+   *
+   * @return number of words
+   */
+  public int getWordCount() {
+    if (inWord && wordHasText) {
+      return wordCount + (seenWord ? controlWords + 1 : 1);
+    }
+    return wordCount;
+  }
+
+  /**
+   * Gets the number of lines, including the last one if it has no terminator.
+   *
+   * @return number of lines
+   */
+  public int getLineCount() {
+    return lineOpen ? lineCount + 1 : lineCount;
+  }
+
+  /**
+   * Gets the number of sentences, including the last one if it has no terminator.
+   *
+   * @return number of sentences
+   */
+  public int getSentenceCount() {
+    return sentenceOpen ? sentenceCount + 1 : sentenceCount;
+  }
+
+  /**
+   * Creates the statistics DTO of the text scanned so far.
+   *
+   * @return text statistics
+   */
+  public TextStatistics toTextStatistics() {
+    return new TextStatistics(getParagraphCount(), getWordCount(), getCharacterCount(),
+        getLineCount(), getSentenceCount());
+  }
+}
@@ -0,0 +1,84 @@
+package ru.hse.antiplag.fileanalysisservice.text;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes UTF-8 bytes that arrive in buffers of any size and passes the characters on to a
+ * {@link TextSink} through one reusable char buffer. A character split between two buffers is
+ * kept until the rest of it arrives, so the result is the same as decoding the whole content at
+ * once, with malformed input replaced by {@code U+FFFD} like {@link java.io.InputStreamReader}.
+ */
+public class Utf8StreamDecoder {
+
+  private static final int CHAR_BUFFER_SIZE = 8192;
+
+  private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  private final ByteBuffer carry = ByteBuffer.allocate(4);
+  private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+  private final TextSink sink;
+
+  /**
+   * Constructor for Utf8StreamDecoder.
+   *
+   * @param sink consumer of the decoded text
+   */
+  public Utf8StreamDecoder(TextSink sink) {
+    this.sink = sink;
+  }
+
+  /**
+   * Decodes the next buffer of the content. The buffer is consumed completely.
+   *
+   * @param input next bytes of the content
+   */
+  public void decode(ByteBuffer input) {
+    while (carry.position() > 0 && input.hasRemaining()) {
+      carry.put(input.get());
+      carry.flip();
+      decodeInto(carry, false);
+      carry.compact();
+    }
+    decodeInto(input, false);
+    carry.put(input);
+    flushChars();
+  }
+
+  /**
+   * Decodes the end of the content and finishes the sink.
+   */
+  public void finish() {
+    carry.flip();
+    decodeInto(carry, true);
+    carry.clear();
+    while (decoder.flush(chars).isOverflow()) {
+      flushChars();
+    }
+    flushChars();
+    decoder.reset();
+    sink.finish();
+  }
+
+  private void decodeInto(ByteBuffer input, boolean endOfInput) {
+    CoderResult result = decoder.decode(input, chars, endOfInput);
+    while (result.isOverflow()) {
+      flushChars();
+      result = decoder.decode(input, chars, endOfInput);
+    }
+  }
+
+  private void flushChars() {
+    if (chars.position() == 0) {
+      return;
+    }
+    chars.flip();
+    sink.accept(chars, 0, chars.remaining());
+    chars.clear();
+  }
+}
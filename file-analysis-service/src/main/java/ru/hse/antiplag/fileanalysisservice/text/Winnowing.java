@@ -0,0 +1,189 @@
+package ru.hse.antiplag.fileanalysisservice.text;
+
+/**
+ * Selects the winnowing fingerprints of a text that arrives in pieces, as MOSS does. The text
+ * is normalized to its letters and digits in lower case, every k-gram of the normalized text
+ * is hashed with a rolling hash, and of every window of {@code window} consecutive k-gram
+ * hashes the rightmost minimum is kept, once. Any passage of at least
+ * {@code kgramLength + window - 1} normalized characters shared by two texts therefore shares
+ * a fingerprint, while about {@code 2 / (window + 1)} of the k-grams are kept.
+ *
+ * <p>Every fingerprint records the character offsets of its k-gram in the original text, so a
+ * matching fingerprint points at the passage in both texts. A text shorter than one window
+ * keeps its smallest k-gram; a text shorter than one k-gram has no fingerprints.
+ *
+ * <p>At most {@code maxFingerprints} fingerprints are kept, about {@code 16} bytes each; the
+ * rest of a longer text is skipped and the fingerprints are marked as truncated, so one huge
+ * file cannot take the heap, and matches are only found in its beginning.
+ */
+public class Winnowing implements TextSink {
+
+  /**
+   * Number of normalized characters in a k-gram, the noise threshold below which matches are
+   * not seen.
+   */
+  public static final int KGRAM_LENGTH = 30;
+
+  /**
+   * Number of consecutive k-grams a fingerprint is selected from.
+   */
+  public static final int WINDOW = 20;
+
+  /**
+   * Number of fingerprints kept by default, enough for a text of about ten million characters.
+   */
+  public static final int MAX_FINGERPRINTS = 1_000_000;
+
+  private static final long BASE = 0x100000001b3L;
+
+  private final int kgramLength;
+  private final int window;
+  private final int maxFingerprints;
+  private final long outgoingFactor;
+  private final char[] kgram;
+  private final int[] kgramOffsets;
+  private final long[] windowHashes;
+  private final int[] windowStarts;
+  private final int[] windowEnds;
+  private final Fingerprints fingerprints = new Fingerprints();
+  private int offset;
+  private long charCount;
+  private long rollingHash;
+  private long kgramCount;
+  private long minIndex = -1;
+  private long recordedIndex = -1;
+  private boolean truncated;
+
+  /**
+   * Constructor for Winnowing with the default k-gram length and window.
+   */
+  public Winnowing() {
+    this(KGRAM_LENGTH, WINDOW, MAX_FINGERPRINTS);
+  }
+
+  /**
+   * Constructor for Winnowing.
+   *
+   * @param kgramLength     number of normalized characters in a k-gram
+   * @param window          number of consecutive k-grams a fingerprint is selected from
+   * @param maxFingerprints number of fingerprints kept at most
+   */
+  public Winnowing(int kgramLength, int window, int maxFingerprints) {
+    this.kgramLength = kgramLength;
+    this.window = window;
+    this.maxFingerprints = maxFingerprints;
+    long factor = 1;
+    for (int i = 1; i < kgramLength; i++) {
+      factor *= BASE;
+    }
+    this.outgoingFactor = factor;
+    this.kgram = new char[kgramLength];
+    this.kgramOffsets = new int[kgramLength];
+    this.windowHashes = new long[window];
+    this.windowStarts = new int[window];
+    this.windowEnds = new int[window];
+  }
+
+  @Override
+  public void accept(CharSequence text, int start, int end) {
+    if (truncated) {
+      return;
+    }
+    for (int i = start; i < end; i++, offset++) {
+      char c = text.charAt(i);
+      if (Character.isLetterOrDigit(c)) {
+        addChar(Character.toLowerCase(c));
+      }
+    }
+  }
+
+  @Override
+  public void finish() {
+    if (kgramCount > 0 && kgramCount < window) {
+      record(minIndex);
+    }
+  }
+
+  /**
+   * Gets the fingerprints selected so far.
+   *
+   * @return fingerprints in the order of their offsets
+   */
+  public Fingerprints getFingerprints() {
+    return fingerprints;
+  }
+
+  /**
+   * Checks whether the text went on after the last fingerprint that could be kept.
+   *
+   * @return true if the fingerprints cover only the beginning of the text
+   */
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+  private void addChar(char c) {
+    int slot = (int) (charCount % kgramLength);
+    if (charCount >= kgramLength) {
+      rollingHash -= kgram[slot] * outgoingFactor;
+    }
+    rollingHash = rollingHash * BASE + c;
+    kgram[slot] = c;
+    kgramOffsets[slot] = offset;
+    charCount++;
+    if (charCount >= kgramLength) {
+      int first = (int) (charCount % kgramLength);
+      addKgram(mix(rollingHash), kgramOffsets[first], offset + 1);
+    }
+  }
+
+  private void addKgram(long hash, int start, int end) {
+    long index = kgramCount++;
+    int slot = (int) (index % window);
+    windowHashes[slot] = hash;
+    windowStarts[slot] = start;
+    windowEnds[slot] = end;
+    if (minIndex < 0 || minIndex <= index - window) {
+      minIndex = Math.max(0, index - window + 1);
+      for (long i = minIndex + 1; i <= index; i++) {
+        if (hashAt(i) <= hashAt(minIndex)) {
+          minIndex = i;
+        }
+      }
+    } else if (hash <= hashAt(minIndex)) {
+      minIndex = index;
+    }
+    if (index >= window - 1) {
+      record(minIndex);
+    }
+  }
+
+  private long hashAt(long index) {
+    return windowHashes[(int) (index % window)];
+  }
+
+  private void record(long index) {
+    if (index == recordedIndex) {
+      return;
+    }
+    recordedIndex = index;
+    if (fingerprints.size() == maxFingerprints) {
+      truncated = true;
+      return;
+    }
+    int slot = (int) (index % window);
+    fingerprints.add(windowHashes[slot], windowStarts[slot], windowEnds[slot]);
+  }
+
+  /**
+   * Spreads the bits of the polynomial hash, whose low bits depend on the last characters only,
+   * so the minimum of a window is not biased towards some endings.
+   */
+  private static long mix(long hash) {
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    return hash ^ (hash >>> 33);
+  }
+}
@@ -0,0 +1,90 @@
+package ru.hse.antiplag.fileanalysisservice.text;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Hashes the word shingles of a text that arrives in pieces: every run of {@code size}
+ * consecutive words, overlapping, is hashed to 64 bits and passed on. Words are split and
+ * lower-cased the way terms are counted, but stop words are kept, since a copied passage is
+ * copied with them. A text shorter than one shingle gives a single shingle of all its words.
+ */
+public class WordShingles implements TextSink {
+
+  /**
+   * Number of words in a shingle.
+   */
+  public static final int SIZE = 4;
+
+  private static final int MAX_WORD_LENGTH = 64;
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final int size;
+  private final LongConsumer shingles;
+  private final long[] window;
+  private long wordCount;
+  private int wordLength;
+  private long wordHash = FNV_OFFSET;
+
+  /**
+   * Constructor for WordShingles.
+   *
+   * @param size     number of words in a shingle
+   * @param shingles consumer of the shingle hashes
+   */
+  public WordShingles(int size, LongConsumer shingles) {
+    this.size = size;
+    this.shingles = shingles;
+    this.window = new long[size];
+  }
+
+  @Override
+  public void accept(CharSequence text, int start, int end) {
+    for (int i = start; i < end; i++) {
+      char c = text.charAt(i);
+      if (Character.isLetterOrDigit(c)) {
+        if (wordLength < MAX_WORD_LENGTH) {
+          wordHash = (wordHash ^ Character.toLowerCase(c)) * FNV_PRIME;
+          wordLength++;
+        }
+      } else if (wordLength > 0) {
+        endWord();
+      }
+    }
+  }
+
+  @Override
+  public void finish() {
+    if (wordLength > 0) {
+      endWord();
+    }
+    if (wordCount > 0 && wordCount < size) {
+      shingles.accept(hashWindow((int) wordCount));
+    }
+  }
+
+  private void endWord() {
+    window[(int) (wordCount % size)] = wordHash;
+    wordCount++;
+    wordLength = 0;
+    wordHash = FNV_OFFSET;
+    if (wordCount >= size) {
+      shingles.accept(hashWindow(size));
+    }
+  }
+
+  /**
+   * Hashes the last {@code count} words in their order.
+   */
+  private long hashWindow(int count) {
+    long hash = FNV_OFFSET;
+    for (long i = wordCount - count; i < wordCount; i++) {
+      hash = (hash ^ window[(int) (i % size)]) * FNV_PRIME;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    return hash ^ (hash >>> 33);
+  }
+}
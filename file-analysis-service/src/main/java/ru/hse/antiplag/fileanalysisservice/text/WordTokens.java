@@ -0,0 +1,97 @@
+package ru.hse.antiplag.fileanalysisservice.text;
+
+import java.util.Arrays;
+
+/**
+ * Splits a text that arrives in pieces into words, the way {@link WordShingles} does, and keeps
+ * the 64-bit hash of every lower-cased word with its offsets in the original text, so a run of
+ * words can be mapped back to the text. Nothing else of the text is kept.
+ */
+public class WordTokens implements TextSink {
+
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private long[] hashes = new long[1024];
+  private int[] starts = new int[1024];
+  private int[] ends = new int[1024];
+  private int size;
+  private int offset;
+  private int wordStart = -1;
+  private long wordHash;
+
+  @Override
+  public void accept(CharSequence text, int start, int end) {
+    for (int i = start; i < end; i++, offset++) {
+      char c = text.charAt(i);
+      if (Character.isLetterOrDigit(c)) {
+        if (wordStart < 0) {
+          wordStart = offset;
+          wordHash = FNV_OFFSET;
+        }
+        wordHash = (wordHash ^ Character.toLowerCase(c)) * FNV_PRIME;
+      } else if (wordStart >= 0) {
+        endWord();
+      }
+    }
+  }
+
+  @Override
+  public void finish() {
+    if (wordStart >= 0) {
+      endWord();
+    }
+  }
+
+  /**
+   * Gets the number of words.
+   *
+   * @return number of words
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the hash of a word.
+   *
+   * @param index index of the word
+   * @return hash of the lower-cased word
+   */
+  public long getHash(int index) {
+    return hashes[index];
+  }
+
+  /**
+   * Gets the start of a word.
+   *
+   * @param index index of the word
+   * @return offset of the first character of the word
+   */
+  public int getStart(int index) {
+    return starts[index];
+  }
+
+  /**
+   * Gets the end of a word.
+   *
+   * @param index index of the word
+   * @return offset after the last character of the word
+   */
+  public int getEnd(int index) {
+    return ends[index];
+  }
+
+  private void endWord() {
+    if (size == hashes.length) {
+      hashes = Arrays.copyOf(hashes, size * 2);
+      starts = Arrays.copyOf(starts, size * 2);
+      ends = Arrays.copyOf(ends, size * 2);
+    }
+    hashes[size] = wordHash;
+    starts[size] = wordStart;
+    ends[size] = offset;
+    size++;
+    wordStart = -1;
+  }
+}
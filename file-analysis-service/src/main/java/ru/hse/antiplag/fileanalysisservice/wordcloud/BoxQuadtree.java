@@ -0,0 +1,98 @@
+package ru.hse.antiplag.fileanalysisservice.wordcloud;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Region quadtree of the boxes of placed words, answering whether a candidate box overlaps any
+ * of them without checking every word. Boxes are kept in the leaves, a box crossing a split line
+ * in every leaf it touches, so a query only looks at the leaves its own box touches.
+ */
+final class BoxQuadtree {
+
+  private static final int CAPACITY = 8;
+  private static final int MAX_DEPTH = 8;
+
+  private final double minX;
+  private final double minY;
+  private final double maxX;
+  private final double maxY;
+  private final int depth;
+  private List<PlacedWord> boxes = new ArrayList<>(CAPACITY);
+  private BoxQuadtree[] children;
+
+  BoxQuadtree(double width, double height) {
+    this(0, 0, width, height, 0);
+  }
+
+  private BoxQuadtree(double minX, double minY, double maxX, double maxY, int depth) {
+    this.minX = minX;
+    this.minY = minY;
+    this.maxX = maxX;
+    this.maxY = maxY;
+    this.depth = depth;
+  }
+
+  void insert(PlacedWord word) {
+    if (!touches(word.getX(), word.getY(), word.getWidth(), word.getHeight())) {
+      return;
+    }
+    if (children != null) {
+      for (BoxQuadtree child : children) {
+        child.insert(word);
+      }
+      return;
+    }
+    boxes.add(word);
+    if (boxes.size() > CAPACITY && depth < MAX_DEPTH) {
+      split();
+    }
+  }
+
+  /**
+   * Finds a placed word overlapping the given box.
+   *
+   * @return the overlapping word, or null if the box is free
+   */
+  PlacedWord findOverlap(double x, double y, double width, double height) {
+    if (!touches(x, y, width, height)) {
+      return null;
+    }
+    if (children == null) {
+      for (PlacedWord box : boxes) {
+        if (box.overlaps(x, y, width, height)) {
+          return box;
+        }
+      }
+      return null;
+    }
+    for (BoxQuadtree child : children) {
+      PlacedWord overlap = child.findOverlap(x, y, width, height);
+      if (overlap != null) {
+        return overlap;
+      }
+    }
+    return null;
+  }
+
+  private boolean touches(double x, double y, double width, double height) {
+    return x < maxX && x + width > minX && y < maxY && y + height > minY;
+  }
+
+  private void split() {
+    double midX = (minX + maxX) / 2;
+    double midY = (minY + maxY) / 2;
+    children = new BoxQuadtree[] {
+        new BoxQuadtree(minX, minY, midX, midY, depth + 1),
+        new BoxQuadtree(midX, minY, maxX, midY, depth + 1),
+        new BoxQuadtree(minX, midY, midX, maxY, depth + 1),
+        new BoxQuadtree(midX, midY, maxX, maxY, depth + 1)
+    };
+    for (PlacedWord box : boxes) {
+      for (BoxQuadtree child : children) {
+        child.insert(box);
+      }
+    }
+    boxes = null;
+  }
+}
@@ -0,0 +1,142 @@
+package ru.hse.antiplag.fileanalysisservice.wordcloud;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.hse.antiplag.fileanalysisservice.text.TermCount;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Word cloud renderer that lays the words out and draws them in process with headless Java2D,
+ * so no text leaves the service. Used unless {@code analysis.wordcloud.renderer} says otherwise.
+ */
+@Component
+@ConditionalOnProperty(name = "analysis.wordcloud.renderer", havingValue = "java2d", matchIfMissing = true)
+public class Java2DWordCloudRenderer implements WordCloudRenderer {
+
+  private static final Logger logger = LoggerFactory.getLogger(Java2DWordCloudRenderer.class);
+
+  private static final Color[] PALETTE = {
+      new Color(0x1f77b4), new Color(0xff7f0e), new Color(0x2ca02c), new Color(0xd62728),
+      new Color(0x9467bd), new Color(0x8c564b), new Color(0xe377c2), new Color(0x17becf)
+  };
+
+  private final int width;
+  private final int height;
+  private final String fontFamily;
+  private final WordCloudLayout layout;
+
+  /**
+   * Constructor for Java2DWordCloudRenderer.
+   *
+   * @param width       width of the image.
+   * @param height      height of the image.
+   * @param minFontSize font size of the least frequent words.
+   * @param maxFontSize font size of the most frequent word.
+   * @param fontFamily  font family of the words.
+   */
+  public Java2DWordCloudRenderer(@Value("${analysis.wordcloud.width:800}") int width,
+                                 @Value("${analysis.wordcloud.height:600}") int height,
+                                 @Value("${analysis.wordcloud.min-font-size:10}") int minFontSize,
+                                 @Value("${analysis.wordcloud.max-font-size:96}") int maxFontSize,
+                                 @Value("${analysis.wordcloud.font-family:SansSerif}") String fontFamily) {
+    this.width = width;
+    this.height = height;
+    this.fontFamily = fontFamily;
+    this.layout = new WordCloudLayout(width, height, minFontSize, maxFontSize);
+  }
+
+  @Override
+  public byte[] render(List<TermCount> terms) {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Graphics2D graphics = image.createGraphics();
+    try {
+      graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+      graphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+      graphics.setColor(Color.WHITE);
+      graphics.fillRect(0, 0, width, height);
+      FontCache fonts = new FontCache(graphics, fontFamily);
+      List<PlacedWord> words = layout.layout(terms, fonts);
+      for (PlacedWord word : words) {
+        draw(graphics, fonts, word);
+      }
+    } finally {
+      graphics.dispose();
+    }
+    ByteArrayOutputStream png = new ByteArrayOutputStream();
+    try {
+      ImageIO.write(image, "png", png);
+    } catch (IOException e) {
+      logger.error("Failed to encode word cloud image", e);
+      return null;
+    }
+    return png.toByteArray();
+  }
+
+  private static void draw(Graphics2D graphics, FontCache fonts, PlacedWord word) {
+    FontMetrics metrics = fonts.metrics(word.getFontSize());
+    graphics.setFont(metrics.getFont());
+    graphics.setColor(PALETTE[word.getRank() % PALETTE.length]);
+    if (!word.isVertical()) {
+      graphics.drawString(word.getTerm(), (float) word.getX(), (float) (word.getY() + metrics.getAscent()));
+      return;
+    }
+    AffineTransform transform = graphics.getTransform();
+    graphics.translate(word.getX() + metrics.getAscent(), word.getY() + word.getHeight());
+    graphics.rotate(-Math.PI / 2);
+    graphics.drawString(word.getTerm(), 0f, 0f);
+    graphics.setTransform(transform);
+  }
+
+  /**
+   * Measures words with the metrics of the fonts of one image, creating each font size once.
+   */
+  private static final class FontCache implements WordCloudLayout.Measurer {
+    private final Graphics2D graphics;
+    private final String family;
+    private FontMetrics[] metrics = new FontMetrics[128];
+
+    private FontCache(Graphics2D graphics, String family) {
+      this.graphics = graphics;
+      this.family = family;
+    }
+
+    private FontMetrics metrics(int fontSize) {
+      if (fontSize >= metrics.length) {
+        metrics = Arrays.copyOf(metrics, fontSize + 1);
+      }
+      FontMetrics fontMetrics = metrics[fontSize];
+      if (fontMetrics == null) {
+        fontMetrics = graphics.getFontMetrics(new Font(family, Font.BOLD, fontSize));
+        metrics[fontSize] = fontMetrics;
+      }
+      return fontMetrics;
+    }
+
+    @Override
+    public double width(String term, int fontSize) {
+      FontMetrics fontMetrics = metrics(fontSize);
+      return fontMetrics.getStringBounds(term, graphics).getWidth();
+    }
+
+    @Override
+    public double height(int fontSize) {
+      FontMetrics fontMetrics = metrics(fontSize);
+      return fontMetrics.getAscent() + fontMetrics.getDescent();
+    }
+  }
+}
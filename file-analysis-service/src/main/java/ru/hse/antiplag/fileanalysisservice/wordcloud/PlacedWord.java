@@ -0,0 +1,115 @@
+package ru.hse.antiplag.fileanalysisservice.wordcloud;
+
+/**
+ * A word placed on the word cloud canvas, with the box it occupies.
+ */
+public class PlacedWord {
+  private final String term;
+  private final int rank;
+  private final int fontSize;
+  private final boolean vertical;
+  private final double x;
+  private final double y;
+  private final double width;
+  private final double height;
+
+  /**
+   * Constructor for PlacedWord.
+   *
+   * @param term     the word
+   * @param rank     position of the word among the most frequent terms, from 0
+   * @param fontSize font size of the word
+   * @param vertical whether the word is rotated to read from bottom to top
+   * @param x        left edge of the box
+   * @param y        top edge of the box
+   * @param width    width of the box
+   * @param height   height of the box
+   */
+  public PlacedWord(String term, int rank, int fontSize, boolean vertical, double x, double y, double width, double height) {
+    this.term = term;
+    this.rank = rank;
+    this.fontSize = fontSize;
+    this.vertical = vertical;
+    this.x = x;
+    this.y = y;
+    this.width = width;
+    this.height = height;
+  }
+
+  /**
+   * Gets the word.
+   * @return the word.
+   */
+  public String getTerm() {
+    return term;
+  }
+
+  /**
+   * Gets the position of the word among the most frequent terms.
+   * @return the rank, from 0.
+   */
+  public int getRank() {
+    return rank;
+  }
+
+  /**
+   * Gets the font size.
+   * @return the font size.
+   */
+  public int getFontSize() {
+    return fontSize;
+  }
+
+  /**
+   * Checks whether the word reads from bottom to top.
+   * @return true if the word is rotated.
+   */
+  public boolean isVertical() {
+    return vertical;
+  }
+
+  /**
+   * Gets the left edge of the box.
+   * @return the left edge.
+   */
+  public double getX() {
+    return x;
+  }
+
+  /**
+   * Gets the top edge of the box.
+   * @return the top edge.
+   */
+  public double getY() {
+    return y;
+  }
+
+  /**
+   * Gets the width of the box.
+   * @return the width.
+   */
+  public double getWidth() {
+    return width;
+  }
+
+  /**
+   * Gets the height of the box.
+   * @return the height.
+   */
+  public double getHeight() {
+    return height;
+  }
+
+  /**
+   * Checks whether the box of this word overlaps the given box.
+   *
+   * @param otherX      left edge of the other box
+   * @param otherY      top edge of the other box
+   * @param otherWidth  width of the other box
+   * @param otherHeight height of the other box
+   * @return true if the boxes overlap
+   */
+  public boolean overlaps(double otherX, double otherY, double otherWidth, double otherHeight) {
+    return x < otherX + otherWidth && otherX < x + width && y < otherY + otherHeight && otherY < y + height;
+  }
+}
@@ -0,0 +1,63 @@
+package ru.hse.antiplag.fileanalysisservice.wordcloud;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import ru.hse.antiplag.fileanalysisservice.dto.WordCloudRequest;
+import ru.hse.antiplag.fileanalysisservice.text.TermCount;
+
+import java.util.List;
+
+/**
+ * Word cloud renderer backed by the QuickChart word cloud API,
+ * selected with {@code analysis.wordcloud.renderer=quickchart}.
+ */
+@Component
+@ConditionalOnProperty(name = "analysis.wordcloud.renderer", havingValue = "quickchart")
+public class QuickChartWordCloudRenderer implements WordCloudRenderer {
+
+  private static final int MAX_REPEATS = 50;
+
+  private final WebClient wordCloudWebClient;
+
+  /**
+   * Constructor for QuickChartWordCloudRenderer.
+   *
+   * @param wordCloudWebClient the web client for the word cloud API.
+   */
+  public QuickChartWordCloudRenderer(@Qualifier("wordCloudWebClient") WebClient wordCloudWebClient) {
+    this.wordCloudWebClient = wordCloudWebClient;
+  }
+
+  @Override
+  public byte[] render(List<TermCount> terms) {
+    WordCloudRequest request = new WordCloudRequest(toWordCloudText(terms));
+    request.setFormat("png");
+    return wordCloudWebClient.post()
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(BodyInserters.fromValue(request))
+        .retrieve()
+        .bodyToMono(byte[].class)
+        .block();
+  }
+
+  /**
+   * Builds the text the word cloud is made of. Each term is repeated in proportion to its
+   * count, at most {@value #MAX_REPEATS} times, so the request stays small whatever the file
+   * size while the relative sizes are kept.
+   */
+  private static String toWordCloudText(List<TermCount> terms) {
+    int topCount = terms.get(0).getCount();
+    StringBuilder text = new StringBuilder();
+    for (TermCount term : terms) {
+      int repeats = Math.max(1, (int) ((long) term.getCount() * MAX_REPEATS / topCount));
+      for (int i = 0; i < repeats; i++) {
+        text.append(term.getTerm()).append(' ');
+      }
+    }
+    return text.toString();
+  }
+}
@@ -0,0 +1,156 @@
+package ru.hse.antiplag.fileanalysisservice.wordcloud;
+
+import ru.hse.antiplag.fileanalysisservice.text.TermCount;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Places words on a canvas, the most frequent first and largest. Every word walks an
+ * Archimedean spiral out of the center of the canvas until its box overlaps no placed word;
+ * overlaps are checked against a {@link BoxQuadtree}. A word that fits nowhere is skipped, and
+ * so is every later word whose box is not smaller than one that already did not fit.
+ */
+public class WordCloudLayout {
+
+  private static final double SPIRAL_PITCH = 6.0;
+  private static final double MIN_SPIRAL_ARC = 4.0;
+  private static final int VERTICAL_EVERY = 5;
+  private static final double GOLDEN_ANGLE = Math.PI * (3 - Math.sqrt(5));
+
+  private final int width;
+  private final int height;
+  private final int minFontSize;
+  private final int maxFontSize;
+
+  /**
+   * Measures the text of a word in a given font size.
+   */
+  public interface Measurer {
+
+    /**
+     * Measures the width of a word.
+     *
+     * @param term     the word
+     * @param fontSize font size
+     * @return width of the word
+     */
+    double width(String term, int fontSize);
+
+    /**
+     * Measures the line height of a font size.
+     *
+     * @param fontSize font size
+     * @return height of a line
+     */
+    double height(int fontSize);
+  }
+
+  /**
+   * Constructor for WordCloudLayout.
+   *
+   * @param width       width of the canvas
+   * @param height      height of the canvas
+   * @param minFontSize font size of the least frequent words
+   * @param maxFontSize font size of the most frequent word
+   */
+  public WordCloudLayout(int width, int height, int minFontSize, int maxFontSize) {
+    this.width = width;
+    this.height = height;
+    this.minFontSize = minFontSize;
+    this.maxFontSize = maxFontSize;
+  }
+
+  /**
+   * Places the given words.
+   *
+   * @param terms    terms with their counts, the most frequent first
+   * @param measurer measurer of the text of the words
+   * @return placed words, in the order of the terms
+   */
+  public List<PlacedWord> layout(List<TermCount> terms, Measurer measurer) {
+    List<PlacedWord> placed = new ArrayList<>(terms.size());
+    if (terms.isEmpty()) {
+      return placed;
+    }
+    BoxQuadtree quadtree = new BoxQuadtree(width, height);
+    double topCount = terms.get(0).getCount();
+    List<double[]> misses = new ArrayList<>();
+    for (int rank = 0; rank < terms.size(); rank++) {
+      TermCount term = terms.get(rank);
+      int fontSize = fontSize(term.getCount() / topCount);
+      boolean vertical = rank % VERTICAL_EVERY == VERTICAL_EVERY - 1;
+      double textWidth = measurer.width(term.getTerm(), fontSize);
+      double textHeight = measurer.height(fontSize);
+      double boxWidth = vertical ? textHeight : textWidth;
+      double boxHeight = vertical ? textWidth : textHeight;
+      if (coversMiss(misses, boxWidth, boxHeight)) {
+        continue;
+      }
+      PlacedWord word = place(quadtree, term.getTerm(), rank, fontSize, vertical, boxWidth, boxHeight);
+      if (word == null) {
+        misses.removeIf(miss -> miss[0] >= boxWidth && miss[1] >= boxHeight);
+        misses.add(new double[] {boxWidth, boxHeight});
+        continue;
+      }
+      quadtree.insert(word);
+      placed.add(word);
+    }
+    return placed;
+  }
+
+  /**
+   * Checks whether a box is at least as wide and as high as a box that already did not fit.
+   * The canvas only fills up, so such a box does not fit either. The misses are kept without the
+   * ones covering another miss, and font sizes only decrease with the rank, so the list stays short.
+   */
+  private static boolean coversMiss(List<double[]> misses, double boxWidth, double boxHeight) {
+    for (double[] miss : misses) {
+      if (boxWidth >= miss[0] && boxHeight >= miss[1]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Scales the font size with the square root of the relative frequency, so that the long tail
+   * of rare words stays readable next to the most frequent one.
+   */
+  private int fontSize(double relativeCount) {
+    return (int) Math.round(minFontSize + (maxFontSize - minFontSize) * Math.sqrt(relativeCount));
+  }
+
+  private PlacedWord place(BoxQuadtree quadtree, String term, int rank, int fontSize, boolean vertical,
+                           double boxWidth, double boxHeight) {
+    if (boxWidth > width || boxHeight > height) {
+      return null;
+    }
+    double centerX = width / 2.0;
+    double centerY = height / 2.0;
+    double aspect = (double) width / height;
+    double maxRadius = Math.hypot(centerX / aspect, centerY);
+    double angle = rank * GOLDEN_ANGLE;
+    double radius = 0;
+    PlacedWord blocker = null;
+    // Steps of half the shorter side of the box rarely jump over a slot it fits in.
+    double arc = Math.max(MIN_SPIRAL_ARC, Math.min(boxWidth, boxHeight) / 2);
+    while (radius <= maxRadius) {
+      double x = centerX + radius * aspect * Math.cos(angle) - boxWidth / 2;
+      double y = centerY + radius * Math.sin(angle) - boxHeight / 2;
+      if (x >= 0 && y >= 0 && x + boxWidth <= width && y + boxHeight <= height) {
+        // Neighbouring points of the spiral are mostly blocked by the same word.
+        if (blocker == null || !blocker.overlaps(x, y, boxWidth, boxHeight)) {
+          blocker = quadtree.findOverlap(x, y, boxWidth, boxHeight);
+          if (blocker == null) {
+            return new PlacedWord(term, rank, fontSize, vertical, x, y, boxWidth, boxHeight);
+          }
+        }
+      }
+      double step = arc / Math.max(radius, arc);
+      angle += step;
+      radius += SPIRAL_PITCH * step / (2 * Math.PI);
+    }
+    return null;
+  }
+}
@@ -0,0 +1,20 @@
+package ru.hse.antiplag.fileanalysisservice.wordcloud;
+
+import ru.hse.antiplag.fileanalysisservice.text.TermCount;
+
+import java.util.List;
+
+/**
+ * Renders a word cloud image from the most frequent terms of a text.
+ * The implementation is chosen with the {@code analysis.wordcloud.renderer} property.
+ */
+public interface WordCloudRenderer {
+
+  /**
+   * Renders a word cloud.
+   *
+   * @param terms terms with their counts, the most frequent first, never empty
+   * @return PNG image, or null if no image could be produced
+   */
+  byte[] render(List<TermCount> terms);
+}
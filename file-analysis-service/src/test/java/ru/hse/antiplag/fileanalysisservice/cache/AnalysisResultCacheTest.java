@@ -0,0 +1,117 @@
+package ru.hse.antiplag.fileanalysisservice.cache;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import ru.hse.antiplag.fileanalysisservice.dto.AnalysisResult;
+import ru.hse.antiplag.fileanalysisservice.dto.TextStatistics;
+import ru.hse.antiplag.fileanalysisservice.repository.AnalysisResultRepository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link AnalysisResultCache}.
+ */
+class AnalysisResultCacheTest {
+
+  private final AnalysisResultRepository analysisResultRepository = mock(AnalysisResultRepository.class);
+
+  @Test
+  void getLoadsOnceAndWritesNothingTest() {
+    AnalysisResultCache cache = new AnalysisResultCache(analysisResultRepository, 100, 500);
+    AnalysisResult aboba = result();
+    AtomicInteger loads = new AtomicInteger();
+
+    for (int i = 0; i < 3; i++) {
+      Optional<AnalysisResult> found = cache.get("aboba", id -> {
+        loads.incrementAndGet();
+        return Optional.of(aboba);
+      });
+      assertSame(aboba, found.orElseThrow());
+    }
+
+    assertEquals(1, loads.get());
+    assertEquals(1, cache.getPendingAccessCount());
+    verify(analysisResultRepository, never()).updateAccessTimes(any(), any());
+  }
+
+  @Test
+  void absentResultsAreNotCachedTest() {
+    AnalysisResultCache cache = new AnalysisResultCache(analysisResultRepository, 100, 500);
+    AtomicInteger loads = new AtomicInteger();
+
+    cache.get("kek", id -> {
+      loads.incrementAndGet();
+      return Optional.empty();
+    });
+    Optional<AnalysisResult> found = cache.get("kek", id -> {
+      loads.incrementAndGet();
+      return Optional.empty();
+    });
+
+    assertTrue(found.isEmpty());
+    assertEquals(2, loads.get());
+    assertEquals(0, cache.getPendingAccessCount());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void flushWritesAccessTimesInBatchesTest() {
+    AnalysisResultCache cache = new AnalysisResultCache(analysisResultRepository, 100, 2);
+    LocalDateTime before = LocalDateTime.now();
+    for (String fileId : List.of("aboba-1", "aboba-2", "aboba-3", "aboba-1")) {
+      cache.get(fileId, id -> Optional.of(result()));
+    }
+
+    cache.flushAccessTimes();
+
+    ArgumentCaptor<Collection<String>> fileIds = ArgumentCaptor.forClass(Collection.class);
+    ArgumentCaptor<LocalDateTime> accessedAt = ArgumentCaptor.forClass(LocalDateTime.class);
+    verify(analysisResultRepository, times(2)).updateAccessTimes(fileIds.capture(), accessedAt.capture());
+    assertEquals(2, fileIds.getAllValues().get(0).size());
+    assertEquals(Set.of("aboba-1", "aboba-2", "aboba-3"),
+        fileIds.getAllValues().stream().flatMap(Collection::stream).collect(Collectors.toSet()));
+    assertTrue(accessedAt.getAllValues().stream().noneMatch(time -> time.isBefore(before)));
+    assertEquals(0, cache.getPendingAccessCount());
+
+    cache.flushAccessTimes();
+    verify(analysisResultRepository, times(2)).updateAccessTimes(any(), any());
+  }
+
+  @Test
+  void failedFlushIsRetriedTest() {
+    AnalysisResultCache cache = new AnalysisResultCache(analysisResultRepository, 100, 500);
+    cache.put("kek", result());
+    cache.get("kek", id -> Optional.empty());
+    when(analysisResultRepository.updateAccessTimes(any(), any()))
+        .thenThrow(new IllegalStateException("Database is down"))
+        .thenReturn(1);
+
+    cache.flushAccessTimes();
+    assertEquals(1, cache.getPendingAccessCount());
+    cache.flushAccessTimes();
+
+    assertEquals(0, cache.getPendingAccessCount());
+    verify(analysisResultRepository, times(2)).updateAccessTimes(eq(List.of("kek")), any());
+  }
+
+  private static AnalysisResult result() {
+    return new AnalysisResult(new TextStatistics(1, 2, 3), "/path/to/aboba.png");
+  }
+}
@@ -5,13 +5,31 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.web.servlet.MockMvc;
+import ru.hse.antiplag.fileanalysisservice.dto.AnalysisJob;
+import ru.hse.antiplag.fileanalysisservice.dto.AnalysisJobStatus;
 import ru.hse.antiplag.fileanalysisservice.dto.AnalysisResult;
+import ru.hse.antiplag.fileanalysisservice.dto.MatchedPassage;
+import ru.hse.antiplag.fileanalysisservice.dto.PassageMatch;
+import ru.hse.antiplag.fileanalysisservice.dto.SimilarFile;
+import ru.hse.antiplag.fileanalysisservice.dto.SimilarPair;
+import ru.hse.antiplag.fileanalysisservice.dto.SimilarityJob;
 import ru.hse.antiplag.fileanalysisservice.dto.TextStatistics;
+import ru.hse.antiplag.fileanalysisservice.service.AnalysisJobService;
 import ru.hse.antiplag.fileanalysisservice.service.FileAnalysisService;
+import ru.hse.antiplag.fileanalysisservice.service.SimilarityJobService;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -27,6 +45,12 @@ public class FileAnalysisControllerTest {
   @MockBean
   private FileAnalysisService fileAnalysisService;
 
+  @MockBean
+  private AnalysisJobService analysisJobService;
+
+  @MockBean
+  private SimilarityJobService similarityJobService;
+
   /**
    * Test for analyzing a file successfully.
    *
@@ -47,4 +71,149 @@ public class FileAnalysisControllerTest {
         .andExpect(jsonPath("$.textStatistics.characterCount").value(1000))
         .andExpect(jsonPath("$.wordCloudPath").value("path/to/cloud.png"));
   }
+
+  @Test
+  void findSimilarFiles_shouldReturnSimilarFiles() throws Exception {
+    when(fileAnalysisService.findSimilarFiles("file-aboba", 0.7))
+        .thenReturn(List.of(new SimilarFile("file-aboba-copy", 0.9375)));
+
+    mockMvc.perform(get("/api/v1/analysis/{fileId}/similar", "file-aboba").param("threshold", "0.7"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].fileId").value("file-aboba-copy"))
+        .andExpect(jsonPath("$[0].similarity").value(0.9375));
+  }
+
+  @Test
+  void findSimilarFiles_whenThresholdIsOutOfRange_shouldReturnBadRequest() throws Exception {
+    mockMvc.perform(get("/api/v1/analysis/{fileId}/similar", "file-kek").param("threshold", "1.5"))
+        .andExpect(status().isBadRequest());
+    verifyNoInteractions(fileAnalysisService);
+  }
+
+  @Test
+  void findMatchingPassages_shouldReturnPassagesOfBothFiles() throws Exception {
+    when(fileAnalysisService.findMatchingPassages("file-aboba")).thenReturn(List.of(
+        new PassageMatch("file-kek", 120, List.of(new MatchedPassage(10, 130, 500, 620)))));
+
+    mockMvc.perform(get("/api/v1/analysis/{fileId}/matches", "file-aboba"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].fileId").value("file-kek"))
+        .andExpect(jsonPath("$[0].matchedCharacters").value(120))
+        .andExpect(jsonPath("$[0].passages[0].start").value(10))
+        .andExpect(jsonPath("$[0].passages[0].otherEnd").value(620));
+  }
+
+  @Test
+  void compareFiles_shouldReturnCommonPassages() throws Exception {
+    when(fileAnalysisService.compareFiles("file-aboba", "file-kek", 5)).thenReturn(
+        new PassageMatch("file-kek", 45, List.of(new MatchedPassage(5, 50, 100, 145))));
+
+    mockMvc.perform(get("/api/v1/analysis/compare/{fileId}/{otherFileId}", "file-aboba", "file-kek")
+            .param("minWords", "5"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.fileId").value("file-kek"))
+        .andExpect(jsonPath("$.passages[0].start").value(5))
+        .andExpect(jsonPath("$.passages[0].otherStart").value(100));
+  }
+
+  @Test
+  void compareFiles_shouldRejectNonPositiveMinLengthAndMissingFiles() throws Exception {
+    mockMvc.perform(get("/api/v1/analysis/compare/{fileId}/{otherFileId}", "file-aboba", "file-kek")
+            .param("minWords", "0"))
+        .andExpect(status().isBadRequest());
+    when(fileAnalysisService.compareFiles("file-aboba", "file-lol", 8)).thenReturn(null);
+
+    mockMvc.perform(get("/api/v1/analysis/compare/{fileId}/{otherFileId}", "file-aboba", "file-lol"))
+        .andExpect(status().isNotFound());
+  }
+
+  @Test
+  void submitAnalysisJob_shouldReturnAcceptedWithLocation() throws Exception {
+    AnalysisJob job = new AnalysisJob("job-aboba", "file-aboba", AnalysisJobStatus.QUEUED, null, null,
+        LocalDateTime.now(), null);
+    when(analysisJobService.submit("file-aboba")).thenReturn(job);
+
+    mockMvc.perform(post("/api/v1/analysis/{fileId}/jobs", "file-aboba"))
+        .andExpect(status().isAccepted())
+        .andExpect(header().string("Location", "/api/v1/analysis/jobs/job-aboba"))
+        .andExpect(jsonPath("$.jobId").value("job-aboba"))
+        .andExpect(jsonPath("$.status").value("QUEUED"));
+  }
+
+  @Test
+  void submitAnalysisJob_whenQueueIsFull_shouldReturnServiceUnavailable() throws Exception {
+    when(analysisJobService.submit(anyString())).thenReturn(null);
+
+    mockMvc.perform(post("/api/v1/analysis/{fileId}/jobs", "file-kek"))
+        .andExpect(status().isServiceUnavailable())
+        .andExpect(header().string("Retry-After", "5"));
+  }
+
+  @Test
+  void getAnalysisJob_shouldReturnResultOrNotFound() throws Exception {
+    AnalysisResult result = new AnalysisResult(new TextStatistics(1, 2, 3), "path/to/cloud.png");
+    AnalysisJob job = new AnalysisJob("job-aboba", "file-aboba", AnalysisJobStatus.COMPLETED, result, null,
+        LocalDateTime.now(), LocalDateTime.now());
+    when(analysisJobService.getJob("job-aboba")).thenReturn(job);
+
+    mockMvc.perform(get("/api/v1/analysis/jobs/{jobId}", "job-aboba"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.status").value("COMPLETED"))
+        .andExpect(jsonPath("$.result.textStatistics.wordCount").value(2));
+    mockMvc.perform(get("/api/v1/analysis/jobs/{jobId}", "job-kek"))
+        .andExpect(status().isNotFound());
+  }
+
+  @Test
+  void submitSimilarityJob_shouldReturnAcceptedWithLocation() throws Exception {
+    SimilarityJob job = new SimilarityJob("job-aboba", AnalysisJobStatus.QUEUED, 0.7, 2, 0, 0, 0, List.of(), null,
+        LocalDateTime.now(), null);
+    when(similarityJobService.submit(List.of("file-aboba", "file-kek"), 0.7)).thenReturn(job);
+
+    mockMvc.perform(post("/api/v1/analysis/similarity-jobs").contentType(APPLICATION_JSON)
+            .content("{\"fileIds\": [\"file-aboba\", \"file-kek\"], \"threshold\": 0.7}"))
+        .andExpect(status().isAccepted())
+        .andExpect(header().string("Location", "/api/v1/analysis/similarity-jobs/job-aboba"))
+        .andExpect(jsonPath("$.status").value("QUEUED"))
+        .andExpect(jsonPath("$.fileCount").value(2));
+  }
+
+  @Test
+  void submitSimilarityJob_shouldRejectBadRequestsAndFullQueue() throws Exception {
+    mockMvc.perform(post("/api/v1/analysis/similarity-jobs").contentType(APPLICATION_JSON)
+            .content("{\"fileIds\": [], \"threshold\": 0.7}"))
+        .andExpect(status().isBadRequest());
+    mockMvc.perform(post("/api/v1/analysis/similarity-jobs").contentType(APPLICATION_JSON)
+            .content("{\"fileIds\": [\"file-aboba\"], \"threshold\": 0}"))
+        .andExpect(status().isBadRequest());
+    verifyNoInteractions(similarityJobService);
+    when(similarityJobService.submit(anyList(), anyDouble())).thenReturn(null);
+
+    mockMvc.perform(post("/api/v1/analysis/similarity-jobs").contentType(APPLICATION_JSON)
+            .content("{\"fileIds\": [\"file-lol\"]}"))
+        .andExpect(status().isServiceUnavailable())
+        .andExpect(header().string("Retry-After", "5"));
+  }
+
+  @Test
+  void getSimilarityJobAndPairs_shouldReturnProgressAndPairs() throws Exception {
+    SimilarityJob job = new SimilarityJob("job-aboba", AnalysisJobStatus.RUNNING, 0.5, 3, 3, 1, 1, List.of("file-lol"),
+        null, LocalDateTime.now(), null);
+    when(similarityJobService.getJob("job-aboba")).thenReturn(job);
+    when(similarityJobService.getPairs("job-aboba", 0, 100))
+        .thenReturn(List.of(new SimilarPair("file-aboba", "file-kek", 0.75)));
+
+    mockMvc.perform(get("/api/v1/analysis/similarity-jobs/{jobId}", "job-aboba"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.comparedFiles").value(1))
+        .andExpect(jsonPath("$.skippedFileIds[0]").value("file-lol"));
+    mockMvc.perform(get("/api/v1/analysis/similarity-jobs/{jobId}", "job-kek"))
+        .andExpect(status().isNotFound());
+    mockMvc.perform(get("/api/v1/analysis/similarity-jobs/{jobId}/pairs", "job-aboba"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].otherFileId").value("file-kek"))
+        .andExpect(jsonPath("$[0].similarity").value(0.75));
+    mockMvc.perform(get("/api/v1/analysis/similarity-jobs/{jobId}/pairs", "job-aboba").param("size", "0"))
+        .andExpect(status().isBadRequest());
+  }
 }
@@ -0,0 +1,95 @@
+package ru.hse.antiplag.fileanalysisservice.events;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.hse.antiplag.fileanalysisservice.config.FileStoredEventsKafkaConfig;
+import ru.hse.antiplag.fileanalysisservice.repository.AnalysisResultRepository;
+import ru.hse.antiplag.fileanalysisservice.service.FileAnalysisService;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link FileStoredEventListener}, against an embedded broker and the consumer
+ * settings of {@code application.properties}.
+ */
+@SpringBootTest(
+    classes = {FileStoredEventListener.class, FileStoredEventsKafkaConfig.class, KafkaAutoConfiguration.class},
+    properties = {
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "analysis.events.kafka.enabled=true",
+        "analysis.events.kafka.retry.initial-interval=PT0.1S",
+        "analysis.events.kafka.topic=" + FileStoredEventListenerTest.TOPIC
+    })
+@EmbeddedKafka(partitions = 1, topics = FileStoredEventListenerTest.TOPIC)
+@DirtiesContext
+class FileStoredEventListenerTest {
+
+  static final String TOPIC = "file-stored-test";
+
+  @Autowired
+  private KafkaTemplate<String, String> kafkaTemplate;
+
+  @MockBean
+  private FileAnalysisService fileAnalysisService;
+
+  @MockBean
+  private AnalysisResultRepository analysisResultRepository;
+
+  @BeforeEach
+  void setUp() {
+    given(analysisResultRepository.existsByFileId(anyString())).willReturn(true);
+  }
+
+  @Test
+  void textFileIsAnalyzedTest() {
+    send("aboba-text", "text/plain;charset=UTF-8");
+
+    verify(fileAnalysisService, timeout(10000)).analyzeFile("aboba-text");
+  }
+
+  @Test
+  void otherContentTypesAreSkippedTest() {
+    send("kek-image", "image/png");
+    send("kek-unknown", null);
+    send("kek-text", "text/markdown");
+
+    verify(fileAnalysisService, timeout(10000)).analyzeFile("kek-text");
+    verify(fileAnalysisService, never()).analyzeFile("kek-image");
+    verify(fileAnalysisService, never()).analyzeFile("kek-unknown");
+  }
+
+  @Test
+  void malformedEventIsSkippedTest() {
+    kafkaTemplate.send(TOPIC, "aboba-broken", "not an event");
+    send("aboba-after-broken", "text/plain");
+
+    verify(fileAnalysisService, timeout(10000)).analyzeFile("aboba-after-broken");
+    verify(fileAnalysisService, never()).analyzeFile("aboba-broken");
+  }
+
+  @Test
+  void failedAnalysisIsRetriedTest() {
+    given(analysisResultRepository.existsByFileId("lol-outage")).willReturn(false, true);
+
+    send("lol-outage", "text/plain");
+
+    verify(fileAnalysisService, timeout(10000).times(2)).analyzeFile("lol-outage");
+  }
+
+  private void send(String fileId, String contentType) {
+    String type = contentType == null ? "null" : "\"" + contentType + "\"";
+    kafkaTemplate.send(TOPIC, fileId,
+        "{\"fileId\":\"" + fileId + "\",\"hash\":\"aboba-hash\",\"size\":5,\"contentType\":" + type + "}");
+  }
+}
@@ -0,0 +1,142 @@
+package ru.hse.antiplag.fileanalysisservice.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.hse.antiplag.fileanalysisservice.dto.AnalysisJob;
+import ru.hse.antiplag.fileanalysisservice.dto.AnalysisJobStatus;
+import ru.hse.antiplag.fileanalysisservice.dto.AnalysisResult;
+import ru.hse.antiplag.fileanalysisservice.dto.TextStatistics;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link AnalysisJobServiceImpl}.
+ */
+class AnalysisJobServiceImplTest {
+
+  private final FileAnalysisService fileAnalysisService = mock(FileAnalysisService.class);
+  private final CountDownLatch release = new CountDownLatch(1);
+  private AnalysisJobServiceImpl analysisJobService;
+
+  @AfterEach
+  void tearDown() {
+    release.countDown();
+    analysisJobService.shutdown();
+  }
+
+  @Test
+  void completedJobHasResultTest() throws Exception {
+    AnalysisResult result = new AnalysisResult(new TextStatistics(1, 2, 3), "/path/to/kek.png");
+    when(fileAnalysisService.analyzeFile("aboba")).thenReturn(result);
+    analysisJobService = new AnalysisJobServiceImpl(fileAnalysisService, 2, 10, Duration.ofMinutes(10));
+
+    AnalysisJob submitted = analysisJobService.submit("aboba");
+
+    assertNotNull(submitted);
+    assertEquals("aboba", submitted.getFileId());
+    AnalysisJob finished = awaitFinished(submitted.getJobId());
+    assertEquals(AnalysisJobStatus.COMPLETED, finished.getStatus());
+    assertSame(result, finished.getResult());
+    assertNotNull(finished.getFinishedAt());
+  }
+
+  @Test
+  void failedJobHasErrorTest() throws Exception {
+    when(fileAnalysisService.analyzeFile("aboba")).thenThrow(new IllegalStateException("kek"));
+    analysisJobService = new AnalysisJobServiceImpl(fileAnalysisService, 1, 10, Duration.ofMinutes(10));
+
+    AnalysisJob finished = awaitFinished(analysisJobService.submit("aboba").getJobId());
+
+    assertEquals(AnalysisJobStatus.FAILED, finished.getStatus());
+    assertEquals("kek", finished.getError());
+    assertNull(finished.getResult());
+  }
+
+  @Test
+  void sameFileSharesActiveJobTest() throws Exception {
+    blockAnalysis();
+    analysisJobService = new AnalysisJobServiceImpl(fileAnalysisService, 1, 10, Duration.ofMinutes(10));
+
+    AnalysisJob first = analysisJobService.submit("aboba");
+    AnalysisJob second = analysisJobService.submit("aboba");
+    release.countDown();
+
+    assertEquals(first.getJobId(), second.getJobId());
+    awaitFinished(first.getJobId());
+    verify(fileAnalysisService, times(1)).analyzeFile("aboba");
+    AnalysisJob third = analysisJobService.submit("aboba");
+    assertNotEquals(first.getJobId(), third.getJobId(), "a finished job is not reused");
+  }
+
+  @Test
+  void rejectsJobsWhenQueueIsFullTest() throws Exception {
+    blockAnalysis();
+    analysisJobService = new AnalysisJobServiceImpl(fileAnalysisService, 1, 1, Duration.ofMinutes(10));
+
+    AnalysisJob running = analysisJobService.submit("aboba-1");
+    awaitStatus(running.getJobId(), AnalysisJobStatus.RUNNING);
+    AnalysisJob queued = analysisJobService.submit("aboba-2");
+    AnalysisJob rejected = analysisJobService.submit("aboba-3");
+
+    assertEquals(AnalysisJobStatus.QUEUED, analysisJobService.getJob(queued.getJobId()).getStatus());
+    assertNull(rejected);
+    release.countDown();
+    assertEquals(AnalysisJobStatus.COMPLETED, awaitFinished(queued.getJobId()).getStatus());
+    assertNotNull(analysisJobService.submit("aboba-3"), "accepted again once the queue drains");
+  }
+
+  @Test
+  void forgetsExpiredJobsTest() throws Exception {
+    when(fileAnalysisService.analyzeFile(anyString())).thenReturn(new AnalysisResult());
+    analysisJobService = new AnalysisJobServiceImpl(fileAnalysisService, 1, 10, Duration.ZERO);
+
+    String jobId = analysisJobService.submit("aboba").getJobId();
+    awaitFinished(jobId);
+    Thread.sleep(5);
+    analysisJobService.deleteExpiredJobs();
+
+    assertNull(analysisJobService.getJob(jobId));
+  }
+
+  private void blockAnalysis() {
+    when(fileAnalysisService.analyzeFile(anyString())).thenAnswer(invocation -> {
+      release.await(10, TimeUnit.SECONDS);
+      return new AnalysisResult();
+    });
+  }
+
+  private AnalysisJob awaitFinished(String jobId) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (System.nanoTime() < deadline) {
+      AnalysisJob job = analysisJobService.getJob(jobId);
+      if (job.getStatus() == AnalysisJobStatus.COMPLETED || job.getStatus() == AnalysisJobStatus.FAILED) {
+        return job;
+      }
+      Thread.sleep(5);
+    }
+    throw new AssertionError("Job " + jobId + " did not finish");
+  }
+
+  private void awaitStatus(String jobId, AnalysisJobStatus status) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (analysisJobService.getJob(jobId).getStatus() != status) {
+      if (System.nanoTime() > deadline) {
+        throw new AssertionError("Job " + jobId + " is not " + status);
+      }
+      Thread.sleep(5);
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package ru.hse.antiplag.fileanalysisservice.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import ru.hse.antiplag.fileanalysisservice.repository.AnalysisLeaseRepository;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link AnalysisLeases}.
+ */
+class AnalysisLeasesTest {
+
+  private final AnalysisLeaseRepository analysisLeaseRepository = mock(AnalysisLeaseRepository.class);
+  private final AnalysisLeases analysisLeases = new AnalysisLeases(analysisLeaseRepository, true, Duration.ofMinutes(5));
+
+  @Test
+  void newLeaseIsAcquiredTest() {
+    when(analysisLeaseRepository.insertIfAbsent(eq("aboba"), anyString(), any())).thenReturn(1);
+
+    assertTrue(analysisLeases.tryAcquire("aboba"));
+    verify(analysisLeaseRepository, never()).takeOverExpired(anyString(), anyString(), any(), any());
+  }
+
+  @Test
+  void expiredLeaseIsTakenOverTest() {
+    when(analysisLeaseRepository.insertIfAbsent(eq("aboba"), anyString(), any())).thenReturn(0);
+    when(analysisLeaseRepository.takeOverExpired(eq("aboba"), anyString(), any(), any())).thenReturn(1);
+
+    assertTrue(analysisLeases.tryAcquire("aboba"));
+  }
+
+  @Test
+  void heldLeaseIsNotAcquiredTest() {
+    when(analysisLeaseRepository.insertIfAbsent(eq("kek"), anyString(), any())).thenReturn(0);
+    when(analysisLeaseRepository.takeOverExpired(eq("kek"), anyString(), any(), any())).thenReturn(0);
+
+    assertFalse(analysisLeases.tryAcquire("kek"));
+  }
+
+  @Test
+  void unreachableDatabaseGrantsLeaseTest() {
+    when(analysisLeaseRepository.insertIfAbsent(eq("kek"), anyString(), any()))
+        .thenThrow(new DataAccessResourceFailureException("Database is down"));
+    when(analysisLeaseRepository.deleteByFileIdAndOwner(eq("kek"), anyString()))
+        .thenThrow(new DataAccessResourceFailureException("Database is down"));
+
+    assertTrue(analysisLeases.tryAcquire("kek"));
+    analysisLeases.release("kek");
+  }
+
+  @Test
+  void heldLeasesAreRenewedTest() {
+    when(analysisLeaseRepository.insertIfAbsent(anyString(), anyString(), any())).thenReturn(1);
+
+    assertTrue(analysisLeases.tryAcquire("aboba"));
+    assertTrue(analysisLeases.tryAcquire("kek"));
+    analysisLeases.release("kek");
+    analysisLeases.renewHeld();
+    analysisLeases.release("aboba");
+    analysisLeases.renewHeld();
+
+    verify(analysisLeaseRepository, times(1)).renew(eq(List.of("aboba")), anyString(), any());
+  }
+
+  @Test
+  void leasesAreRenewedWhileAnalysisRunsTest() {
+    AnalysisLeases shortLeases = new AnalysisLeases(analysisLeaseRepository, true, Duration.ofMillis(60));
+    when(analysisLeaseRepository.insertIfAbsent(eq("aboba"), anyString(), any())).thenReturn(1);
+    try {
+      assertTrue(shortLeases.tryAcquire("aboba"));
+
+      verify(analysisLeaseRepository, timeout(5000).atLeast(3)).renew(eq(List.of("aboba")), anyString(), any());
+    } finally {
+      shortLeases.shutdown();
+    }
+  }
+
+  @Test
+  void leaseGrantedWithoutDatabaseIsNotRenewedTest() {
+    when(analysisLeaseRepository.insertIfAbsent(eq("kek"), anyString(), any()))
+        .thenThrow(new DataAccessResourceFailureException("Database is down"));
+
+    assertTrue(analysisLeases.tryAcquire("kek"));
+    analysisLeases.renewHeld();
+
+    verify(analysisLeaseRepository, never()).renew(any(), anyString(), any());
+  }
+
+  @Test
+  void disabledLeasesDoNotTouchDatabaseTest() {
+    AnalysisLeases disabled = new AnalysisLeases(analysisLeaseRepository, false, Duration.ofMinutes(5));
+
+    assertTrue(disabled.tryAcquire("aboba"));
+    disabled.release("aboba");
+    verifyNoInteractions(analysisLeaseRepository);
+  }
+}
@@ -0,0 +1,50 @@
+package ru.hse.antiplag.fileanalysisservice.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import ru.hse.antiplag.fileanalysisservice.repository.AnalysisResultRepository;
+import ru.hse.antiplag.fileanalysisservice.text.TextAnalysis;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link AnalysisUpgrader}.
+ */
+class AnalysisUpgraderTest {
+
+  private final AnalysisResultRepository analysisResultRepository = mock(AnalysisResultRepository.class);
+  private final FileAnalysisService fileAnalysisService = mock(FileAnalysisService.class);
+  private final AnalysisUpgrader analysisUpgrader = new AnalysisUpgrader(analysisResultRepository, fileAnalysisService, 2);
+
+  @Test
+  void outdatedResultsAreWalkedInBatchesTest() {
+    when(analysisResultRepository.findOutdatedFileIds(TextAnalysis.VERSION, "", PageRequest.of(0, 2)))
+        .thenReturn(List.of("aboba-1", "aboba-2"));
+    when(analysisResultRepository.findOutdatedFileIds(TextAnalysis.VERSION, "aboba-2", PageRequest.of(0, 2)))
+        .thenReturn(List.of("kek"));
+    when(analysisResultRepository.findOutdatedFileIds(TextAnalysis.VERSION, "kek", PageRequest.of(0, 2)))
+        .thenReturn(List.of());
+
+    assertEquals(2, analysisUpgrader.upgradeBatch());
+    assertEquals(1, analysisUpgrader.upgradeBatch());
+    assertEquals(0, analysisUpgrader.upgradeBatch());
+    assertEquals(2, analysisUpgrader.upgradeBatch());
+
+    verify(fileAnalysisService).reanalyzeFile("kek");
+  }
+
+  @Test
+  void failedFileDoesNotStopBatchTest() {
+    when(analysisResultRepository.findOutdatedFileIds(TextAnalysis.VERSION, "", PageRequest.of(0, 2)))
+        .thenReturn(List.of("aboba", "kek"));
+    when(fileAnalysisService.reanalyzeFile("aboba")).thenThrow(new IllegalStateException("File storage is down"));
+
+    assertEquals(1, analysisUpgrader.upgradeBatch());
+    verify(fileAnalysisService).reanalyzeFile("kek");
+  }
+}
@@ -0,0 +1,201 @@
+package ru.hse.antiplag.fileanalysisservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import ru.hse.antiplag.fileanalysisservice.dto.WordCloudRequest;
+import ru.hse.antiplag.fileanalysisservice.dto.WordCloudStatus;
+import ru.hse.antiplag.fileanalysisservice.entity.AnalysisResultEntity;
+import ru.hse.antiplag.fileanalysisservice.repository.AnalysisResultRepository;
+import ru.hse.antiplag.fileanalysisservice.text.TermCount;
+import ru.hse.antiplag.fileanalysisservice.text.TermVectorCodec;
+import ru.hse.antiplag.fileanalysisservice.text.TextAnalysis;
+import ru.hse.antiplag.fileanalysisservice.wordcloud.QuickChartWordCloudRenderer;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link DeferredWordClouds}.
+ */
+class DeferredWordCloudsTest {
+
+  private static final String HASH = "ab0ba0000000000000000000000000000000000000000000000000000000cec0";
+
+  private final AnalysisResultRepository analysisResultRepository = mock(AnalysisResultRepository.class);
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private MockWebServer mockFileStorageService;
+  private MockWebServer mockWordCloudService;
+  private DeferredWordClouds deferredWordClouds;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    mockFileStorageService = new MockWebServer();
+    mockFileStorageService.start();
+    mockWordCloudService = new MockWebServer();
+    mockWordCloudService.start();
+    WebClient fileStorageWebClient = WebClient.builder()
+        .baseUrl(String.format("http://localhost:%s", mockFileStorageService.getPort()))
+        .build();
+    WebClient wordCloudWebClient = WebClient.builder()
+        .baseUrl(String.format("http://localhost:%s", mockWordCloudService.getPort()))
+        .build();
+    deferredWordClouds = new DeferredWordClouds(fileStorageWebClient, new QuickChartWordCloudRenderer(wordCloudWebClient),
+        analysisResultRepository, 2, 1, 2, Duration.ofMillis(10), 100, Duration.ofMinutes(10));
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    deferredWordClouds.shutdown();
+    mockFileStorageService.shutdown();
+    mockWordCloudService.shutdown();
+  }
+
+  @Test
+  void wordCloudIsStoredAndCompletedTest() throws Exception {
+    UUID wordCloudFileId = UUID.randomUUID();
+    mockWordCloudService.enqueue(image());
+    mockFileStorageService.enqueue(uploaded(wordCloudFileId));
+
+    deferredWordClouds.schedule(pending("aboba"));
+
+    verify(analysisResultRepository, timeout(5000)).completeWordCloud("aboba", HASH, TextAnalysis.VERSION,
+        "/api/gateway/analysis/wordcloud/" + wordCloudFileId, WordCloudStatus.READY);
+    RecordedRequest wordCloudRequest = mockWordCloudService.takeRequest();
+    WordCloudRequest sentRequest = objectMapper.readValue(wordCloudRequest.getBody().readUtf8(), WordCloudRequest.class);
+    assertTrue(sentRequest.getText().startsWith("kek kek"));
+    assertTrue(sentRequest.getText().contains("aboba"));
+    assertFalse(sentRequest.getText().contains("lol"));
+    RecordedRequest upload = mockFileStorageService.takeRequest();
+    assertEquals("/upload", upload.getPath());
+    assertTrue(upload.getBody().readUtf8().contains("wordcloud_aboba.png"));
+    awaitIdle();
+  }
+
+  @Test
+  void failedAttemptIsRetriedTest() {
+    UUID wordCloudFileId = UUID.randomUUID();
+    mockWordCloudService.enqueue(new MockResponse().setResponseCode(500));
+    mockWordCloudService.enqueue(image());
+    mockFileStorageService.enqueue(uploaded(wordCloudFileId));
+
+    deferredWordClouds.schedule(pending("aboba"));
+
+    verify(analysisResultRepository, timeout(5000)).completeWordCloud("aboba", HASH, TextAnalysis.VERSION,
+        "/api/gateway/analysis/wordcloud/" + wordCloudFileId, WordCloudStatus.READY);
+    assertEquals(2, mockWordCloudService.getRequestCount());
+  }
+
+  @Test
+  void wordCloudFailsAfterMaxAttemptsTest() throws InterruptedException {
+    mockWordCloudService.enqueue(image());
+    mockFileStorageService.enqueue(new MockResponse().setResponseCode(500));
+    mockWordCloudService.enqueue(image());
+    mockFileStorageService.enqueue(new MockResponse().setResponseCode(500));
+
+    deferredWordClouds.schedule(pending("kek"));
+
+    verify(analysisResultRepository, timeout(5000)).completeWordCloud("kek", HASH, TextAnalysis.VERSION, "",
+        WordCloudStatus.FAILED);
+    assertEquals(2, mockFileStorageService.getRequestCount());
+    awaitIdle();
+  }
+
+  @Test
+  void sameContentIsQueuedOnceTest() throws InterruptedException {
+    CountDownLatch rendering = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger renders = new AtomicInteger();
+    DeferredWordClouds blocking = new DeferredWordClouds(
+        WebClient.builder().baseUrl(String.format("http://localhost:%s", mockFileStorageService.getPort())).build(),
+        terms -> {
+          renders.incrementAndGet();
+          rendering.countDown();
+          try {
+            release.await(5, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          return "kek-image".getBytes();
+        },
+        analysisResultRepository, 2, 1, 1, Duration.ofMillis(10), 100, Duration.ofMinutes(10));
+    mockFileStorageService.enqueue(uploaded(UUID.randomUUID()));
+    try {
+      blocking.schedule(pending("aboba"));
+      assertTrue(rendering.await(5, TimeUnit.SECONDS));
+      blocking.schedule(pending("aboba-copy"));
+      assertEquals(1, blocking.getQueuedCount());
+      release.countDown();
+
+      verify(analysisResultRepository, timeout(5000)).completeWordCloud(eq("aboba"), eq(HASH),
+          eq(TextAnalysis.VERSION), any(), eq(WordCloudStatus.READY));
+      assertEquals(1, renders.get());
+    } finally {
+      blocking.shutdown();
+    }
+  }
+
+  @Test
+  void stalledWordCloudsAreQueuedAgainTest() {
+    UUID wordCloudFileId = UUID.randomUUID();
+    when(analysisResultRepository.findStalledWordClouds(any(), any())).thenReturn(List.of(pending("kek")));
+    mockWordCloudService.enqueue(image());
+    mockFileStorageService.enqueue(uploaded(wordCloudFileId));
+
+    deferredWordClouds.requeueStalled();
+
+    verify(analysisResultRepository, timeout(5000)).completeWordCloud("kek", HASH, TextAnalysis.VERSION,
+        "/api/gateway/analysis/wordcloud/" + wordCloudFileId, WordCloudStatus.READY);
+  }
+
+  private void awaitIdle() throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (deferredWordClouds.getQueuedCount() > 0 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(0, deferredWordClouds.getQueuedCount());
+  }
+
+  private static AnalysisResultEntity pending(String fileId) {
+    AnalysisResultEntity entity = new AnalysisResultEntity(fileId, 1, 6, 30, "");
+    entity.setContentHash(HASH);
+    entity.setAnalyzerVersion(TextAnalysis.VERSION);
+    entity.setWordCloudStatus(WordCloudStatus.PENDING);
+    entity.setTermVector(TermVectorCodec.encode(List.of(new TermCount("aboba", 2), new TermCount("kek", 3),
+        new TermCount("lol", 1))));
+    return entity;
+  }
+
+  private static MockResponse image() {
+    return new MockResponse().setBody("kek-image").addHeader(HttpHeaders.CONTENT_TYPE, MediaType.IMAGE_PNG_VALUE);
+  }
+
+  private static MockResponse uploaded(UUID id) {
+    return new MockResponse()
+        .setBody("{\"id\":\"" + id + "\",\"fileName\":\"wordcloud.png\"}")
+        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+        .setResponseCode(201);
+  }
+}
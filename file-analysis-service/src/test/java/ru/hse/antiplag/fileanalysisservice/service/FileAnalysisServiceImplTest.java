@@ -1,37 +1,56 @@
 package ru.hse.antiplag.fileanalysisservice.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
-import okhttp3.mockwebserver.RecordedRequest;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.web.reactive.function.client.WebClient;
+import ru.hse.antiplag.fileanalysisservice.cache.AnalysisResultCache;
 import ru.hse.antiplag.fileanalysisservice.dto.AnalysisResult;
+import ru.hse.antiplag.fileanalysisservice.dto.MatchedPassage;
+import ru.hse.antiplag.fileanalysisservice.dto.PassageMatch;
+import ru.hse.antiplag.fileanalysisservice.dto.SimilarFile;
+import ru.hse.antiplag.fileanalysisservice.dto.TermFrequency;
 import ru.hse.antiplag.fileanalysisservice.dto.TextStatistics;
-import ru.hse.antiplag.fileanalysisservice.dto.WordCloudRequest;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import ru.hse.antiplag.fileanalysisservice.dto.WordCloudStatus;
 import ru.hse.antiplag.fileanalysisservice.entity.AnalysisResultEntity;
+import ru.hse.antiplag.fileanalysisservice.entity.FingerprintsEntity;
+import ru.hse.antiplag.fileanalysisservice.repository.AnalysisLeaseRepository;
 import ru.hse.antiplag.fileanalysisservice.repository.AnalysisResultRepository;
+import ru.hse.antiplag.fileanalysisservice.repository.FingerprintsRepository;
+import ru.hse.antiplag.fileanalysisservice.text.Fingerprints;
+import ru.hse.antiplag.fileanalysisservice.text.StopWords;
+import ru.hse.antiplag.fileanalysisservice.text.TermCount;
+import ru.hse.antiplag.fileanalysisservice.text.TermVectorCodec;
+import ru.hse.antiplag.fileanalysisservice.text.TextAnalysis;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -43,27 +62,32 @@ import static org.mockito.Mockito.when;
 @ExtendWith(MockitoExtension.class)
 public class FileAnalysisServiceImplTest {
 
+  private static final String HASH = "ab0ba0000000000000000000000000000000000000000000000000000000cec0";
+
   private MockWebServer mockFileStorageService;
-  private MockWebServer mockWordCloudService;
 
   @Mock
   private AnalysisResultRepository analysisResultRepository;
 
-  @InjectMocks
+  @Mock
+  private AnalysisLeaseRepository analysisLeaseRepository;
+
+  @Mock
+  private DeferredWordClouds deferredWordClouds;
+
+  @Mock
+  private FingerprintsRepository fingerprintsRepository;
+
+  private SimilarityIndex similarityIndex;
+
+  private PassageIndex passageIndex;
+
+  @TempDir
+  Path indexDirectory;
+
   private FileAnalysisServiceImpl fileAnalysisService;
 
-  private ObjectMapper objectMapper = new ObjectMapper();
   private WebClient fileStorageWebClient;
-  private WebClient wordCloudWebClient;
-
-  private static class MockFileStorageUploadResponse {
-    public UUID id;
-    public String fileName;
-    public MockFileStorageUploadResponse(UUID id, String fileName) {
-      this.id = id;
-      this.fileName = fileName;
-    }
-  }
 
   @BeforeEach
   void setUp() throws IOException {
@@ -72,18 +96,20 @@ public class FileAnalysisServiceImplTest {
     String fileStorageBaseUrl = String.format("http://localhost:%s", mockFileStorageService.getPort());
     fileStorageWebClient = WebClient.builder().baseUrl(fileStorageBaseUrl).build();
 
-    mockWordCloudService = new MockWebServer();
-    mockWordCloudService.start();
-    String wordCloudBaseUrl = String.format("http://localhost:%s", mockWordCloudService.getPort());
-    wordCloudWebClient = WebClient.builder().baseUrl(wordCloudBaseUrl).build();
-
-    fileAnalysisService = new FileAnalysisServiceImpl(fileStorageWebClient, wordCloudWebClient, analysisResultRepository);
+    similarityIndex = new SimilarityIndex(analysisResultRepository, 16, 100, 1000);
+    passageIndex = new PassageIndex(fingerprintsRepository, 100, 50, 100, indexDirectory, 1000, 4);
+    fileAnalysisService = new FileAnalysisServiceImpl(fileStorageWebClient, analysisResultRepository,
+        new AnalysisResultCache(analysisResultRepository, 100, 500),
+        new InFlightAnalyses(new AnalysisLeases(analysisLeaseRepository, false, Duration.ofMinutes(5)),
+            Duration.ofSeconds(10), Duration.ofMillis(50)), deferredWordClouds, similarityIndex,
+        passageIndex, 1000, 3, 1000, 1000000,
+        new String[] {"ru", "en"});
   }
 
   @AfterEach
-  void tearDown() throws IOException {
+  void tearDown() throws Exception {
     mockFileStorageService.shutdown();
-    mockWordCloudService.shutdown();
+    passageIndex.shutdown();
   }
 
   @Test
@@ -92,39 +118,46 @@ public class FileAnalysisServiceImplTest {
     AnalysisResultEntity cachedEntity = new AnalysisResultEntity(fileId, 1, 10, 100, "/path/to/kek.png");
     cachedEntity.setCreatedAt(LocalDateTime.now().minusDays(1));
     cachedEntity.setUpdatedAt(LocalDateTime.now().minusDays(1));
+    cachedEntity.setTermVector(TermVectorCodec.encode(List.of(new TermCount("aboba", 5), new TermCount("kek", 7),
+        new TermCount("lol", 1), new TermCount("zzz", 2))));
 
     when(analysisResultRepository.findByFileId(fileId)).thenReturn(Optional.of(cachedEntity));
-    when(analysisResultRepository.save(any(AnalysisResultEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
     AnalysisResult result = fileAnalysisService.analyzeFile(fileId);
+    AnalysisResult cachedResult = fileAnalysisService.analyzeFile(fileId);
 
     assertNotNull(result);
     assertEquals(1, result.getTextStatistics().getParagraphCount());
     assertEquals(10, result.getTextStatistics().getWordCount());
     assertEquals(100, result.getTextStatistics().getCharacterCount());
     assertEquals("/path/to/kek.png", result.getWordCloudPath());
+    assertEquals(List.of("kek:7", "aboba:5", "zzz:2"), toStrings(result.getTopTerms()));
+
+    assertSame(result, cachedResult);
 
     verify(analysisResultRepository).findByFileId(fileId);
-    verify(analysisResultRepository).save(any(AnalysisResultEntity.class));
+    verify(analysisResultRepository, never()).save(any(AnalysisResultEntity.class));
+    verify(analysisResultRepository, never()).updateAccessTimes(any(), any());
 
     assertEquals(0, mockFileStorageService.getRequestCount());
-    assertEquals(0, mockWordCloudService.getRequestCount());
   }
 
   @Test
   void analyzeNewFileTest() throws Exception {
     String fileId = "new-aboba";
     String mockFileContent = "This is aboba content.";
-    byte[] mockImageBytes = "new-dummy-kek-bytes".getBytes(StandardCharsets.UTF_8);
-    UUID wordCloudFileId = UUID.randomUUID();
-
-    when(analysisResultRepository.findByFileId(fileId)).thenReturn(Optional.empty());
+    AnalysisResultEntity ready = storedResult(fileId, TextAnalysis.VERSION);
+    ready.setWordCloudPath("/path/to/ready-kek.png");
+    ready.setWordCloudStatus(WordCloudStatus.READY);
+
+    when(analysisResultRepository.findByFileId(fileId))
+        .thenReturn(Optional.empty())
+        .thenReturn(Optional.empty())
+        .thenReturn(Optional.of(ready));
     when(analysisResultRepository.save(any(AnalysisResultEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
+    enqueueMetadata(HASH);
     mockFileStorageService.enqueue(new MockResponse().setBody(mockFileContent).addHeader(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN_VALUE));
-    mockWordCloudService.enqueue(new MockResponse().setBody(new okio.Buffer().write(mockImageBytes)).addHeader(HttpHeaders.CONTENT_TYPE, MediaType.IMAGE_PNG_VALUE));
-    MockFileStorageUploadResponse mockFsUploadResponse = new MockFileStorageUploadResponse(wordCloudFileId, "wordcloud_" + fileId + ".png");
-    mockFileStorageService.enqueue(new MockResponse().setBody(objectMapper.writeValueAsString(mockFsUploadResponse)).addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE).setResponseCode(201));
 
     AnalysisResult result = fileAnalysisService.analyzeFile(fileId);
 
@@ -132,12 +165,25 @@ public class FileAnalysisServiceImplTest {
     assertEquals(1, result.getTextStatistics().getParagraphCount());
     assertEquals(4, result.getTextStatistics().getWordCount());
     assertEquals(mockFileContent.length(), result.getTextStatistics().getCharacterCount());
-    assertEquals("/api/gateway/analysis/wordcloud/" + wordCloudFileId.toString(), result.getWordCloudPath());
+    assertEquals("", result.getWordCloudPath());
+    assertEquals(WordCloudStatus.PENDING, result.getWordCloudStatus());
+    assertEquals(List.of("aboba:1", "content:1"), toStrings(result.getTopTerms()));
+
+    verify(analysisResultRepository, times(2)).findByFileId(fileId);
+    ArgumentCaptor<AnalysisResultEntity> saved = ArgumentCaptor.forClass(AnalysisResultEntity.class);
+    verify(analysisResultRepository).save(saved.capture());
+    assertEquals(HASH, saved.getValue().getContentHash());
+    assertEquals(TextAnalysis.VERSION, saved.getValue().getAnalyzerVersion());
+    assertEquals(WordCloudStatus.PENDING, saved.getValue().getWordCloudStatus());
+    verify(deferredWordClouds).schedule(saved.getValue());
+    assertEquals(2, mockFileStorageService.getRequestCount());
 
-    verify(analysisResultRepository).findByFileId(fileId);
-    verify(analysisResultRepository).save(any(AnalysisResultEntity.class));
+    AnalysisResult readyResult = fileAnalysisService.analyzeFile(fileId);
+    assertEquals("/path/to/ready-kek.png", readyResult.getWordCloudPath());
+    assertEquals(WordCloudStatus.READY, readyResult.getWordCloudStatus());
+    assertSame(readyResult, fileAnalysisService.analyzeFile(fileId));
+    verify(analysisResultRepository, times(3)).findByFileId(fileId);
     assertEquals(2, mockFileStorageService.getRequestCount());
-    assertEquals(1, mockWordCloudService.getRequestCount());
   }
   
   @Test
@@ -145,6 +191,7 @@ public class FileAnalysisServiceImplTest {
         String fileId = "null-aboba-content";
         when(analysisResultRepository.findByFileId(fileId)).thenReturn(Optional.empty());
         mockFileStorageService.enqueue(new MockResponse().setResponseCode(404));
+        mockFileStorageService.enqueue(new MockResponse().setResponseCode(404));
 
         AnalysisResult result = fileAnalysisService.analyzeFile(fileId);
 
@@ -155,17 +202,17 @@ public class FileAnalysisServiceImplTest {
         assertEquals(0, result.getTextStatistics().getCharacterCount());
         assertEquals("", result.getWordCloudPath());
 
-        verify(analysisResultRepository).findByFileId(fileId);
+        verify(analysisResultRepository, times(2)).findByFileId(fileId);
         verify(analysisResultRepository, never()).save(any(AnalysisResultEntity.class));
-        assertEquals(1, mockFileStorageService.getRequestCount());
-        assertEquals(0, mockWordCloudService.getRequestCount());
-    }
+        assertEquals(2, mockFileStorageService.getRequestCount());
+        }
 
     @Test
     void emptyContentTest() {
         String fileId = "empty-aboba-file";
         when(analysisResultRepository.findByFileId(fileId)).thenReturn(Optional.empty());
 
+        enqueueMetadata(HASH);
         mockFileStorageService.enqueue(new MockResponse()
             .setBody(new okio.Buffer())
             .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN_VALUE));
@@ -176,26 +223,21 @@ public class FileAnalysisServiceImplTest {
         assertEquals(0, result.getTextStatistics().getWordCount());
         assertEquals("", result.getWordCloudPath());
 
-        verify(analysisResultRepository).findByFileId(fileId);
+        verify(analysisResultRepository, times(2)).findByFileId(fileId);
         verify(analysisResultRepository, never()).save(any(AnalysisResultEntity.class));
-        assertEquals(1, mockFileStorageService.getRequestCount());
-        assertEquals(0, mockWordCloudService.getRequestCount());
-    }
+        assertEquals(2, mockFileStorageService.getRequestCount());
+        }
 
   @Test
   void fullSuccessTest() throws Exception {
     String fileId = "aboba-test-id-full-success";
     String mockFileContent = "This is some aboba test text. Repetitive kek text for cloud.";
-    byte[] mockImageBytes = "dummy-image-aboba-bytes".getBytes(StandardCharsets.UTF_8);
-    UUID wordCloudFileId = UUID.randomUUID();
 
     when(analysisResultRepository.findByFileId(fileId)).thenReturn(Optional.empty());
     when(analysisResultRepository.save(any(AnalysisResultEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
+    enqueueMetadata(HASH);
     mockFileStorageService.enqueue(new MockResponse().setBody(mockFileContent).addHeader(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN_VALUE));
-    mockWordCloudService.enqueue(new MockResponse().setBody(new okio.Buffer().write(mockImageBytes)).addHeader(HttpHeaders.CONTENT_TYPE, MediaType.IMAGE_PNG_VALUE));
-    MockFileStorageUploadResponse mockFsUploadResponse = new MockFileStorageUploadResponse(wordCloudFileId, "wordcloud_aboba_" + fileId + ".png");
-    mockFileStorageService.enqueue(new MockResponse().setBody(objectMapper.writeValueAsString(mockFsUploadResponse)).addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE).setResponseCode(201));
 
     AnalysisResult result = fileAnalysisService.analyzeFile(fileId);
 
@@ -203,58 +245,215 @@ public class FileAnalysisServiceImplTest {
     TextStatistics stats = result.getTextStatistics();
     assertEquals(1, stats.getParagraphCount());
     assertEquals(11, stats.getWordCount());
+    assertEquals(List.of("text:2", "aboba:1", "cloud:1"), toStrings(result.getTopTerms()));
 
-    verify(analysisResultRepository).findByFileId(fileId);
+    verify(analysisResultRepository, times(2)).findByFileId(fileId);
     verify(analysisResultRepository).save(any(AnalysisResultEntity.class));
+    verify(deferredWordClouds).schedule(any(AnalysisResultEntity.class));
     assertEquals(2, mockFileStorageService.getRequestCount());
-    assertEquals(1, mockWordCloudService.getRequestCount());
   }
   
-    @Test
-    void wordCloudApiFailTest() throws InterruptedException {
-        String fileId = "wordcloud-fail-aboba";
-        String mockFileContent = "Some valid aboba text content.";
+  @Test
+  void largeFileIsAnalyzedWhileStreamedTest() throws Exception {
+    String fileId = "large-aboba";
+    String paragraph = "Aboba kek aboba. Плагиат кек!\r\n\r\n";
+    String content = paragraph.repeat(100_000);
 
-        when(analysisResultRepository.findByFileId(fileId)).thenReturn(Optional.empty());
+    when(analysisResultRepository.findByFileId(fileId)).thenReturn(Optional.empty());
+    when(analysisResultRepository.save(any(AnalysisResultEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
-        mockFileStorageService.enqueue(new MockResponse().setBody(mockFileContent).addHeader(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN_VALUE));
-        mockWordCloudService.enqueue(new MockResponse().setResponseCode(500));
+    enqueueMetadata(HASH);
+    mockFileStorageService.enqueue(new MockResponse()
+        .setChunkedBody(new okio.Buffer().writeUtf8(content), 8191)
+        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN_VALUE));
 
-        AnalysisResult result = fileAnalysisService.analyzeFile(fileId);
+    AnalysisResult result = fileAnalysisService.analyzeFile(fileId);
 
-        assertNotNull(result);
-        assertEquals(1, result.getTextStatistics().getParagraphCount());
-        assertEquals(5, result.getTextStatistics().getWordCount());
-        assertEquals("", result.getWordCloudPath());
+    TextStatistics stats = result.getTextStatistics();
+    assertEquals(100_000, stats.getParagraphCount());
+    assertEquals(500_000, stats.getWordCount());
+    assertEquals(content.length(), stats.getCharacterCount());
+    assertEquals(200_000, stats.getLineCount());
+    assertEquals(200_000, stats.getSentenceCount());
 
-        verify(analysisResultRepository).findByFileId(fileId);
-        verify(analysisResultRepository, never()).save(any(AnalysisResultEntity.class));
-        assertEquals(1, mockFileStorageService.getRequestCount());
-        assertEquals(1, mockWordCloudService.getRequestCount());
-    }
+    assertEquals(List.of("aboba:200000", "kek:100000", "кек:100000"), toStrings(result.getTopTerms()));
+  }
 
-    @Test
-    void wordCloudUploadFailTest() throws InterruptedException {
-        String fileId = "upload-fail-aboba";
-        String mockFileContent = "Some aboba text for analysis.";
-        byte[] mockImageBytes = "dummy-image-kek".getBytes(StandardCharsets.UTF_8);
+  @Test
+  void sameContentIsNotAnalyzedAgainTest() throws InterruptedException {
+    String fileId = "aboba-copy";
+    AnalysisResultEntity original = storedResult("aboba-original", TextAnalysis.VERSION);
 
-        when(analysisResultRepository.findByFileId(fileId)).thenReturn(Optional.empty());
+    when(analysisResultRepository.findByFileId(fileId)).thenReturn(Optional.empty());
+    when(analysisResultRepository.findFirstByContentHashAndAnalyzerVersion(HASH, TextAnalysis.VERSION))
+        .thenReturn(Optional.of(original));
+    enqueueMetadata(HASH);
 
-        mockFileStorageService.enqueue(new MockResponse().setBody(mockFileContent).addHeader(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN_VALUE));
-        mockWordCloudService.enqueue(new MockResponse().setBody(new okio.Buffer().write(mockImageBytes)).addHeader(HttpHeaders.CONTENT_TYPE, MediaType.IMAGE_PNG_VALUE));
-        mockFileStorageService.enqueue(new MockResponse().setResponseCode(500));
+    AnalysisResult result = fileAnalysisService.analyzeFile(fileId);
 
-        AnalysisResult result = fileAnalysisService.analyzeFile(fileId);
+    assertEquals(10, result.getTextStatistics().getWordCount());
+    assertEquals("/path/to/kek.png", result.getWordCloudPath());
+    assertEquals(List.of("kek:7", "aboba:5"), toStrings(result.getTopTerms()));
+    ArgumentCaptor<AnalysisResultEntity> saved = ArgumentCaptor.forClass(AnalysisResultEntity.class);
+    verify(analysisResultRepository).save(saved.capture());
+    assertEquals(fileId, saved.getValue().getFileId());
+    assertEquals(HASH, saved.getValue().getContentHash());
+    assertEquals(1, mockFileStorageService.getRequestCount());
+    assertEquals("/" + fileId + "/metadata", mockFileStorageService.takeRequest().getPath());
+  }
 
-        assertNotNull(result);
-        assertEquals(1, result.getTextStatistics().getParagraphCount());
-        assertEquals(5, result.getTextStatistics().getWordCount());
-        assertEquals("", result.getWordCloudPath());
+  @Test
+  void outdatedResultIsServedUntilReanalyzedTest() {
+    String fileId = "old-aboba";
+    AnalysisResultEntity outdated = storedResult(fileId, null);
+    outdated.setWordCount(3);
+    AnalysisResultEntity current = storedResult("new-aboba", TextAnalysis.VERSION);
+
+    when(analysisResultRepository.findByFileId(fileId)).thenReturn(Optional.of(outdated));
+    when(analysisResultRepository.findFirstByContentHashAndAnalyzerVersion(eq(HASH), eq(TextAnalysis.VERSION)))
+        .thenReturn(Optional.of(current));
+    enqueueMetadata(HASH);
+
+    assertEquals(3, fileAnalysisService.analyzeFile(fileId).getTextStatistics().getWordCount());
+    assertEquals(0, mockFileStorageService.getRequestCount());
 
-        verify(analysisResultRepository).findByFileId(fileId);
-        verify(analysisResultRepository, never()).save(any(AnalysisResultEntity.class));
-        assertEquals(2, mockFileStorageService.getRequestCount());
-        assertEquals(1, mockWordCloudService.getRequestCount());
-    }
+    AnalysisResult reanalyzed = fileAnalysisService.reanalyzeFile(fileId);
+
+    assertEquals(10, reanalyzed.getTextStatistics().getWordCount());
+    assertSame(reanalyzed, fileAnalysisService.analyzeFile(fileId));
+    verify(analysisResultRepository).save(any(AnalysisResultEntity.class));
+    assertEquals(1, mockFileStorageService.getRequestCount());
+  }
+
+  @Test
+  void similarFilesAreFoundTest() {
+    String fileId = "aboba-edited";
+    String original = "Aboba kek is a word that was never in any dictionary, but every student of the course "
+        + "used it in the essay about plagiarism and the ways to find copied passages in large text collections.";
+    similarityIndex.put("aboba-original", signatureOf(original));
+    similarityIndex.put("kek-unrelated", signatureOf("Kek lol is a different text about the weather, trains and "
+        + "the price of bread, which shares a few words but none of its four word shingles with the essay."));
+    AtomicReference<AnalysisResultEntity> stored = new AtomicReference<>();
+    when(analysisResultRepository.findByFileId(fileId)).thenAnswer(invocation -> Optional.ofNullable(stored.get()));
+    when(analysisResultRepository.save(any(AnalysisResultEntity.class))).thenAnswer(invocation -> {
+      stored.set(invocation.getArgument(0));
+      return invocation.getArgument(0);
+    });
+    enqueueMetadata(HASH);
+    mockFileStorageService.enqueue(new MockResponse().setBody(original.replace("student", "pupil"))
+        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN_VALUE));
+
+    List<SimilarFile> similar = fileAnalysisService.findSimilarFiles(fileId, 0.5);
+
+    assertEquals(1, similar.size());
+    assertEquals("aboba-original", similar.get(0).getFileId());
+    assertTrue(similar.get(0).getSimilarity() > 0.6 && similar.get(0).getSimilarity() < 1);
+    assertNotNull(stored.get().getMinHash());
+    assertEquals(3, similarityIndex.size());
+
+    assertEquals(1, fileAnalysisService.findSimilarFiles(fileId, 0.5).size());
+    assertEquals(2, mockFileStorageService.getRequestCount());
+  }
+
+  @Test
+  void emptyFileHasNoSimilarFilesTest() {
+    String fileId = "empty-aboba";
+    AnalysisResultEntity empty = storedResult(fileId, TextAnalysis.VERSION);
+    when(analysisResultRepository.findByFileId(fileId)).thenReturn(Optional.of(empty));
+
+    assertTrue(fileAnalysisService.findSimilarFiles(fileId, 0.5).isEmpty());
+    assertEquals(0, mockFileStorageService.getRequestCount());
+  }
+
+  @Test
+  void matchingPassagesAreFoundTest() {
+    String fileId = "aboba-copy";
+    String passage = "every student of the course used aboba kek in the essay about plagiarism and copied passages";
+    String original = "The original essay starts here. " + passage + ". It ends in its own words.";
+    String copy = "Lol, a copy starts differently: " + passage + "!";
+    AnalysisResultEntity analyzed = storedResult(fileId, TextAnalysis.VERSION);
+    when(analysisResultRepository.findByFileId(fileId))
+        .thenReturn(Optional.empty())
+        .thenReturn(Optional.empty())
+        .thenReturn(Optional.of(analyzed));
+    when(analysisResultRepository.save(any(AnalysisResultEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    ArgumentCaptor<FingerprintsEntity> stored = ArgumentCaptor.forClass(FingerprintsEntity.class);
+    when(fingerprintsRepository.save(stored.capture())).thenAnswer(invocation -> invocation.getArgument(0));
+    when(fingerprintsRepository.findById(fileId)).thenAnswer(invocation -> Optional.of(stored.getValue()));
+    passageIndex.store("aboba-original", fingerprintsOf(original), false);
+    enqueueMetadata(HASH);
+    mockFileStorageService.enqueue(new MockResponse().setBody(copy)
+        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN_VALUE));
+
+    List<PassageMatch> matches = fileAnalysisService.findMatchingPassages(fileId);
+
+    assertEquals(1, matches.size());
+    assertEquals("aboba-original", matches.get(0).getFileId());
+    MatchedPassage matched = matches.get(0).getPassages().get(0);
+    assertTrue(passage.contains(copy.substring(matched.getStart(), matched.getEnd())));
+    assertEquals(copy.substring(matched.getStart(), matched.getEnd()),
+        original.substring(matched.getOtherStart(), matched.getOtherEnd()));
+    assertEquals(fileId, stored.getValue().getFileId());
+  }
+
+  @Test
+  void filesAreComparedTest() {
+    String passage = "Every student of the course used aboba kek in the essay";
+    String text = "Ёлка, " + passage + "; the rest differs.";
+    String other = "Lol! " + passage.toUpperCase() + " and more.";
+    mockFileStorageService.enqueue(new MockResponse().setBody(text)
+        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN_VALUE));
+    mockFileStorageService.enqueue(new MockResponse().setBody(other)
+        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN_VALUE));
+
+    PassageMatch match = fileAnalysisService.compareFiles("aboba", "kek", 5);
+
+    assertEquals("kek", match.getFileId());
+    assertEquals(1, match.getPassages().size());
+    MatchedPassage matched = match.getPassages().get(0);
+    assertEquals(passage, text.substring(matched.getStart(), matched.getEnd()));
+    assertEquals(passage.toUpperCase(), other.substring(matched.getOtherStart(), matched.getOtherEnd()));
+    assertEquals(passage.length(), match.getMatchedCharacters());
+  }
+
+  @Test
+  void comparisonWithMissingFileTest() {
+    mockFileStorageService.enqueue(new MockResponse().setBody("aboba")
+        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN_VALUE));
+    mockFileStorageService.enqueue(new MockResponse().setResponseCode(404));
+
+    assertNull(fileAnalysisService.compareFiles("aboba", "kek", 5));
+  }
+
+  private static Fingerprints fingerprintsOf(String text) {
+    TextAnalysis analysis = new TextAnalysis(1000, StopWords.NONE);
+    analysis.accept(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    analysis.finish();
+    return analysis.getFingerprints();
+  }
+
+  private static int[] signatureOf(String text) {
+    TextAnalysis analysis = new TextAnalysis(1000, StopWords.NONE);
+    analysis.accept(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    analysis.finish();
+    return analysis.getMinHash().signature();
+  }
+
+  private void enqueueMetadata(String hash) {
+    mockFileStorageService.enqueue(new MockResponse()
+        .setBody("{\"id\":\"" + UUID.randomUUID() + "\",\"hash\":\"" + hash + "\",\"size\":42}")
+        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE));
+  }
+
+  private static AnalysisResultEntity storedResult(String fileId, Integer analyzerVersion) {
+    AnalysisResultEntity entity = new AnalysisResultEntity(fileId, 1, 10, 100, "/path/to/kek.png");
+    entity.setContentHash(HASH);
+    entity.setAnalyzerVersion(analyzerVersion);
+    entity.setTermVector(TermVectorCodec.encode(List.of(new TermCount("aboba", 5), new TermCount("kek", 7))));
+    return entity;
+  }
+
+  private static List<String> toStrings(List<TermFrequency> terms) {
+    return terms.stream().map(term -> term.getTerm() + ":" + term.getCount()).toList();
+  }
 }
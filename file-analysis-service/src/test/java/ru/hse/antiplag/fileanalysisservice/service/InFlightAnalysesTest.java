@@ -0,0 +1,253 @@
+package ru.hse.antiplag.fileanalysisservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.hse.antiplag.fileanalysisservice.dto.AnalysisResult;
+import ru.hse.antiplag.fileanalysisservice.dto.TextStatistics;
+import ru.hse.antiplag.fileanalysisservice.repository.AnalysisLeaseRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link InFlightAnalyses}.
+ */
+class InFlightAnalysesTest {
+
+  private final AnalysisLeaseRepository analysisLeaseRepository = mock(AnalysisLeaseRepository.class);
+
+  @Test
+  void concurrentCallersShareOneAnalysisTest() throws Exception {
+    InFlightAnalyses inFlightAnalyses = inFlightAnalyses(false);
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    inFlightAnalyses.bindTo(registry);
+    AnalysisResult aboba = result();
+    AtomicInteger analyses = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      Future<AnalysisResult> leader = executor.submit(() -> inFlightAnalyses.analyzeOnce("aboba", id -> Optional.empty(), id -> {
+        analyses.incrementAndGet();
+        started.countDown();
+        await(release);
+        return aboba;
+      }));
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+      List<Thread> followerThreads = new ArrayList<>();
+      List<Future<AnalysisResult>> followers = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        followers.add(executor.submit(() -> {
+          synchronized (followerThreads) {
+            followerThreads.add(Thread.currentThread());
+          }
+          return inFlightAnalyses.analyzeOnce("aboba", id -> Optional.empty(), id -> {
+            analyses.incrementAndGet();
+            return result();
+          });
+        }));
+      }
+      awaitWaiting(followerThreads, 3);
+      assertEquals(1.0, registry.get("analysis.in.flight").gauge().value());
+      release.countDown();
+
+      assertSame(aboba, leader.get(5, TimeUnit.SECONDS));
+      for (Future<AnalysisResult> follower : followers) {
+        assertSame(aboba, follower.get(5, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals(1, analyses.get());
+    assertEquals(1.0, registry.get("analysis.single.flight.led").functionCounter().count());
+    assertEquals(3.0, registry.get("analysis.single.flight.shared").tag("scope", "instance").functionCounter().count());
+    assertEquals(0.75, registry.get("analysis.single.flight.dedup.ratio").gauge().value());
+    assertEquals(0.0, registry.get("analysis.in.flight").gauge().value());
+  }
+
+  @Test
+  void fileLeasedByAnotherInstanceIsNotAnalyzedTest() {
+    when(analysisLeaseRepository.insertIfAbsent(eq("kek"), anyString(), any())).thenReturn(0);
+    when(analysisLeaseRepository.takeOverExpired(eq("kek"), anyString(), any(), any())).thenReturn(0);
+    InFlightAnalyses inFlightAnalyses = inFlightAnalyses(true);
+    AnalysisResult kek = result();
+    AtomicInteger lookups = new AtomicInteger();
+
+    AnalysisResult found = inFlightAnalyses.analyzeOnce("kek",
+        id -> lookups.incrementAndGet() < 3 ? Optional.empty() : Optional.of(kek),
+        id -> {
+          throw new AssertionError("kek is analyzed by another instance");
+        });
+
+    assertSame(kek, found);
+    assertEquals(3, lookups.get());
+    assertEquals(1.0, inFlightAnalyses.getDedupRatio());
+    verify(analysisLeaseRepository, never()).deleteByFileIdAndOwner(anyString(), anyString());
+  }
+
+  @Test
+  void resultStoredBeforeLeaseIsReusedTest() {
+    when(analysisLeaseRepository.insertIfAbsent(eq("kek"), anyString(), any())).thenReturn(1);
+    InFlightAnalyses inFlightAnalyses = inFlightAnalyses(true);
+    AnalysisResult kek = result();
+
+    AnalysisResult found = inFlightAnalyses.analyzeOnce("kek", id -> Optional.of(kek), id -> {
+      throw new AssertionError("kek is analyzed already");
+    });
+
+    assertSame(kek, found);
+    verify(analysisLeaseRepository).deleteByFileIdAndOwner(eq("kek"), anyString());
+  }
+
+  @Test
+  void followerTakesOverFailedAnalysisTest() throws Exception {
+    InFlightAnalyses inFlightAnalyses = inFlightAnalyses(false);
+    AnalysisResult aboba = result();
+    List<Thread> followerThreads = new ArrayList<>();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<AnalysisResult> leader = executor.submit(() -> inFlightAnalyses.analyzeOnce("aboba", id -> Optional.empty(), id -> {
+        started.countDown();
+        await(release);
+        throw new IllegalStateException("File storage is down");
+      }));
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+      Future<AnalysisResult> follower = executor.submit(() -> {
+        synchronized (followerThreads) {
+          followerThreads.add(Thread.currentThread());
+        }
+        return inFlightAnalyses.analyzeOnce("aboba", id -> Optional.empty(), id -> aboba);
+      });
+      awaitWaiting(followerThreads, 1);
+      release.countDown();
+
+      Exception failure = assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+      assertTrue(failure.getCause() instanceof IllegalStateException);
+      assertSame(aboba, follower.get(5, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(0.0, inFlightAnalyses.getDedupRatio());
+  }
+
+  @Test
+  void followerWaitsForLeaderLongerThanWaitTimeoutTest() throws Exception {
+    InFlightAnalyses inFlightAnalyses = inFlightAnalyses(false, Duration.ofMillis(20));
+    AnalysisResult aboba = result();
+    AtomicInteger lookups = new AtomicInteger();
+    List<Thread> followerThreads = new ArrayList<>();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<AnalysisResult> leader = executor.submit(() -> inFlightAnalyses.analyzeOnce("aboba", id -> Optional.empty(), id -> {
+        started.countDown();
+        await(release);
+        return aboba;
+      }));
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+      Future<AnalysisResult> follower = executor.submit(() -> {
+        synchronized (followerThreads) {
+          followerThreads.add(Thread.currentThread());
+        }
+        return inFlightAnalyses.analyzeOnce("aboba", id -> {
+          lookups.incrementAndGet();
+          return Optional.empty();
+        }, id -> {
+          throw new AssertionError("aboba is analyzed by the leader");
+        });
+      });
+      awaitWaiting(followerThreads, 1);
+      Thread.sleep(200);
+      release.countDown();
+
+      assertSame(aboba, leader.get(5, TimeUnit.SECONDS));
+      assertSame(aboba, follower.get(5, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+    assertTrue(lookups.get() > 1, "the follower checked for a stored result while it waited");
+  }
+
+  @Test
+  void fileLeasedByAnotherInstanceIsWaitedForLongerThanWaitTimeoutTest() {
+    when(analysisLeaseRepository.insertIfAbsent(eq("kek"), anyString(), any())).thenReturn(0);
+    when(analysisLeaseRepository.takeOverExpired(eq("kek"), anyString(), any(), any())).thenReturn(0);
+    InFlightAnalyses inFlightAnalyses = inFlightAnalyses(true, Duration.ofMillis(20));
+    AnalysisResult kek = result();
+    AtomicInteger lookups = new AtomicInteger();
+
+    AnalysisResult found = inFlightAnalyses.analyzeOnce("kek",
+        id -> lookups.incrementAndGet() < 20 ? Optional.empty() : Optional.of(kek),
+        id -> {
+          throw new AssertionError("kek is still leased by another instance");
+        });
+
+    assertSame(kek, found);
+    assertEquals(20, lookups.get());
+  }
+
+  private InFlightAnalyses inFlightAnalyses(boolean leasesEnabled) {
+    return inFlightAnalyses(leasesEnabled, Duration.ofSeconds(10));
+  }
+
+  private InFlightAnalyses inFlightAnalyses(boolean leasesEnabled, Duration waitTimeout) {
+    AnalysisLeases analysisLeases = new AnalysisLeases(analysisLeaseRepository, leasesEnabled, Duration.ofMinutes(5));
+    return new InFlightAnalyses(analysisLeases, waitTimeout, Duration.ofMillis(10));
+  }
+
+  /**
+   * Waits until the given number of threads are parked waiting for the leader.
+   */
+  private static void awaitWaiting(List<Thread> threads, int count) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (System.nanoTime() < deadline) {
+      List<Thread> snapshot;
+      synchronized (threads) {
+        snapshot = new ArrayList<>(threads);
+      }
+      if (snapshot.size() == count
+          && snapshot.stream().allMatch(thread -> thread.getState() == Thread.State.TIMED_WAITING)) {
+        return;
+      }
+      Thread.sleep(10);
+    }
+    throw new AssertionError("Callers did not start waiting for the leader");
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static AnalysisResult result() {
+    return new AnalysisResult(new TextStatistics(1, 2, 3), "/path/to/aboba.png");
+  }
+}
@@ -0,0 +1,128 @@
+package ru.hse.antiplag.fileanalysisservice.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.hse.antiplag.fileanalysisservice.dto.AnalysisJobStatus;
+import ru.hse.antiplag.fileanalysisservice.dto.SimilarityJob;
+import ru.hse.antiplag.fileanalysisservice.entity.FingerprintsEntity;
+import ru.hse.antiplag.fileanalysisservice.entity.SimilarPairEntity;
+import ru.hse.antiplag.fileanalysisservice.repository.FingerprintsRepository;
+import ru.hse.antiplag.fileanalysisservice.repository.SimilarPairRepository;
+import ru.hse.antiplag.fileanalysisservice.text.Fingerprints;
+import ru.hse.antiplag.fileanalysisservice.text.Winnowing;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link SimilarityJobServiceImpl}.
+ */
+class SimilarityJobServiceImplTest {
+
+  private final SplittableRandom random = new SplittableRandom(42);
+  private final FingerprintsRepository fingerprintsRepository = mock(FingerprintsRepository.class);
+  private final SimilarPairRepository similarPairRepository = mock(SimilarPairRepository.class);
+  private final FileAnalysisService fileAnalysisService = mock(FileAnalysisService.class);
+  private final List<SimilarPairEntity> stored = Collections.synchronizedList(new ArrayList<>());
+  private SimilarityJobServiceImpl similarityJobService;
+
+  @AfterEach
+  void tearDown() {
+    similarityJobService.shutdown();
+  }
+
+  @Test
+  void similarPairsAreStoredWithProgressTest() throws Exception {
+    String essay = randomText(3000);
+    FingerprintsEntity aboba = stored("aboba", essay);
+    FingerprintsEntity kek = stored("kek", essay.substring(0, 2800) + randomText(200));
+    FingerprintsEntity lol = stored("lol", randomText(3000));
+    when(fingerprintsRepository.findAllById(List.of("aboba", "kek", "lol", "missing")))
+        .thenReturn(List.of(lol, kek, aboba));
+    when(fingerprintsRepository.findById("missing")).thenReturn(Optional.empty());
+    when(similarPairRepository.saveAll(anyList())).thenAnswer(invocation -> {
+      stored.addAll(invocation.getArgument(0));
+      return invocation.getArgument(0);
+    });
+    similarityJobService = new SimilarityJobServiceImpl(fingerprintsRepository, similarPairRepository,
+        fileAnalysisService, 2, 10, 100, 10, Duration.ofMinutes(10));
+
+    SimilarityJob submitted = similarityJobService.submit(List.of("aboba", "kek", "aboba", "lol", "missing"), 0.5);
+
+    assertNotNull(submitted);
+    assertEquals(4, submitted.getFileCount());
+    SimilarityJob finished = awaitFinished(submitted.getJobId());
+    assertEquals(AnalysisJobStatus.COMPLETED, finished.getStatus());
+    assertEquals(4, finished.getLoadedFiles());
+    assertEquals(3, finished.getComparedFiles());
+    assertEquals(List.of("missing"), finished.getSkippedFileIds());
+    assertEquals(1, finished.getPairCount());
+    verify(fileAnalysisService).analyzeFile("missing");
+    assertEquals(1, stored.size());
+    SimilarPairEntity pair = stored.get(0);
+    assertEquals(submitted.getJobId(), pair.getJobId());
+    assertEquals(List.of("aboba", "kek"), List.of(pair.getFileId(), pair.getOtherFileId()).stream().sorted().toList());
+    assertTrue(pair.getSimilarity() >= 0.5 && pair.getSimilarity() < 1);
+  }
+
+  @Test
+  void failedStoreFailsJobTest() throws Exception {
+    String essay = randomText(1000);
+    when(fingerprintsRepository.findAllById(List.of("aboba", "kek")))
+        .thenReturn(List.of(stored("aboba", essay), stored("kek", essay)));
+    when(similarPairRepository.saveAll(anyList())).thenThrow(new IllegalStateException("lol"));
+    similarityJobService = new SimilarityJobServiceImpl(fingerprintsRepository, similarPairRepository,
+        fileAnalysisService, 2, 10, 100, 10, Duration.ofMinutes(10));
+
+    SimilarityJob finished = awaitFinished(similarityJobService.submit(List.of("aboba", "kek"), 0.9).getJobId());
+
+    assertEquals(AnalysisJobStatus.FAILED, finished.getStatus());
+    assertEquals("lol", finished.getError());
+    assertNull(similarityJobService.getJob("kek"));
+  }
+
+  private SimilarityJob awaitFinished(String jobId) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (System.nanoTime() < deadline) {
+      SimilarityJob job = similarityJobService.getJob(jobId);
+      if (job.getFinishedAt() != null) {
+        return job;
+      }
+      Thread.sleep(10);
+    }
+    throw new AssertionError("Job " + jobId + " did not finish");
+  }
+
+  private static FingerprintsEntity stored(String fileId, String text) {
+    Winnowing winnowing = new Winnowing();
+    winnowing.accept(text, 0, text.length());
+    winnowing.finish();
+    return new FingerprintsEntity(fileId, Fingerprints.encode(winnowing.getFingerprints()));
+  }
+
+  private String randomText(int length) {
+    StringBuilder text = new StringBuilder(length);
+    while (text.length() < length) {
+      int wordLength = 2 + random.nextInt(8);
+      for (int i = 0; i < wordLength; i++) {
+        text.append((char) ('a' + random.nextInt(26)));
+      }
+      text.append(' ');
+    }
+    return text.toString();
+  }
+}
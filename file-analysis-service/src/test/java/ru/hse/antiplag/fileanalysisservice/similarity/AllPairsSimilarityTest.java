@@ -0,0 +1,112 @@
+package ru.hse.antiplag.fileanalysisservice.similarity;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link AllPairsSimilarity}.
+ */
+class AllPairsSimilarityTest {
+
+  private final SplittableRandom random = new SplittableRandom(42);
+  private final ForkJoinPool pool = new ForkJoinPool(4);
+
+  @AfterEach
+  void tearDown() {
+    pool.shutdownNow();
+  }
+
+  @Test
+  void pairsAreTheSameAsBruteForceTest() {
+    for (int round = 0; round < 20; round++) {
+      long[] template = randomSet(50, 1000);
+      long[][] sets = new long[100][];
+      for (int i = 0; i < sets.length; i++) {
+        long[] base = i > 0 && random.nextInt(3) == 0
+            ? sets[random.nextInt(i)] : randomSet(10 + random.nextInt(100), 1000);
+        sets[i] = mutate(random.nextBoolean() ? union(base, template) : base);
+      }
+      sets[7] = new long[0];
+      double threshold = 0.2 + random.nextDouble() * 0.7;
+      List<String> found = Collections.synchronizedList(new ArrayList<>());
+      AtomicInteger compared = new AtomicInteger();
+
+      AllPairsSimilarity.find(sets, threshold, pool,
+          (set, otherSet, similarity) -> found.add(describe(set, otherSet, similarity)), compared::addAndGet);
+
+      Collections.sort(found);
+      assertEquals(bruteForce(sets, threshold), found, "threshold " + threshold);
+      assertEquals(sets.length, compared.get());
+    }
+  }
+
+  @Test
+  void identicalSetsAreFoundAtThresholdOneTest() {
+    long[][] sets = {{1, 2, 3}, {1, 2, 3}, {1, 2, 4}, {5}};
+    List<String> found = Collections.synchronizedList(new ArrayList<>());
+
+    AllPairsSimilarity.find(sets, 1, pool,
+        (set, otherSet, similarity) -> found.add(describe(set, otherSet, similarity)), count -> { });
+
+    assertEquals(List.of(describe(0, 1, 1)), found);
+  }
+
+  @Test
+  void thresholdOutOfRangeIsRejectedTest() {
+    long[][] sets = {{1}, {1}};
+
+    assertThrows(IllegalArgumentException.class,
+        () -> AllPairsSimilarity.find(sets, 0, pool, (set, otherSet, similarity) -> { }, count -> { }));
+    assertThrows(IllegalArgumentException.class,
+        () -> AllPairsSimilarity.find(sets, 1.5, pool, (set, otherSet, similarity) -> { }, count -> { }));
+  }
+
+  private static List<String> bruteForce(long[][] sets, double threshold) {
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < sets.length; i++) {
+      for (int j = i + 1; j < sets.length; j++) {
+        int overlap = 0;
+        for (long element : sets[i]) {
+          if (Arrays.binarySearch(sets[j], element) >= 0) {
+            overlap++;
+          }
+        }
+        int union = sets[i].length + sets[j].length - overlap;
+        if (union > 0 && (double) overlap / union >= threshold) {
+          expected.add(describe(i, j, (double) overlap / union));
+        }
+      }
+    }
+    Collections.sort(expected);
+    return expected;
+  }
+
+  private static String describe(int set, int otherSet, double similarity) {
+    return String.format("%03d-%03d:%.6f", Math.min(set, otherSet), Math.max(set, otherSet), similarity);
+  }
+
+  private long[] randomSet(int size, int universe) {
+    return random.longs(size, 0, universe).map(value -> value * 0x9e3779b97f4a7c15L).sorted().distinct().toArray();
+  }
+
+  private long[] mutate(long[] set) {
+    return LongStream.concat(LongStream.of(set).filter(element -> random.nextInt(10) > 0),
+        LongStream.of(randomSet(random.nextInt(5), 1000))).sorted().distinct().toArray();
+  }
+
+  private static long[] union(long[] a, long[] b) {
+    return LongStream.concat(LongStream.of(a), LongStream.of(b)).sorted().distinct().toArray();
+  }
+}
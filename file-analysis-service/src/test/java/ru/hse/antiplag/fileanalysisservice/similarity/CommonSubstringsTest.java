@@ -0,0 +1,131 @@
+package ru.hse.antiplag.fileanalysisservice.similarity;
+
+import org.junit.jupiter.api.Test;
+import ru.hse.antiplag.fileanalysisservice.dto.MatchedPassage;
+import ru.hse.antiplag.fileanalysisservice.dto.PassageMatch;
+import ru.hse.antiplag.fileanalysisservice.text.WordTokens;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link CommonSubstrings}.
+ */
+class CommonSubstringsTest {
+
+  private static final String[] VOCABULARY = {"aboba", "kek", "lol"};
+
+  private final SplittableRandom random = new SplittableRandom(42);
+
+  @Test
+  void commonPassagesAreFoundWithOriginalOffsetsTest() {
+    String first = "Aboba, kek! This sentence is shared by both essays word for word. Lol.";
+    String second = "Something else entirely... THIS SENTENCE IS SHARED BY BOTH ESSAYS, word for word";
+
+    PassageMatch match = CommonSubstrings.find(words(first), "kek", words(second), 5, 10);
+
+    assertEquals("kek", match.getFileId());
+    assertEquals(1, match.getPassages().size());
+    MatchedPassage passage = match.getPassages().get(0);
+    assertEquals("This sentence is shared by both essays word for word",
+        first.substring(passage.getStart(), passage.getEnd()));
+    assertEquals("THIS SENTENCE IS SHARED BY BOTH ESSAYS, word for word",
+        second.substring(passage.getOtherStart(), passage.getOtherEnd()));
+    assertEquals(passage.getEnd() - passage.getStart(), match.getMatchedCharacters());
+  }
+
+  @Test
+  void maximalMatchesAreTheSameAsBruteForceTest() {
+    for (int round = 0; round < 100; round++) {
+      String[] first = randomWords(20 + random.nextInt(80));
+      String[] second = randomWords(20 + random.nextInt(80));
+      String firstText = String.join(" ", first);
+      String secondText = String.join(" ", second);
+      int minWords = 2 + random.nextInt(4);
+
+      PassageMatch match = CommonSubstrings.find(words(firstText), "kek", words(secondText), minWords, 100_000);
+
+      List<String> found = new ArrayList<>();
+      for (MatchedPassage passage : match.getPassages()) {
+        String common = firstText.substring(passage.getStart(), passage.getEnd());
+        assertEquals(common, secondText.substring(passage.getOtherStart(), passage.getOtherEnd()));
+        int start = firstText.substring(0, passage.getStart()).split(" ", -1).length - 1;
+        found.add(start + ":" + common.split(" ").length);
+      }
+      assertEquals(bruteForce(first, second, minWords), found, firstText + " / " + secondText);
+    }
+  }
+
+  @Test
+  void longestPassagesAreKeptTest() {
+    List<String> shared = new ArrayList<>();
+    for (int i = 0; i < 300; i++) {
+      shared.add("w" + random.nextInt(1_000_000));
+    }
+    String first = String.join(" ", shared.subList(0, 40)) + " aboba " + String.join(" ", shared.subList(40, 100))
+        + " kek " + String.join(" ", shared.subList(100, 300));
+    String second = "lol " + String.join(" ", shared) + " lol";
+
+    PassageMatch match = CommonSubstrings.find(words(first), "kek", words(second), 30, 2);
+
+    assertEquals(2, match.getPassages().size());
+    MatchedPassage middle = match.getPassages().get(0);
+    MatchedPassage last = match.getPassages().get(1);
+    assertEquals(String.join(" ", shared.subList(40, 100)), first.substring(middle.getStart(), middle.getEnd()));
+    assertEquals(String.join(" ", shared.subList(100, 300)), first.substring(last.getStart(), last.getEnd()));
+    assertEquals(middle.getEnd() - middle.getStart() + last.getEnd() - last.getStart(), match.getMatchedCharacters());
+  }
+
+  @Test
+  void shortTextsHaveNoPassagesTest() {
+    PassageMatch match = CommonSubstrings.find(words("aboba kek"), "kek", words("aboba kek"), 3, 10);
+
+    assertTrue(match.getPassages().isEmpty());
+    assertEquals(0, match.getMatchedCharacters());
+  }
+
+  /**
+   * Lists every word of the first text where a common run of at least the minimum number of
+   * words starts that cannot be extended to the left, with the number of words of the longest
+   * such run.
+   */
+  private static List<String> bruteForce(String[] first, String[] second, int minWords) {
+    int[] longest = new int[first.length];
+    for (int i = 0; i < first.length; i++) {
+      for (int j = 0; j < second.length; j++) {
+        int length = 0;
+        while (i + length < first.length && j + length < second.length
+            && first[i + length].equals(second[j + length])) {
+          length++;
+        }
+        longest[i] = Math.max(longest[i], length);
+      }
+    }
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < first.length; i++) {
+      if (longest[i] >= minWords && (i == 0 || longest[i - 1] <= longest[i])) {
+        expected.add(i + ":" + longest[i]);
+      }
+    }
+    return expected;
+  }
+
+  private String[] randomWords(int count) {
+    String[] words = new String[count];
+    for (int i = 0; i < count; i++) {
+      words[i] = VOCABULARY[random.nextInt(VOCABULARY.length)];
+    }
+    return words;
+  }
+
+  private static WordTokens words(String text) {
+    WordTokens words = new WordTokens();
+    words.accept(text, 0, text.length());
+    words.finish();
+    return words;
+  }
+}
@@ -0,0 +1,107 @@
+package ru.hse.antiplag.fileanalysisservice.similarity;
+
+import org.junit.jupiter.api.Test;
+import ru.hse.antiplag.fileanalysisservice.dto.MatchedPassage;
+import ru.hse.antiplag.fileanalysisservice.dto.PassageMatch;
+import ru.hse.antiplag.fileanalysisservice.text.Fingerprints;
+import ru.hse.antiplag.fileanalysisservice.text.Winnowing;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link FingerprintIndex}.
+ */
+class FingerprintIndexTest {
+
+  private final SplittableRandom random = new SplittableRandom(42);
+
+  @Test
+  void copiedPassageIsFoundWithOffsetsTest() {
+    String passage = randomText(400);
+    String original = randomText(1000) + passage + randomText(1000);
+    String copy = randomText(300) + passage + randomText(300);
+    FingerprintIndex index = new FingerprintIndex();
+    index.put("aboba-original", fingerprintsOf(original));
+    index.put("kek-unrelated", fingerprintsOf(randomText(3000)));
+
+    List<PassageMatch> matches = index.query(fingerprintsOf(copy), null, 100, 10);
+
+    assertEquals(1, matches.size());
+    assertEquals("aboba-original", matches.get(0).getFileId());
+    assertEquals(1, matches.get(0).getPassages().size());
+    MatchedPassage matched = matches.get(0).getPassages().get(0);
+    int copyStart = copy.indexOf(passage);
+    int originalStart = original.indexOf(passage);
+    assertTrue(matched.getStart() >= copyStart && matched.getEnd() <= copyStart + passage.length());
+    assertTrue(matched.getEnd() - matched.getStart() > passage.length() / 2);
+    assertEquals(matched.getStart() - copyStart, matched.getOtherStart() - originalStart);
+    assertEquals(matched.getEnd() - copyStart, matched.getOtherEnd() - originalStart);
+    assertEquals(matched.getEnd() - matched.getStart(), matches.get(0).getMatchedCharacters());
+  }
+
+  @Test
+  void filesAreOrderedByMatchedCharactersTest() {
+    String text = randomText(2000);
+    FingerprintIndex index = new FingerprintIndex();
+    index.put("aboba-half", fingerprintsOf(text.substring(0, 1000)));
+    index.put("aboba-full", fingerprintsOf(text));
+    index.put("aboba-self", fingerprintsOf(text));
+
+    List<PassageMatch> matches = index.query(fingerprintsOf(text), "aboba-self", 100, 10);
+
+    assertEquals(List.of("aboba-full", "aboba-half"), matches.stream().map(PassageMatch::getFileId).toList());
+    assertTrue(matches.get(0).getMatchedCharacters() > matches.get(1).getMatchedCharacters());
+    assertEquals(1, index.query(fingerprintsOf(text), "aboba-self", 100, 1).size());
+  }
+
+  @Test
+  void commonFingerprintsAreIgnoredTest() {
+    String template = randomText(500);
+    FingerprintIndex index = new FingerprintIndex();
+    for (int i = 0; i < 5; i++) {
+      index.put("kek-" + i, fingerprintsOf(template + randomText(500)));
+    }
+
+    assertEquals(5, index.query(fingerprintsOf(template), null, 5, 10).size());
+    assertTrue(index.query(fingerprintsOf(template), null, 4, 10).isEmpty());
+  }
+
+  @Test
+  void replacedFingerprintsAreNotFoundTest() {
+    String before = randomText(500);
+    String after = randomText(500);
+    FingerprintIndex index = new FingerprintIndex();
+
+    assertTrue(index.put("aboba", fingerprintsOf(before)));
+    assertFalse(index.put("aboba", fingerprintsOf(before)));
+    assertTrue(index.put("aboba", fingerprintsOf(after)));
+
+    assertTrue(index.query(fingerprintsOf(before), null, 100, 10).isEmpty());
+    assertEquals(1, index.query(fingerprintsOf(after), null, 100, 10).size());
+    assertEquals(1, index.size());
+  }
+
+  private String randomText(int length) {
+    StringBuilder text = new StringBuilder(length);
+    while (text.length() < length) {
+      int wordLength = 2 + random.nextInt(8);
+      for (int i = 0; i < wordLength; i++) {
+        text.append((char) ('a' + random.nextInt(26)));
+      }
+      text.append(random.nextInt(10) == 0 ? ". " : " ");
+    }
+    return text.toString();
+  }
+
+  private static Fingerprints fingerprintsOf(String text) {
+    Winnowing winnowing = new Winnowing();
+    winnowing.accept(text, 0, text.length());
+    winnowing.finish();
+    return winnowing.getFingerprints();
+  }
+}
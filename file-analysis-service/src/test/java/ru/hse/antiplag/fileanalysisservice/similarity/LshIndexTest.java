@@ -0,0 +1,94 @@
+package ru.hse.antiplag.fileanalysisservice.similarity;
+
+import org.junit.jupiter.api.Test;
+import ru.hse.antiplag.fileanalysisservice.dto.SimilarFile;
+import ru.hse.antiplag.fileanalysisservice.text.MinHash;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link LshIndex}.
+ */
+class LshIndexTest {
+
+  private final SplittableRandom random = new SplittableRandom(42);
+
+  @Test
+  void nearDuplicatesAreFoundTest() {
+    LshIndex index = new LshIndex(16);
+    long[] original = randomShingles(1000);
+    long[] edited = original.clone();
+    for (int i = 0; i < 50; i++) {
+      edited[i] = random.nextLong();
+    }
+    index.put("aboba", signatureOf(original));
+    index.put("aboba-edited", signatureOf(edited));
+    for (int i = 0; i < 1000; i++) {
+      index.put("kek-" + i, signatureOf(randomShingles(100)));
+    }
+
+    List<SimilarFile> similar = index.query(signatureOf(original), 0.5, "aboba", 10);
+
+    assertEquals(1, similar.size());
+    assertEquals("aboba-edited", similar.get(0).getFileId());
+    assertTrue(similar.get(0).getSimilarity() > 0.75);
+    assertEquals(1002, index.size());
+  }
+
+  @Test
+  void resultsAreOrderedAndLimitedTest() {
+    LshIndex index = new LshIndex(16);
+    int[] signature = signatureOf(randomShingles(500));
+    index.put("kek", signature);
+    index.put("aboba", signature);
+    index.put("lol", signature);
+
+    List<SimilarFile> similar = index.query(signature, 0.9, null, 2);
+
+    assertEquals(List.of("aboba", "kek"), similar.stream().map(SimilarFile::getFileId).toList());
+    assertEquals(1.0, similar.get(0).getSimilarity());
+  }
+
+  @Test
+  void replacedSignatureIsNotFoundTest() {
+    LshIndex index = new LshIndex(8);
+    int[] before = signatureOf(randomShingles(200));
+    int[] after = signatureOf(randomShingles(200));
+
+    assertTrue(index.put("aboba", before));
+    assertFalse(index.put("aboba", before));
+    assertTrue(index.put("aboba", after));
+
+    assertTrue(index.query(before, 0.5, null, 10).isEmpty());
+    assertEquals("aboba", index.query(after, 0.5, null, 10).get(0).getFileId());
+    assertEquals(1, index.size());
+  }
+
+  @Test
+  void bandsMustDivideSignatureTest() {
+    assertThrows(IllegalArgumentException.class, () -> new LshIndex(7));
+    assertThrows(IllegalArgumentException.class, () -> new LshIndex(0));
+  }
+
+  private long[] randomShingles(int count) {
+    long[] shingles = new long[count];
+    for (int i = 0; i < count; i++) {
+      shingles[i] = random.nextLong();
+    }
+    return shingles;
+  }
+
+  private static int[] signatureOf(long[] shingles) {
+    MinHash minHash = new MinHash();
+    for (long shingle : shingles) {
+      minHash.add(shingle);
+    }
+    return minHash.signature();
+  }
+}
@@ -0,0 +1,197 @@
+package ru.hse.antiplag.fileanalysisservice.similarity;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.hse.antiplag.fileanalysisservice.dto.MatchedPassage;
+import ru.hse.antiplag.fileanalysisservice.dto.PassageMatch;
+import ru.hse.antiplag.fileanalysisservice.text.Fingerprints;
+import ru.hse.antiplag.fileanalysisservice.text.Winnowing;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link SegmentedFingerprintIndex}.
+ */
+class SegmentedFingerprintIndexTest {
+
+  private final SplittableRandom random = new SplittableRandom(42);
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void flushedFilesAreFoundAfterReopenTest() throws IOException {
+    String passage = randomText(400);
+    String original = randomText(1000) + passage + randomText(1000);
+    String copy = randomText(300) + passage + randomText(300);
+    SegmentedFingerprintIndex index = new SegmentedFingerprintIndex(directory, 1000, 4);
+    index.put("aboba-original", fingerprintsOf(original));
+    index.put("kek-unrelated", fingerprintsOf(randomText(3000)));
+    index.setCheckpoint(42);
+
+    assertTrue(index.flush());
+    assertFalse(index.flush());
+    SegmentedFingerprintIndex reopened = new SegmentedFingerprintIndex(directory, 1000, 4);
+
+    assertEquals(2, reopened.size());
+    assertEquals(1, reopened.segmentCount());
+    assertEquals(42, reopened.getCheckpoint());
+    List<PassageMatch> matches = reopened.query(fingerprintsOf(copy), null, 100, 10);
+    assertEquals(1, matches.size());
+    assertEquals("aboba-original", matches.get(0).getFileId());
+    MatchedPassage matched = matches.get(0).getPassages().get(0);
+    assertEquals(matched.getStart() - copy.indexOf(passage), matched.getOtherStart() - original.indexOf(passage));
+  }
+
+  @Test
+  void matchesOfBufferAndSegmentsAreTheSameAsInMemoryTest() throws IOException {
+    String text = randomText(3000);
+    SegmentedFingerprintIndex index = new SegmentedFingerprintIndex(directory, 1000, 4);
+    FingerprintIndex expected = new FingerprintIndex();
+    for (int i = 0; i < 6; i++) {
+      int from = random.nextInt(2000);
+      Fingerprints fingerprints = fingerprintsOf(randomText(500) + text.substring(from, from + 800));
+      index.put("kek-" + i, fingerprints);
+      expected.put("kek-" + i, fingerprints);
+      if (i % 2 == 1) {
+        index.flush();
+      }
+    }
+    index.put("kek-buffered", fingerprintsOf(text.substring(100, 900)));
+    expected.put("kek-buffered", fingerprintsOf(text.substring(100, 900)));
+
+    assertEquals(3, index.segmentCount());
+    assertEquals(7, index.size());
+    assertEquals(describe(expected.query(fingerprintsOf(text), null, 100, 10)),
+        describe(index.query(fingerprintsOf(text), null, 100, 10)));
+  }
+
+  @Test
+  void fileReplacedInSegmentIsNotFoundTest() throws IOException {
+    String before = randomText(500);
+    String after = randomText(500);
+    SegmentedFingerprintIndex index = new SegmentedFingerprintIndex(directory, 1000, 4);
+    index.put("aboba", fingerprintsOf(before));
+    index.flush();
+
+    assertFalse(index.put("aboba", fingerprintsOf(before)));
+    assertTrue(index.put("aboba", fingerprintsOf(after)));
+    assertTrue(index.query(fingerprintsOf(before), null, 100, 10).isEmpty());
+    assertEquals(1, index.query(fingerprintsOf(after), null, 100, 10).size());
+
+    index.flush();
+    SegmentedFingerprintIndex reopened = new SegmentedFingerprintIndex(directory, 1000, 4);
+    assertEquals(1, reopened.size());
+    assertTrue(reopened.query(fingerprintsOf(before), null, 100, 10).isEmpty());
+    assertEquals(1, reopened.query(fingerprintsOf(after), null, 100, 10).size());
+  }
+
+  @Test
+  void commonFingerprintsAreIgnoredAcrossSegmentsTest() throws IOException {
+    String template = randomText(500);
+    SegmentedFingerprintIndex index = new SegmentedFingerprintIndex(directory, 1000, 4);
+    for (int i = 0; i < 5; i++) {
+      index.put("lol-" + i, fingerprintsOf(template + randomText(500)));
+      index.flush();
+    }
+
+    assertEquals(5, index.query(fingerprintsOf(template), null, 5, 10).size());
+    assertTrue(index.query(fingerprintsOf(template), null, 4, 10).isEmpty());
+  }
+
+  @Test
+  void mergedSegmentKeepsMatchesAndDropsReplacedFilesTest() throws IOException {
+    String text = randomText(3000);
+    String replaced = randomText(500);
+    SegmentedFingerprintIndex index = new SegmentedFingerprintIndex(directory, 1000, 2);
+    FingerprintIndex expected = new FingerprintIndex();
+    index.put("aboba-replaced", fingerprintsOf(replaced));
+    for (int i = 0; i < 8; i++) {
+      int from = random.nextInt(2000);
+      Fingerprints fingerprints = fingerprintsOf(randomText(300) + text.substring(from, from + 1000));
+      index.put("kek-" + i, fingerprints);
+      expected.put("kek-" + i, fingerprints);
+      index.flush();
+    }
+    index.put("aboba-replaced", fingerprintsOf(text.substring(0, 500)));
+    expected.put("aboba-replaced", fingerprintsOf(text.substring(0, 500)));
+    index.flush();
+    Path replacedSegment;
+    try (Stream<Path> files = Files.list(directory)) {
+      replacedSegment = files.sorted().findFirst().orElseThrow();
+    }
+    byte[] replacedBytes = Files.readAllBytes(replacedSegment);
+
+    int merges = 0;
+    while (index.merge()) {
+      merges++;
+    }
+
+    assertTrue(merges > 0);
+    assertTrue(index.segmentCount() < 9);
+    assertEquals(9, index.size());
+    assertTrue(index.query(fingerprintsOf(replaced), null, 100, 10).isEmpty());
+    List<String> expectedMatches = describe(expected.query(fingerprintsOf(text), null, 100, 20));
+    assertEquals(expectedMatches, describe(index.query(fingerprintsOf(text), null, 100, 20)));
+
+    Files.write(replacedSegment, replacedBytes);
+    SegmentedFingerprintIndex reopened = new SegmentedFingerprintIndex(directory, 1000, 2);
+    assertFalse(Files.exists(replacedSegment));
+    assertEquals(index.segmentCount(), reopened.segmentCount());
+    assertEquals(9, reopened.size());
+    assertTrue(reopened.query(fingerprintsOf(replaced), null, 100, 10).isEmpty());
+    assertEquals(expectedMatches, describe(reopened.query(fingerprintsOf(text), null, 100, 20)));
+  }
+
+  @Test
+  void unfinishedSegmentsAreDeletedTest() throws IOException {
+    Path unfinished = Files.write(directory.resolve("segment-000000000007.seg.tmp"), new byte[] {1, 2, 3});
+
+    SegmentedFingerprintIndex index = new SegmentedFingerprintIndex(directory, 1000, 4);
+
+    assertFalse(Files.exists(unfinished));
+    assertEquals(0, index.size());
+  }
+
+  private static List<String> describe(List<PassageMatch> matches) {
+    List<String> described = new ArrayList<>();
+    for (PassageMatch match : matches) {
+      StringBuilder passages = new StringBuilder(match.getFileId() + ":" + match.getMatchedCharacters());
+      for (MatchedPassage passage : match.getPassages()) {
+        passages.append(String.format(" [%d,%d)~[%d,%d)",
+            passage.getStart(), passage.getEnd(), passage.getOtherStart(), passage.getOtherEnd()));
+      }
+      described.add(passages.toString());
+    }
+    return described;
+  }
+
+  private String randomText(int length) {
+    StringBuilder text = new StringBuilder(length);
+    while (text.length() < length) {
+      int wordLength = 2 + random.nextInt(8);
+      for (int i = 0; i < wordLength; i++) {
+        text.append((char) ('a' + random.nextInt(26)));
+      }
+      text.append(random.nextInt(10) == 0 ? ". " : " ");
+    }
+    return text.toString();
+  }
+
+  private static Fingerprints fingerprintsOf(String text) {
+    Winnowing winnowing = new Winnowing();
+    winnowing.accept(text, 0, text.length());
+    winnowing.finish();
+    return winnowing.getFingerprints();
+  }
+}
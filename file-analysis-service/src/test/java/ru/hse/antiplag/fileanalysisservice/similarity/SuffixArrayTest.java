@@ -0,0 +1,57 @@
+package ru.hse.antiplag.fileanalysisservice.similarity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Tests for {@link SuffixArray}.
+ */
+class SuffixArrayTest {
+
+  @Test
+  void suffixesAreSortedTest() {
+    SplittableRandom random = new SplittableRandom(42);
+    for (int round = 0; round < 200; round++) {
+      int upper = 1 + random.nextInt(round % 2 == 0 ? 3 : 300);
+      int[] s = random.ints(1 + random.nextInt(300), 0, upper + 1).toArray();
+
+      int[] sa = SuffixArray.build(s, upper);
+
+      assertArrayEquals(naiveSuffixArray(s), sa, Arrays.toString(s));
+      assertArrayEquals(naiveLcp(s, sa), SuffixArray.lcp(s, sa), Arrays.toString(s));
+    }
+  }
+
+  @Test
+  void repeatedStringIsSortedTest() {
+    int[] s = new int[1000];
+    Arrays.fill(s, 7);
+
+    int[] sa = SuffixArray.build(s, 7);
+
+    assertArrayEquals(naiveSuffixArray(s), sa);
+    assertArrayEquals(naiveLcp(s, sa), SuffixArray.lcp(s, sa));
+  }
+
+  private static int[] naiveSuffixArray(int[] s) {
+    return java.util.stream.IntStream.range(0, s.length).boxed()
+        .sorted((a, b) -> Arrays.compare(s, a, s.length, s, b, s.length))
+        .mapToInt(Integer::intValue)
+        .toArray();
+  }
+
+  private static int[] naiveLcp(int[] s, int[] sa) {
+    int[] lcp = new int[sa.length - 1];
+    for (int i = 0; i + 1 < sa.length; i++) {
+      while (sa[i] + lcp[i] < s.length && sa[i + 1] + lcp[i] < s.length
+          && s[sa[i] + lcp[i]] == s[sa[i + 1] + lcp[i]]) {
+        lcp[i]++;
+      }
+    }
+    return lcp;
+  }
+}
@@ -0,0 +1,41 @@
+package ru.hse.antiplag.fileanalysisservice.text;
+
+/**
+ * The regex based paragraph and word counting that {@link TextStatisticsScanner} replaced,
+ * kept as the reference for the equivalence test and the benchmark.
+ */
+final class LegacyTextStatistics {
+
+  private LegacyTextStatistics() {
+  }
+
+  static int calculateParagraphCount(String content) {
+    if (content == null || content.trim().isEmpty()) {
+      return 0;
+    }
+    String normalizedContent = content.replace("\r\n", "\n").replace("\r", "\n");
+    String effectivelyTrimmedContent = normalizedContent.trim();
+
+    if (effectivelyTrimmedContent.isEmpty()) {
+        return 0;
+    }
+
+    String[] paragraphs = effectivelyTrimmedContent.split("(\n\s*){2,}");
+
+    int actualParagraphs = 0;
+    for (String p : paragraphs) {
+        if (!p.trim().isEmpty()) {
+            actualParagraphs++;
+        }
+    }
+    return actualParagraphs > 0 ? actualParagraphs : 1;
+  }
+
+  static int calculateWordCount(String content) {
+    if (content == null) return 0;
+    String trimmedContent = content.trim();
+    if (trimmedContent.isEmpty()) return 0;
+    String[] words = trimmedContent.split("\\s+");
+    return words.length;
+  }
+}
@@ -0,0 +1,87 @@
+package ru.hse.antiplag.fileanalysisservice.text;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link MinHash} and {@link WordShingles}.
+ */
+class MinHashTest {
+
+  @Test
+  void estimatesJaccardSimilarityTest() {
+    MinHash a = new MinHash();
+    MinHash b = new MinHash();
+    for (long shingle = 0; shingle < 3000; shingle++) {
+      if (shingle < 2000) {
+        a.add(mix(shingle));
+      }
+      if (shingle >= 1000) {
+        b.add(mix(shingle));
+      }
+    }
+
+    double similarity = MinHash.similarity(a.signature(), b.signature());
+
+    assertEquals(1.0 / 3, similarity, 0.2);
+    assertEquals(1.0, MinHash.similarity(a.signature(), a.signature()));
+  }
+
+  @Test
+  void shinglesIgnoreCaseAndPunctuationTest() {
+    assertArrayEquals(signatureOf("Aboba kek, lol! Aboba kek lol aboba."),
+        signatureOf("aboba KEK lol aboba -- kek; lol ABOBA"));
+  }
+
+  @Test
+  void textSplitAnywhereGivesSameSignatureTest() {
+    String text = "Плагиат aboba kek lol плагиат aboba kek lol aboba";
+    MinHash minHash = new MinHash();
+    WordShingles shingles = new WordShingles(WordShingles.SIZE, minHash::add);
+    for (int i = 0; i < text.length(); i += 3) {
+      shingles.accept(text, i, Math.min(text.length(), i + 3));
+    }
+    shingles.finish();
+
+    assertArrayEquals(signatureOf(text), minHash.signature());
+  }
+
+  @Test
+  void shortAndEmptyTextsTest() {
+    assertNotNull(signatureOf("aboba kek"));
+    assertTrue(MinHash.similarity(signatureOf("aboba kek"), signatureOf("kek aboba")) < 1);
+    assertNull(signatureOf(" ... "));
+  }
+
+  @Test
+  void roundTripTest() {
+    int[] signature = signatureOf("aboba kek lol aboba kek");
+
+    byte[] data = MinHash.encode(signature);
+
+    assertEquals(MinHash.SIZE * 4, data.length);
+    assertArrayEquals(signature, MinHash.decode(data));
+    assertThrows(IllegalArgumentException.class, () -> MinHash.decode(Arrays.copyOf(data, 10)));
+  }
+
+  private static int[] signatureOf(String text) {
+    MinHash minHash = new MinHash();
+    WordShingles shingles = new WordShingles(WordShingles.SIZE, minHash::add);
+    shingles.accept(text, 0, text.length());
+    shingles.finish();
+    return minHash.signature();
+  }
+
+  private static long mix(long value) {
+    value *= 0x9e3779b97f4a7c15L;
+    return value ^ (value >>> 31);
+  }
+}
@@ -0,0 +1,85 @@
+package ru.hse.antiplag.fileanalysisservice.text;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link TermCounter}.
+ */
+class TermCounterTest {
+
+  @Test
+  void countsTermsInLowerCaseTest() {
+    TermCounter counter = new TermCounter(100);
+    feed(counter, "Aboba, kek! ABOBA abo", "ba kek2 кек Кек");
+
+    List<TermCount> terms = counter.topTerms(10);
+
+    assertEquals("[aboba:3, кек:2, kek:1, kek2:1]", terms.toString());
+    assertEquals(2, counter.topTerms(2).size());
+  }
+
+  @Test
+  void cutsLongTermsTest() {
+    TermCounter counter = new TermCounter(100);
+    feed(counter, "a".repeat(TermCounter.MAX_TERM_LENGTH + 10));
+
+    assertEquals(TermCounter.MAX_TERM_LENGTH, counter.topTerms(1).get(0).getTerm().length());
+  }
+
+  @Test
+  void keepsFrequentTermsWithinLimitTest() {
+    TermCounter counter = new TermCounter(100);
+    for (int i = 0; i < 10_000; i++) {
+      counter.accept("aboba kek", 0, 9);
+      String rare = " rare" + i + " ";
+      counter.accept(rare, 0, rare.length());
+    }
+    counter.finish();
+
+    assertTrue(counter.getDistinctTermCount() <= 100);
+    List<TermCount> terms = counter.topTerms(2);
+    assertEquals("aboba", terms.get(0).getTerm());
+    assertEquals(10_000, terms.get(0).getCount());
+    assertEquals("kek", terms.get(1).getTerm());
+  }
+
+  @Test
+  void skipsStopWordsTest() {
+    TermCounter counter = new TermCounter(100, StopWords.load("ru", "en"));
+    feed(counter, "The aboba and the kek, и это не кек, а Aboba");
+
+    assertEquals("[aboba:2, kek:1, кек:1]", counter.topTerms(10).toString());
+  }
+
+  @Test
+  void growsAndKeepsAllTermsTest() {
+    TermCounter counter = new TermCounter(100_000);
+    for (int i = 0; i < 20_000; i++) {
+      String piece = "kek" + i + " aboba ";
+      counter.accept(piece, 0, piece.length());
+    }
+    counter.finish();
+
+    assertEquals(20_001, counter.getDistinctTermCount());
+    List<TermCount> all = counter.allTerms();
+    assertEquals(20_001, all.size());
+    assertEquals("aboba:20000", all.get(0).toString());
+    assertEquals("kek0:1", all.get(1).toString());
+    for (int i = 1; i < all.size(); i++) {
+      assertTrue(all.get(i - 1).getTerm().compareTo(all.get(i).getTerm()) < 0);
+    }
+    assertEquals("[aboba:20000, kek0:1, kek1:1]", counter.topTerms(3).toString());
+  }
+
+  private static void feed(TermCounter counter, String... pieces) {
+    for (String piece : pieces) {
+      counter.accept(piece, 0, piece.length());
+    }
+    counter.finish();
+  }
+}
@@ -0,0 +1,42 @@
+package ru.hse.antiplag.fileanalysisservice.text;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link TermVectorCodec}.
+ */
+class TermVectorCodecTest {
+
+  @Test
+  void roundTripTest() {
+    List<TermCount> terms = List.of(new TermCount("aboba", 3), new TermCount("abobus", 300),
+        new TermCount("kek", 1), new TermCount("плагиат", 70_000), new TermCount("плагиатор", 2));
+
+    byte[] data = TermVectorCodec.encode(terms);
+
+    assertEquals(terms.toString(), TermVectorCodec.decode(data).toString());
+    assertEquals(48, data.length, "shared prefixes are written once");
+  }
+
+  @Test
+  void emptyVectorTest() {
+    assertTrue(TermVectorCodec.decode(TermVectorCodec.encode(List.of())).isEmpty());
+  }
+
+  @Test
+  void rejectsMalformedDataTest() {
+    byte[] data = TermVectorCodec.encode(List.of(new TermCount("aboba", 1)));
+
+    assertThrows(IllegalArgumentException.class, () -> TermVectorCodec.decode(new byte[0]));
+    assertThrows(IllegalArgumentException.class, () -> TermVectorCodec.decode(new byte[] {42}));
+    assertThrows(IllegalArgumentException.class,
+        () -> TermVectorCodec.decode(Arrays.copyOf(data, data.length - 3)));
+  }
+}
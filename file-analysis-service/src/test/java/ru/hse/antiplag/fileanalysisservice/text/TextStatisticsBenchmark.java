@@ -0,0 +1,86 @@
+package ru.hse.antiplag.fileanalysisservice.text;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of {@link TextStatisticsScanner} against the regex based counting it replaced.
+ * Disabled by default, run with {@code mvn test -Dtest=TextStatisticsBenchmark -Danalysis.benchmark=true};
+ * the GC profiler reports the allocation rate of both.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextStatisticsBenchmark {
+
+  private static final String[] WORDS = {"aboba", "kek", "lorem", "ipsum", "плагиат", "текст", "a", "dolor"};
+
+  @Param({"1", "20"})
+  public int megabytes;
+
+  private String text;
+
+  @Setup
+  public void setUp() {
+    SplittableRandom random = new SplittableRandom(42);
+    StringBuilder builder = new StringBuilder(megabytes << 20);
+    while (builder.length() < megabytes << 20) {
+      builder.append(WORDS[random.nextInt(WORDS.length)]);
+      int separator = random.nextInt(100);
+      if (separator < 2) {
+        builder.append(".\r\n\r\n");
+      } else if (separator < 10) {
+        builder.append(". ");
+      } else if (separator < 12) {
+        builder.append('\n');
+      } else {
+        builder.append(' ');
+      }
+    }
+    text = builder.toString();
+  }
+
+  @Benchmark
+  public void legacy(Blackhole blackhole) {
+    blackhole.consume(text.trim().isEmpty());
+    blackhole.consume(LegacyTextStatistics.calculateParagraphCount(text));
+    blackhole.consume(LegacyTextStatistics.calculateWordCount(text));
+    blackhole.consume(text.length());
+  }
+
+  @Benchmark
+  public TextStatisticsScanner scanner() {
+    return TextStatisticsScanner.scan(text);
+  }
+
+  @Test
+  @EnabledIfSystemProperty(named = "analysis.benchmark", matches = "true")
+  void runBenchmark() throws Exception {
+    new Runner(new OptionsBuilder()
+        .include(TextStatisticsBenchmark.class.getName())
+        .addProfiler(GCProfiler.class)
+        .build())
+        .run();
+  }
+}
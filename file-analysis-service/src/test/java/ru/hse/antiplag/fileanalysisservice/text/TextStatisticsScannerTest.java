@@ -0,0 +1,97 @@
+package ru.hse.antiplag.fileanalysisservice.text;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.CharBuffer;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link TextStatisticsScanner}, checked against the regex based implementation.
+ */
+class TextStatisticsScannerTest {
+
+  private static final char[] ALPHABET = {
+      'a', 'b', 'k', 'e', 'K', '1', '.', '!', '?', ',', '…', 'é', 'я', ' ',
+      ' ', ' ', ' ', '\t', '\n', '\n', '\r', '\f', '\u000B', '\u0000', '\u0001', '\u001f'
+  };
+
+  @ParameterizedTest
+  @ValueSource(strings = {
+      "", " ", "\n\n", "aboba", "  aboba kek  ", "aboba\n\nkek", "aboba\n \n  kek", "aboba\n\t\nkek",
+      "aboba\r\n\r\nkek", "aboba\r\rkek", "aboba\r\n\rkek", "aboba\n\n\n\n\nkek\n\n", "\u0001 aboba \u0001",
+      "aboba \u0001 kek", "aboba\u0001kek", "\u0001\u0002", "aboba\u000Bkek\fkek", "aboba kek",
+      "\n \n aboba \n\n \n kek \n", "This is some aboba test text. Repetitive kek text for cloud."
+  })
+  void matchesLegacyCountsTest(String text) {
+    assertLegacyCounts(text);
+  }
+
+  @Test
+  void matchesLegacyCountsOnRandomTextTest() {
+    SplittableRandom random = new SplittableRandom(42);
+    for (int i = 0; i < 20_000; i++) {
+      char[] text = new char[random.nextInt(40)];
+      for (int j = 0; j < text.length; j++) {
+        text[j] = ALPHABET[random.nextInt(ALPHABET.length)];
+      }
+      assertLegacyCounts(new String(text));
+    }
+  }
+
+  @Test
+  void piecesGiveSameCountsAsWholeTextTest() {
+    String text = "Aboba kek.\r\n\r\nKek \u0001 aboba!\r\nAboba?\n \nkek";
+    TextStatisticsScanner whole = TextStatisticsScanner.scan(text);
+    for (int split = 0; split <= text.length(); split++) {
+      TextStatisticsScanner scanner = new TextStatisticsScanner();
+      CharBuffer buffer = CharBuffer.wrap(text);
+      scanner.accept(buffer, 0, split);
+      scanner.accept(buffer, split, text.length());
+
+      assertEquals(whole.getParagraphCount(), scanner.getParagraphCount(), "split at " + split);
+      assertEquals(whole.getWordCount(), scanner.getWordCount(), "split at " + split);
+      assertEquals(whole.getCharacterCount(), scanner.getCharacterCount(), "split at " + split);
+      assertEquals(whole.getLineCount(), scanner.getLineCount(), "split at " + split);
+      assertEquals(whole.getSentenceCount(), scanner.getSentenceCount(), "split at " + split);
+    }
+  }
+
+  @Test
+  void linesTest() {
+    assertEquals(0, TextStatisticsScanner.scan("").getLineCount());
+    assertEquals(1, TextStatisticsScanner.scan("aboba").getLineCount());
+    assertEquals(1, TextStatisticsScanner.scan("aboba\n").getLineCount());
+    assertEquals(3, TextStatisticsScanner.scan("aboba\r\n\rkek").getLineCount());
+    assertEquals(2, TextStatisticsScanner.scan("\n\n").getLineCount());
+  }
+
+  @Test
+  void sentencesTest() {
+    assertEquals(0, TextStatisticsScanner.scan(" ... ").getSentenceCount());
+    assertEquals(1, TextStatisticsScanner.scan("Aboba kek").getSentenceCount());
+    assertEquals(3, TextStatisticsScanner.scan("Aboba! Kek?! Кек…").getSentenceCount());
+    assertEquals(2, TextStatisticsScanner.scan("Aboba... kek").getSentenceCount());
+  }
+
+  @Test
+  void hasContentTest() {
+    assertFalse(TextStatisticsScanner.scan(" \n\t\u0001").hasContent());
+    assertTrue(TextStatisticsScanner.scan(" \n\tk").hasContent());
+  }
+
+  private static void assertLegacyCounts(String text) {
+    TextStatisticsScanner scanner = TextStatisticsScanner.scan(text);
+    String message = "text " + text.chars().mapToObj(c -> String.format("\\u%04x", c)).toList();
+    assertEquals(LegacyTextStatistics.calculateParagraphCount(text), scanner.getParagraphCount(), message);
+    assertEquals(LegacyTextStatistics.calculateWordCount(text), scanner.getWordCount(), message);
+    assertEquals(text.length(), scanner.getCharacterCount(), message);
+    assertEquals(!text.trim().isEmpty(), scanner.hasContent(), message);
+    assertEquals(text.lines().count(), scanner.getLineCount(), message);
+  }
+}
@@ -0,0 +1,73 @@
+package ru.hse.antiplag.fileanalysisservice.text;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for {@link Utf8StreamDecoder}.
+ */
+class Utf8StreamDecoderTest {
+
+  @Test
+  void decodesCharactersSplitBetweenBuffersTest() {
+    byte[] bytes = "aboba кек € 😀".getBytes(StandardCharsets.UTF_8);
+    for (int split = 0; split <= bytes.length; split++) {
+      assertEquals("aboba кек € 😀", decode(bytes, split, bytes.length), "split at " + split);
+    }
+  }
+
+  @Test
+  void decodesLikeInputStreamReaderTest() throws IOException {
+    SplittableRandom random = new SplittableRandom(42);
+    byte[] valid = "aboba кек € 😀\r\n".getBytes(StandardCharsets.UTF_8);
+    for (int i = 0; i < 5_000; i++) {
+      byte[] bytes = new byte[random.nextInt(64)];
+      for (int j = 0; j < bytes.length; j++) {
+        bytes[j] = random.nextInt(4) == 0 ? (byte) random.nextInt(256) : valid[random.nextInt(valid.length)];
+      }
+      assertEquals(readAll(bytes), decode(bytes, 1 + random.nextInt(5), 1 + random.nextInt(5)));
+    }
+  }
+
+  @Test
+  void replacesTruncatedCharacterAtTheEndTest() {
+    byte[] bytes = {'k', (byte) 0xE2, (byte) 0x82};
+
+    assertEquals("k�", decode(bytes, 2, 1));
+  }
+
+  private static String decode(byte[] bytes, int firstPiece, int pieceSize) {
+    StringBuilder text = new StringBuilder();
+    Utf8StreamDecoder decoder = new Utf8StreamDecoder((chars, start, end) -> text.append(chars, start, end));
+    int offset = Math.min(firstPiece, bytes.length);
+    decoder.decode(ByteBuffer.wrap(bytes, 0, offset));
+    while (offset < bytes.length) {
+      int length = Math.min(pieceSize, bytes.length - offset);
+      decoder.decode(ByteBuffer.wrap(bytes, offset, length));
+      offset += length;
+    }
+    decoder.finish();
+    return text.toString();
+  }
+
+  private static String readAll(byte[] bytes) throws IOException {
+    StringBuilder text = new StringBuilder();
+    try (Reader reader = new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8)) {
+      char[] chars = new char[16];
+      int read;
+      while ((read = reader.read(chars)) != -1) {
+        text.append(chars, 0, read);
+      }
+    }
+    return text.toString();
+  }
+}
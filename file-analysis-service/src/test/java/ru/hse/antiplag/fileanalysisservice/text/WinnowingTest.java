@@ -0,0 +1,141 @@
+package ru.hse.antiplag.fileanalysisservice.text;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link Winnowing} and {@link Fingerprints}.
+ */
+class WinnowingTest {
+
+  private static final String ESSAY = "Aboba kek is a word that was never in any dictionary, but every student of "
+      + "the course used it in the essay about plagiarism. Copied passages are found by comparing the "
+      + "fingerprints of the texts, which are selected from windows of hashed k-grams of normalized characters.";
+
+  @Test
+  void sharedPassageSharesFingerprintTest() {
+    String passage = "every student of the course used it in the essay about plagiarism";
+    Fingerprints essay = fingerprintsOf(ESSAY);
+    Fingerprints other = fingerprintsOf("Lol, this is another text. " + passage.toUpperCase() + "!!! The end, kek.");
+
+    Set<Long> hashes = new HashSet<>();
+    for (int i = 0; i < essay.size(); i++) {
+      hashes.add(essay.getHash(i));
+    }
+    boolean shared = false;
+    for (int i = 0; i < other.size(); i++) {
+      shared |= hashes.contains(other.getHash(i));
+    }
+    assertTrue(shared);
+  }
+
+  @Test
+  void offsetsPointAtKgramsInOriginalTextTest() {
+    Fingerprints fingerprints = fingerprintsOf(ESSAY);
+
+    assertTrue(fingerprints.size() > 0);
+    int previousStart = -1;
+    for (int i = 0; i < fingerprints.size(); i++) {
+      String kgram = ESSAY.substring(fingerprints.getStart(i), fingerprints.getEnd(i));
+      assertEquals(Winnowing.KGRAM_LENGTH, kgram.replaceAll("[^\\p{L}\\p{N}]", "").length(), kgram);
+      assertTrue(Character.isLetterOrDigit(kgram.charAt(0)));
+      assertTrue(fingerprints.getStart(i) > previousStart);
+      previousStart = fingerprints.getStart(i);
+    }
+  }
+
+  @Test
+  void everyWindowHasFingerprintTest() {
+    String text = ESSAY.repeat(5);
+    String normalized = text.replaceAll("[^\\p{L}\\p{N}]", "");
+    Fingerprints fingerprints = fingerprintsOf(text);
+    long kgrams = normalized.length() - Winnowing.KGRAM_LENGTH + 1;
+
+    for (int i = 1; i < fingerprints.size(); i++) {
+      String between = text.substring(fingerprints.getStart(i - 1), fingerprints.getStart(i));
+      assertTrue(between.replaceAll("[^\\p{L}\\p{N}]", "").length() <= Winnowing.WINDOW);
+    }
+    assertTrue(fingerprints.size() < kgrams / 4, "about 2 / (w + 1) of the k-grams are kept");
+  }
+
+  @Test
+  void textSplitAnywhereGivesSameFingerprintsTest() {
+    Winnowing winnowing = new Winnowing();
+    for (int i = 0; i < ESSAY.length(); i += 7) {
+      winnowing.accept(ESSAY, i, Math.min(ESSAY.length(), i + 7));
+    }
+    winnowing.finish();
+
+    assertEquals(fingerprintsOf(ESSAY).digest(), winnowing.getFingerprints().digest());
+  }
+
+  @Test
+  void shortTextsTest() {
+    assertEquals(0, fingerprintsOf("aboba kek").size());
+    assertEquals(1, fingerprintsOf("aboba kek lol aboba kek lol aboba kek").size());
+  }
+
+  @Test
+  void roundTripTest() {
+    Fingerprints fingerprints = fingerprintsOf(ESSAY);
+
+    byte[] data = Fingerprints.encode(fingerprints);
+    Fingerprints decoded = Fingerprints.decode(data);
+
+    assertEquals(fingerprints.digest(), decoded.digest());
+    assertEquals(fingerprints.size(), decoded.size());
+    assertEquals(0, Fingerprints.decode(Fingerprints.encode(new Fingerprints())).size());
+    assertThrows(IllegalArgumentException.class, () -> Fingerprints.decode(new byte[0]));
+    assertThrows(IllegalArgumentException.class, () -> Fingerprints.decode(Arrays.copyOf(data, data.length - 3)));
+    assertFalse(data.length > fingerprints.size() * 12, "offsets are written as small deltas");
+  }
+
+  @Test
+  void fingerprintsOfLargeTextAreCappedTest() {
+    TextAnalysis analysis = new TextAnalysis(1000, StopWords.NONE, 10_000);
+    Random random = new Random(42);
+    String[] words = {"aboba", "kek", "lol", "plagiarism", "essay", "student", "course", "dictionary"};
+    StringBuilder piece = new StringBuilder();
+    long textLength = 0;
+    while (textLength < 64L << 20) {
+      piece.setLength(0);
+      while (piece.length() < 1 << 16) {
+        piece.append(words[random.nextInt(words.length)]).append(random.nextInt(1000)).append(' ');
+      }
+      analysis.accept(ByteBuffer.wrap(piece.toString().getBytes(StandardCharsets.UTF_8)));
+      textLength += piece.length();
+    }
+    analysis.finish();
+
+    Fingerprints fingerprints = analysis.getFingerprints();
+    assertEquals(10_000, fingerprints.size());
+    assertTrue(analysis.isFingerprintsTruncated());
+    assertTrue(fingerprints.getEnd(fingerprints.size() - 1) < textLength / 100, "only the beginning is fingerprinted");
+    assertFalse(fingerprintsAnalysisOf(ESSAY).isFingerprintsTruncated());
+  }
+
+  private static TextAnalysis fingerprintsAnalysisOf(String text) {
+    TextAnalysis analysis = new TextAnalysis(1000, StopWords.NONE, 10_000);
+    analysis.accept(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    analysis.finish();
+    return analysis;
+  }
+
+  private static Fingerprints fingerprintsOf(String text) {
+    Winnowing winnowing = new Winnowing();
+    winnowing.accept(text, 0, text.length());
+    winnowing.finish();
+    return winnowing.getFingerprints();
+  }
+}
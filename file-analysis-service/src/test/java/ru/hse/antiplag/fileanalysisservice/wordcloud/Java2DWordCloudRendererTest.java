@@ -0,0 +1,57 @@
+package ru.hse.antiplag.fileanalysisservice.wordcloud;
+
+import org.junit.jupiter.api.Test;
+import ru.hse.antiplag.fileanalysisservice.text.TermCount;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link Java2DWordCloudRenderer}.
+ */
+class Java2DWordCloudRendererTest {
+
+  @Test
+  void rendersPngOfConfiguredSizeTest() throws IOException {
+    Java2DWordCloudRenderer renderer = new Java2DWordCloudRenderer(320, 240, 8, 48, "SansSerif");
+
+    byte[] png = renderer.render(List.of(new TermCount("aboba", 10), new TermCount("kek", 5),
+        new TermCount("плагиат", 3), new TermCount("lorem", 2), new TermCount("ipsum", 1)));
+
+    assertNotNull(png);
+    BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+    assertNotNull(image);
+    assertEquals(320, image.getWidth());
+    assertEquals(240, image.getHeight());
+    assertTrue(countNonWhitePixels(image) > 0);
+  }
+
+  @Test
+  void rendersLargeVocabularyTest() throws IOException {
+    Java2DWordCloudRenderer renderer = new Java2DWordCloudRenderer(800, 600, 10, 96, "SansSerif");
+
+    byte[] png = renderer.render(WordCloudLayoutTest.zipf(5000));
+
+    assertNotNull(png);
+    assertNotNull(ImageIO.read(new ByteArrayInputStream(png)));
+  }
+
+  private static int countNonWhitePixels(BufferedImage image) {
+    int count = 0;
+    for (int y = 0; y < image.getHeight(); y++) {
+      for (int x = 0; x < image.getWidth(); x++) {
+        if ((image.getRGB(x, y) & 0xffffff) != 0xffffff) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+}
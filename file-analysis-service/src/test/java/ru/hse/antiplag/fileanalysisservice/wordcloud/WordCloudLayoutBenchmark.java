@@ -0,0 +1,80 @@
+package ru.hse.antiplag.fileanalysisservice.wordcloud;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.hse.antiplag.fileanalysisservice.text.TermCount;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the word cloud layout and of the whole rendering against the size of the
+ * vocabulary, with term counts following Zipf's law. Disabled by default, run with
+ * {@code mvn test -Dtest=WordCloudLayoutBenchmark -Danalysis.benchmark=true}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class WordCloudLayoutBenchmark {
+
+  private static final WordCloudLayout.Measurer MEASURER = new WordCloudLayout.Measurer() {
+    @Override
+    public double width(String term, int fontSize) {
+      return term.length() * fontSize * 0.6;
+    }
+
+    @Override
+    public double height(int fontSize) {
+      return fontSize * 1.2;
+    }
+  };
+
+  @Param({"50", "200", "1000", "5000"})
+  public int vocabulary;
+
+  private List<TermCount> terms;
+  private WordCloudLayout layout;
+  private Java2DWordCloudRenderer renderer;
+
+  @Setup
+  public void setUp() {
+    terms = WordCloudLayoutTest.zipf(vocabulary);
+    layout = new WordCloudLayout(800, 600, 10, 96);
+    renderer = new Java2DWordCloudRenderer(800, 600, 10, 96, "SansSerif");
+  }
+
+  @Benchmark
+  public List<PlacedWord> layout() {
+    return layout.layout(terms, MEASURER);
+  }
+
+  @Benchmark
+  public byte[] render() {
+    return renderer.render(terms);
+  }
+
+  @Test
+  @EnabledIfSystemProperty(named = "analysis.benchmark", matches = "true")
+  void runBenchmark() throws Exception {
+    new Runner(new OptionsBuilder()
+        .include(WordCloudLayoutBenchmark.class.getName())
+        .build())
+        .run();
+  }
+}
@@ -0,0 +1,91 @@
+package ru.hse.antiplag.fileanalysisservice.wordcloud;
+
+import org.junit.jupiter.api.Test;
+import ru.hse.antiplag.fileanalysisservice.text.TermCount;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link WordCloudLayout}.
+ */
+class WordCloudLayoutTest {
+
+  private static final WordCloudLayout.Measurer MEASURER = new WordCloudLayout.Measurer() {
+    @Override
+    public double width(String term, int fontSize) {
+      return term.length() * fontSize * 0.6;
+    }
+
+    @Override
+    public double height(int fontSize) {
+      return fontSize * 1.2;
+    }
+  };
+
+  @Test
+  void placesWordsInsideCanvasWithoutOverlapsTest() {
+    List<PlacedWord> words = new WordCloudLayout(400, 300, 8, 48).layout(zipf(500), MEASURER);
+
+    assertTrue(words.size() > 50);
+    for (int i = 0; i < words.size(); i++) {
+      PlacedWord word = words.get(i);
+      assertTrue(word.getX() >= 0 && word.getX() + word.getWidth() <= 400);
+      assertTrue(word.getY() >= 0 && word.getY() + word.getHeight() <= 300);
+      for (int j = 0; j < i; j++) {
+        PlacedWord other = words.get(j);
+        assertFalse(word.overlaps(other.getX(), other.getY(), other.getWidth(), other.getHeight()),
+            word.getTerm() + " overlaps " + other.getTerm());
+      }
+    }
+  }
+
+  @Test
+  void mostFrequentWordIsLargestAndInTheMiddleTest() {
+    List<PlacedWord> words = new WordCloudLayout(400, 300, 8, 48).layout(zipf(20), MEASURER);
+
+    PlacedWord first = words.get(0);
+    assertEquals("term0", first.getTerm());
+    assertEquals(48, first.getFontSize());
+    assertEquals(200, first.getX() + first.getWidth() / 2, 1e-6);
+    assertEquals(150, first.getY() + first.getHeight() / 2, 1e-6);
+    for (PlacedWord word : words) {
+      assertTrue(word.getFontSize() <= first.getFontSize());
+    }
+  }
+
+  @Test
+  void rotatesEveryFifthWordTest() {
+    List<PlacedWord> words = new WordCloudLayout(800, 600, 10, 40).layout(zipf(10), MEASURER);
+
+    assertEquals(10, words.size());
+    PlacedWord vertical = words.get(4);
+    assertTrue(vertical.isVertical());
+    assertEquals(MEASURER.height(vertical.getFontSize()), vertical.getWidth(), 1e-6);
+    assertEquals(MEASURER.width(vertical.getTerm(), vertical.getFontSize()), vertical.getHeight(), 1e-6);
+    assertFalse(words.get(3).isVertical());
+  }
+
+  @Test
+  void skipsWordsThatDoNotFitTest() {
+    List<TermCount> terms = List.of(new TermCount("aboba".repeat(20), 10), new TermCount("kek", 1));
+
+    List<PlacedWord> words = new WordCloudLayout(200, 100, 10, 40).layout(terms, MEASURER);
+
+    assertEquals(1, words.size());
+    assertEquals("kek", words.get(0).getTerm());
+    assertTrue(new WordCloudLayout(200, 100, 10, 40).layout(List.of(), MEASURER).isEmpty());
+  }
+
+  static List<TermCount> zipf(int vocabulary) {
+    List<TermCount> terms = new ArrayList<>(vocabulary);
+    for (int rank = 0; rank < vocabulary; rank++) {
+      terms.add(new TermCount("term" + rank, Math.max(1, 100_000 / (rank + 1))));
+    }
+    return terms;
+  }
+}
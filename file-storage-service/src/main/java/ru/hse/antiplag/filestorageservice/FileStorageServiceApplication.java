@@ -2,8 +2,10 @@ package ru.hse.antiplag.filestorageservice;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class FileStorageServiceApplication {
   public static void main(String[] args) {
       SpringApplication.run(FileStorageServiceApplication.class, args);
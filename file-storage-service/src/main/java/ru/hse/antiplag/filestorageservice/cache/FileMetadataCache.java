@@ -0,0 +1,169 @@
+package ru.hse.antiplag.filestorageservice.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Bounded in-memory cache of file metadata, keyed by both file ID and content hash.
+ * File rows never change after insert, so entries stay valid until the row is deleted.
+ * The cache is bounded by the estimated heap size of its entries rather than their count.
+ * Hit, miss and eviction counters are published as {@code cache.*} metrics.
+ */
+@Component
+public class FileMetadataCache implements MeterBinder {
+
+  private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+  private final Cache<UUID, FileEntity> filesById;
+  private final Cache<String, UUID> fileIdsByHash;
+
+  /**
+   * Constructor for FileMetadataCache.
+   *
+   * @param maxWeightBytes upper bound of the estimated heap size of cached entries, in bytes
+   */
+  public FileMetadataCache(@Value("${file.metadata-cache.max-weight-bytes:67108864}") long maxWeightBytes) {
+    this.filesById = Caffeine.newBuilder()
+        .maximumWeight(maxWeightBytes)
+        .weigher((UUID id, FileEntity fileEntity) -> estimateSize(fileEntity))
+        .recordStats()
+        .build();
+    this.fileIdsByHash = Caffeine.newBuilder()
+        .maximumWeight(maxWeightBytes / 4)
+        .weigher((String hash, UUID id) -> ENTRY_OVERHEAD_BYTES / 2 + hash.length() * 2)
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * Gets the metadata of a file by its ID, loading it on a miss. Absent files are not cached.
+   *
+   * @param fileId ID of the file
+   * @param loader loads the metadata on a cache miss
+   * @return Optional with the metadata if found
+   */
+  public Optional<FileEntity> getById(UUID fileId, Function<UUID, Optional<FileEntity>> loader) {
+    FileEntity fileEntity = filesById.get(fileId, id -> loader.apply(id).orElse(null));
+    if (fileEntity != null) {
+      fileIdsByHash.put(fileEntity.getHash(), fileEntity.getId());
+    }
+    return Optional.ofNullable(fileEntity);
+  }
+
+  /**
+   * Gets the metadata of a file by its content hash, loading it on a miss. Absent files are not cached.
+   *
+   * @param hash   SHA-256 hash of the file content
+   * @param loader loads the metadata on a cache miss
+   * @return Optional with the metadata if found
+   */
+  public Optional<FileEntity> getByHash(String hash, Function<String, Optional<FileEntity>> loader) {
+    UUID fileId = fileIdsByHash.getIfPresent(hash);
+    if (fileId != null) {
+      FileEntity fileEntity = filesById.getIfPresent(fileId);
+      if (fileEntity != null) {
+        return Optional.of(fileEntity);
+      }
+    }
+    Optional<FileEntity> loaded = loader.apply(hash);
+    loaded.ifPresent(this::put);
+    return loaded;
+  }
+
+  /**
+   * Adds the metadata of a file to the cache. Entities that have not been persisted yet are ignored.
+   *
+   * @param fileEntity metadata of the file
+   */
+  public void put(FileEntity fileEntity) {
+    if (fileEntity.getId() == null || fileEntity.getHash() == null) {
+      return;
+    }
+    filesById.put(fileEntity.getId(), fileEntity);
+    fileIdsByHash.put(fileEntity.getHash(), fileEntity.getId());
+  }
+
+  /**
+   * Adds the metadata of a file to the cache once the current transaction commits,
+   * so a rolled back insert is never served. Without a transaction it is added immediately.
+   *
+   * @param fileEntity metadata of the file
+   */
+  public void putAfterCommit(FileEntity fileEntity) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      put(fileEntity);
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        put(fileEntity);
+      }
+    });
+  }
+
+  /**
+   * Removes the metadata of a file from the cache.
+   *
+   * @param fileEntity metadata of the file
+   */
+  public void invalidate(FileEntity fileEntity) {
+    if (fileEntity.getId() != null) {
+      filesById.invalidate(fileEntity.getId());
+    }
+    if (fileEntity.getHash() != null) {
+      fileIdsByHash.invalidate(fileEntity.getHash());
+    }
+  }
+
+  /**
+   * Removes the metadata of a file from the cache by its ID.
+   *
+   * @param fileId ID of the file
+   */
+  public void invalidate(UUID fileId) {
+    FileEntity fileEntity = filesById.getIfPresent(fileId);
+    if (fileEntity != null) {
+      invalidate(fileEntity);
+    }
+  }
+
+  /**
+   * Performs pending maintenance, such as evictions, that is otherwise done asynchronously.
+   */
+  public void cleanUp() {
+    filesById.cleanUp();
+    fileIdsByHash.cleanUp();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    CaffeineCacheMetrics.monitor(registry, filesById, "file.metadata.by-id");
+    CaffeineCacheMetrics.monitor(registry, fileIdsByHash, "file.metadata.by-hash");
+  }
+
+  private static int estimateSize(FileEntity fileEntity) {
+    return ENTRY_OVERHEAD_BYTES
+        + 2 * (length(fileEntity.getFileName())
+        + length(fileEntity.getContentType())
+        + length(fileEntity.getFilePath())
+        + length(fileEntity.getHash()))
+        + (fileEntity.getChunkManifest() == null ? 0 : fileEntity.getChunkManifest().length);
+  }
+
+  private static int length(String value) {
+    return value == null ? 0 : value.length();
+  }
+}
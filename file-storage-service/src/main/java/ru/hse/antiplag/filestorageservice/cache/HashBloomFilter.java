@@ -0,0 +1,201 @@
+package ru.hse.antiplag.filestorageservice.cache;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter over hex-encoded content hashes.
+ * SHA-256 hashes are already uniformly distributed, so the bit indices are derived directly
+ * from the hash digits by double hashing instead of hashing the string again.
+ */
+public class HashBloomFilter {
+
+  private static final int HEX_DIGITS_PER_LONG = 16;
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final AtomicLongArray words;
+  private final long bitSize;
+  private final int hashFunctions;
+  private final AtomicLong setBits = new AtomicLong();
+  private final AtomicLong insertions = new AtomicLong();
+
+  private HashBloomFilter(long bitSize, int hashFunctions) {
+    this.words = new AtomicLongArray(Math.toIntExact((bitSize + Long.SIZE - 1) / Long.SIZE));
+    this.bitSize = (long) words.length() * Long.SIZE;
+    this.hashFunctions = hashFunctions;
+  }
+
+  /**
+   * Creates a filter sized for the given number of hashes and false positive rate.
+   *
+   * @param expectedInsertions expected number of distinct hashes
+   * @param falsePositiveRate  desired false positive rate once that number is reached
+   * @return an empty filter
+   */
+  public static HashBloomFilter create(long expectedInsertions, double falsePositiveRate) {
+    if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+      throw new IllegalArgumentException("False positive rate must be between 0 and 1: " + falsePositiveRate);
+    }
+    long insertions = Math.max(1, expectedInsertions);
+    long bitSize = Math.max(Long.SIZE,
+        (long) Math.ceil(-insertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))));
+    int hashFunctions = Math.max(1, (int) Math.round((double) bitSize / insertions * Math.log(2)));
+    return new HashBloomFilter(bitSize, hashFunctions);
+  }
+
+  /**
+   * Adds a hash to the filter.
+   *
+   * @param hash hex-encoded content hash
+   */
+  public void put(String hash) {
+    long h1 = firstHash(hash);
+    long h2 = secondHash(hash, h1);
+    boolean changed = false;
+    for (int i = 0; i < hashFunctions; i++) {
+      changed |= setBit(index(h1, h2, i));
+    }
+    if (changed) {
+      insertions.incrementAndGet();
+    }
+  }
+
+  /**
+   * Checks whether the hash might have been added. A false answer is definite.
+   *
+   * @param hash hex-encoded content hash
+   * @return false if the hash was definitely never added
+   */
+  public boolean mightContain(String hash) {
+    long h1 = firstHash(hash);
+    long h2 = secondHash(hash, h1);
+    for (int i = 0; i < hashFunctions; i++) {
+      long index = index(h1, h2, i);
+      if ((words.get((int) (index >>> 6)) & (1L << index)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Estimates the current false positive rate from the share of set bits.
+   *
+   * @return probability that a hash that was never added is reported as present
+   */
+  public double expectedFalsePositiveRate() {
+    return Math.pow((double) setBits.get() / bitSize, hashFunctions);
+  }
+
+  /**
+   * Gets the approximate number of distinct hashes added to the filter.
+   *
+   * @return number of insertions that changed at least one bit
+   */
+  public long approximateElementCount() {
+    return insertions.get();
+  }
+
+  /**
+   * Gets the heap size of the bit array.
+   *
+   * @return size of the bit array, in bytes
+   */
+  public long bitSizeInBytes() {
+    return bitSize / Byte.SIZE;
+  }
+
+  /**
+   * Writes the filter in a compact binary form that {@link #readFrom(DataInput)} understands.
+   *
+   * @param output destination of the filter
+   * @throws IOException if the filter could not be written
+   */
+  public void writeTo(DataOutput output) throws IOException {
+    output.writeLong(bitSize);
+    output.writeInt(hashFunctions);
+    output.writeLong(insertions.get());
+    for (int i = 0; i < words.length(); i++) {
+      output.writeLong(words.get(i));
+    }
+  }
+
+  /**
+   * Reads a filter written by {@link #writeTo(DataOutput)}.
+   *
+   * @param input source of the filter
+   * @return the restored filter
+   * @throws IOException if the filter could not be read
+   */
+  public static HashBloomFilter readFrom(DataInput input) throws IOException {
+    long bitSize = input.readLong();
+    int hashFunctions = input.readInt();
+    if (bitSize <= 0 || bitSize % Long.SIZE != 0 || hashFunctions <= 0) {
+      throw new IOException("Corrupted Bloom filter header");
+    }
+    HashBloomFilter filter = new HashBloomFilter(bitSize, hashFunctions);
+    filter.insertions.set(input.readLong());
+    long setBits = 0;
+    for (int i = 0; i < filter.words.length(); i++) {
+      long word = input.readLong();
+      filter.words.set(i, word);
+      setBits += Long.bitCount(word);
+    }
+    filter.setBits.set(setBits);
+    return filter;
+  }
+
+  private boolean setBit(long index) {
+    int wordIndex = (int) (index >>> 6);
+    long mask = 1L << index;
+    long word;
+    do {
+      word = words.get(wordIndex);
+      if ((word & mask) != 0) {
+        return false;
+      }
+    } while (!words.compareAndSet(wordIndex, word, word | mask));
+    setBits.incrementAndGet();
+    return true;
+  }
+
+  private long index(long h1, long h2, int i) {
+    return ((h1 + i * h2) & Long.MAX_VALUE) % bitSize;
+  }
+
+  private static long firstHash(String hash) {
+    if (isHex(hash, 0)) {
+      return Long.parseUnsignedLong(hash, 0, HEX_DIGITS_PER_LONG, 16);
+    }
+    long h = FNV_OFFSET_BASIS;
+    for (int i = 0; i < hash.length(); i++) {
+      h = (h ^ hash.charAt(i)) * FNV_PRIME;
+    }
+    return h;
+  }
+
+  private static long secondHash(String hash, long h1) {
+    if (isHex(hash, HEX_DIGITS_PER_LONG)) {
+      return Long.parseUnsignedLong(hash, HEX_DIGITS_PER_LONG, 2 * HEX_DIGITS_PER_LONG, 16) | 1;
+    }
+    long h = h1 * 0x9e3779b97f4a7c15L;
+    h = (h ^ (h >>> 32)) * 0xd6e8feb86659fd93L;
+    return (h ^ (h >>> 32)) | 1;
+  }
+
+  private static boolean isHex(String hash, int from) {
+    if (hash.length() < from + HEX_DIGITS_PER_LONG) {
+      return false;
+    }
+    for (int i = from; i < from + HEX_DIGITS_PER_LONG; i++) {
+      if (Character.digit(hash.charAt(i), 16) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,285 @@
+package ru.hse.antiplag.filestorageservice.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.hse.antiplag.filestorageservice.repository.FileRepository;
+import ru.hse.antiplag.filestorageservice.storage.BlobLayout;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Bloom filter over the hashes of all stored files, used to skip the database lookup during
+ * upload deduplication when a hash has definitely never been stored.
+ * The filter is restored from a snapshot on startup and caught up with the files uploaded since,
+ * or rebuilt by streaming the {@code files.hash} column if there is no usable snapshot.
+ * Until it is loaded every hash is reported as possibly present, so lookups fall through to the database.
+ * Bloom filters cannot forget, so deleted hashes stay as false positives until the next rebuild.
+ */
+@Component
+@Profile("!reactive")
+public class StoredHashFilter implements ApplicationRunner, MeterBinder {
+
+  private static final Logger logger = LoggerFactory.getLogger(StoredHashFilter.class);
+
+  private static final int SNAPSHOT_MAGIC = 0x48424631;
+  private static final Duration CATCH_UP_MARGIN = Duration.ofMinutes(1);
+
+  private final BlobLayout blobLayout;
+  private final FileRepository fileRepository;
+  private final TransactionOperations transactionOperations;
+  private final long expectedInsertions;
+  private final double falsePositiveRate;
+  private final Path snapshotFile;
+
+  private final AtomicLong negativeLookups = new AtomicLong();
+  private final AtomicLong positiveLookups = new AtomicLong();
+  private final AtomicLong falsePositives = new AtomicLong();
+
+  private volatile HashBloomFilter filter;
+  private volatile HashBloomFilter pendingFilter;
+  private volatile boolean ready;
+
+  /**
+   * Constructor for StoredHashFilter.
+   *
+   * @param blobLayout            layout of the blob store, the snapshot is kept under its root
+   * @param fileRepository        repository for working with file metadata
+   * @param transactionOperations runs the streaming rebuild inside a read transaction
+   * @param expectedInsertions    minimal number of hashes the filter is sized for
+   * @param falsePositiveRate     desired false positive rate at that size
+   */
+  public StoredHashFilter(
+      BlobLayout blobLayout,
+      FileRepository fileRepository,
+      TransactionOperations transactionOperations,
+      @Value("${file.hash-filter.expected-insertions:1000000}") long expectedInsertions,
+      @Value("${file.hash-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+    this.blobLayout = blobLayout;
+    this.fileRepository = fileRepository;
+    this.transactionOperations = transactionOperations;
+    this.expectedInsertions = expectedInsertions;
+    this.falsePositiveRate = falsePositiveRate;
+    this.snapshotFile = blobLayout.getRoot().resolve(".meta").resolve("hash-filter.bin");
+    this.filter = HashBloomFilter.create(expectedInsertions, falsePositiveRate);
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    Thread loadThread = new Thread(() -> {
+      try {
+        load();
+      } catch (RuntimeException ex) {
+        logger.error("Could not load hash filter, uploads will always query the database. Error: {}", ex.getMessage(), ex);
+      }
+    }, "stored-hash-filter-load");
+    loadThread.setDaemon(true);
+    loadThread.start();
+  }
+
+  /**
+   * Loads the filter from the snapshot, or rebuilds it from the database if that fails.
+   */
+  public void load() {
+    try {
+      if (restoreSnapshot()) {
+        return;
+      }
+    } catch (IOException | RuntimeException ex) {
+      logger.warn("Could not restore hash filter snapshot {}. Error: {}", snapshotFile, ex.getMessage());
+    }
+    rebuild();
+  }
+
+  /**
+   * Rebuilds the filter from the hashes stored in the database. Hashes added while the
+   * rebuild runs go to both the old and the new filter.
+   */
+  public void rebuild() {
+    long started = System.nanoTime();
+    LocalDateTime since = LocalDateTime.now().minus(CATCH_UP_MARGIN);
+    long storedFiles = fileRepository.count();
+    HashBloomFilter rebuilt = HashBloomFilter.create(Math.max(expectedInsertions, 2 * storedFiles), falsePositiveRate);
+    pendingFilter = rebuilt;
+    try {
+      transactionOperations.executeWithoutResult(status -> {
+        try (Stream<String> hashes = fileRepository.streamAllHashes()) {
+          hashes.forEach(rebuilt::put);
+        }
+      });
+      fileRepository.findHashesUploadedSince(since).forEach(rebuilt::put);
+      filter = rebuilt;
+      ready = true;
+    } finally {
+      pendingFilter = null;
+    }
+    logger.info("Rebuilt hash filter from {} stored files in {} ms", rebuilt.approximateElementCount(),
+        Duration.ofNanos(System.nanoTime() - started).toMillis());
+  }
+
+  private boolean restoreSnapshot() throws IOException {
+    HashBloomFilter restored;
+    LocalDateTime snapshotTime;
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+      if (input.readInt() != SNAPSHOT_MAGIC) {
+        throw new IOException("Unknown snapshot format");
+      }
+      snapshotTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(input.readLong()), ZoneId.systemDefault());
+      restored = HashBloomFilter.readFrom(input);
+    } catch (NoSuchFileException ex) {
+      return false;
+    }
+    fileRepository.findHashesUploadedSince(snapshotTime.minus(CATCH_UP_MARGIN)).forEach(restored::put);
+    if (restored.expectedFalsePositiveRate() > 2 * falsePositiveRate) {
+      logger.info("Hash filter snapshot is too full ({} entries), rebuilding", restored.approximateElementCount());
+      return false;
+    }
+    filter = restored;
+    ready = true;
+    logger.info("Restored hash filter with {} entries from {}", restored.approximateElementCount(), snapshotFile);
+    return true;
+  }
+
+  /**
+   * Writes the filter to disk so the next start can skip the full rebuild. Runs periodically
+   * as well as on shutdown, so after a crash only the uploads since the last snapshot are
+   * caught up instead of the whole table.
+   */
+  @PreDestroy
+  @Scheduled(initialDelayString = "${file.hash-filter.snapshot-interval:PT10M}",
+      fixedDelayString = "${file.hash-filter.snapshot-interval:PT10M}")
+  public synchronized void saveSnapshot() {
+    if (!ready) {
+      return;
+    }
+    Path tempFile = null;
+    try {
+      Files.createDirectories(snapshotFile.getParent());
+      tempFile = blobLayout.createTempFile("hash-filter-");
+      try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+        output.writeInt(SNAPSHOT_MAGIC);
+        output.writeLong(System.currentTimeMillis());
+        filter.writeTo(output);
+      }
+      Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      logger.info("Saved hash filter snapshot to {}", snapshotFile);
+    } catch (IOException ex) {
+      logger.warn("Could not save hash filter snapshot {}. Error: {}", snapshotFile, ex.getMessage());
+      if (tempFile != null) {
+        try {
+          Files.deleteIfExists(tempFile);
+        } catch (IOException deleteEx) {
+          logger.warn("Could not delete file {}. Error: {}", tempFile, deleteEx.getMessage());
+        }
+      }
+    }
+  }
+
+  /**
+   * Checks whether a file with the given hash might be stored.
+   *
+   * @param hash hex-encoded content hash
+   * @return false only if no file with this hash has ever been stored
+   */
+  public boolean mightContain(String hash) {
+    if (!ready) {
+      return true;
+    }
+    if (filter.mightContain(hash)) {
+      positiveLookups.incrementAndGet();
+      return true;
+    }
+    negativeLookups.incrementAndGet();
+    return false;
+  }
+
+  /**
+   * Records the hash of a newly stored file. It is safe to call this before the insert commits:
+   * an extra hash only costs a database lookup, a missing one would cause a duplicate upload.
+   *
+   * @param hash hex-encoded content hash
+   */
+  public void add(String hash) {
+    HashBloomFilter current = filter;
+    current.put(hash);
+    HashBloomFilter pending = pendingFilter;
+    if (pending != null) {
+      pending.put(hash);
+    }
+    HashBloomFilter latest = filter;
+    if (latest != current) {
+      latest.put(hash);
+    }
+  }
+
+  /**
+   * Records that the filter reported a hash as possibly present but the database did not have it.
+   */
+  public void recordFalsePositive() {
+    if (ready) {
+      falsePositives.incrementAndGet();
+    }
+  }
+
+  /**
+   * Checks whether the filter has been loaded and answers lookups.
+   *
+   * @return true once the filter is loaded
+   */
+  public boolean isReady() {
+    return ready;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("file.hash.filter.size", this, f -> f.filter.bitSizeInBytes())
+        .description("Memory used by the stored hash Bloom filter")
+        .baseUnit(BaseUnits.BYTES)
+        .register(registry);
+    Gauge.builder("file.hash.filter.entries", this, f -> f.filter.approximateElementCount())
+        .description("Approximate number of hashes in the stored hash Bloom filter")
+        .register(registry);
+    Gauge.builder("file.hash.filter.expected.false.positive.rate", this, f -> f.filter.expectedFalsePositiveRate())
+        .description("False positive rate estimated from the share of set bits")
+        .register(registry);
+    Gauge.builder("file.hash.filter.ready", this, f -> f.ready ? 1 : 0)
+        .register(registry);
+    FunctionCounter.builder("file.hash.filter.lookups", negativeLookups, AtomicLong::get)
+        .description("Lookups of the stored hash Bloom filter by result")
+        .tag("result", "negative")
+        .register(registry);
+    FunctionCounter.builder("file.hash.filter.lookups", positiveLookups, AtomicLong::get)
+        .description("Lookups of the stored hash Bloom filter by result")
+        .tag("result", "positive")
+        .register(registry);
+    FunctionCounter.builder("file.hash.filter.false.positives", falsePositives, AtomicLong::get)
+        .description("Positive lookups that the database did not confirm")
+        .register(registry);
+  }
+}
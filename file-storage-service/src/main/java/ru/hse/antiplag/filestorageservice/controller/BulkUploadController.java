@@ -0,0 +1,78 @@
+package ru.hse.antiplag.filestorageservice.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import ru.hse.antiplag.filestorageservice.service.ArchiveTooLargeException;
+import ru.hse.antiplag.filestorageservice.service.BulkIngestResult;
+import ru.hse.antiplag.filestorageservice.service.BulkIngestService;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * REST controller for uploading many files in one request, either as a multipart body with
+ * several {@code files} parts or as a zip archive. Every entry gets its own result, so one
+ * broken entry does not fail the whole upload.
+ */
+@RestController
+@Profile("!reactive")
+@RequestMapping("/api/v1/files/bulk")
+public class BulkUploadController {
+
+  private static final Logger logger = LoggerFactory.getLogger(BulkUploadController.class);
+
+  private final BulkIngestService bulkIngestService;
+
+  @Autowired
+  public BulkUploadController(BulkIngestService bulkIngestService) {
+    this.bulkIngestService = bulkIngestService;
+  }
+
+  /**
+   * Endpoint for uploading several files as a multipart body.
+   *
+   * @param files uploaded files
+   * @return ResponseEntity with the result for every file
+   */
+  @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+  public ResponseEntity<?> uploadFiles(@RequestParam("files") List<MultipartFile> files) {
+    if (files.isEmpty()) {
+      return ResponseEntity.badRequest().body("No files");
+    }
+    List<BulkIngestResult> results = bulkIngestService.ingestFiles(files);
+    return ResponseEntity.ok(results);
+  }
+
+  /**
+   * Endpoint for uploading every file of a zip archive sent as the request body.
+   *
+   * @param request current request, its body is the archive
+   * @return ResponseEntity with the result for every file of the archive, 413 if the archive
+   *         has too many files or expands to too many bytes, or an error
+   */
+  @PostMapping(consumes = {"application/zip", "application/x-zip-compressed"})
+  public ResponseEntity<?> uploadArchive(HttpServletRequest request) {
+    try {
+      List<BulkIngestResult> results = bulkIngestService.ingestArchive(request.getInputStream());
+      return ResponseEntity.ok(results);
+    } catch (ArchiveTooLargeException e) {
+      logger.warn("Rejected uploaded archive: {}", e.getMessage());
+      return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getMessage());
+    } catch (IOException e) {
+      logger.error("Could not store uploaded archive", e);
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+          .body("Could not store uploaded archive. Error: " + e.getMessage());
+    }
+  }
+}
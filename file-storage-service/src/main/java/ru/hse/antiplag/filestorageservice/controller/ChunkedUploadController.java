@@ -0,0 +1,257 @@
+package ru.hse.antiplag.filestorageservice.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+import ru.hse.antiplag.filestorageservice.service.ChunkedUploadService;
+import ru.hse.antiplag.filestorageservice.service.MissingChunks;
+import ru.hse.antiplag.filestorageservice.service.MissingChunksException;
+import ru.hse.antiplag.filestorageservice.service.UploadProgress;
+import ru.hse.antiplag.filestorageservice.storage.ChunkManifest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * REST controller for resumable chunked uploads.
+ * A client starts a session, sends the file as consecutive chunks with their offset in the
+ * {@code Upload-Offset} header, and commits the session. After a dropped connection it asks
+ * for the current offset and continues from there.
+ * A client that splits the file into content-defined chunks itself posts the chunk manifest
+ * instead, sends only the chunks the server reports missing and commits, so a resubmission
+ * transfers just the changed chunks.
+ */
+@RestController
+@Profile("!reactive")
+@RequestMapping("/api/v1/files/uploads")
+public class ChunkedUploadController {
+
+  private static final Logger logger = LoggerFactory.getLogger(ChunkedUploadController.class);
+
+  static final String UPLOAD_OFFSET_HEADER = "Upload-Offset";
+
+  private final ChunkedUploadService chunkedUploadService;
+
+  @Autowired
+  public ChunkedUploadController(ChunkedUploadService chunkedUploadService) {
+    this.chunkedUploadService = chunkedUploadService;
+  }
+
+  /**
+   * Endpoint for starting a chunked upload.
+   *
+   * @param request name and MIME-type of the file
+   * @return ResponseEntity with the ID of the upload session or an error
+   */
+  @PostMapping
+  public ResponseEntity<?> startUpload(@RequestBody StartUploadRequest request) {
+    if (!StringUtils.hasText(request.getFileName())) {
+      return ResponseEntity.badRequest().body("File name is empty");
+    }
+    try {
+      UploadProgress progress = chunkedUploadService.startUpload(request.getFileName(), request.getContentType());
+      return ResponseEntity.status(HttpStatus.CREATED).body(progress);
+    } catch (IOException e) {
+      logger.error("Could not start upload of file: {}", request.getFileName(), e);
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+          .body("Could not start upload of file " + request.getFileName() + ". Error: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Endpoint for getting the number of bytes received so far.
+   *
+   * @param uploadId ID of the upload session
+   * @return ResponseEntity with the progress of the upload or a 404
+   * @throws IOException if the progress could not be read
+   */
+  @GetMapping("/{uploadId}")
+  public ResponseEntity<UploadProgress> getProgress(@PathVariable UUID uploadId) throws IOException {
+    return toResponse(chunkedUploadService.getProgress(uploadId));
+  }
+
+  /**
+   * Endpoint for sending the next chunk of the file. A chunk that does not start at the
+   * current offset is rejected with 409 and the current offset.
+   *
+   * @param uploadId ID of the upload session
+   * @param offset   position of the chunk in the file
+   * @param request  current request, its body is the chunk
+   * @return ResponseEntity with the progress of the upload, a 404 or a 409
+   * @throws IOException if the chunk could not be written
+   */
+  @PutMapping(value = "/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+  public ResponseEntity<UploadProgress> appendChunk(@PathVariable UUID uploadId,
+                                                    @RequestHeader(UPLOAD_OFFSET_HEADER) long offset,
+                                                    HttpServletRequest request) throws IOException {
+    return toResponse(chunkedUploadService.appendChunk(uploadId, offset, request.getInputStream()));
+  }
+
+  /**
+   * Endpoint for announcing the chunks of the file before sending them.
+   *
+   * @param uploadId ID of the upload session
+   * @param request  hashes and lengths of the chunks in file order
+   * @return ResponseEntity with the chunks the server is missing, a 400 or a 404
+   * @throws IOException if the stored chunks could not be checked
+   */
+  @PostMapping("/{uploadId}/manifest")
+  public ResponseEntity<?> submitManifest(@PathVariable UUID uploadId,
+                                          @RequestBody ManifestRequest request) throws IOException {
+    if (request.getChunks() == null) {
+      return ResponseEntity.badRequest().body("Chunk list is missing");
+    }
+    List<ChunkManifest.Chunk> chunks = new ArrayList<>(request.getChunks().size());
+    long offset = 0;
+    for (ManifestRequest.Chunk chunk : request.getChunks()) {
+      chunks.add(new ChunkManifest.Chunk(chunk.getHash(), offset, chunk.getLength()));
+      offset += chunk.getLength();
+    }
+    try {
+      Optional<MissingChunks> missingChunks = chunkedUploadService.submitManifest(uploadId, new ChunkManifest(chunks));
+      if (missingChunks.isEmpty()) {
+        return ResponseEntity.notFound().build();
+      }
+      return ResponseEntity.ok(missingChunks.get());
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(e.getMessage());
+    }
+  }
+
+  /**
+   * Endpoint for sending one chunk of the announced manifest.
+   *
+   * @param uploadId ID of the upload session
+   * @param hash     hex-encoded SHA-256 hash of the chunk
+   * @param request  current request, its body is the chunk
+   * @return ResponseEntity with no content, a 400 if the content does not match the hash, or a 404
+   * @throws IOException if the chunk could not be written
+   */
+  @PutMapping(value = "/{uploadId}/chunks/{hash}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+  public ResponseEntity<?> storeChunk(@PathVariable UUID uploadId, @PathVariable String hash,
+                                      HttpServletRequest request) throws IOException {
+    try {
+      if (!chunkedUploadService.storeChunk(uploadId, hash, request.getInputStream())) {
+        return ResponseEntity.notFound().build();
+      }
+      return ResponseEntity.noContent().build();
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(e.getMessage());
+    }
+  }
+
+  /**
+   * Endpoint for completing a chunked upload.
+   *
+   * @param uploadId ID of the upload session
+   * @return ResponseEntity with metadata of the saved file, the chunks that are still missing, or an error
+   */
+  @PostMapping("/{uploadId}/commit")
+  public ResponseEntity<?> completeUpload(@PathVariable UUID uploadId) {
+    try {
+      Optional<FileEntity> storedFile = chunkedUploadService.completeUpload(uploadId);
+      if (storedFile.isEmpty()) {
+        return ResponseEntity.notFound().build();
+      }
+      return ResponseEntity.status(HttpStatus.CREATED)
+          .body(new UploadFileResponse(storedFile.get().getId(), storedFile.get().getFileName()));
+    } catch (MissingChunksException e) {
+      return ResponseEntity.status(HttpStatus.CONFLICT).body(new MissingChunks(uploadId, e.getHashes()));
+    } catch (IOException e) {
+      logger.error("Could not complete upload: {}", uploadId, e);
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+          .body("Could not complete upload " + uploadId + ". Error: " + e.getMessage());
+    }
+  }
+
+  private ResponseEntity<UploadProgress> toResponse(Optional<UploadProgress> progressOptional) {
+    if (progressOptional.isEmpty()) {
+      return ResponseEntity.notFound().build();
+    }
+    UploadProgress progress = progressOptional.get();
+    return ResponseEntity.status(progress.isAccepted() ? HttpStatus.OK : HttpStatus.CONFLICT)
+        .header(UPLOAD_OFFSET_HEADER, Long.toString(progress.getOffset()))
+        .body(progress);
+  }
+
+  /**
+   * Request body for starting a chunked upload.
+   */
+  static class StartUploadRequest {
+    private String fileName;
+    private String contentType;
+
+    public String getFileName() {
+      return fileName;
+    }
+
+    public void setFileName(String fileName) {
+      this.fileName = fileName;
+    }
+
+    public String getContentType() {
+      return contentType;
+    }
+
+    public void setContentType(String contentType) {
+      this.contentType = contentType;
+    }
+  }
+
+  /**
+   * Request body for announcing the chunks of the file.
+   */
+  static class ManifestRequest {
+    private List<Chunk> chunks;
+
+    public List<Chunk> getChunks() {
+      return chunks;
+    }
+
+    public void setChunks(List<Chunk> chunks) {
+      this.chunks = chunks;
+    }
+
+    /**
+     * A chunk of the file: the hex-encoded SHA-256 hash of its content and its length in bytes.
+     */
+    static class Chunk {
+      private String hash;
+      private int length;
+
+      public String getHash() {
+        return hash;
+      }
+
+      public void setHash(String hash) {
+        this.hash = hash;
+      }
+
+      public int getLength() {
+        return length;
+      }
+
+      public void setLength(int length) {
+        this.length = length;
+      }
+    }
+  }
+}
@@ -1,12 +1,14 @@
 package ru.hse.antiplag.filestorageservice.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -14,11 +16,14 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import ru.hse.antiplag.filestorageservice.domain.FileEntity;
 import ru.hse.antiplag.filestorageservice.service.FileStorageService;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -26,6 +31,7 @@ import java.util.UUID;
  * REST controller for managing files.
  */
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/v1/files")
 public class FileController {
 
@@ -62,32 +68,91 @@ public class FileController {
 
   /**
    * Endpoint for downloading a file by its ID.
+   * Supports byte ranges (including multiple ranges) and conditional requests: the SHA-256 hash
+   * of the content is used as a strong ETag, so a matching If-None-Match is answered with 304
+   * without touching the disk. A blob compressed at rest is sent as is, with Content-Encoding,
+   * to clients that accept its codec, and decompressed on the fly for everyone else.
    *
-   * @param fileId ID of the file
-   * @return ResponseEntity with the file or a 404 error
+   * @param fileId   ID of the file
+   * @param request  current request
+   * @param response current response
+   * @throws IOException if the file could not be sent
    */
   @GetMapping("/download/{fileId}")
-  public ResponseEntity<Resource> downloadFile(@PathVariable UUID fileId) {
-    Optional<Resource> resourceOptional = fileStorageService.loadFileAsResource(fileId);
+  public void downloadFile(@PathVariable UUID fileId, HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    Optional<FileEntity> fileEntityOptional = fileStorageService.getFileMetadata(fileId);
+    if (fileEntityOptional.isEmpty()) {
+      response.setStatus(HttpStatus.NOT_FOUND.value());
+      return;
+    }
+    FileEntity fileEntity = fileEntityOptional.get();
+
+    String codec = fileEntity.getStorageCodec();
+    boolean sendStored = codec != null && acceptsEncoding(request, codec);
+    String eTag = sendStored
+        ? "\"" + fileEntity.getHash() + "-" + codec + "\""
+        : "\"" + fileEntity.getHash() + "\"";
+    if (codec != null) {
+      response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    }
+    if (new ServletWebRequest(request, response).checkNotModified(eTag)) {
+      return;
+    }
+
+    Optional<Resource> resourceOptional = sendStored
+        ? fileStorageService.loadStoredResource(fileId)
+        : fileStorageService.loadFileAsResource(fileId);
     if (resourceOptional.isEmpty()) {
-      return ResponseEntity.notFound().build();
+      response.setStatus(HttpStatus.NOT_FOUND.value());
+      return;
+    }
+    if (sendStored) {
+      response.setHeader(HttpHeaders.CONTENT_ENCODING, codec);
     }
 
-    Resource resource = resourceOptional.get();
-    Optional<FileEntity> fileEntityOptional = fileStorageService.getFileMetadata(fileId);
+    String contentType = fileEntity.getContentType() != null ? fileEntity.getContentType() : "application/octet-stream";
+    String originalFileName = fileEntity.getFileName() != null ? fileEntity.getFileName() : "downloaded-file";
+    response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + originalFileName + "\"");
+    RangeDownloadWriter.write(request, response, resourceOptional.get(), contentType, eTag);
+  }
 
-    String contentType = "application/octet-stream";
-    String originalFileName = "downloaded-file";
+  /**
+   * Checks whether the Accept-Encoding header of the request allows the given content coding.
+   */
+  private static boolean acceptsEncoding(HttpServletRequest request, String coding) {
+    Enumeration<String> headers = request.getHeaders(HttpHeaders.ACCEPT_ENCODING);
+    return headers != null && acceptsEncoding(Collections.list(headers), coding);
+  }
 
-    if (fileEntityOptional.isPresent()) {
-      contentType = fileEntityOptional.get().getContentType();
-      originalFileName = fileEntityOptional.get().getFileName();
+  /**
+   * Checks whether the given Accept-Encoding header values allow the given content coding.
+   *
+   * @param acceptEncoding values of the Accept-Encoding header
+   * @param coding         content coding to check
+   * @return true if the coding is listed with a non-zero quality
+   */
+  static boolean acceptsEncoding(Iterable<String> acceptEncoding, String coding) {
+    for (String header : acceptEncoding) {
+      for (String element : header.split(",")) {
+        String[] parts = element.trim().split(";");
+        if (!parts[0].trim().equalsIgnoreCase(coding)) {
+          continue;
+        }
+        for (int i = 1; i < parts.length; i++) {
+          String parameter = parts[i].trim();
+          if (parameter.startsWith("q=")) {
+            try {
+              return Double.parseDouble(parameter.substring(2)) > 0;
+            } catch (NumberFormatException ex) {
+              return false;
+            }
+          }
+        }
+        return true;
+      }
     }
-
-    return ResponseEntity.ok()
-        .contentType(MediaType.parseMediaType(contentType))
-        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + originalFileName + "\"")
-        .body(resource);
+    return false;
   }
 
   /**
@@ -102,25 +167,4 @@ public class FileController {
         .map(ResponseEntity::ok)
         .orElse(ResponseEntity.notFound().build());
   }
-
-  /**
-   * Inner class for the response when a file is uploaded.
-   */
-  private static class UploadFileResponse {
-    private UUID id;
-    private String fileName;
-
-    public UploadFileResponse(UUID id, String fileName) {
-      this.id = id;
-      this.fileName = fileName;
-    }
-
-    public UUID getId() {
-      return id;
-    }
-
-    public String getFileName() {
-      return fileName;
-    }
-  }
 }
@@ -0,0 +1,236 @@
+package ru.hse.antiplag.filestorageservice.controller;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Writes a stored file to the servlet response, honouring HTTP Range requests.
+ * Only Tomcat's sendfile, used for a single range of a file-backed resource when the connector
+ * supports it, sends the file without copying it through user space. Otherwise a file is
+ * written with {@link FileChannel#transferTo} into a channel over the servlet output stream,
+ * which copies it through a heap buffer, and other resources are copied from their stream.
+ *
+ * <p>Resources that are not files, such as blobs decompressed or chunked files reassembled
+ * while they are read, can only be read forward. Their ranges are sorted and overlapping or
+ * adjacent ones are merged, as RFC 9110 allows, so all of them are sent in one pass over one
+ * stream.
+ */
+final class RangeDownloadWriter {
+
+  private static final String SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+  private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+  private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+  private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
+  private RangeDownloadWriter() {
+  }
+
+  /**
+   * Writes the resource, or the requested ranges of it, to the response.
+   * Conditional headers other than {@code If-Range} must be checked by the caller.
+   *
+   * @param request     current request
+   * @param response    current response
+   * @param resource    content to send
+   * @param contentType media type of the content
+   * @param eTag        entity tag of the content, compared with {@code If-Range}
+   * @throws IOException if the content could not be read or written
+   */
+  static void write(HttpServletRequest request, HttpServletResponse response, Resource resource,
+                    String contentType, String eTag) throws IOException {
+    long length = resource.contentLength();
+    response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+    List<long[]> ranges;
+    try {
+      ranges = requestedRanges(request, eTag, length);
+    } catch (IllegalArgumentException ex) {
+      response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+      response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+      return;
+    }
+    if (ranges.size() > 1 && !resource.isFile()) {
+      ranges = coalesce(ranges);
+    }
+    boolean headRequest = HttpMethod.HEAD.matches(request.getMethod());
+
+    if (ranges.isEmpty()) {
+      response.setStatus(HttpStatus.OK.value());
+      response.setContentType(contentType);
+      response.setContentLengthLong(length);
+      if (!headRequest) {
+        sendRange(request, response, resource, 0, length);
+      }
+    } else if (ranges.size() == 1) {
+      long start = ranges.get(0)[0];
+      long end = ranges.get(0)[1];
+      response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+      response.setContentType(contentType);
+      response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+      response.setContentLengthLong(end - start + 1);
+      if (!headRequest) {
+        sendRange(request, response, resource, start, end - start + 1);
+      }
+    } else {
+      writeMultipleRanges(response, resource, contentType, ranges, length, headRequest);
+    }
+  }
+
+  /**
+   * Parses the Range header into inclusive {start, end} pairs. An empty list means the whole
+   * content is sent: no range was requested, {@code If-Range} does not match the current
+   * entity tag, or the header is not a valid byte range set, which RFC 9110 lets the server
+   * ignore.
+   *
+   * @throws IllegalArgumentException if the requested ranges are valid but cannot be satisfied
+   */
+  private static List<long[]> requestedRanges(HttpServletRequest request, String eTag, long length) {
+    String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+    if (rangeHeader == null) {
+      return List.of();
+    }
+    String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+    if (ifRange != null && !ifRange.trim().equals(eTag)) {
+      return List.of();
+    }
+    List<HttpRange> httpRanges;
+    try {
+      httpRanges = HttpRange.parseRanges(rangeHeader);
+    } catch (IllegalArgumentException ex) {
+      return List.of();
+    }
+    List<long[]> ranges = new ArrayList<>(httpRanges.size());
+    long total = 0;
+    for (HttpRange httpRange : httpRanges) {
+      long start = httpRange.getRangeStart(length);
+      long end = httpRange.getRangeEnd(length);
+      if (start >= length || start > end) {
+        throw new IllegalArgumentException("Range " + httpRange + " is outside of the content");
+      }
+      ranges.add(new long[] {start, end});
+      total += end - start + 1;
+    }
+    if (ranges.size() > 1 && total > length) {
+      throw new IllegalArgumentException("Requested ranges exceed the content length");
+    }
+    return ranges;
+  }
+
+  /**
+   * Sorts ranges by their start and merges the ones that overlap or touch.
+   */
+  private static List<long[]> coalesce(List<long[]> ranges) {
+    List<long[]> sorted = new ArrayList<>(ranges);
+    sorted.sort(Comparator.comparingLong(range -> range[0]));
+    List<long[]> merged = new ArrayList<>(sorted.size());
+    long[] current = sorted.get(0).clone();
+    for (long[] range : sorted.subList(1, sorted.size())) {
+      if (range[0] <= current[1] + 1) {
+        current[1] = Math.max(current[1], range[1]);
+      } else {
+        merged.add(current);
+        current = range.clone();
+      }
+    }
+    merged.add(current);
+    return merged;
+  }
+
+  private static void sendRange(HttpServletRequest request, HttpServletResponse response, Resource resource,
+                                long start, long count) throws IOException {
+    if (resource.isFile()) {
+      Path path = resource.getFile().toPath();
+      if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTRIBUTE))) {
+        request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, path.toAbsolutePath().toString());
+        request.setAttribute(SENDFILE_START_ATTRIBUTE, start);
+        request.setAttribute(SENDFILE_END_ATTRIBUTE, start + count);
+        return;
+      }
+      // The servlet output stream is not a file or socket channel, so this copies through a heap buffer
+      try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+        transferFully(fileChannel, start, count, Channels.newChannel(response.getOutputStream()));
+      }
+      return;
+    }
+    try (InputStream inputStream = resource.getInputStream()) {
+      StreamUtils.copyRange(inputStream, response.getOutputStream(), start, start + count - 1);
+    }
+  }
+
+  private static void writeMultipleRanges(HttpServletResponse response, Resource resource, String contentType,
+                                          List<long[]> ranges, long length, boolean headRequest) throws IOException {
+    String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+    List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+    long contentLength = 0;
+    for (long[] range : ranges) {
+      byte[] partHeader = ("\r\n--" + boundary + "\r\n"
+          + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+          + HttpHeaders.CONTENT_RANGE + ": bytes " + range[0] + "-" + range[1] + "/" + length + "\r\n\r\n")
+          .getBytes(StandardCharsets.US_ASCII);
+      partHeaders.add(partHeader);
+      contentLength += partHeader.length + range[1] - range[0] + 1;
+    }
+    byte[] closingBoundary = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+    contentLength += closingBoundary.length;
+
+    response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+    response.setContentType("multipart/byteranges; boundary=" + boundary);
+    response.setContentLengthLong(contentLength);
+    if (headRequest) {
+      return;
+    }
+
+    ServletOutputStream outputStream = response.getOutputStream();
+    if (resource.isFile()) {
+      WritableByteChannel target = Channels.newChannel(outputStream);
+      try (FileChannel fileChannel = FileChannel.open(resource.getFile().toPath(), StandardOpenOption.READ)) {
+        for (int i = 0; i < ranges.size(); i++) {
+          outputStream.write(partHeaders.get(i));
+          transferFully(fileChannel, ranges.get(i)[0], ranges.get(i)[1] - ranges.get(i)[0] + 1, target);
+        }
+      }
+    } else {
+      try (InputStream inputStream = resource.getInputStream()) {
+        long position = 0;
+        for (int i = 0; i < ranges.size(); i++) {
+          outputStream.write(partHeaders.get(i));
+          StreamUtils.copyRange(inputStream, outputStream, ranges.get(i)[0] - position, ranges.get(i)[1] - position);
+          position = ranges.get(i)[1] + 1;
+        }
+      }
+    }
+    outputStream.write(closingBoundary);
+  }
+
+  private static void transferFully(FileChannel source, long position, long count, WritableByteChannel target)
+      throws IOException {
+    long end = position + count;
+    while (position < end) {
+      long transferred = source.transferTo(position, end - position, target);
+      if (transferred <= 0) {
+        throw new IOException("File ended before the requested range was sent");
+      }
+      position += transferred;
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package ru.hse.antiplag.filestorageservice.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.FilePartEvent;
+import org.springframework.http.codec.multipart.PartEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+import ru.hse.antiplag.filestorageservice.service.ReactiveFileStorageService;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Non-blocking REST controller for managing files, active with the {@code reactive} profile
+ * instead of {@link FileController}. Uploads are consumed as a stream of multipart events, so
+ * the file part is never buffered in memory or spooled by the framework, and downloads are
+ * streamed as they are read. Byte ranges are not supported here.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/v1/files")
+public class ReactiveFileController {
+
+  private static final Logger logger = LoggerFactory.getLogger(ReactiveFileController.class);
+
+  private final ReactiveFileStorageService fileStorageService;
+
+  public ReactiveFileController(ReactiveFileStorageService fileStorageService) {
+    this.fileStorageService = fileStorageService;
+  }
+
+  /**
+   * Endpoint for uploading a file.
+   *
+   * @param parts events of the multipart request, the file is expected in the {@code file} part
+   * @return metadata of the saved file or an error
+   */
+  @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+  public Mono<ResponseEntity<Object>> uploadFile(@RequestBody Flux<PartEvent> parts) {
+    return parts.windowUntil(PartEvent::isLast)
+        .concatMap(events -> events.switchOnFirst((first, all) -> {
+          if (first.get() instanceof FilePartEvent filePart && "file".equals(filePart.name())) {
+            MediaType contentType = filePart.headers().getContentType();
+            return fileStorageService.storeFile(filePart.filename(),
+                    contentType != null ? contentType.toString() : MediaType.APPLICATION_OCTET_STREAM_VALUE,
+                    all.map(PartEvent::content))
+                .map(storedFile -> ResponseEntity.status(HttpStatus.CREATED)
+                    .<Object>body(new UploadFileResponse(storedFile.getId(), storedFile.getFileName())))
+                .defaultIfEmpty(ResponseEntity.badRequest().body("File is empty"));
+          }
+          return all.doOnNext(event -> DataBufferUtils.release(event.content())).then(Mono.empty());
+        }))
+        .next()
+        .defaultIfEmpty(ResponseEntity.badRequest().body("File is empty"))
+        .onErrorResume(ex -> {
+          logger.error("Could not store uploaded file", ex);
+          return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+              .body("Could not store uploaded file. Error: " + ex.getMessage()));
+        });
+  }
+
+  /**
+   * Endpoint for downloading a file by its ID. Supports conditional requests with the content
+   * hash as a strong ETag, and sends blobs compressed at rest as they are to clients that
+   * accept their codec.
+   *
+   * @param fileId   ID of the file
+   * @param exchange current exchange
+   * @return the content of the file, a 304 or a 404
+   */
+  @GetMapping("/download/{fileId}")
+  public Mono<ResponseEntity<Flux<DataBuffer>>> downloadFile(@PathVariable UUID fileId, ServerWebExchange exchange) {
+    return fileStorageService.getFileMetadata(fileId)
+        .map(fileEntity -> toDownloadResponse(fileEntity, exchange))
+        .defaultIfEmpty(ResponseEntity.notFound().build());
+  }
+
+  private ResponseEntity<Flux<DataBuffer>> toDownloadResponse(FileEntity fileEntity, ServerWebExchange exchange) {
+    String codec = fileEntity.getStorageCodec();
+    boolean sendStored = codec != null
+        && FileController.acceptsEncoding(exchange.getRequest().getHeaders().getOrEmpty(HttpHeaders.ACCEPT_ENCODING), codec);
+    String eTag = sendStored
+        ? "\"" + fileEntity.getHash() + "-" + codec + "\""
+        : "\"" + fileEntity.getHash() + "\"";
+    HttpHeaders headers = new HttpHeaders();
+    headers.setETag(eTag);
+    if (codec != null) {
+      headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    }
+    if (exchange.checkNotModified(eTag)) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+    }
+
+    Optional<Flux<DataBuffer>> content = fileStorageService.readFile(fileEntity, !sendStored);
+    if (content.isEmpty()) {
+      return ResponseEntity.notFound().build();
+    }
+    Long contentLength = sendStored ? fileEntity.getStoredSize() : fileEntity.getSize();
+    if (contentLength != null) {
+      headers.setContentLength(contentLength);
+    }
+    if (sendStored) {
+      headers.set(HttpHeaders.CONTENT_ENCODING, codec);
+    }
+    String contentType = fileEntity.getContentType() != null ? fileEntity.getContentType() : "application/octet-stream";
+    String originalFileName = fileEntity.getFileName() != null ? fileEntity.getFileName() : "downloaded-file";
+    headers.setContentType(MediaType.parseMediaType(contentType));
+    headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + originalFileName + "\"");
+    return ResponseEntity.ok().headers(headers).body(content.get());
+  }
+
+  /**
+   * Endpoint for getting the metadata of a file by its ID.
+   *
+   * @param fileId ID of the file
+   * @return FileEntity or a 404
+   */
+  @GetMapping("/{fileId}/metadata")
+  public Mono<ResponseEntity<FileEntity>> getFileMetadata(@PathVariable UUID fileId) {
+    return fileStorageService.getFileMetadata(fileId)
+        .map(ResponseEntity::ok)
+        .defaultIfEmpty(ResponseEntity.notFound().build());
+  }
+}
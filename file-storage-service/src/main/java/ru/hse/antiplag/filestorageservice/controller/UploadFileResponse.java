@@ -0,0 +1,24 @@
+package ru.hse.antiplag.filestorageservice.controller;
+
+import java.util.UUID;
+
+/**
+ * Response body when a file is uploaded.
+ */
+class UploadFileResponse {
+  private UUID id;
+  private String fileName;
+
+  public UploadFileResponse(UUID id, String fileName) {
+    this.id = id;
+    this.fileName = fileName;
+  }
+
+  public UUID getId() {
+    return id;
+  }
+
+  public String getFileName() {
+    return fileName;
+  }
+}
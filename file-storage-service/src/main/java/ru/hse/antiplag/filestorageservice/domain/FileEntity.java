@@ -1,5 +1,6 @@
 package ru.hse.antiplag.filestorageservice.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
@@ -39,6 +40,16 @@ public class FileEntity {
   @Column(nullable = false, unique = true)
   private String hash;
 
+  private String storageCodec;
+
+  private Long storedSize;
+
+  private Long compressionCpuNanos;
+
+  @JsonIgnore
+  @Column(name = "chunk_manifest")
+  private byte[] chunkManifest;
+
   /**
    * Default constructor for JPA.
    */
@@ -138,4 +149,56 @@ public class FileEntity {
     this.hash = hash;
   }
 
+  /**
+   * Gets the codec the blob is compressed with at rest.
+   *
+   * @return the codec name, or null if the blob is stored as is
+   */
+  public String getStorageCodec() {
+    return storageCodec;
+  }
+
+  public void setStorageCodec(String storageCodec) {
+    this.storageCodec = storageCodec;
+  }
+
+  /**
+   * Gets the size of the blob on disk, which differs from the file size if it is compressed.
+   *
+   * @return size on disk in bytes, or null for files stored before it was recorded
+   */
+  public Long getStoredSize() {
+    return storedSize;
+  }
+
+  public void setStoredSize(Long storedSize) {
+    this.storedSize = storedSize;
+  }
+
+  /**
+   * Gets the CPU time spent compressing the blob when it was stored.
+   *
+   * @return CPU time in nanoseconds, or null if the blob is not compressed
+   */
+  public Long getCompressionCpuNanos() {
+    return compressionCpuNanos;
+  }
+
+  public void setCompressionCpuNanos(Long compressionCpuNanos) {
+    this.compressionCpuNanos = compressionCpuNanos;
+  }
+
+  /**
+   * Gets the serialized chunk manifest of a file uploaded in chunks.
+   *
+   * @return the manifest, or null if the file is stored as a single blob
+   */
+  public byte[] getChunkManifest() {
+    return chunkManifest;
+  }
+
+  public void setChunkManifest(byte[] chunkManifest) {
+    this.chunkManifest = chunkManifest;
+  }
+
 }
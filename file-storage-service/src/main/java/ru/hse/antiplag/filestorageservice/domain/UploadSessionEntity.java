@@ -0,0 +1,100 @@
+package ru.hse.antiplag.filestorageservice.domain;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Entity that represents an unfinished chunked upload. The bytes received so far live in
+ * a part file named after the session, so its size is the offset the upload resumes from.
+ */
+@Entity
+@Table(name = "upload_sessions")
+public class UploadSessionEntity {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.AUTO)
+  @Column(updatable = false, nullable = false)
+  private UUID id;
+
+  @Column(nullable = false)
+  private String fileName;
+
+  private String contentType;
+
+  @Column(nullable = false)
+  private LocalDateTime createdAt;
+
+  @Column(name = "chunk_manifest")
+  private byte[] chunkManifest;
+
+  /**
+   * Default constructor for JPA.
+   */
+  public UploadSessionEntity() {
+  }
+
+  /**
+   * Creates a new instance of UploadSessionEntity.
+   *
+   * @param fileName    name of the file being uploaded
+   * @param contentType MIME-type of the file
+   * @param createdAt   timestamp of the start of the upload
+   */
+  public UploadSessionEntity(String fileName, String contentType, LocalDateTime createdAt) {
+    this.fileName = fileName;
+    this.contentType = contentType;
+    this.createdAt = createdAt;
+  }
+
+  public UUID getId() {
+    return id;
+  }
+
+  public void setId(UUID id) {
+    this.id = id;
+  }
+
+  public String getFileName() {
+    return fileName;
+  }
+
+  public void setFileName(String fileName) {
+    this.fileName = fileName;
+  }
+
+  public String getContentType() {
+    return contentType;
+  }
+
+  public void setContentType(String contentType) {
+    this.contentType = contentType;
+  }
+
+  public LocalDateTime getCreatedAt() {
+    return createdAt;
+  }
+
+  public void setCreatedAt(LocalDateTime createdAt) {
+    this.createdAt = createdAt;
+  }
+
+  /**
+   * Gets the serialized {@code ChunkManifest} the client announced, if it sends the file
+   * chunk by chunk instead of as a byte stream.
+   *
+   * @return the manifest, or null if the file is sent as a byte stream
+   */
+  public byte[] getChunkManifest() {
+    return chunkManifest;
+  }
+
+  public void setChunkManifest(byte[] chunkManifest) {
+    this.chunkManifest = chunkManifest;
+  }
+}
@@ -0,0 +1,33 @@
+package ru.hse.antiplag.filestorageservice.events;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+
+/**
+ * Creates the topic of file events on startup if it does not exist yet.
+ * Its partitions bound the number of consumers that process the events in parallel.
+ */
+@Configuration
+@ConditionalOnProperty(name = "file.events.kafka.enabled", havingValue = "true")
+public class FileEventsKafkaConfig {
+
+  /**
+   * Creates the topic of file events.
+   *
+   * @param topic      name of the topic
+   * @param partitions number of partitions of the topic
+   * @param replicas   number of replicas of every partition
+   * @return the topic
+   */
+  @Bean
+  public NewTopic fileStoredTopic(
+      @Value("${file.events.kafka.topic:file-stored}") String topic,
+      @Value("${file.events.kafka.partitions:6}") int partitions,
+      @Value("${file.events.kafka.replicas:1}") int replicas) {
+    return TopicBuilder.name(topic).partitions(partitions).replicas(replicas).build();
+  }
+}
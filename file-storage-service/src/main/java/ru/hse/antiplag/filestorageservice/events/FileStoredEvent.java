@@ -0,0 +1,80 @@
+package ru.hse.antiplag.filestorageservice.events;
+
+import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+
+import java.util.UUID;
+
+/**
+ * Event published when the content of a new file has been stored and its metadata committed.
+ * Uploads of content that is already stored return the existing file and publish nothing.
+ */
+public class FileStoredEvent {
+  private UUID fileId;
+  private String hash;
+  private long size;
+  private String contentType;
+
+  /**
+   * Default constructor for deserialization.
+   */
+  public FileStoredEvent() {
+  }
+
+  /**
+   * Constructor for FileStoredEvent.
+   *
+   * @param fileId      ID of the file
+   * @param hash        SHA-256 hash of the file content
+   * @param size        size of the file content, in bytes
+   * @param contentType content type of the file
+   */
+  public FileStoredEvent(UUID fileId, String hash, long size, String contentType) {
+    this.fileId = fileId;
+    this.hash = hash;
+    this.size = size;
+    this.contentType = contentType;
+  }
+
+  /**
+   * Creates the event for a stored file.
+   *
+   * @param fileEntity metadata of the stored file
+   * @return the event
+   */
+  public static FileStoredEvent of(FileEntity fileEntity) {
+    return new FileStoredEvent(fileEntity.getId(), fileEntity.getHash(),
+        fileEntity.getSize() == null ? 0 : fileEntity.getSize(), fileEntity.getContentType());
+  }
+
+  public UUID getFileId() {
+    return fileId;
+  }
+
+  public void setFileId(UUID fileId) {
+    this.fileId = fileId;
+  }
+
+  public String getHash() {
+    return hash;
+  }
+
+  public void setHash(String hash) {
+    this.hash = hash;
+  }
+
+  public long getSize() {
+    return size;
+  }
+
+  public void setSize(long size) {
+    this.size = size;
+  }
+
+  public String getContentType() {
+    return contentType;
+  }
+
+  public void setContentType(String contentType) {
+    this.contentType = contentType;
+  }
+}
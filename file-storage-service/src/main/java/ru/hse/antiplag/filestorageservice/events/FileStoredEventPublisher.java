@@ -0,0 +1,19 @@
+package ru.hse.antiplag.filestorageservice.events;
+
+import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+
+/**
+ * Publishes a {@link FileStoredEvent} for every new file, so other services can process it
+ * before it is asked for.
+ */
+public interface FileStoredEventPublisher {
+
+  /**
+   * Publishes the event of a new file once the current transaction commits, so a rolled back
+   * insert is never announced. Without a transaction it is published immediately.
+   * Failures to publish are logged and never fail the upload.
+   *
+   * @param fileEntity metadata of the new file
+   */
+  void publishAfterCommit(FileEntity fileEntity);
+}
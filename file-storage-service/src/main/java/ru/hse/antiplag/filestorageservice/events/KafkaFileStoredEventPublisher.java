@@ -0,0 +1,68 @@
+package ru.hse.antiplag.filestorageservice.events;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+
+/**
+ * Publishes file events to a Kafka topic, keyed by file ID, as JSON.
+ * The event is sent after the commit, not within the transaction, so a crash between the two
+ * loses it; consumers must still be able to process a file that was never announced.
+ * Sending is asynchronous: the upload does not wait for the broker to acknowledge the event.
+ */
+@Component
+@ConditionalOnProperty(name = "file.events.kafka.enabled", havingValue = "true")
+public class KafkaFileStoredEventPublisher implements FileStoredEventPublisher {
+
+  private static final Logger logger = LoggerFactory.getLogger(KafkaFileStoredEventPublisher.class);
+
+  private final KafkaTemplate<String, FileStoredEvent> kafkaTemplate;
+  private final String topic;
+
+  /**
+   * Constructor for KafkaFileStoredEventPublisher.
+   *
+   * @param kafkaTemplate template for sending the events
+   * @param topic         topic the events are sent to
+   */
+  public KafkaFileStoredEventPublisher(
+      KafkaTemplate<String, FileStoredEvent> kafkaTemplate,
+      @Value("${file.events.kafka.topic:file-stored}") String topic) {
+    this.kafkaTemplate = kafkaTemplate;
+    this.topic = topic;
+  }
+
+  @Override
+  public void publishAfterCommit(FileEntity fileEntity) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      publish(fileEntity);
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        publish(fileEntity);
+      }
+    });
+  }
+
+  private void publish(FileEntity fileEntity) {
+    FileStoredEvent event = FileStoredEvent.of(fileEntity);
+    String key = event.getFileId().toString();
+    try {
+      kafkaTemplate.send(topic, key, event).whenComplete((result, ex) -> {
+        if (ex != null) {
+          logger.warn("Could not publish stored event of file {}. Error: {}", key, ex.getMessage());
+        }
+      });
+    } catch (RuntimeException ex) {
+      logger.warn("Could not publish stored event of file {}. Error: {}", key, ex.getMessage());
+    }
+  }
+}
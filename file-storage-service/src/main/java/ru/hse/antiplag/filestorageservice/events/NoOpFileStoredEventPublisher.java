@@ -0,0 +1,17 @@
+package ru.hse.antiplag.filestorageservice.events;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+
+/**
+ * Publisher used when file events are disabled; it publishes nothing.
+ */
+@Component
+@ConditionalOnProperty(name = "file.events.kafka.enabled", havingValue = "false", matchIfMissing = true)
+public class NoOpFileStoredEventPublisher implements FileStoredEventPublisher {
+
+  @Override
+  public void publishAfterCommit(FileEntity fileEntity) {
+  }
+}
@@ -1,11 +1,23 @@
 package ru.hse.antiplag.filestorageservice.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.hse.antiplag.filestorageservice.domain.FileEntity;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 /**
  * Repository for working with FileEntity entities.
@@ -13,4 +25,51 @@ import java.util.UUID;
 @Repository
 public interface FileRepository extends JpaRepository<FileEntity, UUID> {
   Optional<FileEntity> findByHash(String hash);
+
+  /**
+   * Finds the files with any of the given hashes in a single query.
+   *
+   * @param hashes SHA-256 hashes to look up
+   * @return the files that were found, in no particular order
+   */
+  List<FileEntity> findByHashIn(Collection<String> hashes);
+
+  /**
+   * Finds a page of files with IDs greater than the given one, for keyset pagination.
+   *
+   * @param id       ID after which the page starts
+   * @param pageable page size and sort order
+   * @return the files of the page
+   */
+  List<FileEntity> findByIdGreaterThan(UUID id, Pageable pageable);
+
+  /**
+   * Streams the hashes of all stored files. Must be consumed and closed inside a transaction.
+   *
+   * @return stream of file hashes
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+  @Query("select f.hash from FileEntity f")
+  Stream<String> streamAllHashes();
+
+  /**
+   * Finds the hashes of files uploaded at or after the given moment.
+   *
+   * @param since earliest upload timestamp
+   * @return hashes of the matching files
+   */
+  @Query("select f.hash from FileEntity f where f.uploadTimestamp >= :since")
+  List<String> findHashesUploadedSince(@Param("since") LocalDateTime since);
+
+  /**
+   * Updates the stored path of a file without loading the entity.
+   *
+   * @param id       ID of the file
+   * @param filePath new path of the file
+   * @return number of updated rows
+   */
+  @Transactional
+  @Modifying
+  @Query("update FileEntity f set f.filePath = :filePath where f.id = :id")
+  int updateFilePath(@Param("id") UUID id, @Param("filePath") String filePath);
 }
@@ -0,0 +1,121 @@
+package ru.hse.antiplag.filestorageservice.repository;
+
+import io.r2dbc.spi.Readable;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Non-blocking access to the {@code files} table over R2DBC, used by the reactive stack.
+ * The table is the one mapped by {@link FileEntity}; its schema comes from {@code schema-reactive.sql} in this profile.
+ */
+@Repository
+@Profile("reactive")
+public class ReactiveFileRepository {
+
+  private static final String SELECT_FILES = "select id, file_name, content_type, size, upload_timestamp, file_path, "
+      + "hash, storage_codec, stored_size, compression_cpu_nanos, chunk_manifest from files";
+
+  private final DatabaseClient databaseClient;
+
+  /**
+   * Constructor for ReactiveFileRepository.
+   *
+   * @param databaseClient R2DBC client of the file storage database
+   */
+  public ReactiveFileRepository(DatabaseClient databaseClient) {
+    this.databaseClient = databaseClient;
+  }
+
+  /**
+   * Finds a file by its ID.
+   *
+   * @param id ID of the file
+   * @return the file, or an empty Mono if there is none
+   */
+  public Mono<FileEntity> findById(UUID id) {
+    return databaseClient.sql(SELECT_FILES + " where id = :id")
+        .bind("id", id)
+        .map(ReactiveFileRepository::toFileEntity)
+        .one();
+  }
+
+  /**
+   * Finds a file by the SHA-256 hash of its content.
+   *
+   * @param hash SHA-256 hash of the content
+   * @return the file, or an empty Mono if there is none
+   */
+  public Mono<FileEntity> findByHash(String hash) {
+    return databaseClient.sql(SELECT_FILES + " where hash = :hash")
+        .bind("hash", hash)
+        .map(ReactiveFileRepository::toFileEntity)
+        .one();
+  }
+
+  /**
+   * Inserts a new file with a freshly generated ID.
+   *
+   * @param fileEntity file to insert, its ID is assigned by this method
+   * @return the inserted file
+   */
+  public Mono<FileEntity> insert(FileEntity fileEntity) {
+    return Mono.defer(() -> {
+      fileEntity.setId(UUID.randomUUID());
+      DatabaseClient.GenericExecuteSpec spec = databaseClient.sql("insert into files (id, file_name, content_type, "
+              + "size, upload_timestamp, file_path, hash, storage_codec, stored_size, compression_cpu_nanos) "
+              + "values (:id, :fileName, :contentType, :size, :uploadTimestamp, :filePath, :hash, :storageCodec, "
+              + ":storedSize, :compressionCpuNanos)")
+          .bind("id", fileEntity.getId())
+          .bind("fileName", fileEntity.getFileName())
+          .bind("contentType", fileEntity.getContentType())
+          .bind("size", fileEntity.getSize())
+          .bind("uploadTimestamp", fileEntity.getUploadTimestamp())
+          .bind("filePath", fileEntity.getFilePath())
+          .bind("hash", fileEntity.getHash());
+      spec = bindNullable(spec, "storageCodec", fileEntity.getStorageCodec(), String.class);
+      spec = bindNullable(spec, "storedSize", fileEntity.getStoredSize(), Long.class);
+      spec = bindNullable(spec, "compressionCpuNanos", fileEntity.getCompressionCpuNanos(), Long.class);
+      return spec.then().thenReturn(fileEntity);
+    });
+  }
+
+  /**
+   * Deletes a file by its ID.
+   *
+   * @param id ID of the file
+   * @return completion of the delete
+   */
+  public Mono<Void> deleteById(UUID id) {
+    return databaseClient.sql("delete from files where id = :id")
+        .bind("id", id)
+        .then();
+  }
+
+  private static <T> DatabaseClient.GenericExecuteSpec bindNullable(DatabaseClient.GenericExecuteSpec spec,
+                                                                    String name, T value, Class<T> type) {
+    return value == null ? spec.bindNull(name, type) : spec.bind(name, value);
+  }
+
+  private static FileEntity toFileEntity(Readable row) {
+    FileEntity fileEntity = new FileEntity(
+        row.get("file_name", String.class),
+        row.get("content_type", String.class),
+        row.get("size", Long.class),
+        row.get("upload_timestamp", LocalDateTime.class),
+        row.get("file_path", String.class),
+        row.get("hash", String.class)
+    );
+    fileEntity.setId(row.get("id", UUID.class));
+    fileEntity.setStorageCodec(row.get("storage_codec", String.class));
+    fileEntity.setStoredSize(row.get("stored_size", Long.class));
+    fileEntity.setCompressionCpuNanos(row.get("compression_cpu_nanos", Long.class));
+    fileEntity.setChunkManifest(row.get("chunk_manifest", byte[].class));
+    return fileEntity;
+  }
+}
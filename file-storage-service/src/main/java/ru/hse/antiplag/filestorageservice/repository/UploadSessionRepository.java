@@ -0,0 +1,24 @@
+package ru.hse.antiplag.filestorageservice.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import ru.hse.antiplag.filestorageservice.domain.UploadSessionEntity;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Repository for working with UploadSessionEntity entities.
+ */
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSessionEntity, UUID> {
+
+  /**
+   * Finds the sessions started before the given moment.
+   *
+   * @param createdAt moment before which the sessions were started
+   * @return the matching sessions
+   */
+  List<UploadSessionEntity> findByCreatedAtBefore(LocalDateTime createdAt);
+}
@@ -0,0 +1,19 @@
+package ru.hse.antiplag.filestorageservice.service;
+
+import java.io.IOException;
+
+/**
+ * Thrown when an uploaded archive has more files or expands to more bytes than a bulk upload
+ * accepts. Nothing of the archive is stored then.
+ */
+public class ArchiveTooLargeException extends IOException {
+
+  /**
+   * Creates a new instance of ArchiveTooLargeException.
+   *
+   * @param message which limit the archive exceeds
+   */
+  public ArchiveTooLargeException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,63 @@
+package ru.hse.antiplag.filestorageservice.service;
+
+import java.util.UUID;
+
+/**
+ * Outcome of storing one entry of a bulk upload.
+ */
+public class BulkIngestResult {
+
+  /**
+   * What happened to an entry of a bulk upload.
+   */
+  public enum Status {
+    /**
+     * The entry was stored as a new file.
+     */
+    STORED,
+    /**
+     * A file with the same content already existed, or appeared earlier in the same upload.
+     */
+    DEDUPLICATED,
+    /**
+     * The entry could not be stored, see the error.
+     */
+    FAILED
+  }
+
+  private final String fileName;
+  private final UUID fileId;
+  private final Status status;
+  private final String error;
+
+  /**
+   * Creates a new instance of BulkIngestResult.
+   *
+   * @param fileName name of the entry
+   * @param fileId   ID of the file holding the content of the entry, null if it failed
+   * @param status   what happened to the entry
+   * @param error    reason of the failure, null if it did not fail
+   */
+  public BulkIngestResult(String fileName, UUID fileId, Status status, String error) {
+    this.fileName = fileName;
+    this.fileId = fileId;
+    this.status = status;
+    this.error = error;
+  }
+
+  public String getFileName() {
+    return fileName;
+  }
+
+  public UUID getFileId() {
+    return fileId;
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  public String getError() {
+    return error;
+  }
+}
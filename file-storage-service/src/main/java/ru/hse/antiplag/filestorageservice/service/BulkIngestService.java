@@ -0,0 +1,32 @@
+package ru.hse.antiplag.filestorageservice.service;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Service for storing many files in one request.
+ */
+public interface BulkIngestService {
+
+  /**
+   * Stores all the uploaded files. Entries are deduplicated against each other and against
+   * the stored files, so every distinct content is stored once.
+   *
+   * @param files uploaded files
+   * @return result for every file, in the order of the files
+   */
+  List<BulkIngestResult> ingestFiles(List<MultipartFile> files);
+
+  /**
+   * Stores every file of a zip archive. The archive is read as a stream, directories are skipped,
+   * and entries are deduplicated the same way as in {@link #ingestFiles(List)}.
+   *
+   * @param archive content of the zip archive
+   * @return result for every file of the archive, in the order of the archive
+   * @throws IOException if the archive could not be read
+   */
+  List<BulkIngestResult> ingestArchive(InputStream archive) throws IOException;
+}
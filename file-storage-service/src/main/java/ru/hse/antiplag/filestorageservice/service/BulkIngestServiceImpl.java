@@ -0,0 +1,570 @@
+package ru.hse.antiplag.filestorageservice.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+import ru.hse.antiplag.filestorageservice.cache.FileMetadataCache;
+import ru.hse.antiplag.filestorageservice.cache.StoredHashFilter;
+import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+import ru.hse.antiplag.filestorageservice.events.FileStoredEventPublisher;
+import ru.hse.antiplag.filestorageservice.repository.FileRepository;
+import ru.hse.antiplag.filestorageservice.storage.BlobCompression;
+import ru.hse.antiplag.filestorageservice.storage.BlobLayout;
+import ru.hse.antiplag.filestorageservice.utils.FileHashUtil;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Implementation of the service for bulk uploads.
+ * Entries are hashed (and compressed, if their content type asks for it) in parallel on a
+ * fixed pool. Archive entries are spooled to the temp directory one by one while earlier
+ * entries are being hashed. Once every entry is hashed, the distinct hashes are looked up
+ * with a few {@code IN} queries and the new files are inserted with one batched
+ * {@code saveAll} in a single transaction. Contents that a concurrent upload is storing right
+ * now are left to it and picked up after the transaction, so the bulk upload never waits for
+ * another upload while it holds its own.
+ *
+ * <p>The hash filter is local to this node, so a hash it has not seen may still have been
+ * inserted by another node. If the batch hits the unique constraint on the hash, the files
+ * already stored are looked up and the rest are inserted one by one, so one conflicting entry
+ * does not fail the others.
+ *
+ * <p>An archive is limited in the number of its files, the size of each file and the total
+ * size of its files once expanded, so a small archive cannot fill the disk. A file over its
+ * limit fails on its own; an archive over the other limits fails as a whole.
+ */
+@Service
+@Profile("!reactive")
+public class BulkIngestServiceImpl implements BulkIngestService {
+
+  private static final Logger logger = LoggerFactory.getLogger(BulkIngestServiceImpl.class);
+
+  private final BlobLayout blobLayout;
+  private final int bufferSize;
+  private final FileRepository fileRepository;
+  private final FileMetadataCache fileMetadataCache;
+  private final StoredHashFilter storedHashFilter;
+  private final BlobCompression blobCompression;
+  private final TransactionOperations transactionOperations;
+  private final InFlightUploads inFlightUploads;
+  private final FileStoredEventPublisher fileStoredEventPublisher;
+  private final int lookupBatchSize;
+  private final int maxEntries;
+  private final long maxEntrySize;
+  private final long maxExpandedSize;
+  private final ExecutorService executor;
+
+  /**
+   * Constructor for BulkIngestServiceImpl.
+   *
+   * @param blobLayout               content-addressed layout of the stored blobs
+   * @param bufferSize               size of the buffer used to stream entries to disk, in bytes
+   * @param fileRepository           repository for working with file metadata
+   * @param fileMetadataCache        in-memory cache of file metadata
+   * @param storedHashFilter         filter over the hashes of all stored files
+   * @param blobCompression          codecs for compressing blobs at rest
+   * @param transactionOperations    runs the batched insert in one transaction
+   * @param inFlightUploads          coordination with concurrent uploads of the same content
+   * @param fileStoredEventPublisher publishes the events of new files
+   * @param threads                  number of entries hashed in parallel, 0 for one per CPU core
+   * @param lookupBatchSize          maximal number of hashes in one {@code IN} query
+   * @param maxEntries               maximal number of files in an archive
+   * @param maxEntrySize             maximal size of a file of an archive, in bytes
+   * @param maxExpandedSize          maximal total size of the files of an archive, in bytes
+   */
+  @Autowired
+  public BulkIngestServiceImpl(
+      BlobLayout blobLayout,
+      @Value("${file.upload.buffer-size:1048576}") int bufferSize,
+      FileRepository fileRepository,
+      FileMetadataCache fileMetadataCache,
+      StoredHashFilter storedHashFilter,
+      BlobCompression blobCompression,
+      TransactionOperations transactionOperations,
+      InFlightUploads inFlightUploads,
+      FileStoredEventPublisher fileStoredEventPublisher,
+      @Value("${file.bulk.threads:0}") int threads,
+      @Value("${file.bulk.lookup-batch-size:1000}") int lookupBatchSize,
+      @Value("${file.bulk.max-entries:10000}") int maxEntries,
+      @Value("${file.bulk.max-entry-size:2147483648}") long maxEntrySize,
+      @Value("${file.bulk.max-expanded-size:10737418240}") long maxExpandedSize) {
+    this.blobLayout = blobLayout;
+    this.bufferSize = bufferSize;
+    this.fileRepository = fileRepository;
+    this.fileMetadataCache = fileMetadataCache;
+    this.storedHashFilter = storedHashFilter;
+    this.blobCompression = blobCompression;
+    this.transactionOperations = transactionOperations;
+    this.inFlightUploads = inFlightUploads;
+    this.fileStoredEventPublisher = fileStoredEventPublisher;
+    this.lookupBatchSize = lookupBatchSize;
+    this.maxEntries = maxEntries;
+    this.maxEntrySize = maxEntrySize;
+    this.maxExpandedSize = maxExpandedSize;
+    this.executor = Executors.newFixedThreadPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors(),
+        new CustomizableThreadFactory("bulk-ingest-"));
+  }
+
+  @Override
+  public List<BulkIngestResult> ingestFiles(List<MultipartFile> files) {
+    List<Future<PreparedEntry>> futures = new ArrayList<>(files.size());
+    for (MultipartFile file : files) {
+      String fileName = file.getOriginalFilename() == null ? null : StringUtils.cleanPath(file.getOriginalFilename());
+      futures.add(executor.submit(() -> prepare(fileName, file.getContentType(), file.getSize(), file, null)));
+    }
+    return store(awaitAll(futures));
+  }
+
+  @Override
+  public List<BulkIngestResult> ingestArchive(InputStream archive) throws IOException {
+    List<Future<PreparedEntry>> futures = new ArrayList<>();
+    try {
+      ZipInputStream zipInputStream = new ZipInputStream(archive);
+      ZipEntry zipEntry;
+      long expandedSize = 0;
+      while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+        if (zipEntry.isDirectory()) {
+          continue;
+        }
+        if (futures.size() == maxEntries) {
+          throw new ArchiveTooLargeException("Archive has more than " + maxEntries + " files");
+        }
+        String fileName = StringUtils.getFilename(StringUtils.cleanPath(zipEntry.getName()));
+        String contentType = MediaTypeFactory.getMediaType(fileName)
+            .orElse(MediaType.APPLICATION_OCTET_STREAM)
+            .toString();
+        Path spool = blobLayout.createTempFile("bulk-");
+        long size;
+        try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(spool), bufferSize)) {
+          size = transferAtMost(zipInputStream, outputStream, Math.min(maxEntrySize, maxExpandedSize - expandedSize) + 1);
+        } catch (IOException ex) {
+          deleteQuietly(spool);
+          throw ex;
+        }
+        expandedSize += size;
+        if (size > maxEntrySize) {
+          deleteQuietly(spool);
+          expandedSize += transferAtMost(zipInputStream, OutputStream.nullOutputStream(), maxExpandedSize - expandedSize + 1);
+        }
+        if (expandedSize > maxExpandedSize) {
+          deleteQuietly(spool);
+          throw new ArchiveTooLargeException("Files of the archive are larger than " + maxExpandedSize + " bytes in total");
+        }
+        if (size > maxEntrySize) {
+          PreparedEntry entry = new PreparedEntry(fileName, contentType, size);
+          entry.error = "File is larger than " + maxEntrySize + " bytes";
+          futures.add(CompletableFuture.completedFuture(entry));
+          continue;
+        }
+        futures.add(executor.submit(() -> prepare(fileName, contentType, size, () -> Files.newInputStream(spool), spool)));
+      }
+    } catch (IOException | RuntimeException ex) {
+      for (PreparedEntry entry : awaitAll(futures)) {
+        deleteQuietly(entry.blob);
+      }
+      logger.error("Could not read uploaded archive. Error: {}", ex.getMessage());
+      throw ex;
+    }
+    return store(awaitAll(futures));
+  }
+
+  /**
+   * Copies at most {@code limit} bytes, so the size of an entry is known to be over a limit
+   * without reading all of it.
+   *
+   * @return number of bytes copied
+   */
+  private long transferAtMost(InputStream inputStream, OutputStream outputStream, long limit) throws IOException {
+    byte[] buffer = new byte[(int) Math.min(bufferSize, Math.max(1, limit))];
+    long transferred = 0;
+    int read;
+    while (transferred < limit
+        && (read = inputStream.read(buffer, 0, (int) Math.min(buffer.length, limit - transferred))) >= 0) {
+      outputStream.write(buffer, 0, read);
+      transferred += read;
+    }
+    return transferred;
+  }
+
+  /**
+   * Hashes an entry and writes it to a temp file in the form it will be stored in.
+   * An uncompressed archive entry is already spooled to disk, so it is only read to hash it.
+   * Never throws: a failure is recorded in the returned entry.
+   */
+  private PreparedEntry prepare(String fileName, String contentType, long size, InputStreamSource source, Path spool) {
+    PreparedEntry entry = new PreparedEntry(fileName, contentType, size);
+    if (!StringUtils.hasText(fileName)) {
+      deleteQuietly(spool);
+      entry.error = "File name is empty";
+      return entry;
+    }
+    if (size == 0) {
+      deleteQuietly(spool);
+      entry.error = "File is empty";
+      return entry;
+    }
+    entry.codec = blobCompression.codecFor(contentType, size);
+    try {
+      if (entry.codec == null && spool != null) {
+        entry.blob = spool;
+        try (InputStream inputStream = Files.newInputStream(spool)) {
+          entry.hash = FileHashUtil.copyAndHash(inputStream, OutputStream.nullOutputStream(), bufferSize);
+        }
+      } else {
+        entry.blob = blobLayout.createTempFile("upload-");
+        try (InputStream inputStream = source.getInputStream();
+             OutputStream outputStream = Files.newOutputStream(entry.blob)) {
+          if (entry.codec == null) {
+            entry.hash = FileHashUtil.copyAndHash(inputStream, outputStream, bufferSize);
+          } else {
+            BlobCompression.CompressingOutputStream compressingStream = blobCompression.compress(entry.codec, outputStream);
+            try (compressingStream) {
+              entry.hash = FileHashUtil.copyAndHash(inputStream, compressingStream, bufferSize);
+            }
+            entry.compressionCpuNanos = compressingStream.getCpuNanos();
+          }
+        }
+        deleteQuietly(spool);
+      }
+      entry.storedSize = Files.size(entry.blob);
+    } catch (IOException ex) {
+      deleteQuietly(entry.blob);
+      deleteQuietly(spool);
+      entry.blob = null;
+      entry.hash = null;
+      entry.error = ex.getMessage();
+      logger.error("Could not store file {}. Error: {}", fileName, ex.getMessage());
+    }
+    return entry;
+  }
+
+  /**
+   * Stores the distinct new contents of the prepared entries and builds the results.
+   * Temp files of entries that were not moved into place are deleted in the end.
+   */
+  private List<BulkIngestResult> store(List<PreparedEntry> entries) {
+    long started = System.nanoTime();
+    Map<String, PreparedEntry> entriesByHash = new LinkedHashMap<>();
+    for (PreparedEntry entry : entries) {
+      if (entry.error == null) {
+        entriesByHash.putIfAbsent(entry.hash, entry);
+      }
+    }
+    Map<String, FileEntity> filesByHash = new HashMap<>();
+    Map<String, InFlightUploads.Flight> followedFlights = new HashMap<>();
+    try {
+      if (!entriesByHash.isEmpty()) {
+        filesByHash.putAll(storeNewFiles(entriesByHash, followedFlights));
+      }
+    } finally {
+      for (PreparedEntry entry : entries) {
+        deleteQuietly(entry.blob);
+      }
+    }
+    for (Map.Entry<String, InFlightUploads.Flight> followed : followedFlights.entrySet()) {
+      try {
+        followed.getValue().await().ifPresent(fileEntity -> filesByHash.put(followed.getKey(), fileEntity));
+      } catch (IOException ex) {
+        logger.warn("Could not get file with hash {} from a concurrent upload. Error: {}", followed.getKey(), ex.getMessage());
+      }
+    }
+
+    List<BulkIngestResult> results = new ArrayList<>(entries.size());
+    int stored = 0;
+    int deduplicated = 0;
+    int failed = 0;
+    for (PreparedEntry entry : entries) {
+      FileEntity fileEntity = entry.error == null ? filesByHash.get(entry.hash) : null;
+      if (fileEntity == null) {
+        results.add(new BulkIngestResult(entry.fileName, null, BulkIngestResult.Status.FAILED,
+            entry.error != null ? entry.error : "Could not store file"));
+        failed++;
+      } else if (entry.stored) {
+        results.add(new BulkIngestResult(entry.fileName, fileEntity.getId(), BulkIngestResult.Status.STORED, null));
+        stored++;
+      } else {
+        results.add(new BulkIngestResult(entry.fileName, fileEntity.getId(), BulkIngestResult.Status.DEDUPLICATED, null));
+        deduplicated++;
+      }
+    }
+    logger.info("Bulk upload of {} files: {} stored, {} deduplicated, {} failed; metadata written in {} ms",
+        entries.size(), stored, deduplicated, failed, (System.nanoTime() - started) / 1_000_000);
+    return results;
+  }
+
+  /**
+   * Moves the blobs of the contents that are not stored yet into place and inserts their metadata.
+   * Hashes that another upload is storing right now are skipped and their flights are added to
+   * {@code followedFlights}.
+   *
+   * @return the file holding each content, by hash
+   */
+  private Map<String, FileEntity> storeNewFiles(Map<String, PreparedEntry> entriesByHash,
+                                                Map<String, InFlightUploads.Flight> followedFlights) {
+    Map<String, InFlightUploads.Flight> ledFlights = new HashMap<>();
+    for (String hash : entriesByHash.keySet()) {
+      InFlightUploads.Flight flight = inFlightUploads.claim(hash);
+      if (flight.isLeader()) {
+        ledFlights.put(hash, flight);
+      } else {
+        followedFlights.put(hash, flight);
+      }
+    }
+    try {
+      Map<String, FileEntity> filesByHash = storeLedFiles(entriesByHash, ledFlights);
+      for (Map.Entry<String, InFlightUploads.Flight> led : ledFlights.entrySet()) {
+        FileEntity fileEntity = filesByHash.get(led.getKey());
+        if (fileEntity != null) {
+          led.getValue().succeed(fileEntity);
+        } else {
+          led.getValue().abandon();
+        }
+      }
+      return filesByHash;
+    } catch (RuntimeException ex) {
+      ledFlights.values().forEach(InFlightUploads.Flight::abandon);
+      throw ex;
+    }
+  }
+
+  private Map<String, FileEntity> storeLedFiles(Map<String, PreparedEntry> entriesByHash,
+                                                Map<String, InFlightUploads.Flight> ledFlights) {
+    Map<String, FileEntity> filesByHash = findAvailableFiles(new ArrayList<>(ledFlights.keySet()));
+    List<PreparedEntry> newEntries = new ArrayList<>();
+    for (PreparedEntry entry : entriesByHash.values()) {
+      if (!ledFlights.containsKey(entry.hash) || filesByHash.containsKey(entry.hash)) {
+        continue;
+      }
+      Path targetLocation;
+      try {
+        targetLocation = blobLayout.prepare(entry.hash, entry.codec);
+        blobLayout.moveIntoPlace(entry.blob, targetLocation);
+      } catch (IOException ex) {
+        logger.error("Could not store file {}. Error: {}", entry.fileName, ex.getMessage());
+        entry.error = ex.getMessage();
+        continue;
+      }
+      entry.blob = null;
+      entry.location = targetLocation;
+      entry.stored = true;
+      if (entry.codec != null) {
+        blobCompression.record(entry.codec, entry.size, entry.storedSize, entry.compressionCpuNanos);
+      }
+      newEntries.add(entry);
+    }
+    if (newEntries.isEmpty()) {
+      return filesByHash;
+    }
+
+    LocalDateTime uploadTimestamp = LocalDateTime.now();
+    try {
+      List<FileEntity> savedFiles = transactionOperations.execute(status -> {
+        List<FileEntity> saved = fileRepository.saveAll(
+            newEntries.stream().map(entry -> newFileEntity(entry, uploadTimestamp)).toList());
+        saved.forEach(this::recordNewFile);
+        return saved;
+      });
+      for (FileEntity savedEntity : savedFiles) {
+        filesByHash.put(savedEntity.getHash(), savedEntity);
+      }
+    } catch (DataIntegrityViolationException ex) {
+      logger.warn("Batch insert of {} files hit a stored hash, inserting them one by one. Error: {}",
+          newEntries.size(), ex.getMessage());
+      insertOneByOne(newEntries, uploadTimestamp, filesByHash);
+    }
+    return filesByHash;
+  }
+
+  /**
+   * Inserts new files after their batch hit the unique constraint on the hash. The files
+   * stored meanwhile are looked up first and reported as deduplicated; every other file is
+   * inserted on its own, so a conflict only affects its entry.
+   */
+  private void insertOneByOne(List<PreparedEntry> newEntries, LocalDateTime uploadTimestamp,
+                              Map<String, FileEntity> filesByHash) {
+    Map<String, FileEntity> storedFiles = findByHashes(newEntries.stream().map(entry -> entry.hash).toList());
+    for (PreparedEntry entry : newEntries) {
+      FileEntity storedEntity = storedFiles.get(entry.hash);
+      if (storedEntity == null) {
+        try {
+          FileEntity savedEntity = fileRepository.save(newFileEntity(entry, uploadTimestamp));
+          recordNewFile(savedEntity);
+          filesByHash.put(entry.hash, savedEntity);
+          continue;
+        } catch (DataIntegrityViolationException ex) {
+          storedEntity = fileRepository.findByHash(entry.hash).orElse(null);
+          if (storedEntity == null) {
+            logger.error("Could not store file {}. Error: {}", entry.fileName, ex.getMessage());
+            entry.error = "Could not store file";
+            continue;
+          }
+        }
+      }
+      logger.info("File with hash {} was stored concurrently elsewhere. Returning existing file.", entry.hash);
+      entry.stored = false;
+      storedHashFilter.add(entry.hash);
+      fileMetadataCache.put(storedEntity);
+      filesByHash.put(entry.hash, storedEntity);
+    }
+  }
+
+  private static FileEntity newFileEntity(PreparedEntry entry, LocalDateTime uploadTimestamp) {
+    FileEntity fileEntity = new FileEntity(
+        entry.fileName,
+        entry.contentType,
+        entry.size,
+        uploadTimestamp,
+        entry.location.toString(),
+        entry.hash
+    );
+    fileEntity.setStoredSize(entry.storedSize);
+    if (entry.codec != null) {
+      fileEntity.setStorageCodec(entry.codec);
+      fileEntity.setCompressionCpuNanos(entry.compressionCpuNanos);
+    }
+    return fileEntity;
+  }
+
+  private void recordNewFile(FileEntity savedEntity) {
+    storedHashFilter.add(savedEntity.getHash());
+    fileMetadataCache.putAfterCommit(savedEntity);
+    fileStoredEventPublisher.publishAfterCommit(savedEntity);
+  }
+
+  /**
+   * Finds the stored files with the given hashes whose content is still on disk, skipping
+   * the hashes that have never been stored. Records whose content is gone are removed.
+   */
+  private Map<String, FileEntity> findAvailableFiles(List<String> hashes) {
+    List<String> candidates = hashes.stream().filter(storedHashFilter::mightContain).toList();
+    Map<String, FileEntity> filesByHash = findByHashes(candidates);
+
+    List<FileEntity> missingFiles = new ArrayList<>();
+    for (String hash : candidates) {
+      FileEntity fileEntity = filesByHash.get(hash);
+      if (fileEntity == null) {
+        storedHashFilter.recordFalsePositive();
+      } else if (blobLayout.isAvailable(fileEntity)) {
+        fileMetadataCache.put(fileEntity);
+      } else {
+        logger.warn("File with hash {} exists in database but physical file is missing: {}. Removing record and creating new file.",
+            hash, fileEntity.getFilePath());
+        fileMetadataCache.invalidate(fileEntity);
+        filesByHash.remove(hash);
+        missingFiles.add(fileEntity);
+      }
+    }
+    if (!missingFiles.isEmpty()) {
+      fileRepository.deleteAllInBatch(missingFiles);
+    }
+    return filesByHash;
+  }
+
+  /**
+   * Finds the stored files with the given hashes with a few {@code IN} queries.
+   */
+  private Map<String, FileEntity> findByHashes(List<String> hashes) {
+    Map<String, FileEntity> filesByHash = new HashMap<>();
+    for (int from = 0; from < hashes.size(); from += lookupBatchSize) {
+      List<String> batch = hashes.subList(from, Math.min(from + lookupBatchSize, hashes.size()));
+      for (FileEntity fileEntity : fileRepository.findByHashIn(batch)) {
+        filesByHash.put(fileEntity.getHash(), fileEntity);
+      }
+    }
+    return filesByHash;
+  }
+
+  private static List<PreparedEntry> awaitAll(List<Future<PreparedEntry>> futures) {
+    List<PreparedEntry> entries = new ArrayList<>(futures.size());
+    boolean interrupted = false;
+    for (Future<PreparedEntry> future : futures) {
+      while (true) {
+        try {
+          entries.add(future.get());
+          break;
+        } catch (InterruptedException ex) {
+          interrupted = true;
+        } catch (ExecutionException ex) {
+          throw new IllegalStateException("Could not prepare bulk upload entry", ex.getCause());
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    return entries;
+  }
+
+  private void deleteQuietly(Path path) {
+    if (path == null) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException ex) {
+      logger.warn("Could not delete file {}. Error: {}", path, ex.getMessage());
+    }
+  }
+
+  /**
+   * Stops the hashing threads.
+   */
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Entry of a bulk upload after hashing. {@code blob} is the temp file holding the content
+   * in its stored form until it is moved into place at {@code location}.
+   */
+  private static final class PreparedEntry {
+    private final String fileName;
+    private final String contentType;
+    private final long size;
+    private String hash;
+    private Path blob;
+    private Path location;
+    private long storedSize;
+    private String codec;
+    private long compressionCpuNanos;
+    private boolean stored;
+    private String error;
+
+    PreparedEntry(String fileName, String contentType, long size) {
+      this.fileName = fileName;
+      this.contentType = contentType;
+      this.size = size;
+    }
+  }
+}
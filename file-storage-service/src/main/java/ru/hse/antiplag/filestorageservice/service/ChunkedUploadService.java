@@ -0,0 +1,82 @@
+package ru.hse.antiplag.filestorageservice.service;
+
+import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+import ru.hse.antiplag.filestorageservice.storage.ChunkManifest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Service for resumable uploads sent as a sequence of chunks.
+ */
+public interface ChunkedUploadService {
+
+  /**
+   * Starts a new upload session.
+   *
+   * @param fileName    original name of the file
+   * @param contentType MIME-type of the file
+   * @return progress of the new session, at offset 0
+   * @throws IOException if the part file could not be created
+   */
+  UploadProgress startUpload(String fileName, String contentType) throws IOException;
+
+  /**
+   * Gets the number of bytes received so far, so that an interrupted upload can be resumed.
+   *
+   * @param uploadId ID of the upload session
+   * @return Optional with the progress, or Optional.empty() if the session does not exist
+   * @throws IOException if the part file could not be read
+   */
+  Optional<UploadProgress> getProgress(UUID uploadId) throws IOException;
+
+  /**
+   * Appends the next chunk of the file. The chunk is rejected unless it starts exactly where
+   * the received bytes end. If the connection drops, the bytes received before are kept.
+   *
+   * @param uploadId ID of the upload session
+   * @param offset   position of the chunk in the file
+   * @param content  content of the chunk
+   * @return Optional with the progress, or Optional.empty() if the session does not exist
+   * @throws IOException if the chunk could not be written
+   */
+  Optional<UploadProgress> appendChunk(UUID uploadId, long offset, InputStream content) throws IOException;
+
+  /**
+   * Switches the upload to sending the file chunk by chunk: the client announces the chunks the
+   * file is made of and gets back the ones the server does not have, so only those are sent.
+   * Sending the same manifest again returns what is still missing, which is how such an upload resumes.
+   *
+   * @param uploadId ID of the upload session
+   * @param manifest chunks of the file in file order
+   * @return Optional with the missing chunks, or Optional.empty() if the session does not exist
+   * @throws IllegalArgumentException if a chunk hash or length is invalid, or bytes were already appended
+   * @throws IOException              if the stored chunks could not be checked
+   */
+  Optional<MissingChunks> submitManifest(UUID uploadId, ChunkManifest manifest) throws IOException;
+
+  /**
+   * Stores one chunk of the manifest announced for the upload. The content is checked against
+   * the hash and length of the chunk before it is stored.
+   *
+   * @param uploadId ID of the upload session
+   * @param hash     hex-encoded SHA-256 hash of the chunk
+   * @param content  content of the chunk
+   * @return true if the chunk is stored, false if the session or the chunk in its manifest does not exist
+   * @throws IllegalArgumentException if the content does not match the hash or length of the chunk
+   * @throws IOException              if the chunk could not be written
+   */
+  boolean storeChunk(UUID uploadId, String hash, InputStream content) throws IOException;
+
+  /**
+   * Completes the upload and stores the received file.
+   *
+   * @param uploadId ID of the upload session
+   * @return Optional with the stored file, or Optional.empty() if the session does not exist
+   * @throws MissingChunksException if the upload sent a manifest and some of its chunks are not stored yet
+   * @throws IOException            if the file could not be stored
+   */
+  Optional<FileEntity> completeUpload(UUID uploadId) throws IOException;
+}
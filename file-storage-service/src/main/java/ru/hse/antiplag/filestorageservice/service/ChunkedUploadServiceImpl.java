@@ -0,0 +1,272 @@
+package ru.hse.antiplag.filestorageservice.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+import ru.hse.antiplag.filestorageservice.domain.UploadSessionEntity;
+import ru.hse.antiplag.filestorageservice.repository.UploadSessionRepository;
+import ru.hse.antiplag.filestorageservice.storage.BlobLayout;
+import ru.hse.antiplag.filestorageservice.storage.ChunkManifest;
+import ru.hse.antiplag.filestorageservice.storage.ContentDefinedChunker;
+import ru.hse.antiplag.filestorageservice.utils.FileHashUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Implementation of the service for resumable chunked uploads.
+ * Received bytes are appended to a part file in the temp directory of the blob store, so the
+ * upload survives dropped connections and restarts. On completion the file is handed to
+ * {@link FileStorageService#storeChunkedFile}, which deduplicates it chunk by chunk.
+ * A client that chunks the file itself sends its manifest instead and then only the chunks that
+ * are not stored yet, so a resubmission with a few changed pages sends just those chunks.
+ */
+@Service
+@Profile("!reactive")
+public class ChunkedUploadServiceImpl implements ChunkedUploadService {
+
+  private static final Logger logger = LoggerFactory.getLogger(ChunkedUploadServiceImpl.class);
+
+  private static final int SHA256_HEX_LENGTH = 64;
+
+  private final BlobLayout blobLayout;
+  private final UploadSessionRepository uploadSessionRepository;
+  private final FileStorageService fileStorageService;
+  private final ContentDefinedChunker chunker;
+  private final int bufferSize;
+  private final Duration sessionTtl;
+
+  /**
+   * Constructor for ChunkedUploadServiceImpl.
+   *
+   * @param blobLayout              layout of the blob store, part files live in its temp directory
+   * @param uploadSessionRepository repository for working with upload sessions
+   * @param fileStorageService      service that stores completed files
+   * @param chunker                 chunker of the server, its maximum chunk size bounds client chunks
+   * @param bufferSize              size of the buffer used to write received chunks, in bytes
+   * @param sessionTtl              time after which an unfinished upload is discarded
+   */
+  @Autowired
+  public ChunkedUploadServiceImpl(
+      BlobLayout blobLayout,
+      UploadSessionRepository uploadSessionRepository,
+      FileStorageService fileStorageService,
+      ContentDefinedChunker chunker,
+      @Value("${file.upload.buffer-size:1048576}") int bufferSize,
+      @Value("${file.upload.session-ttl:PT24H}") Duration sessionTtl) {
+    this.blobLayout = blobLayout;
+    this.uploadSessionRepository = uploadSessionRepository;
+    this.fileStorageService = fileStorageService;
+    this.chunker = chunker;
+    this.bufferSize = bufferSize;
+    this.sessionTtl = sessionTtl;
+  }
+
+  @Override
+  public UploadProgress startUpload(String fileName, String contentType) throws IOException {
+    UploadSessionEntity session = uploadSessionRepository.save(
+        new UploadSessionEntity(fileName, contentType, LocalDateTime.now()));
+    Files.createFile(partFile(session.getId()));
+    logger.info("Started chunked upload {} of file {}", session.getId(), fileName);
+    return new UploadProgress(session.getId(), 0, true);
+  }
+
+  @Override
+  public Optional<UploadProgress> getProgress(UUID uploadId) throws IOException {
+    try {
+      return Optional.of(new UploadProgress(uploadId, Files.size(partFile(uploadId)), true));
+    } catch (NoSuchFileException ex) {
+      return Optional.empty();
+    }
+  }
+
+  @Override
+  public Optional<UploadProgress> appendChunk(UUID uploadId, long offset, InputStream content) throws IOException {
+    FileChannel channel;
+    try {
+      channel = FileChannel.open(partFile(uploadId), StandardOpenOption.WRITE);
+    } catch (NoSuchFileException ex) {
+      return Optional.empty();
+    }
+    try (channel) {
+      FileLock lock = tryLock(channel);
+      if (lock == null) {
+        logger.warn("Rejected chunk of upload {}: another chunk is being written", uploadId);
+        return Optional.of(new UploadProgress(uploadId, channel.size(), false));
+      }
+      try {
+        long size = channel.size();
+        if (size != offset) {
+          return Optional.of(new UploadProgress(uploadId, size, false));
+        }
+        channel.position(size);
+        byte[] buffer = new byte[bufferSize];
+        int read;
+        while ((read = content.read(buffer)) != -1) {
+          ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+          while (byteBuffer.hasRemaining()) {
+            channel.write(byteBuffer);
+          }
+        }
+        return Optional.of(new UploadProgress(uploadId, channel.size(), true));
+      } finally {
+        lock.release();
+      }
+    }
+  }
+
+  @Override
+  public Optional<MissingChunks> submitManifest(UUID uploadId, ChunkManifest manifest) throws IOException {
+    Optional<UploadSessionEntity> sessionOptional = uploadSessionRepository.findById(uploadId);
+    Path partFile = partFile(uploadId);
+    if (sessionOptional.isEmpty() || !Files.exists(partFile)) {
+      return Optional.empty();
+    }
+    if (Files.size(partFile) > 0) {
+      throw new IllegalArgumentException("Upload " + uploadId + " already received bytes");
+    }
+    for (ChunkManifest.Chunk chunk : manifest.getChunks()) {
+      if (chunk.getHash() == null || chunk.getHash().length() != SHA256_HEX_LENGTH
+          || !blobLayout.isAddressable(chunk.getHash())) {
+        throw new IllegalArgumentException("Invalid chunk hash: " + chunk.getHash());
+      }
+      if (chunk.getLength() <= 0 || chunk.getLength() > chunker.getMaxSize()) {
+        throw new IllegalArgumentException("Chunk length must be between 1 and " + chunker.getMaxSize()
+            + " bytes: " + chunk.getLength());
+      }
+    }
+    UploadSessionEntity session = sessionOptional.get();
+    byte[] manifestBytes = manifest.toBytes();
+    if (!Arrays.equals(manifestBytes, session.getChunkManifest())) {
+      session.setChunkManifest(manifestBytes);
+      uploadSessionRepository.save(session);
+    }
+
+    List<String> missingChunks = new ArrayList<>();
+    Set<String> seen = new HashSet<>();
+    for (ChunkManifest.Chunk chunk : ChunkManifest.fromBytes(manifestBytes).getChunks()) {
+      if (seen.add(chunk.getHash()) && !Files.exists(blobLayout.resolveChunk(chunk.getHash()))) {
+        missingChunks.add(chunk.getHash());
+      }
+    }
+    logger.info("Chunked upload {} announced {} chunks, {} of them missing", uploadId, manifest.getChunks().size(),
+        missingChunks.size());
+    return Optional.of(new MissingChunks(uploadId, missingChunks));
+  }
+
+  @Override
+  public boolean storeChunk(UUID uploadId, String hash, InputStream content) throws IOException {
+    Optional<UploadSessionEntity> sessionOptional = uploadSessionRepository.findById(uploadId);
+    if (sessionOptional.isEmpty() || sessionOptional.get().getChunkManifest() == null) {
+      return false;
+    }
+    String chunkHash = hash.toLowerCase(Locale.ROOT);
+    Optional<ChunkManifest.Chunk> chunkOptional = ChunkManifest.fromBytes(sessionOptional.get().getChunkManifest())
+        .getChunks().stream()
+        .filter(chunk -> chunk.getHash().equals(chunkHash))
+        .findFirst();
+    if (chunkOptional.isEmpty()) {
+      return false;
+    }
+    Path target = blobLayout.resolveChunk(chunkHash);
+    if (Files.exists(target)) {
+      return true;
+    }
+
+    int length = chunkOptional.get().getLength();
+    Path tempFile = blobLayout.createTempFile("chunk-");
+    try {
+      MessageDigest chunkDigest = FileHashUtil.newSha256Digest();
+      long received = 0;
+      try (OutputStream outputStream = Files.newOutputStream(tempFile)) {
+        byte[] buffer = new byte[Math.min(bufferSize, length + 1)];
+        int read;
+        while (received <= length
+            && (read = content.read(buffer, 0, (int) Math.min(buffer.length, length + 1L - received))) != -1) {
+          chunkDigest.update(buffer, 0, read);
+          outputStream.write(buffer, 0, read);
+          received += read;
+        }
+      }
+      if (received != length || !FileHashUtil.toHex(chunkDigest.digest()).equals(chunkHash)) {
+        throw new IllegalArgumentException("Chunk content does not match hash " + chunkHash + " and length " + length);
+      }
+      Files.createDirectories(target.getParent());
+      blobLayout.moveIntoPlace(tempFile, target);
+      return true;
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  @Override
+  public Optional<FileEntity> completeUpload(UUID uploadId) throws IOException {
+    Optional<UploadSessionEntity> sessionOptional = uploadSessionRepository.findById(uploadId);
+    Path partFile = partFile(uploadId);
+    if (sessionOptional.isEmpty() || !Files.exists(partFile)) {
+      return Optional.empty();
+    }
+    UploadSessionEntity session = sessionOptional.get();
+    FileEntity storedFile = session.getChunkManifest() == null
+        ? fileStorageService.storeChunkedFile(session.getFileName(), session.getContentType(), partFile)
+        : fileStorageService.storeChunkedFile(session.getFileName(), session.getContentType(),
+            ChunkManifest.fromBytes(session.getChunkManifest()));
+    uploadSessionRepository.delete(session);
+    Files.deleteIfExists(partFile);
+    logger.info("Completed chunked upload {} as file {}", uploadId, storedFile.getId());
+    return Optional.of(storedFile);
+  }
+
+  /**
+   * Discards uploads that were not completed within the session TTL.
+   */
+  @Scheduled(fixedDelayString = "${file.upload.session-cleanup-interval:PT1H}")
+  public void deleteExpiredSessions() {
+    for (UploadSessionEntity session : uploadSessionRepository.findByCreatedAtBefore(LocalDateTime.now().minus(sessionTtl))) {
+      try {
+        Files.deleteIfExists(partFile(session.getId()));
+        uploadSessionRepository.delete(session);
+        logger.info("Discarded expired chunked upload {}", session.getId());
+      } catch (IOException ex) {
+        logger.warn("Could not discard expired chunked upload {}. Error: {}", session.getId(), ex.getMessage());
+      }
+    }
+  }
+
+  private Path partFile(UUID uploadId) {
+    return blobLayout.getTempDirectory().resolve("session-" + uploadId + ".part");
+  }
+
+  private static FileLock tryLock(FileChannel channel) throws IOException {
+    try {
+      return channel.tryLock();
+    } catch (OverlappingFileLockException ex) {
+      return null;
+    }
+  }
+}
@@ -3,8 +3,10 @@ package ru.hse.antiplag.filestorageservice.service;
 import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+import ru.hse.antiplag.filestorageservice.storage.ChunkManifest;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -22,6 +24,31 @@ public interface FileStorageService {
    */
   FileEntity storeFile(MultipartFile file) throws IOException;
 
+  /**
+   * Saves a fully received file as a list of content-defined chunks, storing only the chunks
+   * that are not stored yet. A file with the same content hash is returned instead if it exists.
+   *
+   * @param fileName    original name of the file
+   * @param contentType MIME-type of the file
+   * @param content     fully received content of the file; it is only read
+   * @return saved FileEntity entity
+   * @throws IOException if an error occurs while saving the chunks to disk
+   */
+  FileEntity storeChunkedFile(String fileName, String contentType, Path content) throws IOException;
+
+  /**
+   * Saves a file whose chunks the client sent one by one, so nothing but the chunk list is received
+   * here. A file with the same content hash is returned instead if it exists.
+   *
+   * @param fileName    original name of the file
+   * @param contentType MIME-type of the file
+   * @param manifest    chunks of the file in file order
+   * @return saved FileEntity entity
+   * @throws MissingChunksException if some of the chunks are not stored
+   * @throws IOException            if the chunks could not be read
+   */
+  FileEntity storeChunkedFile(String fileName, String contentType, ChunkManifest manifest) throws IOException;
+
   /**
    * Finds the metadata of a file by its ID.
    *
@@ -37,4 +64,13 @@ public interface FileStorageService {
    * @return Optional with Resource if found and accessible, otherwise Optional.empty()
    */
   Optional<Resource> loadFileAsResource(UUID fileId);
+
+  /**
+   * Loads the blob of the file as it is stored, which is compressed with
+   * {@link FileEntity#getStorageCodec()} if that is set.
+   *
+   * @param fileId ID of the file
+   * @return Optional with Resource if found and accessible, otherwise Optional.empty()
+   */
+  Optional<Resource> loadStoredResource(UUID fileId);
 }
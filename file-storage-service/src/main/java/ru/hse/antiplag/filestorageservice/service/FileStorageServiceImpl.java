@@ -4,93 +4,149 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
+import ru.hse.antiplag.filestorageservice.cache.FileMetadataCache;
+import ru.hse.antiplag.filestorageservice.cache.StoredHashFilter;
 import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+import ru.hse.antiplag.filestorageservice.events.FileStoredEventPublisher;
 import ru.hse.antiplag.filestorageservice.repository.FileRepository;
+import ru.hse.antiplag.filestorageservice.storage.BlobCompression;
+import ru.hse.antiplag.filestorageservice.storage.BlobLayout;
+import ru.hse.antiplag.filestorageservice.storage.ChunkManifest;
+import ru.hse.antiplag.filestorageservice.storage.ChunkedBlobResource;
+import ru.hse.antiplag.filestorageservice.storage.CompressedBlobResource;
+import ru.hse.antiplag.filestorageservice.storage.ContentDefinedChunker;
 import ru.hse.antiplag.filestorageservice.utils.FileHashUtil;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 /**
  * Implementation of the service for managing file storage.
  */
 @Service
+@Profile("!reactive")
 public class FileStorageServiceImpl implements FileStorageService {
 
   private static final Logger logger = LoggerFactory.getLogger(FileStorageServiceImpl.class);
 
-  private final Path fileStorageLocation;
+  private final BlobLayout blobLayout;
+  private final int bufferSize;
   private final FileRepository fileRepository;
+  private final FileMetadataCache fileMetadataCache;
+  private final StoredHashFilter storedHashFilter;
+  private final ContentDefinedChunker chunker;
+  private final BlobCompression blobCompression;
+  private final InFlightUploads inFlightUploads;
+  private final FileStoredEventPublisher fileStoredEventPublisher;
 
   /**
    * Constructor for FileStorageServiceImpl.
    *
-   * @param uploadDir      path to the directory for uploading files (from application.properties)
-   * @param fileRepository repository for working with file metadata
-   * @throws IOException if the directory for storing files could not be created
+   * @param blobLayout               content-addressed layout of the stored blobs
+   * @param bufferSize               size of the buffer used to stream uploads to disk, in bytes
+   * @param fileRepository           repository for working with file metadata
+   * @param fileMetadataCache        in-memory cache of file metadata
+   * @param storedHashFilter         filter over the hashes of all stored files
+   * @param chunker                  splits chunked uploads into content-defined chunks
+   * @param blobCompression          codecs for compressing blobs at rest
+   * @param inFlightUploads          coordination of concurrent uploads of the same content
+   * @param fileStoredEventPublisher publishes the events of new files
    */
   @Autowired
-  public FileStorageServiceImpl(@Value("${file.upload-dir}") String uploadDir, FileRepository fileRepository) throws IOException {
-    this.fileStorageLocation = Paths.get(uploadDir).toAbsolutePath().normalize();
+  public FileStorageServiceImpl(
+      BlobLayout blobLayout,
+      @Value("${file.upload.buffer-size:1048576}") int bufferSize,
+      FileRepository fileRepository,
+      FileMetadataCache fileMetadataCache,
+      StoredHashFilter storedHashFilter,
+      ContentDefinedChunker chunker,
+      BlobCompression blobCompression,
+      InFlightUploads inFlightUploads,
+      FileStoredEventPublisher fileStoredEventPublisher) {
+    this.blobLayout = blobLayout;
+    this.bufferSize = bufferSize;
     this.fileRepository = fileRepository;
-    Files.createDirectories(this.fileStorageLocation);
-    logger.info("File storage location initialized at: {}", this.fileStorageLocation);
+    this.fileMetadataCache = fileMetadataCache;
+    this.storedHashFilter = storedHashFilter;
+    this.chunker = chunker;
+    this.blobCompression = blobCompression;
+    this.inFlightUploads = inFlightUploads;
+    this.fileStoredEventPublisher = fileStoredEventPublisher;
   }
 
+  /**
+   * {@inheritDoc}
+   * Not transactional on purpose: the insert commits on its own, so a file inserted meanwhile by
+   * another node can still be read after the unique violation.
+   */
   @Override
-  @Transactional
   public FileEntity storeFile(MultipartFile file) throws IOException {
     String originalFileName = StringUtils.cleanPath(Objects.requireNonNull(file.getOriginalFilename()));
 
+    String codec = blobCompression.codecFor(file.getContentType(), file.getSize());
+    Path tempFile = blobLayout.createTempFile("upload-");
     String hash;
-    try (InputStream inputStream = file.getInputStream()) {
-      hash = FileHashUtil.calculateSHA256(inputStream);
-    } catch (Exception e) {
-      logger.error("Error calculating hash for file {}. Error: {}", originalFileName, e.getMessage());
-      throw new IOException("Error calculating hash for file " + originalFileName + ". Please try again!", e);
-    }
-
-    Optional<FileEntity> existingFile = fileRepository.findByHash(hash);
-    if (existingFile.isPresent()) {
-      FileEntity existingEntity = existingFile.get();
-      Path existingFilePath = Paths.get(existingEntity.getFilePath());
-      
-      if (Files.exists(existingFilePath) && Files.isReadable(existingFilePath)) {
-        logger.info("File with hash {} already exists and is accessible. Returning existing file.", hash);
-        return existingEntity;
+    long compressionCpuNanos = 0;
+    try (InputStream inputStream = file.getInputStream();
+         OutputStream outputStream = Files.newOutputStream(tempFile)) {
+      if (codec == null) {
+        hash = FileHashUtil.copyAndHash(inputStream, outputStream, bufferSize);
       } else {
-        logger.warn("File with hash {} exists in database but physical file is missing: {}. Removing record and creating new file.", 
-                   hash, existingFilePath);
-        fileRepository.delete(existingEntity);
-        fileRepository.flush();
+        BlobCompression.CompressingOutputStream compressingStream = blobCompression.compress(codec, outputStream);
+        try (compressingStream) {
+          hash = FileHashUtil.copyAndHash(inputStream, compressingStream, bufferSize);
+        }
+        compressionCpuNanos = compressingStream.getCpuNanos();
       }
+    } catch (IOException ex) {
+      deleteQuietly(tempFile);
+      logger.error("Could not store file {}. Error: {}", originalFileName, ex.getMessage());
+      throw new IOException("Could not store file " + originalFileName + ". Please try again!", ex);
     }
 
-    String fileExtension = "";
-    int i = originalFileName.lastIndexOf('.');
-    if (i > 0) {
-      fileExtension = originalFileName.substring(i);
+    String contentHash = hash;
+    long cpuNanos = compressionCpuNanos;
+    try {
+      return storeOnce(hash, () -> saveBlob(file, originalFileName, contentHash, tempFile, codec, cpuNanos));
+    } finally {
+      deleteQuietly(tempFile);
     }
-    String storedFileName = UUID.randomUUID().toString() + fileExtension;
-    Path targetLocation = this.fileStorageLocation.resolve(storedFileName);
+  }
 
+  /**
+   * Moves a new blob into place and saves its metadata.
+   */
+  private FileEntity saveBlob(MultipartFile file, String originalFileName, String hash, Path tempFile,
+                              String codec, long compressionCpuNanos) throws IOException {
+    Path targetLocation;
+    long storedSize;
     try {
-      Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
+      storedSize = Files.size(tempFile);
+      targetLocation = blobLayout.prepare(hash, codec);
+      blobLayout.moveIntoPlace(tempFile, targetLocation);
       logger.info("Stored file {} at location {}", originalFileName, targetLocation);
     } catch (IOException ex) {
       logger.error("Could not store file {}. Error: {}", originalFileName, ex.getMessage());
@@ -105,35 +161,297 @@ public class FileStorageServiceImpl implements FileStorageService {
         targetLocation.toString(),
         hash
     );
-    return fileRepository.save(fileEntity);
+    fileEntity.setStoredSize(storedSize);
+    if (codec != null) {
+      fileEntity.setStorageCodec(codec);
+      fileEntity.setCompressionCpuNanos(compressionCpuNanos);
+      blobCompression.record(codec, file.getSize(), storedSize, compressionCpuNanos);
+      logger.info("Compressed file {} with {}: {} -> {} bytes in {} us of CPU time", originalFileName, codec,
+          file.getSize(), storedSize, compressionCpuNanos / 1000);
+    }
+    FileEntity savedEntity;
+    try {
+      savedEntity = fileRepository.save(fileEntity);
+    } catch (DataIntegrityViolationException ex) {
+      return findConcurrentlyStoredFile(hash, ex);
+    }
+    storedHashFilter.add(hash);
+    fileMetadataCache.putAfterCommit(savedEntity);
+    fileStoredEventPublisher.publishAfterCommit(savedEntity);
+    return savedEntity;
+  }
+
+  /**
+   * {@inheritDoc}
+   * Not transactional for the same reason as {@link #storeFile}.
+   */
+  @Override
+  public FileEntity storeChunkedFile(String fileName, String contentType, Path content) throws IOException {
+    String originalFileName = StringUtils.cleanPath(Objects.requireNonNull(fileName));
+
+    MessageDigest contentDigest = FileHashUtil.newSha256Digest();
+    ChunkManifest manifest;
+    try (InputStream inputStream = Files.newInputStream(content)) {
+      manifest = new ChunkManifest(chunker.split(inputStream, contentDigest));
+    }
+    String hash = FileHashUtil.toHex(contentDigest.digest());
+
+    return storeOnce(hash, () -> saveChunks(originalFileName, contentType, hash, content, manifest));
+  }
+
+  /**
+   * Writes the missing chunks of a new chunked file and saves its metadata.
+   */
+  private FileEntity saveChunks(String originalFileName, String contentType, String hash, Path content,
+                                ChunkManifest manifest) throws IOException {
+    int writtenChunks;
+    try {
+      writtenChunks = writeMissingChunks(content, manifest);
+    } catch (IOException ex) {
+      logger.error("Could not store file {}. Error: {}", originalFileName, ex.getMessage());
+      throw new IOException("Could not store file " + originalFileName + ". Please try again!", ex);
+    }
+    logger.info("Stored file {} as {} chunks, {} of them new", originalFileName, manifest.getChunks().size(), writtenChunks);
+    return saveChunkedEntity(originalFileName, contentType, hash, manifest);
+  }
+
+  /**
+   * {@inheritDoc}
+   * The content hash is computed from the stored chunks, which were verified against their
+   * hashes when they were written. Not transactional for the same reason as {@link #storeFile}.
+   */
+  @Override
+  public FileEntity storeChunkedFile(String fileName, String contentType, ChunkManifest manifest) throws IOException {
+    String originalFileName = StringUtils.cleanPath(Objects.requireNonNull(fileName));
+
+    MessageDigest contentDigest = FileHashUtil.newSha256Digest();
+    List<String> missingChunks = new ArrayList<>();
+    byte[] buffer = new byte[bufferSize];
+    for (ChunkManifest.Chunk chunk : manifest.getChunks()) {
+      try (InputStream inputStream = Files.newInputStream(blobLayout.resolveChunk(chunk.getHash()))) {
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+          contentDigest.update(buffer, 0, read);
+        }
+      } catch (NoSuchFileException ex) {
+        missingChunks.add(chunk.getHash());
+      }
+    }
+    if (!missingChunks.isEmpty()) {
+      throw new MissingChunksException(missingChunks);
+    }
+    String hash = FileHashUtil.toHex(contentDigest.digest());
+
+    return storeOnce(hash, () -> saveChunkedEntity(originalFileName, contentType, hash, manifest));
+  }
+
+  /**
+   * Saves the metadata of a new chunked file whose chunks are all stored.
+   */
+  private FileEntity saveChunkedEntity(String originalFileName, String contentType, String hash,
+                                       ChunkManifest manifest) {
+    FileEntity fileEntity = new FileEntity(
+        originalFileName,
+        contentType,
+        manifest.getTotalSize(),
+        LocalDateTime.now(),
+        blobLayout.getChunkRoot().toString(),
+        hash
+    );
+    fileEntity.setStoredSize(manifest.getTotalSize());
+    fileEntity.setChunkManifest(manifest.toBytes());
+    FileEntity savedEntity;
+    try {
+      savedEntity = fileRepository.save(fileEntity);
+    } catch (DataIntegrityViolationException ex) {
+      return findConcurrentlyStoredFile(hash, ex);
+    }
+    storedHashFilter.add(hash);
+    fileMetadataCache.putAfterCommit(savedEntity);
+    fileStoredEventPublisher.publishAfterCommit(savedEntity);
+    return savedEntity;
+  }
+
+  /**
+   * Returns the file with the given hash that another node or a restore inserted after the
+   * lookup missed it, for example because the hash filter of this node had not seen it yet.
+   * Blobs are never replaced and their location includes the codec, so the blob the existing
+   * record points to is still the one it wrote, whatever this upload left next to it.
+   */
+  private FileEntity findConcurrentlyStoredFile(String hash, DataIntegrityViolationException ex) {
+    FileEntity existingEntity = fileRepository.findByHash(hash).orElseThrow(() -> ex);
+    logger.info("File with hash {} was stored concurrently elsewhere. Returning existing file.", hash);
+    storedHashFilter.add(hash);
+    return existingEntity;
+  }
+
+  /**
+   * Returns the file with the given hash, storing it with {@code writer} if there is none yet.
+   * Concurrent uploads of the same content on this node wait for the first one and share
+   * its file, so the content is written and inserted once.
+   */
+  private FileEntity storeOnce(String hash, NewFileWriter writer) throws IOException {
+    while (true) {
+      InFlightUploads.Flight flight = inFlightUploads.claim(hash);
+      if (!flight.isLeader()) {
+        Optional<FileEntity> sharedFile = flight.await();
+        if (sharedFile.isPresent()) {
+          logger.info("File with hash {} was stored by a concurrent upload. Returning it.", hash);
+          return sharedFile.get();
+        }
+        continue;
+      }
+      try {
+        Optional<FileEntity> existingFile = findAvailableFile(hash);
+        FileEntity fileEntity = existingFile.isPresent() ? existingFile.get() : writer.write();
+        flight.succeed(fileEntity);
+        return fileEntity;
+      } catch (IOException | RuntimeException ex) {
+        flight.abandon();
+        throw ex;
+      }
+    }
   }
 
+  /**
+   * Copies the chunks that are not stored yet out of the received content.
+   * Chunks are content-addressed, so an existing chunk never has to be written again.
+   *
+   * @return number of chunks written
+   */
+  private int writeMissingChunks(Path content, ChunkManifest manifest) throws IOException {
+    int writtenChunks = 0;
+    Set<String> seen = new HashSet<>();
+    try (FileChannel source = FileChannel.open(content, StandardOpenOption.READ)) {
+      for (ChunkManifest.Chunk chunk : manifest.getChunks()) {
+        Path target = blobLayout.resolveChunk(chunk.getHash());
+        if (!seen.add(chunk.getHash()) || Files.exists(target)) {
+          continue;
+        }
+        Path tempFile = blobLayout.createTempFile("chunk-");
+        try (FileChannel chunkChannel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+          long position = chunk.getOffset();
+          long end = position + chunk.getLength();
+          while (position < end) {
+            long transferred = source.transferTo(position, end - position, chunkChannel);
+            if (transferred <= 0) {
+              throw new IOException("Content ended before chunk " + chunk.getHash());
+            }
+            position += transferred;
+          }
+          Files.createDirectories(target.getParent());
+          blobLayout.moveIntoPlace(tempFile, target);
+        } catch (IOException ex) {
+          deleteQuietly(tempFile);
+          throw ex;
+        }
+        writtenChunks++;
+      }
+    }
+    return writtenChunks;
+  }
+
+  /**
+   * Finds an existing file with the given hash whose content is still on disk.
+   * A record whose content is gone is removed so the upload can replace it.
+   */
+  private Optional<FileEntity> findAvailableFile(String hash) {
+    Optional<FileEntity> existingFile = findExistingFile(hash);
+    if (existingFile.isEmpty()) {
+      return Optional.empty();
+    }
+    FileEntity existingEntity = existingFile.get();
+    if (blobLayout.isAvailable(existingEntity)) {
+      logger.info("File with hash {} already exists and is accessible. Returning existing file.", hash);
+      return existingFile;
+    }
+    logger.warn("File with hash {} exists in database but physical file is missing: {}. Removing record and creating new file.",
+               hash, existingEntity.getFilePath());
+    fileMetadataCache.invalidate(existingEntity);
+    fileRepository.delete(existingEntity);
+    fileRepository.flush();
+    return Optional.empty();
+  }
+
+  /**
+   * Finds the file with the given hash, skipping the lookup if the hash has never been stored.
+   */
+  private Optional<FileEntity> findExistingFile(String hash) {
+    if (!storedHashFilter.mightContain(hash)) {
+      return Optional.empty();
+    }
+    Optional<FileEntity> existingFile = fileMetadataCache.getByHash(hash, fileRepository::findByHash);
+    if (existingFile.isEmpty()) {
+      storedHashFilter.recordFalsePositive();
+    }
+    return existingFile;
+  }
+
+  private void deleteQuietly(Path path) {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException ex) {
+      logger.warn("Could not delete file {}. Error: {}", path, ex.getMessage());
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * Not transactional on purpose: a cache hit must not borrow a database connection.
+   */
   @Override
-  @Transactional(readOnly = true)
   public Optional<FileEntity> getFileMetadata(UUID fileId) {
-    return fileRepository.findById(fileId);
+    return fileMetadataCache.getById(fileId, fileRepository::findById);
   }
 
+  /**
+   * {@inheritDoc}
+   * Chunked files are reassembled while they are read, so a missing chunk is only noticed then.
+   * Compressed blobs are decompressed while they are read.
+   */
   @Override
-  @Transactional(readOnly = true)
   public Optional<Resource> loadFileAsResource(UUID fileId) {
-    Optional<FileEntity> fileEntityOptional = fileRepository.findById(fileId);
+    return loadResource(fileId, true);
+  }
+
+  @Override
+  public Optional<Resource> loadStoredResource(UUID fileId) {
+    return loadResource(fileId, false);
+  }
+
+  private Optional<Resource> loadResource(UUID fileId, boolean decode) {
+    Optional<FileEntity> fileEntityOptional = getFileMetadata(fileId);
     if (fileEntityOptional.isEmpty()) {
       return Optional.empty();
     }
+    FileEntity fileEntity = fileEntityOptional.get();
+    if (fileEntity.getChunkManifest() != null) {
+      return Optional.of(new ChunkedBlobResource(blobLayout, ChunkManifest.fromBytes(fileEntity.getChunkManifest()),
+          fileEntity.getFileName()));
+    }
 
+    Optional<Path> filePath = blobLayout.locate(fileEntity);
+    if (filePath.isEmpty()) {
+      logger.warn("Could not read file: {}", fileEntity.getFilePath());
+      return Optional.empty();
+    }
+    if (decode && fileEntity.getStorageCodec() != null) {
+      return Optional.of(new CompressedBlobResource(blobCompression, fileEntity.getStorageCodec(), filePath.get(),
+          fileEntity.getSize()));
+    }
     try {
-      Path filePath = Paths.get(fileEntityOptional.get().getFilePath()).normalize();
-      Resource resource = new UrlResource(filePath.toUri());
-      if (resource.exists() && resource.isReadable()) {
-        return Optional.of(resource);
-      } else {
-        logger.warn("Could not read file: {}", filePath);
-        return Optional.empty();
-      }
+      return Optional.of(new UrlResource(filePath.get().toUri()));
     } catch (MalformedURLException ex) {
-      logger.error("Error creating URL for file path: {}. Error: {}", fileEntityOptional.get().getFilePath(), ex.getMessage());
+      logger.error("Error creating URL for file path: {}. Error: {}", filePath.get(), ex.getMessage());
       return Optional.empty();
     }
   }
+
+  /**
+   * Stores the content of a new file and saves its metadata.
+   */
+  @FunctionalInterface
+  private interface NewFileWriter {
+    FileEntity write() throws IOException;
+  }
 }
@@ -0,0 +1,151 @@
+package ru.hse.antiplag.filestorageservice.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-flight coordination of uploads with the same content hash on this node.
+ * The first upload of a hash becomes the leader and stores the file; uploads of the same hash
+ * that arrive while it is in flight wait for it and get the same file instead of writing
+ * another copy and failing on the unique hash constraint. A flight ends when the transaction
+ * of the leader completes, so followers only see files that are committed. If the leader
+ * fails, its followers are released and one of them takes over.
+ */
+@Component
+public class InFlightUploads implements MeterBinder {
+
+  private final ConcurrentMap<String, CompletableFuture<Optional<FileEntity>>> flights = new ConcurrentHashMap<>();
+  private final Duration waitTimeout;
+  private final AtomicLong sharedUploads = new AtomicLong();
+
+  /**
+   * Constructor for InFlightUploads.
+   *
+   * @param waitTimeout how long an upload waits for a concurrent upload of the same content
+   */
+  public InFlightUploads(@Value("${file.upload.single-flight-timeout:PT1M}") Duration waitTimeout) {
+    this.waitTimeout = waitTimeout;
+  }
+
+  /**
+   * Joins the flight of the given hash, starting it if there is none.
+   *
+   * @param hash content hash of the upload
+   * @return the flight, led by the caller if {@link Flight#isLeader()} is true
+   */
+  public Flight claim(String hash) {
+    CompletableFuture<Optional<FileEntity>> future = new CompletableFuture<>();
+    CompletableFuture<Optional<FileEntity>> existing = flights.putIfAbsent(hash, future);
+    return existing == null ? new Flight(hash, future, true) : new Flight(hash, existing, false);
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("file.upload.in.flight", flights, ConcurrentMap::size)
+        .description("Distinct content hashes being stored right now")
+        .register(registry);
+    FunctionCounter.builder("file.upload.single.flight.shared", sharedUploads, AtomicLong::get)
+        .description("Uploads that got the file stored by a concurrent upload of the same content")
+        .register(registry);
+  }
+
+  /**
+   * Upload of one content hash, seen by its leader or by one of its followers.
+   */
+  public final class Flight {
+    private final String hash;
+    private final CompletableFuture<Optional<FileEntity>> future;
+    private final boolean leader;
+
+    private Flight(String hash, CompletableFuture<Optional<FileEntity>> future, boolean leader) {
+      this.hash = hash;
+      this.future = future;
+      this.leader = leader;
+    }
+
+    /**
+     * Checks whether the caller leads the flight and has to store the file.
+     *
+     * @return true for the leader
+     */
+    public boolean isLeader() {
+      return leader;
+    }
+
+    /**
+     * Ends the flight with the stored file once the current transaction commits, or
+     * releases the followers if it rolls back. Without a transaction the flight ends at once.
+     * Only the leader may call this.
+     *
+     * @param fileEntity file holding the content
+     */
+    public void succeed(FileEntity fileEntity) {
+      if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+        finish(Optional.of(fileEntity));
+        return;
+      }
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCompletion(int status) {
+          finish(status == STATUS_COMMITTED ? Optional.of(fileEntity) : Optional.empty());
+        }
+      });
+    }
+
+    /**
+     * Ends the flight without a file, so that a follower takes over. Only the leader may call this.
+     */
+    public void abandon() {
+      finish(Optional.empty());
+    }
+
+    /**
+     * Waits for the leader to finish.
+     *
+     * @return the file stored by the leader, or Optional.empty() if the leader failed
+     * @throws IOException if the leader did not finish in time or the wait was interrupted
+     */
+    public Optional<FileEntity> await() throws IOException {
+      try {
+        Optional<FileEntity> result = future.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        if (result.isPresent()) {
+          sharedUploads.incrementAndGet();
+        }
+        return result;
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for a concurrent upload of file " + hash);
+      } catch (TimeoutException ex) {
+        throw new IOException("Timed out waiting for a concurrent upload of file " + hash, ex);
+      } catch (ExecutionException ex) {
+        return Optional.empty();
+      }
+    }
+
+    private void finish(Optional<FileEntity> result) {
+      if (leader) {
+        flights.remove(hash, future);
+        future.complete(result);
+      }
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package ru.hse.antiplag.filestorageservice.service;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Chunks of a chunk manifest upload that the server does not have yet, so the client has to send them.
+ */
+public class MissingChunks {
+  private final UUID uploadId;
+  private final List<String> hashes;
+
+  /**
+   * Creates a new instance of MissingChunks.
+   *
+   * @param uploadId ID of the upload session
+   * @param hashes   hex-encoded SHA-256 hashes of the missing chunks, in file order
+   */
+  public MissingChunks(UUID uploadId, List<String> hashes) {
+    this.uploadId = uploadId;
+    this.hashes = hashes;
+  }
+
+  public UUID getUploadId() {
+    return uploadId;
+  }
+
+  public List<String> getHashes() {
+    return hashes;
+  }
+}
@@ -0,0 +1,27 @@
+package ru.hse.antiplag.filestorageservice.service;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Thrown when a file is committed as a chunk manifest but some of its chunks are not stored.
+ * Nothing is stored then; the client sends the missing chunks and commits again.
+ */
+public class MissingChunksException extends IOException {
+
+  private final List<String> hashes;
+
+  /**
+   * Creates a new instance of MissingChunksException.
+   *
+   * @param hashes hex-encoded SHA-256 hashes of the missing chunks
+   */
+  public MissingChunksException(List<String> hashes) {
+    super(hashes.size() + " chunks are missing");
+    this.hashes = hashes;
+  }
+
+  public List<String> getHashes() {
+    return hashes;
+  }
+}
@@ -0,0 +1,42 @@
+package ru.hse.antiplag.filestorageservice.service;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Non-blocking variant of {@link FileStorageService}, used by the reactive stack.
+ */
+public interface ReactiveFileStorageService {
+
+  /**
+   * Saves an uploaded file and its metadata. The content is consumed as it arrives.
+   *
+   * @param fileName    original name of the file
+   * @param contentType MIME-type of the file
+   * @param content     content of the file
+   * @return the saved file, or an existing file with the same content; empty if the content is empty
+   */
+  Mono<FileEntity> storeFile(String fileName, String contentType, Flux<DataBuffer> content);
+
+  /**
+   * Finds the metadata of a file by its ID.
+   *
+   * @param fileId ID of the file
+   * @return the file, or an empty Mono if there is none
+   */
+  Mono<FileEntity> getFileMetadata(UUID fileId);
+
+  /**
+   * Streams the content of a file.
+   *
+   * @param fileEntity metadata of the file
+   * @param decode     whether a blob compressed at rest is decompressed, or sent as it is stored
+   * @return Optional with the content, or Optional.empty() if the blob is missing
+   */
+  Optional<Flux<DataBuffer>> readFile(FileEntity fileEntity, boolean decode);
+}
@@ -0,0 +1,217 @@
+package ru.hse.antiplag.filestorageservice.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+import ru.hse.antiplag.filestorageservice.events.FileStoredEventPublisher;
+import ru.hse.antiplag.filestorageservice.repository.ReactiveFileRepository;
+import ru.hse.antiplag.filestorageservice.storage.BlobCompression;
+import ru.hse.antiplag.filestorageservice.storage.BlobLayout;
+import ru.hse.antiplag.filestorageservice.storage.ChunkManifest;
+import ru.hse.antiplag.filestorageservice.utils.FileHashUtil;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Implementation of the non-blocking file storage service.
+ * Uploads are hashed buffer by buffer as they arrive and written with an
+ * {@link java.nio.channels.AsynchronousFileChannel}, downloads are read the same way, and
+ * metadata goes through R2DBC, so a slow client never holds a thread. The few short file
+ * system calls that have no asynchronous form (moving a blob into place, checking that it
+ * exists) and decompression run on the bounded elastic scheduler.
+ * Two uploads of the same content racing on different requests are resolved by the unique
+ * hash constraint: the loser returns the file of the winner.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveFileStorageServiceImpl implements ReactiveFileStorageService {
+
+  private static final Logger logger = LoggerFactory.getLogger(ReactiveFileStorageServiceImpl.class);
+
+  private final BlobLayout blobLayout;
+  private final ReactiveFileRepository fileRepository;
+  private final BlobCompression blobCompression;
+  private final int readBufferSize;
+  private final FileStoredEventPublisher fileStoredEventPublisher;
+  private final DataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+
+  /**
+   * Constructor for ReactiveFileStorageServiceImpl.
+   *
+   * @param blobLayout               content-addressed layout of the stored blobs
+   * @param fileRepository           non-blocking repository for file metadata
+   * @param blobCompression          codecs of blobs compressed at rest
+   * @param readBufferSize           size of the buffers downloads are read into, in bytes
+   * @param fileStoredEventPublisher publishes the events of new files
+   */
+  public ReactiveFileStorageServiceImpl(
+      BlobLayout blobLayout,
+      ReactiveFileRepository fileRepository,
+      BlobCompression blobCompression,
+      @Value("${file.reactive.read-buffer-size:65536}") int readBufferSize,
+      FileStoredEventPublisher fileStoredEventPublisher) {
+    this.blobLayout = blobLayout;
+    this.fileRepository = fileRepository;
+    this.blobCompression = blobCompression;
+    this.readBufferSize = readBufferSize;
+    this.fileStoredEventPublisher = fileStoredEventPublisher;
+  }
+
+  @Override
+  public Mono<FileEntity> storeFile(String fileName, String contentType, Flux<DataBuffer> content) {
+    String originalFileName = StringUtils.cleanPath(Objects.requireNonNull(fileName));
+    return Mono.using(
+        () -> blobLayout.createTempFile("upload-"),
+        tempFile -> writeAndHash(content, tempFile)
+            .filter(hashedContent -> hashedContent.size > 0)
+            .flatMap(hashedContent -> store(originalFileName, contentType, tempFile, hashedContent)),
+        this::deleteQuietly);
+  }
+
+  /**
+   * Writes the content to the temp file, hashing every buffer before it is written.
+   */
+  private Mono<HashedContent> writeAndHash(Flux<DataBuffer> content, Path tempFile) {
+    return Mono.defer(() -> {
+      MessageDigest digest = FileHashUtil.newSha256Digest();
+      AtomicLong size = new AtomicLong();
+      Flux<DataBuffer> hashedContent = content.doOnNext(buffer -> {
+        size.addAndGet(buffer.readableByteCount());
+        try (DataBuffer.ByteBufferIterator byteBuffers = buffer.readableByteBuffers()) {
+          byteBuffers.forEachRemaining(digest::update);
+        }
+      });
+      return DataBufferUtils.write(hashedContent, tempFile, StandardOpenOption.WRITE)
+          .then(Mono.fromSupplier(() -> new HashedContent(FileHashUtil.toHex(digest.digest()), size.get())));
+    });
+  }
+
+  private Mono<FileEntity> store(String fileName, String contentType, Path tempFile, HashedContent content) {
+    return findAvailableFile(content.hash)
+        .switchIfEmpty(Mono.defer(() -> moveIntoPlace(tempFile, content.hash)
+            .flatMap(targetLocation -> {
+              logger.info("Stored file {} at location {}", fileName, targetLocation);
+              FileEntity fileEntity = new FileEntity(
+                  fileName,
+                  contentType,
+                  content.size,
+                  LocalDateTime.now(),
+                  targetLocation.toString(),
+                  content.hash
+              );
+              fileEntity.setStoredSize(content.size);
+              return fileRepository.insert(fileEntity);
+            })
+            .flatMap(this::publishStored)
+            .onErrorResume(DataIntegrityViolationException.class, ex -> {
+              logger.info("File with hash {} was stored by a concurrent upload. Returning it.", content.hash);
+              return fileRepository.findByHash(content.hash);
+            })));
+  }
+
+  /**
+   * Publishes the event of a new file. The insert has committed by now, and sending may block
+   * until the broker metadata is known, so it runs on the bounded elastic scheduler.
+   */
+  private Mono<FileEntity> publishStored(FileEntity fileEntity) {
+    return Mono.fromRunnable(() -> fileStoredEventPublisher.publishAfterCommit(fileEntity))
+        .subscribeOn(Schedulers.boundedElastic())
+        .thenReturn(fileEntity);
+  }
+
+  /**
+   * Finds an existing file with the given hash whose content is still on disk.
+   * A record whose content is gone is removed so the upload can replace it.
+   */
+  private Mono<FileEntity> findAvailableFile(String hash) {
+    return fileRepository.findByHash(hash)
+        .flatMap(existingEntity -> Mono.fromCallable(() -> blobLayout.isAvailable(existingEntity))
+            .subscribeOn(Schedulers.boundedElastic())
+            .flatMap(available -> {
+              if (available) {
+                logger.info("File with hash {} already exists and is accessible. Returning existing file.", hash);
+                return Mono.just(existingEntity);
+              }
+              logger.warn("File with hash {} exists in database but physical file is missing: {}. Removing record and creating new file.",
+                  hash, existingEntity.getFilePath());
+              return fileRepository.deleteById(existingEntity.getId()).then(Mono.empty());
+            }));
+  }
+
+  private Mono<Path> moveIntoPlace(Path tempFile, String hash) {
+    return Mono.fromCallable(() -> {
+      Path targetLocation = blobLayout.prepare(hash);
+      blobLayout.moveIntoPlace(tempFile, targetLocation);
+      return targetLocation;
+    }).subscribeOn(Schedulers.boundedElastic());
+  }
+
+  @Override
+  public Mono<FileEntity> getFileMetadata(UUID fileId) {
+    return fileRepository.findById(fileId);
+  }
+
+  /**
+   * {@inheritDoc}
+   * Chunks of a chunked file are read one after another, each from its own channel.
+   */
+  @Override
+  public Optional<Flux<DataBuffer>> readFile(FileEntity fileEntity, boolean decode) {
+    if (fileEntity.getChunkManifest() != null) {
+      ChunkManifest manifest = ChunkManifest.fromBytes(fileEntity.getChunkManifest());
+      return Optional.of(Flux.fromIterable(manifest.getChunks())
+          .concatMap(chunk -> DataBufferUtils.read(blobLayout.resolveChunk(chunk.getHash()), bufferFactory, readBufferSize)));
+    }
+    Optional<Path> filePath = blobLayout.locate(fileEntity);
+    if (filePath.isEmpty()) {
+      logger.warn("Could not read file: {}", fileEntity.getFilePath());
+      return Optional.empty();
+    }
+    String codec = fileEntity.getStorageCodec();
+    if (decode && codec != null) {
+      return Optional.of(DataBufferUtils.readInputStream(
+              () -> blobCompression.decompress(codec, Files.newInputStream(filePath.get())), bufferFactory, readBufferSize)
+          .subscribeOn(Schedulers.boundedElastic()));
+    }
+    return Optional.of(DataBufferUtils.read(filePath.get(), bufferFactory, readBufferSize));
+  }
+
+  private void deleteQuietly(Path path) {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException ex) {
+      logger.warn("Could not delete file {}. Error: {}", path, ex.getMessage());
+    }
+  }
+
+  private static final class HashedContent {
+    private final String hash;
+    private final long size;
+
+    HashedContent(String hash, long size) {
+      this.hash = hash;
+      this.size = size;
+    }
+  }
+}
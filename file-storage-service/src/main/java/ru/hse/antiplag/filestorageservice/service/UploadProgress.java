@@ -0,0 +1,37 @@
+package ru.hse.antiplag.filestorageservice.service;
+
+import java.util.UUID;
+
+/**
+ * State of a chunked upload after a request to it.
+ */
+public class UploadProgress {
+  private final UUID uploadId;
+  private final long offset;
+  private final boolean accepted;
+
+  /**
+   * Creates a new instance of UploadProgress.
+   *
+   * @param uploadId ID of the upload session
+   * @param offset   number of bytes received so far, where the next chunk must start
+   * @param accepted false if the request was rejected because it did not start at the offset
+   */
+  public UploadProgress(UUID uploadId, long offset, boolean accepted) {
+    this.uploadId = uploadId;
+    this.offset = offset;
+    this.accepted = accepted;
+  }
+
+  public UUID getUploadId() {
+    return uploadId;
+  }
+
+  public long getOffset() {
+    return offset;
+  }
+
+  public boolean isAccepted() {
+    return accepted;
+  }
+}
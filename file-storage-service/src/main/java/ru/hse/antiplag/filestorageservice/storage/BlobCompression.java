@@ -0,0 +1,186 @@
+package ru.hse.antiplag.filestorageservice.storage;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression of blobs at rest. Whether a blob is compressed is decided by its content type,
+ * and the codec is recorded with the file metadata, so changing the settings never affects
+ * blobs that are already stored. Gzip is used because HTTP clients can accept it as is.
+ */
+@Component
+public class BlobCompression {
+
+  /**
+   * Name of the gzip codec, also used as its HTTP content coding.
+   */
+  public static final String GZIP = "gzip";
+
+  private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+  private final boolean enabled;
+  private final List<MimeType> contentTypes;
+  private final long minSize;
+  private final int level;
+  private final MeterRegistry meterRegistry;
+  private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+  /**
+   * Constructor for BlobCompression.
+   *
+   * @param enabled       whether new blobs are compressed at all
+   * @param contentTypes  content types to compress, wildcards such as {@code text/*} are allowed
+   * @param minSize       smallest blob worth compressing, in bytes
+   * @param level         deflate level, from 1 (fastest) to 9 (smallest)
+   * @param meterRegistry registry for the compression ratio and CPU time metrics
+   */
+  public BlobCompression(
+      @Value("${file.compression.enabled:false}") boolean enabled,
+      @Value("${file.compression.content-types:text/*,application/json,application/xml}") List<String> contentTypes,
+      @Value("${file.compression.min-size:1024}") long minSize,
+      @Value("${file.compression.level:6}") int level,
+      MeterRegistry meterRegistry) {
+    this.enabled = enabled;
+    this.contentTypes = contentTypes.stream().map(String::trim).map(MimeTypeUtils::parseMimeType).toList();
+    this.minSize = minSize;
+    this.level = level;
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * Chooses the codec for a new blob.
+   *
+   * @param contentType MIME-type of the blob, may be null
+   * @param size        size of the blob, in bytes
+   * @return the codec name, or null to store the blob as is
+   */
+  public String codecFor(String contentType, long size) {
+    if (!enabled || contentType == null || size < minSize) {
+      return null;
+    }
+    MimeType mimeType;
+    try {
+      mimeType = MimeTypeUtils.parseMimeType(contentType);
+    } catch (IllegalArgumentException ex) {
+      return null;
+    }
+    for (MimeType candidate : contentTypes) {
+      if (candidate.includes(mimeType)) {
+        return GZIP;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Wraps a stream so that everything written to it is compressed.
+   *
+   * @param codec  codec name returned by {@link #codecFor(String, long)}
+   * @param target stream that receives the compressed bytes
+   * @return the compressing stream, closing it finishes the compressed data and closes the target
+   * @throws IOException if the compressed stream could not be started
+   */
+  public CompressingOutputStream compress(String codec, OutputStream target) throws IOException {
+    requireSupported(codec);
+    return new CompressingOutputStream(new LevelGzipOutputStream(target, level));
+  }
+
+  /**
+   * Wraps a stream of compressed bytes so that it reads the original content.
+   *
+   * @param codec  codec the bytes were compressed with
+   * @param source compressed bytes
+   * @return stream of the original content
+   * @throws IOException if the compressed stream is malformed
+   */
+  public InputStream decompress(String codec, InputStream source) throws IOException {
+    requireSupported(codec);
+    return new GZIPInputStream(source, STREAM_BUFFER_SIZE);
+  }
+
+  /**
+   * Records the outcome of compressing a blob.
+   *
+   * @param codec        codec the blob was compressed with
+   * @param originalSize size of the original content, in bytes
+   * @param storedSize   size of the compressed blob, in bytes
+   * @param cpuNanos     CPU time spent compressing and writing the blob
+   */
+  public void record(String codec, long originalSize, long storedSize, long cpuNanos) {
+    if (storedSize > 0) {
+      DistributionSummary.builder("file.compression.ratio")
+          .description("Original size divided by stored size of compressed blobs")
+          .tag("codec", codec)
+          .register(meterRegistry)
+          .record((double) originalSize / storedSize);
+    }
+    Timer.builder("file.compression.cpu")
+        .description("CPU time spent compressing blobs")
+        .tag("codec", codec)
+        .register(meterRegistry)
+        .record(cpuNanos, TimeUnit.NANOSECONDS);
+  }
+
+  private static void requireSupported(String codec) {
+    if (!GZIP.equals(codec)) {
+      throw new IllegalArgumentException("Unsupported codec: " + codec);
+    }
+  }
+
+  private static final class LevelGzipOutputStream extends GZIPOutputStream {
+    LevelGzipOutputStream(OutputStream target, int level) throws IOException {
+      super(target, STREAM_BUFFER_SIZE);
+      def.setLevel(level);
+    }
+  }
+
+  /**
+   * Compressing stream that measures the CPU time of the calling thread spent in it.
+   */
+  public final class CompressingOutputStream extends FilterOutputStream {
+    private long cpuNanos;
+
+    private CompressingOutputStream(OutputStream compressor) {
+      super(compressor);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      long started = threadMXBean.getCurrentThreadCpuTime();
+      out.write(bytes, offset, length);
+      cpuNanos += threadMXBean.getCurrentThreadCpuTime() - started;
+    }
+
+    @Override
+    public void close() throws IOException {
+      long started = threadMXBean.getCurrentThreadCpuTime();
+      super.close();
+      cpuNanos += threadMXBean.getCurrentThreadCpuTime() - started;
+    }
+
+    /**
+     * Gets the CPU time spent compressing and writing so far.
+     *
+     * @return CPU time, in nanoseconds
+     */
+    public long getCpuNanos() {
+      return cpuNanos;
+    }
+  }
+}
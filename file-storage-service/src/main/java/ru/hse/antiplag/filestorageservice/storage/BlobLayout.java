@@ -0,0 +1,260 @@
+package ru.hse.antiplag.filestorageservice.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+/**
+ * Content-addressed on-disk layout of stored blobs.
+ * A blob with hash {@code abcdef...} lives at {@code <root>/ab/cd/abcdef...},
+ * so its location can be derived from the hash alone without a metadata lookup.
+ * A compressed blob gets its codec as a suffix, e.g. {@code abcdef....gzip}, because its bytes
+ * depend on the codec and not only on the hash of the content.
+ */
+@Component
+public class BlobLayout {
+
+  private static final Logger logger = LoggerFactory.getLogger(BlobLayout.class);
+
+  private static final int SHARD_WIDTH = 2;
+  private static final int SHARD_DEPTH = 2;
+
+  private final Path root;
+  private final Path tempDirectory;
+  private final Path chunkRoot;
+
+  /**
+   * Constructor for BlobLayout.
+   *
+   * @param uploadDir root directory of the blob store (from application.properties)
+   * @throws IOException if the root or temp directories could not be created
+   */
+  public BlobLayout(@Value("${file.upload-dir}") String uploadDir) throws IOException {
+    this.root = Paths.get(uploadDir).toAbsolutePath().normalize();
+    this.tempDirectory = root.resolve(".tmp");
+    this.chunkRoot = root.resolve("chunks");
+    Files.createDirectories(root);
+    Files.createDirectories(tempDirectory);
+    logger.info("Blob layout initialized at: {}", root);
+  }
+
+  /**
+   * Gets the root directory of the blob store.
+   *
+   * @return the root directory
+   */
+  public Path getRoot() {
+    return root;
+  }
+
+  /**
+   * Gets the directory for in-progress writes. It is on the same file system as the blobs,
+   * so finished files can be moved into place atomically.
+   *
+   * @return the temp directory
+   */
+  public Path getTempDirectory() {
+    return tempDirectory;
+  }
+
+  /**
+   * Gets the directory that content-defined chunks of chunked files are stored under,
+   * sharded the same way as whole blobs.
+   *
+   * @return the chunk root directory
+   */
+  public Path getChunkRoot() {
+    return chunkRoot;
+  }
+
+  /**
+   * Checks whether the given hash can be mapped onto the sharded layout.
+   *
+   * @param hash hex-encoded content hash
+   * @return true if the hash is long enough and contains only hex digits
+   */
+  public boolean isAddressable(String hash) {
+    if (hash == null || hash.length() <= SHARD_WIDTH * SHARD_DEPTH) {
+      return false;
+    }
+    for (int i = 0; i < hash.length(); i++) {
+      if (Character.digit(hash.charAt(i), 16) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Resolves the location of the blob with the given hash.
+   *
+   * @param hash hex-encoded content hash
+   * @return path of the blob, which may not exist yet
+   * @throws IllegalArgumentException if the hash is not addressable
+   */
+  public Path resolve(String hash) {
+    return resolveUnder(root, hash);
+  }
+
+  /**
+   * Resolves the location of the blob with the given hash stored with the given codec.
+   *
+   * @param hash  hex-encoded content hash
+   * @param codec storage codec of the blob, or null for raw content
+   * @return path of the blob, which may not exist yet
+   * @throws IllegalArgumentException if the hash is not addressable
+   */
+  public Path resolve(String hash, String codec) {
+    Path raw = resolve(hash);
+    return codec == null ? raw : raw.resolveSibling(hash + "." + codec);
+  }
+
+  /**
+   * Resolves the location of the chunk with the given hash.
+   *
+   * @param hash hex-encoded chunk hash
+   * @return path of the chunk, which may not exist yet
+   * @throws IllegalArgumentException if the hash is not addressable
+   */
+  public Path resolveChunk(String hash) {
+    return resolveUnder(chunkRoot, hash);
+  }
+
+  private Path resolveUnder(Path base, String hash) {
+    if (!isAddressable(hash)) {
+      throw new IllegalArgumentException("Hash is not addressable: " + hash);
+    }
+    Path directory = base;
+    for (int level = 0; level < SHARD_DEPTH; level++) {
+      directory = directory.resolve(hash.substring(level * SHARD_WIDTH, (level + 1) * SHARD_WIDTH));
+    }
+    return directory.resolve(hash);
+  }
+
+  /**
+   * Resolves the location of the blob with the given hash and creates its shard directories.
+   *
+   * @param hash hex-encoded content hash
+   * @return path of the blob
+   * @throws IOException if the shard directories could not be created
+   */
+  public Path prepare(String hash) throws IOException {
+    return prepare(hash, null);
+  }
+
+  /**
+   * Resolves the location of the blob with the given hash stored with the given codec
+   * and creates its shard directories.
+   *
+   * @param hash  hex-encoded content hash
+   * @param codec storage codec of the blob, or null for raw content
+   * @return path of the blob
+   * @throws IOException if the shard directories could not be created
+   */
+  public Path prepare(String hash, String codec) throws IOException {
+    Path target = resolve(hash, codec);
+    Files.createDirectories(target.getParent());
+    return target;
+  }
+
+  /**
+   * Finds the readable blob of the given file. The content-addressed location is checked first,
+   * then the legacy path stored in the metadata. The content-addressed location is checked again
+   * afterwards, because an online migration may move the blob between the two checks.
+   * Chunked files have no single blob, so nothing is found for them.
+   *
+   * @param fileEntity metadata of the file
+   * @return path of the readable blob, or empty if there is none
+   */
+  public Optional<Path> locate(FileEntity fileEntity) {
+    if (fileEntity.getChunkManifest() != null) {
+      return Optional.empty();
+    }
+    Path addressed = isAddressable(fileEntity.getHash())
+        ? resolve(fileEntity.getHash(), fileEntity.getStorageCodec())
+        : null;
+    if (addressed != null && Files.isReadable(addressed)) {
+      return Optional.of(addressed);
+    }
+    if (fileEntity.getFilePath() != null) {
+      Path legacy = Paths.get(fileEntity.getFilePath()).normalize();
+      if (Files.isReadable(legacy)) {
+        return Optional.of(legacy);
+      }
+    }
+    if (addressed != null && Files.isReadable(addressed)) {
+      return Optional.of(addressed);
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Checks whether the content of the given file is still on disk. For a chunked file every
+   * chunk has to be readable.
+   *
+   * @param fileEntity metadata of the file
+   * @return true if the content of the file can be read
+   */
+  public boolean isAvailable(FileEntity fileEntity) {
+    if (fileEntity.getChunkManifest() == null) {
+      return locate(fileEntity).isPresent();
+    }
+    for (ChunkManifest.Chunk chunk : ChunkManifest.fromBytes(fileEntity.getChunkManifest()).getChunks()) {
+      if (!Files.isReadable(resolveChunk(chunk.getHash()))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Moves a fully written temp file to its content-addressed location. An existing blob is never
+   * replaced: a record may already point at it, and the location includes the codec, so a blob
+   * that is there has the same content in the same encoding and the temp file is just dropped.
+   * The file is linked into place rather than renamed, because a rename silently replaces the target.
+   *
+   * @param source fully written temp file
+   * @param target content-addressed location of the blob
+   * @throws IOException if the file could not be moved
+   */
+  public void moveIntoPlace(Path source, Path target) throws IOException {
+    try {
+      Files.createLink(target, source);
+    } catch (FileAlreadyExistsException ex) {
+      logger.debug("Blob {} already exists, keeping it", target);
+    } catch (UnsupportedOperationException | FileSystemException ex) {
+      try {
+        Files.move(source, target);
+        return;
+      } catch (FileAlreadyExistsException existsEx) {
+        logger.debug("Blob {} already exists, keeping it", target);
+      }
+    }
+    try {
+      Files.deleteIfExists(source);
+    } catch (IOException deleteEx) {
+      logger.warn("Could not delete file {}. Error: {}", source, deleteEx.getMessage());
+    }
+  }
+
+  /**
+   * Creates a new temp file for an in-progress write.
+   *
+   * @param prefix prefix of the temp file name
+   * @return path of the created temp file
+   * @throws IOException if the file could not be created
+   */
+  public Path createTempFile(String prefix) throws IOException {
+    return Files.createTempFile(tempDirectory, prefix, ".part");
+  }
+}
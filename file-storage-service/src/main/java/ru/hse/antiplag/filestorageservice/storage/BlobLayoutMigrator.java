@@ -0,0 +1,185 @@
+package ru.hse.antiplag.filestorageservice.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import ru.hse.antiplag.filestorageservice.cache.FileMetadataCache;
+import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+import ru.hse.antiplag.filestorageservice.repository.FileRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Online migration of blobs stored under legacy {@code UUID + extension} names into the
+ * content-addressed {@link BlobLayout}. Files are moved in parallel while the service keeps
+ * serving requests: readers look up the content-addressed location first and fall back to
+ * the legacy path, so a blob is reachable before, during and after its move.
+ */
+@Component
+@Profile("!reactive")
+public class BlobLayoutMigrator implements ApplicationRunner {
+
+  private static final Logger logger = LoggerFactory.getLogger(BlobLayoutMigrator.class);
+
+  private final BlobLayout blobLayout;
+  private final FileRepository fileRepository;
+  private final FileMetadataCache fileMetadataCache;
+  private final boolean migrateOnStartup;
+  private final int threads;
+  private final int pageSize;
+
+  /**
+   * Constructor for BlobLayoutMigrator.
+   *
+   * @param blobLayout        content-addressed layout to migrate into
+   * @param fileRepository    repository for working with file metadata
+   * @param fileMetadataCache in-memory cache of file metadata
+   * @param migrateOnStartup  whether to start the migration in the background on startup
+   * @param threads           number of files moved in parallel, 0 for one per CPU core
+   * @param pageSize          number of metadata rows read per page
+   */
+  public BlobLayoutMigrator(
+      BlobLayout blobLayout,
+      FileRepository fileRepository,
+      FileMetadataCache fileMetadataCache,
+      @Value("${file.layout.migrate-on-startup:false}") boolean migrateOnStartup,
+      @Value("${file.layout.migration.threads:0}") int threads,
+      @Value("${file.layout.migration.page-size:500}") int pageSize) {
+    this.blobLayout = blobLayout;
+    this.fileRepository = fileRepository;
+    this.fileMetadataCache = fileMetadataCache;
+    this.migrateOnStartup = migrateOnStartup;
+    this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    this.pageSize = pageSize;
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    if (!migrateOnStartup) {
+      return;
+    }
+    Thread migrationThread = new Thread(this::migrate, "blob-layout-migration");
+    migrationThread.setDaemon(true);
+    migrationThread.start();
+  }
+
+  /**
+   * Moves every legacy blob into the content-addressed layout and updates its stored path.
+   *
+   * @return summary of the migration
+   */
+  public MigrationReport migrate() {
+    logger.info("Starting blob layout migration with {} threads", threads);
+    MigrationReport report = new MigrationReport();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      PageRequest pageRequest = PageRequest.of(0, pageSize, Sort.by("id"));
+      List<FileEntity> page = fileRepository.findAll(pageRequest).getContent();
+      while (!page.isEmpty()) {
+        List<Future<?>> futures = new ArrayList<>(page.size());
+        for (FileEntity fileEntity : page) {
+          futures.add(executor.submit(() -> migrateFile(fileEntity, report)));
+        }
+        for (Future<?> future : futures) {
+          future.get();
+        }
+        page = fileRepository.findByIdGreaterThan(page.get(page.size() - 1).getId(), pageRequest);
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      logger.warn("Blob layout migration interrupted");
+    } catch (ExecutionException ex) {
+      logger.error("Blob layout migration failed. Error: {}", ex.getCause().getMessage(), ex.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    logger.info("Blob layout migration finished: {}", report);
+    return report;
+  }
+
+  private void migrateFile(FileEntity fileEntity, MigrationReport report) {
+    if (fileEntity.getChunkManifest() != null) {
+      report.alreadyMigrated.incrementAndGet();
+      return;
+    }
+    String hash = fileEntity.getHash();
+    if (!blobLayout.isAddressable(hash)) {
+      logger.warn("Skipping file {}: hash {} cannot be content-addressed", fileEntity.getId(), hash);
+      report.failed.incrementAndGet();
+      return;
+    }
+    Path target = blobLayout.resolve(hash, fileEntity.getStorageCodec());
+    Path source = fileEntity.getFilePath() == null ? null : Paths.get(fileEntity.getFilePath()).normalize();
+    if (target.equals(source)) {
+      report.alreadyMigrated.incrementAndGet();
+      return;
+    }
+    try {
+      if (source != null && Files.exists(source)) {
+        blobLayout.moveIntoPlace(source, blobLayout.prepare(hash, fileEntity.getStorageCodec()));
+      } else if (!Files.exists(target)) {
+        logger.warn("Skipping file {}: blob is missing at {}", fileEntity.getId(), source);
+        report.missing.incrementAndGet();
+        return;
+      }
+      fileRepository.updateFilePath(fileEntity.getId(), target.toString());
+      fileMetadataCache.invalidate(fileEntity.getId());
+      report.migrated.incrementAndGet();
+    } catch (IOException | RuntimeException ex) {
+      logger.error("Could not migrate file {} from {}. Error: {}", fileEntity.getId(), source, ex.getMessage());
+      report.failed.incrementAndGet();
+    }
+  }
+
+  /**
+   * Summary of a blob layout migration run.
+   */
+  public static class MigrationReport {
+    private final AtomicLong migrated = new AtomicLong();
+    private final AtomicLong alreadyMigrated = new AtomicLong();
+    private final AtomicLong missing = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public long getMigrated() {
+      return migrated.get();
+    }
+
+    public long getAlreadyMigrated() {
+      return alreadyMigrated.get();
+    }
+
+    public long getMissing() {
+      return missing.get();
+    }
+
+    public long getFailed() {
+      return failed.get();
+    }
+
+    @Override
+    public String toString() {
+      return "MigrationReport{" +
+          "migrated=" + migrated +
+          ", alreadyMigrated=" + alreadyMigrated +
+          ", missing=" + missing +
+          ", failed=" + failed +
+          '}';
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package ru.hse.antiplag.filestorageservice.storage;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Ordered list of the content-addressed chunks a file is made of.
+ * It is stored in a compact binary form: the chunk count, then the raw SHA-256 hash and
+ * the length of every chunk. Chunk offsets are implied by the lengths of the preceding chunks.
+ */
+public final class ChunkManifest {
+
+  private static final int HASH_BYTES = 32;
+  private static final int ENTRY_BYTES = HASH_BYTES + Integer.BYTES;
+
+  private final List<Chunk> chunks;
+  private final long totalSize;
+
+  /**
+   * Creates a manifest from chunks listed in file order.
+   *
+   * @param chunks chunks of the file
+   */
+  public ChunkManifest(List<Chunk> chunks) {
+    this.chunks = Collections.unmodifiableList(new ArrayList<>(chunks));
+    long size = 0;
+    for (Chunk chunk : chunks) {
+      size += chunk.getLength();
+    }
+    this.totalSize = size;
+  }
+
+  public List<Chunk> getChunks() {
+    return chunks;
+  }
+
+  public long getTotalSize() {
+    return totalSize;
+  }
+
+  /**
+   * Serializes the manifest into its binary form.
+   *
+   * @return serialized manifest
+   */
+  public byte[] toBytes() {
+    ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + chunks.size() * ENTRY_BYTES);
+    buffer.putInt(chunks.size());
+    for (Chunk chunk : chunks) {
+      buffer.put(HexFormat.of().parseHex(chunk.getHash()));
+      buffer.putInt(chunk.getLength());
+    }
+    return buffer.array();
+  }
+
+  /**
+   * Restores a manifest from the binary form produced by {@link #toBytes()}.
+   *
+   * @param bytes serialized manifest
+   * @return the manifest
+   * @throws IllegalArgumentException if the bytes are not a valid manifest
+   */
+  public static ChunkManifest fromBytes(byte[] bytes) {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    int count = buffer.getInt();
+    if (count < 0 || buffer.remaining() != (long) count * ENTRY_BYTES) {
+      throw new IllegalArgumentException("Corrupted chunk manifest");
+    }
+    List<Chunk> chunks = new ArrayList<>(count);
+    byte[] hash = new byte[HASH_BYTES];
+    long offset = 0;
+    for (int i = 0; i < count; i++) {
+      buffer.get(hash);
+      int length = buffer.getInt();
+      chunks.add(new Chunk(HexFormat.of().formatHex(hash), offset, length));
+      offset += length;
+    }
+    return new ChunkManifest(chunks);
+  }
+
+  /**
+   * A single chunk of a file.
+   */
+  public static final class Chunk {
+    private final String hash;
+    private final long offset;
+    private final int length;
+
+    /**
+     * Creates a chunk.
+     *
+     * @param hash   hex-encoded SHA-256 hash of the chunk content
+     * @param offset position of the chunk in the file
+     * @param length size of the chunk, in bytes
+     */
+    public Chunk(String hash, long offset, int length) {
+      this.hash = hash;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    public String getHash() {
+      return hash;
+    }
+
+    public long getOffset() {
+      return offset;
+    }
+
+    public int getLength() {
+      return length;
+    }
+  }
+}
@@ -0,0 +1,143 @@
+package ru.hse.antiplag.filestorageservice.storage;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Resource that reassembles a chunked file on the fly. Chunks are opened one at a time while
+ * the content is read, and skipping over whole chunks does not open them, so byte ranges
+ * deep inside a large file are served without reading the chunks before them.
+ */
+public class ChunkedBlobResource extends AbstractResource {
+
+  private final BlobLayout blobLayout;
+  private final ChunkManifest manifest;
+  private final String description;
+
+  /**
+   * Constructor for ChunkedBlobResource.
+   *
+   * @param blobLayout  layout the chunks are stored in
+   * @param manifest    chunks of the file
+   * @param description description of the file for error messages
+   */
+  public ChunkedBlobResource(BlobLayout blobLayout, ChunkManifest manifest, String description) {
+    this.blobLayout = blobLayout;
+    this.manifest = manifest;
+    this.description = description;
+  }
+
+  @Override
+  public boolean exists() {
+    return true;
+  }
+
+  @Override
+  public long contentLength() {
+    return manifest.getTotalSize();
+  }
+
+  @Override
+  public InputStream getInputStream() {
+    return new ChunkedInputStream(manifest.getChunks());
+  }
+
+  @Override
+  public String getDescription() {
+    return "Chunked file [" + description + "]";
+  }
+
+  private final class ChunkedInputStream extends InputStream {
+    private final List<ChunkManifest.Chunk> chunks;
+    private int index;
+    private InputStream current;
+    private long remaining;
+
+    ChunkedInputStream(List<ChunkManifest.Chunk> chunks) {
+      this.chunks = chunks;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[1];
+      return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+      while (index < chunks.size()) {
+        if (current == null) {
+          open();
+        }
+        if (remaining == 0) {
+          advance();
+          continue;
+        }
+        int read = current.read(bytes, offset, (int) Math.min(length, remaining));
+        if (read < 0) {
+          throw new IOException("Chunk " + chunks.get(index).getHash() + " of " + description + " is truncated");
+        }
+        remaining -= read;
+        if (remaining == 0) {
+          advance();
+        }
+        return read;
+      }
+      return -1;
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+      long skipped = 0;
+      while (skipped < count && index < chunks.size()) {
+        if (current == null) {
+          int length = chunks.get(index).getLength();
+          if (count - skipped >= length) {
+            skipped += length;
+            index++;
+            continue;
+          }
+          open();
+        }
+        long step = current.skip(Math.min(count - skipped, remaining));
+        if (step <= 0) {
+          break;
+        }
+        skipped += step;
+        remaining -= step;
+        if (remaining == 0) {
+          advance();
+        }
+      }
+      return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (current != null) {
+        current.close();
+        current = null;
+      }
+      index = chunks.size();
+    }
+
+    private void open() throws IOException {
+      ChunkManifest.Chunk chunk = chunks.get(index);
+      current = Files.newInputStream(blobLayout.resolveChunk(chunk.getHash()));
+      remaining = chunk.getLength();
+    }
+
+    private void advance() throws IOException {
+      current.close();
+      current = null;
+      index++;
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package ru.hse.antiplag.filestorageservice.storage;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Resource that decompresses a blob stored compressed while it is read.
+ * Its length is the size of the original content.
+ */
+public class CompressedBlobResource extends AbstractResource {
+
+  private final BlobCompression blobCompression;
+  private final String codec;
+  private final Path path;
+  private final long contentLength;
+
+  /**
+   * Constructor for CompressedBlobResource.
+   *
+   * @param blobCompression codecs for blobs at rest
+   * @param codec           codec the blob was compressed with
+   * @param path            path of the compressed blob
+   * @param contentLength   size of the original content, in bytes
+   */
+  public CompressedBlobResource(BlobCompression blobCompression, String codec, Path path, long contentLength) {
+    this.blobCompression = blobCompression;
+    this.codec = codec;
+    this.path = path;
+    this.contentLength = contentLength;
+  }
+
+  @Override
+  public boolean exists() {
+    return Files.exists(path);
+  }
+
+  @Override
+  public long contentLength() {
+    return contentLength;
+  }
+
+  @Override
+  public InputStream getInputStream() throws IOException {
+    InputStream source = Files.newInputStream(path);
+    try {
+      return blobCompression.decompress(codec, source);
+    } catch (IOException | RuntimeException ex) {
+      source.close();
+      throw ex;
+    }
+  }
+
+  @Override
+  public String getDescription() {
+    return codec + "-compressed blob [" + path + "]";
+  }
+}
@@ -0,0 +1,132 @@
+package ru.hse.antiplag.filestorageservice.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.hse.antiplag.filestorageservice.utils.FileHashUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Splits content into chunks at positions chosen by the content itself (FastCDC with a Gear
+ * rolling hash and normalized chunking). An edit only moves the cut points next to it, so two
+ * revisions of a document share every chunk outside the edited region.
+ * Chunks are between a quarter and four times the average size.
+ */
+@Component
+public class ContentDefinedChunker {
+
+  private static final long[] GEAR = new long[256];
+
+  static {
+    SplittableRandom random = new SplittableRandom(0x5EEDC0DEL);
+    for (int i = 0; i < GEAR.length; i++) {
+      GEAR[i] = random.nextLong();
+    }
+  }
+
+  private final int minSize;
+  private final int averageSize;
+  private final int maxSize;
+  private final long strictMask;
+  private final long looseMask;
+
+  /**
+   * Constructor for ContentDefinedChunker.
+   *
+   * @param averageSize target average chunk size in bytes, a power of two of at least 256
+   */
+  public ContentDefinedChunker(@Value("${file.chunking.average-size:16384}") int averageSize) {
+    if (averageSize < 256 || Integer.bitCount(averageSize) != 1) {
+      throw new IllegalArgumentException("Average chunk size must be a power of two >= 256: " + averageSize);
+    }
+    int bits = Integer.numberOfTrailingZeros(averageSize);
+    this.averageSize = averageSize;
+    this.minSize = averageSize / 4;
+    this.maxSize = averageSize * 4;
+    this.strictMask = -1L << (Long.SIZE - (bits + 2));
+    this.looseMask = -1L << (Long.SIZE - (bits - 2));
+  }
+
+  /**
+   * Gets the size of the largest chunk this chunker cuts, in bytes.
+   *
+   * @return maximum chunk size
+   */
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Reads the stream to the end and splits it into chunks.
+   *
+   * @param inputStream   content to split
+   * @param contentDigest digest updated with the whole content, in order
+   * @return chunks of the content with their SHA-256 hashes
+   * @throws IOException if the stream could not be read
+   */
+  public List<ChunkManifest.Chunk> split(InputStream inputStream, MessageDigest contentDigest) throws IOException {
+    MessageDigest chunkDigest = FileHashUtil.newSha256Digest();
+    List<ChunkManifest.Chunk> chunks = new ArrayList<>();
+    byte[] buffer = new byte[maxSize * 4];
+    int start = 0;
+    int end = 0;
+    long offset = 0;
+    boolean endOfStream = false;
+    while (true) {
+      if (!endOfStream && end - start < maxSize) {
+        System.arraycopy(buffer, start, buffer, 0, end - start);
+        end -= start;
+        start = 0;
+        while (end < buffer.length) {
+          int read = inputStream.read(buffer, end, buffer.length - end);
+          if (read < 0) {
+            endOfStream = true;
+            break;
+          }
+          end += read;
+        }
+      }
+      if (start == end) {
+        return chunks;
+      }
+      int length = cutPoint(buffer, start, end - start);
+      contentDigest.update(buffer, start, length);
+      chunkDigest.update(buffer, start, length);
+      chunks.add(new ChunkManifest.Chunk(FileHashUtil.toHex(chunkDigest.digest()), offset, length));
+      offset += length;
+      start += length;
+    }
+  }
+
+  /**
+   * Finds the length of the next chunk. A stricter mask is used before the average size and
+   * a looser one after it, which pulls chunk sizes towards the average.
+   */
+  private int cutPoint(byte[] data, int from, int available) {
+    if (available <= minSize) {
+      return available;
+    }
+    int limit = Math.min(available, maxSize);
+    int normal = Math.min(averageSize, limit);
+    long fingerprint = 0;
+    int i = minSize;
+    for (; i < normal; i++) {
+      fingerprint = (fingerprint << 1) + GEAR[data[from + i] & 0xff];
+      if ((fingerprint & strictMask) == 0) {
+        return i + 1;
+      }
+    }
+    for (; i < limit; i++) {
+      fingerprint = (fingerprint << 1) + GEAR[data[from + i] & 0xff];
+      if ((fingerprint & looseMask) == 0) {
+        return i + 1;
+      }
+    }
+    return limit;
+  }
+}
@@ -1,30 +1,86 @@
 package ru.hse.antiplag.filestorageservice.utils;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 /**
  * Utility class for calculating the hash of a file.
  */
 public class FileHashUtil {
+
+  /**
+   * Default size of the read buffer used while hashing and copying streams.
+   */
+  public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
   /**
    * Calculates the SHA-256 hash of the given input stream.
-   * 
+   *
    * @param inputStream the input stream to calculate the hash of
    * @return the SHA-256 hash of the input stream
    */
   public static String calculateSHA256(InputStream inputStream) throws Exception {
-    MessageDigest digest = MessageDigest.getInstance("SHA-256");
-    byte[] bytesBuffer = new byte[1024];
+    MessageDigest digest = newSha256Digest();
+    byte[] bytesBuffer = new byte[DEFAULT_BUFFER_SIZE];
     int bytesRead;
     while ((bytesRead = inputStream.read(bytesBuffer)) != -1) {
-        digest.update(bytesBuffer, 0, bytesRead);
+      digest.update(bytesBuffer, 0, bytesRead);
     }
-    byte[] hashedBytes = digest.digest();
-    StringBuilder sb = new StringBuilder();
-    for (byte b : hashedBytes) {
-        sb.append(String.format("%02x", b));
+    return toHex(digest.digest());
+  }
+
+  /**
+   * Copies the input stream to the output stream and calculates the SHA-256 hash
+   * of the copied bytes in the same pass, so the source is read only once.
+   *
+   * @param inputStream  the stream to read from
+   * @param outputStream the stream to write to
+   * @param bufferSize   size of the read buffer in bytes
+   * @return the SHA-256 hash of the copied bytes
+   * @throws IOException if reading or writing fails
+   */
+  public static String copyAndHash(InputStream inputStream, OutputStream outputStream, int bufferSize)
+      throws IOException {
+    MessageDigest digest = newSha256Digest();
+    byte[] bytesBuffer = new byte[bufferSize];
+    int bytesRead;
+    while ((bytesRead = inputStream.read(bytesBuffer)) != -1) {
+      digest.update(bytesBuffer, 0, bytesRead);
+      outputStream.write(bytesBuffer, 0, bytesRead);
     }
-    return sb.toString();
-}
+    return toHex(digest.digest());
+  }
+
+  /**
+   * Creates a new SHA-256 message digest.
+   *
+   * @return a fresh SHA-256 digest
+   */
+  public static MessageDigest newSha256Digest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+    }
+  }
+
+  /**
+   * Converts the given bytes to a lowercase hexadecimal string.
+   *
+   * @param bytes the bytes to convert
+   * @return the hexadecimal representation of the bytes
+   */
+  public static String toHex(byte[] bytes) {
+    char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+      chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+    }
+    return new String(chars);
+  }
 }
@@ -0,0 +1,15 @@
+-- Files table for the reactive profile, which runs without JPA and therefore without ddl-auto.
+-- Matches the columns Hibernate generates for FileEntity, so both stacks can share one database.
+create table if not exists files (
+    id uuid not null primary key,
+    file_name varchar(255) not null,
+    content_type varchar(255) not null,
+    size bigint not null,
+    upload_timestamp timestamp(6) not null,
+    file_path varchar(255) not null,
+    hash varchar(255) not null unique,
+    storage_codec varchar(255),
+    stored_size bigint,
+    compression_cpu_nanos bigint,
+    chunk_manifest bytea
+);
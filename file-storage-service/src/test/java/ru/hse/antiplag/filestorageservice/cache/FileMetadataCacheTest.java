@@ -0,0 +1,108 @@
+package ru.hse.antiplag.filestorageservice.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+
+class FileMetadataCacheTest {
+
+  private FileMetadataCache cache;
+  private SimpleMeterRegistry registry;
+
+  @BeforeEach
+  void setUp() {
+    cache = new FileMetadataCache(1 << 20);
+    registry = new SimpleMeterRegistry();
+    cache.bindTo(registry);
+  }
+
+  @Test
+  void getByIdLoadsOnceTest() {
+    FileEntity aboba = fileEntity("hash-aboba");
+    AtomicInteger loads = new AtomicInteger();
+
+    for (int i = 0; i < 3; i++) {
+      Optional<FileEntity> found = cache.getById(aboba.getId(), id -> {
+        loads.incrementAndGet();
+        return Optional.of(aboba);
+      });
+      assertSame(aboba, found.orElseThrow());
+    }
+
+    assertEquals(1, loads.get());
+    assertEquals(2.0, registry.get("cache.gets").tag("cache", "file.metadata.by-id").tag("result", "hit").functionCounter().count());
+    assertEquals(1.0, registry.get("cache.gets").tag("cache", "file.metadata.by-id").tag("result", "miss").functionCounter().count());
+  }
+
+  @Test
+  void getByHashUsesEntriesLoadedByIdTest() {
+    FileEntity aboba = fileEntity("hash-aboba");
+    cache.getById(aboba.getId(), id -> Optional.of(aboba));
+
+    Optional<FileEntity> found = cache.getByHash("hash-aboba", hash -> {
+      throw new AssertionError("Metadata should be served from the cache");
+    });
+
+    assertSame(aboba, found.orElseThrow());
+  }
+
+  @Test
+  void absentFilesAreNotCachedTest() {
+    UUID fileId = UUID.randomUUID();
+    AtomicInteger loads = new AtomicInteger();
+
+    cache.getById(fileId, id -> {
+      loads.incrementAndGet();
+      return Optional.empty();
+    });
+    cache.getById(fileId, id -> {
+      loads.incrementAndGet();
+      return Optional.empty();
+    });
+
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void invalidateTest() {
+    FileEntity aboba = fileEntity("hash-aboba");
+    cache.put(aboba);
+
+    cache.invalidate(aboba);
+
+    AtomicInteger loads = new AtomicInteger();
+    cache.getByHash("hash-aboba", hash -> {
+      loads.incrementAndGet();
+      return Optional.empty();
+    });
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  void evictsBySizeTest() {
+    FileMetadataCache smallCache = new FileMetadataCache(4 * 1024);
+    SimpleMeterRegistry smallRegistry = new SimpleMeterRegistry();
+    smallCache.bindTo(smallRegistry);
+    for (int i = 0; i < 100; i++) {
+      smallCache.put(fileEntity("hash-" + i));
+    }
+    smallCache.cleanUp();
+
+    assertTrue(smallRegistry.get("cache.evictions").tag("cache", "file.metadata.by-id").functionCounter().count() > 0);
+  }
+
+  private FileEntity fileEntity(String hash) {
+    FileEntity fileEntity = new FileEntity("aboba.txt", "text/plain", 5L, LocalDateTime.now(), "/path/to/" + hash, hash);
+    fileEntity.setId(UUID.randomUUID());
+    return fileEntity;
+  }
+}
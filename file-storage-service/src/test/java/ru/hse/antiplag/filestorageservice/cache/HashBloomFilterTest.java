@@ -0,0 +1,87 @@
+package ru.hse.antiplag.filestorageservice.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class HashBloomFilterTest {
+
+  private final SplittableRandom random = new SplittableRandom(42);
+
+  @Test
+  void noFalseNegativesTest() {
+    HashBloomFilter filter = HashBloomFilter.create(10_000, 0.01);
+    List<String> hashes = randomHashes(10_000);
+    hashes.forEach(filter::put);
+
+    for (String hash : hashes) {
+      assertTrue(filter.mightContain(hash));
+    }
+    filter.put("hash-aboba");
+    assertTrue(filter.mightContain("hash-aboba"));
+  }
+
+  @Test
+  void falsePositiveRateTest() {
+    HashBloomFilter filter = HashBloomFilter.create(10_000, 0.01);
+    randomHashes(10_000).forEach(filter::put);
+
+    int falsePositives = 0;
+    for (String hash : randomHashes(100_000)) {
+      if (filter.mightContain(hash)) {
+        falsePositives++;
+      }
+    }
+
+    assertTrue(falsePositives < 2_000, "False positives: " + falsePositives);
+    assertTrue(filter.expectedFalsePositiveRate() < 0.02);
+    assertTrue(filter.approximateElementCount() > 9_900);
+  }
+
+  @Test
+  void snapshotRoundTripTest() throws IOException {
+    HashBloomFilter filter = HashBloomFilter.create(1_000, 0.01);
+    List<String> hashes = randomHashes(500);
+    hashes.forEach(filter::put);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    filter.writeTo(new DataOutputStream(bytes));
+    HashBloomFilter restored = HashBloomFilter.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+    for (String hash : hashes) {
+      assertTrue(restored.mightContain(hash));
+    }
+    assertEquals(filter.approximateElementCount(), restored.approximateElementCount());
+    assertEquals(filter.expectedFalsePositiveRate(), restored.expectedFalsePositiveRate());
+    assertEquals(filter.bitSizeInBytes(), restored.bitSizeInBytes());
+  }
+
+  @Test
+  void emptyFilterTest() {
+    HashBloomFilter filter = HashBloomFilter.create(1_000, 0.01);
+
+    assertFalse(filter.mightContain(randomHashes(1).get(0)));
+    assertEquals(0.0, filter.expectedFalsePositiveRate());
+  }
+
+  private List<String> randomHashes(int count) {
+    List<String> hashes = new ArrayList<>(count);
+    byte[] digest = new byte[32];
+    for (int i = 0; i < count; i++) {
+      random.nextBytes(digest);
+      hashes.add(HexFormat.of().formatHex(digest));
+    }
+    return hashes;
+  }
+}
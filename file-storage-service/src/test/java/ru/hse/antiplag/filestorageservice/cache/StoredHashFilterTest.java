@@ -0,0 +1,119 @@
+package ru.hse.antiplag.filestorageservice.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.hse.antiplag.filestorageservice.repository.FileRepository;
+import ru.hse.antiplag.filestorageservice.storage.BlobLayout;
+
+@ExtendWith(MockitoExtension.class)
+class StoredHashFilterTest {
+
+  @Mock
+  private FileRepository fileRepository;
+
+  @TempDir
+  Path tempDir;
+
+  private BlobLayout blobLayout;
+  private StoredHashFilter storedHashFilter;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    blobLayout = new BlobLayout(tempDir.toString());
+    storedHashFilter = newFilter();
+  }
+
+  @Test
+  void notReadyFilterPassesEverythingTest() {
+    assertFalse(storedHashFilter.isReady());
+    assertTrue(storedHashFilter.mightContain("hash-aboba"));
+  }
+
+  @Test
+  void loadRebuildsFromDatabaseTest() {
+    when(fileRepository.count()).thenReturn(2L);
+    when(fileRepository.streamAllHashes()).thenReturn(Stream.of("hash-aboba"));
+    when(fileRepository.findHashesUploadedSince(any(LocalDateTime.class))).thenReturn(List.of("hash-kek"));
+
+    storedHashFilter.load();
+
+    assertTrue(storedHashFilter.isReady());
+    assertTrue(storedHashFilter.mightContain("hash-aboba"));
+    assertTrue(storedHashFilter.mightContain("hash-kek"));
+    assertFalse(storedHashFilter.mightContain("hash-lol"));
+  }
+
+  @Test
+  void snapshotRestoreTest() {
+    when(fileRepository.streamAllHashes()).thenReturn(Stream.of("hash-aboba"));
+    storedHashFilter.rebuild();
+    storedHashFilter.add("hash-kek");
+    storedHashFilter.saveSnapshot();
+    assertTrue(Files.exists(tempDir.resolve(".meta").resolve("hash-filter.bin")));
+
+    StoredHashFilter restarted = newFilter();
+    when(fileRepository.findHashesUploadedSince(any(LocalDateTime.class))).thenReturn(List.of("hash-lol"));
+    restarted.load();
+
+    assertTrue(restarted.isReady());
+    assertTrue(restarted.mightContain("hash-aboba"));
+    assertTrue(restarted.mightContain("hash-kek"));
+    assertTrue(restarted.mightContain("hash-lol"));
+    verify(fileRepository, times(1)).streamAllHashes();
+  }
+
+  @Test
+  void corruptedSnapshotFallsBackToRebuildTest() throws IOException {
+    Files.createDirectories(tempDir.resolve(".meta"));
+    Files.writeString(tempDir.resolve(".meta").resolve("hash-filter.bin"), "aboba");
+    when(fileRepository.streamAllHashes()).thenReturn(Stream.of("hash-aboba"));
+
+    storedHashFilter.load();
+
+    assertTrue(storedHashFilter.mightContain("hash-aboba"));
+  }
+
+  @Test
+  void metricsTest() {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    storedHashFilter.bindTo(registry);
+    when(fileRepository.streamAllHashes()).thenReturn(Stream.of("hash-aboba"));
+    storedHashFilter.rebuild();
+
+    storedHashFilter.mightContain("hash-aboba");
+    storedHashFilter.recordFalsePositive();
+    storedHashFilter.mightContain("hash-kek");
+
+    assertEquals(1.0, registry.get("file.hash.filter.lookups").tag("result", "positive").functionCounter().count());
+    assertEquals(1.0, registry.get("file.hash.filter.lookups").tag("result", "negative").functionCounter().count());
+    assertEquals(1.0, registry.get("file.hash.filter.false.positives").functionCounter().count());
+    assertTrue(registry.get("file.hash.filter.size").gauge().value() > 0);
+    assertTrue(registry.get("file.hash.filter.expected.false.positive.rate").gauge().value() < 0.01);
+    verify(fileRepository, never()).findByHash(any(String.class));
+  }
+
+  private StoredHashFilter newFilter() {
+    return new StoredHashFilter(blobLayout, fileRepository, TransactionOperations.withoutTransaction(), 1000, 0.01);
+  }
+}
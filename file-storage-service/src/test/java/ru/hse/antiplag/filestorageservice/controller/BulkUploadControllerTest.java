@@ -0,0 +1,89 @@
+package ru.hse.antiplag.filestorageservice.controller;
+
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.hse.antiplag.filestorageservice.service.ArchiveTooLargeException;
+import ru.hse.antiplag.filestorageservice.service.BulkIngestResult;
+import ru.hse.antiplag.filestorageservice.service.BulkIngestService;
+
+@WebMvcTest(BulkUploadController.class)
+class BulkUploadControllerTest {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @MockBean
+  private BulkIngestService bulkIngestService;
+
+  @Test
+  void uploadFiles_shouldReturnResultForEveryFile() throws Exception {
+    UUID fileId = UUID.randomUUID();
+    given(bulkIngestService.ingestFiles(anyList())).willReturn(List.of(
+        new BulkIngestResult("aboba.txt", fileId, BulkIngestResult.Status.STORED, null),
+        new BulkIngestResult("kek.txt", null, BulkIngestResult.Status.FAILED, "File is empty")));
+
+    mockMvc.perform(multipart("/api/v1/files/bulk")
+            .file(new MockMultipartFile("files", "aboba.txt", MediaType.TEXT_PLAIN_VALUE, "aboba".getBytes()))
+            .file(new MockMultipartFile("files", "kek.txt", MediaType.TEXT_PLAIN_VALUE, new byte[0])))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].fileId", is(fileId.toString())))
+        .andExpect(jsonPath("$[0].status", is("STORED")))
+        .andExpect(jsonPath("$[1].status", is("FAILED")))
+        .andExpect(jsonPath("$[1].error", is("File is empty")));
+  }
+
+  @Test
+  void uploadArchive_shouldReturnResultForEveryEntry() throws Exception {
+    UUID fileId = UUID.randomUUID();
+    given(bulkIngestService.ingestArchive(any(InputStream.class))).willReturn(List.of(
+        new BulkIngestResult("aboba.txt", fileId, BulkIngestResult.Status.DEDUPLICATED, null)));
+
+    mockMvc.perform(post("/api/v1/files/bulk")
+            .contentType("application/zip")
+            .content(new byte[] {'P', 'K'}))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].fileName", is("aboba.txt")))
+        .andExpect(jsonPath("$[0].status", is("DEDUPLICATED")));
+  }
+
+  @Test
+  void uploadArchive_shouldReturnServerError_whenArchiveIsBroken() throws Exception {
+    given(bulkIngestService.ingestArchive(any(InputStream.class))).willThrow(new IOException("Unexpected end of ZLIB input stream"));
+
+    mockMvc.perform(post("/api/v1/files/bulk")
+            .contentType("application/zip")
+            .content(new byte[] {'P', 'K'}))
+        .andExpect(status().isInternalServerError());
+  }
+
+  @Test
+  void uploadArchive_shouldReturnPayloadTooLarge_whenArchiveExceedsLimits() throws Exception {
+    given(bulkIngestService.ingestArchive(any(InputStream.class)))
+        .willThrow(new ArchiveTooLargeException("Archive has more than 2 files"));
+
+    mockMvc.perform(post("/api/v1/files/bulk")
+            .contentType("application/zip")
+            .content(new byte[] {'P', 'K'}))
+        .andExpect(status().isPayloadTooLarge())
+        .andExpect(content().string("Archive has more than 2 files"));
+  }
+}
@@ -0,0 +1,160 @@
+package ru.hse.antiplag.filestorageservice.controller;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+import ru.hse.antiplag.filestorageservice.service.ChunkedUploadService;
+import ru.hse.antiplag.filestorageservice.service.MissingChunks;
+import ru.hse.antiplag.filestorageservice.service.MissingChunksException;
+import ru.hse.antiplag.filestorageservice.service.UploadProgress;
+import ru.hse.antiplag.filestorageservice.storage.ChunkManifest;
+
+@WebMvcTest(ChunkedUploadController.class)
+class ChunkedUploadControllerTest {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @MockBean
+  private ChunkedUploadService chunkedUploadService;
+
+  @Test
+  void startUpload_shouldReturnUploadId() throws Exception {
+    UUID uploadId = UUID.randomUUID();
+    given(chunkedUploadService.startUpload("aboba.pdf", "application/pdf")).willReturn(new UploadProgress(uploadId, 0, true));
+
+    mockMvc.perform(post("/api/v1/files/uploads")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("{\"fileName\":\"aboba.pdf\",\"contentType\":\"application/pdf\"}"))
+        .andExpect(status().isCreated())
+        .andExpect(jsonPath("$.uploadId", is(uploadId.toString())))
+        .andExpect(jsonPath("$.offset", is(0)));
+  }
+
+  @Test
+  void startUpload_shouldReturnBadRequest_whenFileNameIsEmpty() throws Exception {
+    mockMvc.perform(post("/api/v1/files/uploads")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("{\"contentType\":\"application/pdf\"}"))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void appendChunk_shouldReturnNewOffset() throws Exception {
+    UUID uploadId = UUID.randomUUID();
+    given(chunkedUploadService.appendChunk(eq(uploadId), eq(10L), any(InputStream.class)))
+        .willReturn(Optional.of(new UploadProgress(uploadId, 15, true)));
+
+    mockMvc.perform(put("/api/v1/files/uploads/" + uploadId)
+            .header("Upload-Offset", 10)
+            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+            .content("aboba".getBytes()))
+        .andExpect(status().isOk())
+        .andExpect(header().string("Upload-Offset", "15"));
+  }
+
+  @Test
+  void appendChunk_shouldReturnConflict_whenOffsetDoesNotMatch() throws Exception {
+    UUID uploadId = UUID.randomUUID();
+    given(chunkedUploadService.appendChunk(eq(uploadId), eq(0L), any(InputStream.class)))
+        .willReturn(Optional.of(new UploadProgress(uploadId, 15, false)));
+
+    mockMvc.perform(put("/api/v1/files/uploads/" + uploadId)
+            .header("Upload-Offset", 0)
+            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+            .content("kek".getBytes()))
+        .andExpect(status().isConflict())
+        .andExpect(header().string("Upload-Offset", "15"));
+  }
+
+  @Test
+  void getProgress_shouldReturnNotFound_whenUploadIsUnknown() throws Exception {
+    UUID uploadId = UUID.randomUUID();
+    given(chunkedUploadService.getProgress(uploadId)).willReturn(Optional.empty());
+
+    mockMvc.perform(get("/api/v1/files/uploads/" + uploadId))
+        .andExpect(status().isNotFound());
+  }
+
+  @Test
+  void submitManifest_shouldReturnMissingChunks() throws Exception {
+    UUID uploadId = UUID.randomUUID();
+    String abobaHash = "ab".repeat(32);
+    String kekHash = "cd".repeat(32);
+    given(chunkedUploadService.submitManifest(eq(uploadId), any(ChunkManifest.class)))
+        .willReturn(Optional.of(new MissingChunks(uploadId, List.of(kekHash))));
+
+    mockMvc.perform(post("/api/v1/files/uploads/" + uploadId + "/manifest")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("{\"chunks\":[{\"hash\":\"" + abobaHash + "\",\"length\":5},"
+                + "{\"hash\":\"" + kekHash + "\",\"length\":3}]}"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.hashes[0]", is(kekHash)));
+
+    ArgumentCaptor<ChunkManifest> manifestCaptor = ArgumentCaptor.forClass(ChunkManifest.class);
+    verify(chunkedUploadService).submitManifest(eq(uploadId), manifestCaptor.capture());
+    assertEquals(8, manifestCaptor.getValue().getTotalSize());
+    assertEquals(5, manifestCaptor.getValue().getChunks().get(1).getOffset());
+  }
+
+  @Test
+  void storeChunk_shouldReturnBadRequest_whenContentDoesNotMatchHash() throws Exception {
+    UUID uploadId = UUID.randomUUID();
+    String hash = "ab".repeat(32);
+    given(chunkedUploadService.storeChunk(eq(uploadId), eq(hash), any(InputStream.class)))
+        .willThrow(new IllegalArgumentException("Chunk content does not match hash"));
+
+    mockMvc.perform(put("/api/v1/files/uploads/" + uploadId + "/chunks/" + hash)
+            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+            .content("lol".getBytes()))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void completeUpload_shouldReturnConflict_whenChunksAreMissing() throws Exception {
+    UUID uploadId = UUID.randomUUID();
+    String hash = "ab".repeat(32);
+    given(chunkedUploadService.completeUpload(uploadId)).willThrow(new MissingChunksException(List.of(hash)));
+
+    mockMvc.perform(post("/api/v1/files/uploads/" + uploadId + "/commit"))
+        .andExpect(status().isConflict())
+        .andExpect(jsonPath("$.hashes[0]", is(hash)));
+  }
+
+  @Test
+  void completeUpload_shouldReturnFileIdAndName() throws Exception {
+    UUID uploadId = UUID.randomUUID();
+    UUID fileId = UUID.randomUUID();
+    FileEntity fileEntity = new FileEntity("aboba.pdf", "application/pdf", 15L, LocalDateTime.now(), "/path/to/chunks", "hash");
+    fileEntity.setId(fileId);
+    given(chunkedUploadService.completeUpload(uploadId)).willReturn(Optional.of(fileEntity));
+
+    mockMvc.perform(post("/api/v1/files/uploads/" + uploadId + "/commit"))
+        .andExpect(status().isCreated())
+        .andExpect(jsonPath("$.id", is(fileId.toString())))
+        .andExpect(jsonPath("$.fileName", is("aboba.pdf")));
+  }
+}
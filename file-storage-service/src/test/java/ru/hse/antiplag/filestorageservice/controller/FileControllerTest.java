@@ -1,8 +1,13 @@
  package ru.hse.antiplag.filestorageservice.controller;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
@@ -11,16 +16,23 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
+import org.springframework.core.io.UrlResource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
@@ -112,6 +124,175 @@ class FileControllerTest {
         .andExpect(status().isNotFound());
   }
 
+  @Test
+  void downloadFile_shouldReturnPartialContent_whenRangeRequested() throws Exception {
+    UUID fileId = UUID.randomUUID();
+    String fileContent = "This is the content!";
+    FileEntity mockEntity = new FileEntity("range.txt", MediaType.TEXT_PLAIN_VALUE, (long) fileContent.length(), LocalDateTime.now(), "/irrelevant/path/", "abc123");
+
+    given(fileStorageService.getFileMetadata(fileId)).willReturn(Optional.of(mockEntity));
+    given(fileStorageService.loadFileAsResource(fileId)).willReturn(Optional.of(new ByteArrayResource(fileContent.getBytes(StandardCharsets.UTF_8))));
+
+    mockMvc.perform(get("/api/v1/files/download/{fileId}", fileId).header(HttpHeaders.RANGE, "bytes=8-10"))
+        .andExpect(status().isPartialContent())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"abc123\""))
+        .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+        .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 8-10/20"))
+        .andExpect(content().string("the"));
+  }
+
+  @Test
+  void downloadFile_shouldReturnMultipleRanges_whenSeveralRangesRequested() throws Exception {
+    UUID fileId = UUID.randomUUID();
+    String fileContent = "This is the content!";
+    FileEntity mockEntity = new FileEntity("ranges.txt", MediaType.TEXT_PLAIN_VALUE, (long) fileContent.length(), LocalDateTime.now(), "/irrelevant/path/", "abc123");
+
+    given(fileStorageService.getFileMetadata(fileId)).willReturn(Optional.of(mockEntity));
+    given(fileStorageService.loadFileAsResource(fileId)).willReturn(Optional.of(new ByteArrayResource(fileContent.getBytes(StandardCharsets.UTF_8))));
+
+    mockMvc.perform(get("/api/v1/files/download/{fileId}", fileId).header(HttpHeaders.RANGE, "bytes=0-3,-8"))
+        .andExpect(status().isPartialContent())
+        .andExpect(header().string(HttpHeaders.CONTENT_TYPE, startsWith("multipart/byteranges; boundary=")))
+        .andExpect(content().string(containsString("Content-Range: bytes 0-3/20\r\n\r\nThis\r\n")))
+        .andExpect(content().string(containsString("Content-Range: bytes 12-19/20\r\n\r\ncontent!\r\n")));
+  }
+
+  @Test
+  void downloadFile_shouldMergeRangesAndReadStreamOnce_whenResourceIsNotFile() throws Exception {
+    UUID fileId = UUID.randomUUID();
+    String fileContent = "This is the content!";
+    FileEntity mockEntity = new FileEntity("ranges.txt", MediaType.TEXT_PLAIN_VALUE, (long) fileContent.length(), LocalDateTime.now(), "/irrelevant/path/", "abc123");
+    AtomicInteger openedStreams = new AtomicInteger();
+    Resource resource = new ByteArrayResource(fileContent.getBytes(StandardCharsets.UTF_8)) {
+      @Override
+      public InputStream getInputStream() throws IOException {
+        openedStreams.incrementAndGet();
+        return super.getInputStream();
+      }
+    };
+
+    given(fileStorageService.getFileMetadata(fileId)).willReturn(Optional.of(mockEntity));
+    given(fileStorageService.loadFileAsResource(fileId)).willReturn(Optional.of(resource));
+
+    String body = mockMvc.perform(get("/api/v1/files/download/{fileId}", fileId).header(HttpHeaders.RANGE, "bytes=12-15,0-3,2-6,16-19"))
+        .andExpect(status().isPartialContent())
+        .andExpect(header().string(HttpHeaders.CONTENT_TYPE, startsWith("multipart/byteranges; boundary=")))
+        .andReturn().getResponse().getContentAsString();
+
+    assertThat(body).containsSubsequence("Content-Range: bytes 0-6/20\r\n\r\nThis is\r\n",
+        "Content-Range: bytes 12-19/20\r\n\r\ncontent!\r\n");
+    assertThat(body).doesNotContain("bytes 2-6", "bytes 16-19");
+    assertThat(openedStreams).hasValue(1);
+  }
+
+  @Test
+  void downloadFile_shouldReturnRangeNotSatisfiable_whenRangeIsOutOfBounds() throws Exception {
+    UUID fileId = UUID.randomUUID();
+    FileEntity mockEntity = new FileEntity("range.txt", MediaType.TEXT_PLAIN_VALUE, 4L, LocalDateTime.now(), "/irrelevant/path/", "abc123");
+
+    given(fileStorageService.getFileMetadata(fileId)).willReturn(Optional.of(mockEntity));
+    given(fileStorageService.loadFileAsResource(fileId)).willReturn(Optional.of(new ByteArrayResource("kek!".getBytes(StandardCharsets.UTF_8))));
+
+    mockMvc.perform(get("/api/v1/files/download/{fileId}", fileId).header(HttpHeaders.RANGE, "bytes=10-20"))
+        .andExpect(status().isRequestedRangeNotSatisfiable())
+        .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */4"));
+  }
+
+  @Test
+  void downloadFile_shouldIgnoreRange_whenRangeHeaderIsInvalid() throws Exception {
+    UUID fileId = UUID.randomUUID();
+    FileEntity mockEntity = new FileEntity("range.txt", MediaType.TEXT_PLAIN_VALUE, 4L, LocalDateTime.now(), "/irrelevant/path/", "abc123");
+
+    given(fileStorageService.getFileMetadata(fileId)).willReturn(Optional.of(mockEntity));
+    given(fileStorageService.loadFileAsResource(fileId)).willReturn(Optional.of(new ByteArrayResource("kek!".getBytes(StandardCharsets.UTF_8))));
+
+    for (String range : new String[] {"bytes=3-1", "bytes=aboba", "lines=0-1"}) {
+      mockMvc.perform(get("/api/v1/files/download/{fileId}", fileId).header(HttpHeaders.RANGE, range))
+          .andExpect(status().isOk())
+          .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+          .andExpect(content().string("kek!"));
+    }
+  }
+
+  @Test
+  void downloadFile_shouldReturnNotModified_whenETagMatches() throws Exception {
+    UUID fileId = UUID.randomUUID();
+    FileEntity mockEntity = new FileEntity("cached.txt", MediaType.TEXT_PLAIN_VALUE, 4L, LocalDateTime.now(), "/irrelevant/path/", "abc123");
+    given(fileStorageService.getFileMetadata(fileId)).willReturn(Optional.of(mockEntity));
+
+    mockMvc.perform(get("/api/v1/files/download/{fileId}", fileId).header(HttpHeaders.IF_NONE_MATCH, "\"abc123\""))
+        .andExpect(status().isNotModified())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"abc123\""));
+
+    verify(fileStorageService, never()).loadFileAsResource(fileId);
+  }
+
+  @Test
+  void downloadFile_shouldIgnoreRange_whenIfRangeDoesNotMatch() throws Exception {
+    UUID fileId = UUID.randomUUID();
+    FileEntity mockEntity = new FileEntity("range.txt", MediaType.TEXT_PLAIN_VALUE, 4L, LocalDateTime.now(), "/irrelevant/path/", "abc123");
+
+    given(fileStorageService.getFileMetadata(fileId)).willReturn(Optional.of(mockEntity));
+    given(fileStorageService.loadFileAsResource(fileId)).willReturn(Optional.of(new ByteArrayResource("kek!".getBytes(StandardCharsets.UTF_8))));
+
+    mockMvc.perform(get("/api/v1/files/download/{fileId}", fileId)
+            .header(HttpHeaders.RANGE, "bytes=0-1")
+            .header(HttpHeaders.IF_RANGE, "\"other\""))
+        .andExpect(status().isOk())
+        .andExpect(content().string("kek!"));
+  }
+
+  @Test
+  void downloadFile_shouldSendCompressedBlob_whenClientAcceptsGzip() throws Exception {
+    UUID fileId = UUID.randomUUID();
+    FileEntity mockEntity = new FileEntity("aboba.txt", MediaType.TEXT_PLAIN_VALUE, 100L, LocalDateTime.now(), "/path/to/aboba", "abc123");
+    mockEntity.setStorageCodec("gzip");
+    given(fileStorageService.getFileMetadata(fileId)).willReturn(Optional.of(mockEntity));
+    given(fileStorageService.loadStoredResource(fileId)).willReturn(Optional.of(new ByteArrayResource("gzipped".getBytes())));
+
+    mockMvc.perform(get("/api/v1/files/download/{fileId}", fileId).header(HttpHeaders.ACCEPT_ENCODING, "br, gzip;q=0.8"))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+        .andExpect(header().string(HttpHeaders.ETAG, "\"abc123-gzip\""))
+        .andExpect(header().string(HttpHeaders.VARY, containsString(HttpHeaders.ACCEPT_ENCODING)))
+        .andExpect(content().bytes("gzipped".getBytes()));
+
+    verify(fileStorageService, never()).loadFileAsResource(fileId);
+  }
+
+  @Test
+  void downloadFile_shouldDecompress_whenClientDoesNotAcceptGzip() throws Exception {
+    UUID fileId = UUID.randomUUID();
+    FileEntity mockEntity = new FileEntity("aboba.txt", MediaType.TEXT_PLAIN_VALUE, 5L, LocalDateTime.now(), "/path/to/aboba", "abc123");
+    mockEntity.setStorageCodec("gzip");
+    given(fileStorageService.getFileMetadata(fileId)).willReturn(Optional.of(mockEntity));
+    given(fileStorageService.loadFileAsResource(fileId)).willReturn(Optional.of(new ByteArrayResource("aboba".getBytes())));
+
+    mockMvc.perform(get("/api/v1/files/download/{fileId}", fileId).header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0"))
+        .andExpect(status().isOk())
+        .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+        .andExpect(header().string(HttpHeaders.ETAG, "\"abc123\""))
+        .andExpect(content().string("aboba"));
+
+    verify(fileStorageService, never()).loadStoredResource(fileId);
+  }
+
+  @Test
+  void downloadFile_shouldTransferFileRange_whenResourceIsFile(@TempDir Path tempDir) throws Exception {
+    UUID fileId = UUID.randomUUID();
+    Path filePath = tempDir.resolve("on-disk.txt");
+    Files.writeString(filePath, "Aboba on disk content");
+    FileEntity mockEntity = new FileEntity("on-disk.txt", MediaType.TEXT_PLAIN_VALUE, Files.size(filePath), LocalDateTime.now(), filePath.toString(), "abc123");
+
+    given(fileStorageService.getFileMetadata(fileId)).willReturn(Optional.of(mockEntity));
+    given(fileStorageService.loadFileAsResource(fileId)).willReturn(Optional.of(new UrlResource(filePath.toUri())));
+
+    mockMvc.perform(get("/api/v1/files/download/{fileId}", fileId).header(HttpHeaders.RANGE, "bytes=6-7"))
+        .andExpect(status().isPartialContent())
+        .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 6-7/21"))
+        .andExpect(content().string("on"));
+  }
+
   @Test
   void getFileMetadata_shouldReturnMetadata_whenFileExists() throws Exception {
     UUID fileId = UUID.randomUUID();
@@ -0,0 +1,171 @@
+package ru.hse.antiplag.filestorageservice.controller;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+import ru.hse.antiplag.filestorageservice.service.ReactiveFileStorageService;
+
+@WebFluxTest(ReactiveFileController.class)
+@ActiveProfiles("reactive")
+class ReactiveFileControllerTest {
+
+  @Autowired
+  private WebTestClient webTestClient;
+
+  @MockBean
+  private ReactiveFileStorageService fileStorageService;
+
+  @Test
+  void uploadFileStreamsFilePartTest() {
+    FileEntity fileEntity = fileEntity("aboba.txt");
+    given(fileStorageService.storeFile(eq("aboba.txt"), eq(MediaType.TEXT_PLAIN_VALUE), any()))
+        .willAnswer(invocation -> {
+          Flux<DataBuffer> content = invocation.getArgument(2);
+          return DataBufferUtils.join(content).map(buffer -> {
+            String body = buffer.toString(StandardCharsets.UTF_8);
+            DataBufferUtils.release(buffer);
+            return body;
+          }).filter("abobakek"::equals).map(body -> fileEntity);
+        });
+    MultipartBodyBuilder body = new MultipartBodyBuilder();
+    body.part("comment", "kek");
+    body.part("file", "abobakek".getBytes(StandardCharsets.UTF_8))
+        .filename("aboba.txt")
+        .contentType(MediaType.TEXT_PLAIN);
+
+    webTestClient.post().uri("/api/v1/files/upload")
+        .body(BodyInserters.fromMultipartData(body.build()))
+        .exchange()
+        .expectStatus().isCreated()
+        .expectBody()
+        .jsonPath("$.id").isEqualTo(fileEntity.getId().toString())
+        .jsonPath("$.fileName").isEqualTo("aboba.txt");
+  }
+
+  @Test
+  void uploadEmptyFileTest() {
+    given(fileStorageService.storeFile(eq("aboba.txt"), any(), any())).willReturn(Mono.empty());
+    MultipartBodyBuilder body = new MultipartBodyBuilder();
+    body.part("file", new byte[0]).filename("aboba.txt");
+
+    webTestClient.post().uri("/api/v1/files/upload")
+        .body(BodyInserters.fromMultipartData(body.build()))
+        .exchange()
+        .expectStatus().isBadRequest()
+        .expectBody(String.class).isEqualTo("File is empty");
+  }
+
+  @Test
+  void uploadWithoutFilePartTest() {
+    MultipartBodyBuilder body = new MultipartBodyBuilder();
+    body.part("comment", "kek");
+
+    webTestClient.post().uri("/api/v1/files/upload")
+        .body(BodyInserters.fromMultipartData(body.build()))
+        .exchange()
+        .expectStatus().isBadRequest();
+
+    verify(fileStorageService, never()).storeFile(any(), any(), any());
+  }
+
+  @Test
+  void downloadFileTest() {
+    FileEntity fileEntity = fileEntity("aboba.txt");
+    given(fileStorageService.getFileMetadata(fileEntity.getId())).willReturn(Mono.just(fileEntity));
+    given(fileStorageService.readFile(fileEntity, true)).willReturn(Optional.of(
+        Flux.just(DefaultDataBufferFactory.sharedInstance.wrap("abobakek".getBytes(StandardCharsets.UTF_8)))));
+
+    webTestClient.get().uri("/api/v1/files/download/{fileId}", fileEntity.getId())
+        .exchange()
+        .expectStatus().isOk()
+        .expectHeader().valueEquals(HttpHeaders.ETAG, "\"aboba\"")
+        .expectHeader().valueEquals(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"aboba.txt\"")
+        .expectBody(String.class).isEqualTo("abobakek");
+  }
+
+  @Test
+  void downloadCompressedFileToGzipClientTest() {
+    FileEntity fileEntity = fileEntity("aboba.txt");
+    fileEntity.setStorageCodec("gzip");
+    fileEntity.setStoredSize(3L);
+    given(fileStorageService.getFileMetadata(fileEntity.getId())).willReturn(Mono.just(fileEntity));
+    given(fileStorageService.readFile(fileEntity, false)).willReturn(Optional.of(
+        Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(new byte[] {1, 2, 3}))));
+
+    webTestClient.get().uri("/api/v1/files/download/{fileId}", fileEntity.getId())
+        .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate")
+        .exchange()
+        .expectStatus().isOk()
+        .expectHeader().valueEquals(HttpHeaders.CONTENT_ENCODING, "gzip")
+        .expectHeader().valueEquals(HttpHeaders.ETAG, "\"aboba-gzip\"")
+        .expectHeader().valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+        .expectHeader().contentLength(3);
+  }
+
+  @Test
+  void downloadNotModifiedTest() {
+    FileEntity fileEntity = fileEntity("aboba.txt");
+    given(fileStorageService.getFileMetadata(fileEntity.getId())).willReturn(Mono.just(fileEntity));
+
+    webTestClient.get().uri("/api/v1/files/download/{fileId}", fileEntity.getId())
+        .header(HttpHeaders.IF_NONE_MATCH, "\"aboba\"")
+        .exchange()
+        .expectStatus().isNotModified();
+
+    verify(fileStorageService, never()).readFile(any(), anyBoolean());
+  }
+
+  @Test
+  void downloadMissingFileTest() {
+    UUID fileId = UUID.randomUUID();
+    given(fileStorageService.getFileMetadata(fileId)).willReturn(Mono.empty());
+
+    webTestClient.get().uri("/api/v1/files/download/{fileId}", fileId)
+        .exchange()
+        .expectStatus().isNotFound();
+  }
+
+  @Test
+  void getFileMetadataTest() {
+    FileEntity fileEntity = fileEntity("aboba.txt");
+    given(fileStorageService.getFileMetadata(fileEntity.getId())).willReturn(Mono.just(fileEntity));
+
+    webTestClient.get().uri("/api/v1/files/{fileId}/metadata", fileEntity.getId())
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody()
+        .jsonPath("$.fileName").isEqualTo("aboba.txt")
+        .jsonPath("$.hash").isEqualTo("aboba");
+  }
+
+  private static FileEntity fileEntity(String fileName) {
+    FileEntity fileEntity = new FileEntity(fileName, MediaType.TEXT_PLAIN_VALUE, 8L, LocalDateTime.now(),
+        "/tmp/" + fileName, "aboba");
+    fileEntity.setId(UUID.randomUUID());
+    return fileEntity;
+  }
+}
@@ -0,0 +1,105 @@
+package ru.hse.antiplag.filestorageservice.events;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.condition.EmbeddedKafkaCondition;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+
+/**
+ * Tests for {@link KafkaFileStoredEventPublisher}.
+ */
+@EmbeddedKafka(partitions = 1, topics = KafkaFileStoredEventPublisherTest.TOPIC)
+class KafkaFileStoredEventPublisherTest {
+
+  static final String TOPIC = "file-stored";
+
+  private DefaultKafkaProducerFactory<String, FileStoredEvent> producerFactory;
+  private Consumer<String, String> consumer;
+  private KafkaFileStoredEventPublisher publisher;
+
+  @BeforeEach
+  void setUp() {
+    EmbeddedKafkaBroker broker = EmbeddedKafkaCondition.getBroker();
+    Map<String, Object> producerProps = KafkaTestUtils.producerProps(broker);
+    producerProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+    producerProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+    producerProps.put(JsonSerializer.ADD_TYPE_INFO_HEADERS, false);
+    producerFactory = new DefaultKafkaProducerFactory<>(producerProps);
+    publisher = new KafkaFileStoredEventPublisher(new KafkaTemplate<>(producerFactory), TOPIC);
+
+    Map<String, Object> consumerProps = KafkaTestUtils.consumerProps("aboba-" + UUID.randomUUID(), "false", broker);
+    consumer = new DefaultKafkaConsumerFactory<>(consumerProps, new StringDeserializer(), new StringDeserializer())
+        .createConsumer();
+    broker.consumeFromAnEmbeddedTopic(consumer, true, TOPIC);
+    consumer.assignment().forEach(consumer::position);
+  }
+
+  @AfterEach
+  void tearDown() {
+    consumer.close();
+    producerFactory.destroy();
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  @Test
+  void publishWithoutTransactionSendsEventTest() throws Exception {
+    FileEntity fileEntity = fileEntity();
+
+    publisher.publishAfterCommit(fileEntity);
+
+    ConsumerRecord<String, String> record = KafkaTestUtils.getSingleRecord(consumer, TOPIC, Duration.ofSeconds(10));
+    assertThat(record.key()).isEqualTo(fileEntity.getId().toString());
+    assertThat(record.headers().lastHeader("__TypeId__")).isNull();
+    JsonNode event = new ObjectMapper().readTree(record.value());
+    assertThat(event.get("fileId").asText()).isEqualTo(fileEntity.getId().toString());
+    assertThat(event.get("hash").asText()).isEqualTo("aboba-hash");
+    assertThat(event.get("size").asLong()).isEqualTo(11L);
+    assertThat(event.get("contentType").asText()).isEqualTo("text/plain");
+  }
+
+  @Test
+  void publishInTransactionWaitsForCommitTest() {
+    FileEntity fileEntity = fileEntity();
+    TransactionSynchronizationManager.initSynchronization();
+
+    publisher.publishAfterCommit(fileEntity);
+
+    assertThat(KafkaTestUtils.getRecords(consumer, Duration.ofMillis(500)).isEmpty()).isTrue();
+    for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+      synchronization.afterCommit();
+    }
+    ConsumerRecord<String, String> record = KafkaTestUtils.getSingleRecord(consumer, TOPIC, Duration.ofSeconds(10));
+    assertThat(record.key()).isEqualTo(fileEntity.getId().toString());
+  }
+
+  private static FileEntity fileEntity() {
+    FileEntity fileEntity = new FileEntity("aboba.txt", "text/plain", 11L, LocalDateTime.now(), "/tmp/aboba", "aboba-hash");
+    fileEntity.setId(UUID.randomUUID());
+    return fileEntity;
+  }
+}
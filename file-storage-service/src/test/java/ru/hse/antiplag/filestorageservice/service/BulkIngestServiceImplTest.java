@@ -0,0 +1,356 @@
+package ru.hse.antiplag.filestorageservice.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.web.multipart.MultipartFile;
+import ru.hse.antiplag.filestorageservice.cache.FileMetadataCache;
+import ru.hse.antiplag.filestorageservice.cache.StoredHashFilter;
+import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+import ru.hse.antiplag.filestorageservice.events.FileStoredEventPublisher;
+import ru.hse.antiplag.filestorageservice.repository.FileRepository;
+import ru.hse.antiplag.filestorageservice.storage.BlobCompression;
+import ru.hse.antiplag.filestorageservice.storage.BlobLayout;
+import ru.hse.antiplag.filestorageservice.utils.FileHashUtil;
+
+@ExtendWith(MockitoExtension.class)
+class BulkIngestServiceImplTest {
+
+  @Mock
+  private FileRepository fileRepository;
+
+  @Mock
+  private FileStoredEventPublisher fileStoredEventPublisher;
+
+  @Captor
+  private ArgumentCaptor<List<FileEntity>> savedCaptor;
+
+  @TempDir
+  Path tempDir;
+
+  private BlobLayout blobLayout;
+  private BulkIngestServiceImpl bulkIngestService;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    blobLayout = new BlobLayout(tempDir.toString());
+    bulkIngestService = newService(1000, 1L << 30, 1L << 32);
+  }
+
+  private BulkIngestServiceImpl newService(int maxEntries, long maxEntrySize, long maxExpandedSize) {
+    StoredHashFilter storedHashFilter =
+        new StoredHashFilter(blobLayout, fileRepository, TransactionOperations.withoutTransaction(), 1000, 0.01);
+    return new BulkIngestServiceImpl(blobLayout, 64 * 1024, fileRepository, new FileMetadataCache(1 << 20),
+        storedHashFilter, new BlobCompression(true, List.of("text/*"), 1024, 6, new SimpleMeterRegistry()),
+        TransactionOperations.withoutTransaction(), new InFlightUploads(Duration.ofSeconds(10)),
+        fileStoredEventPublisher, 4, 2, maxEntries, maxEntrySize, maxExpandedSize);
+  }
+
+  @AfterEach
+  void tearDown() {
+    bulkIngestService.shutdown();
+  }
+
+  @Test
+  void ingestFilesDeduplicatesWithinBatchAndAgainstDbTest() throws IOException {
+    byte[] existingContent = "kek".getBytes(StandardCharsets.UTF_8);
+    String existingHash = sha256(existingContent);
+    Files.write(blobLayout.prepare(existingHash), existingContent);
+    FileEntity existingEntity = new FileEntity("kek.txt", MediaType.TEXT_PLAIN_VALUE, 3L, LocalDateTime.now(),
+        blobLayout.resolve(existingHash).toString(), existingHash);
+    existingEntity.setId(UUID.randomUUID());
+    when(fileRepository.findByHashIn(anyCollection())).thenReturn(List.of(existingEntity));
+    when(fileRepository.saveAll(any())).thenAnswer(invocation -> assignIds(invocation.getArgument(0)));
+
+    List<MultipartFile> files = List.of(
+        new MockMultipartFile("files", "aboba-1.txt", MediaType.TEXT_PLAIN_VALUE, "aboba".getBytes(StandardCharsets.UTF_8)),
+        new MockMultipartFile("files", "aboba-2.txt", MediaType.TEXT_PLAIN_VALUE, "aboba".getBytes(StandardCharsets.UTF_8)),
+        new MockMultipartFile("files", "kek-copy.txt", MediaType.TEXT_PLAIN_VALUE, existingContent));
+
+    List<BulkIngestResult> results = bulkIngestService.ingestFiles(files);
+
+    assertThat(results).extracting(BulkIngestResult::getStatus).containsExactly(
+        BulkIngestResult.Status.STORED, BulkIngestResult.Status.DEDUPLICATED, BulkIngestResult.Status.DEDUPLICATED);
+    assertThat(results.get(1).getFileId()).isEqualTo(results.get(0).getFileId());
+    assertThat(results.get(2).getFileId()).isEqualTo(existingEntity.getId());
+
+    verify(fileRepository, times(1)).saveAll(savedCaptor.capture());
+    assertThat(savedCaptor.getValue()).singleElement()
+        .satisfies(saved -> assertThat(saved.getHash()).isEqualTo(sha256("aboba".getBytes(StandardCharsets.UTF_8))));
+    verify(fileRepository, times(1)).findByHashIn(anyCollection());
+    verify(fileRepository, never()).findByHash(any());
+    verify(fileStoredEventPublisher).publishAfterCommit(savedCaptor.getValue().get(0));
+    assertThat(Files.readAllBytes(blobLayout.resolve(sha256("aboba".getBytes(StandardCharsets.UTF_8)))))
+        .isEqualTo("aboba".getBytes(StandardCharsets.UTF_8));
+    assertTempDirectoryEmpty();
+  }
+
+  @Test
+  void ingestFilesSplitsLookupIntoBatchesTest() {
+    when(fileRepository.findByHashIn(anyCollection())).thenReturn(List.of());
+    when(fileRepository.saveAll(any())).thenAnswer(invocation -> assignIds(invocation.getArgument(0)));
+    List<MultipartFile> files = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      files.add(new MockMultipartFile("files", "aboba-" + i + ".txt", MediaType.TEXT_PLAIN_VALUE,
+          ("aboba " + i).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    List<BulkIngestResult> results = bulkIngestService.ingestFiles(files);
+
+    assertThat(results).extracting(BulkIngestResult::getStatus).containsOnly(BulkIngestResult.Status.STORED);
+    assertThat(results).extracting(BulkIngestResult::getFileId).doesNotHaveDuplicates();
+    verify(fileRepository, times(3)).findByHashIn(anyCollection());
+  }
+
+  @Test
+  void ingestFilesReportsEmptyFileTest() throws IOException {
+    when(fileRepository.findByHashIn(anyCollection())).thenReturn(List.of());
+    when(fileRepository.saveAll(any())).thenAnswer(invocation -> assignIds(invocation.getArgument(0)));
+
+    List<BulkIngestResult> results = bulkIngestService.ingestFiles(List.of(
+        new MockMultipartFile("files", "empty.txt", MediaType.TEXT_PLAIN_VALUE, new byte[0]),
+        new MockMultipartFile("files", "aboba.txt", MediaType.TEXT_PLAIN_VALUE, "aboba".getBytes(StandardCharsets.UTF_8))));
+
+    assertThat(results.get(0).getStatus()).isEqualTo(BulkIngestResult.Status.FAILED);
+    assertThat(results.get(0).getError()).isEqualTo("File is empty");
+    assertThat(results.get(0).getFileId()).isNull();
+    assertThat(results.get(1).getStatus()).isEqualTo(BulkIngestResult.Status.STORED);
+    assertTempDirectoryEmpty();
+  }
+
+  @Test
+  void ingestFilesReplacesRecordWithMissingBlobTest() {
+    byte[] content = "aboba".getBytes(StandardCharsets.UTF_8);
+    String hash = sha256(content);
+    FileEntity brokenEntity = new FileEntity("aboba.txt", MediaType.TEXT_PLAIN_VALUE, 5L, LocalDateTime.now(),
+        tempDir.resolve("missing").toString(), hash);
+    brokenEntity.setId(UUID.randomUUID());
+    when(fileRepository.findByHashIn(anyCollection())).thenReturn(List.of(brokenEntity));
+    when(fileRepository.saveAll(any())).thenAnswer(invocation -> assignIds(invocation.getArgument(0)));
+
+    List<BulkIngestResult> results = bulkIngestService.ingestFiles(List.of(
+        new MockMultipartFile("files", "aboba.txt", MediaType.TEXT_PLAIN_VALUE, content)));
+
+    assertThat(results.get(0).getStatus()).isEqualTo(BulkIngestResult.Status.STORED);
+    assertThat(results.get(0).getFileId()).isNotEqualTo(brokenEntity.getId());
+    verify(fileRepository).deleteAllInBatch(List.of(brokenEntity));
+    assertThat(blobLayout.resolve(hash)).exists();
+  }
+
+  @Test
+  void ingestArchiveTest() throws IOException {
+    when(fileRepository.findByHashIn(anyCollection())).thenReturn(List.of());
+    when(fileRepository.saveAll(any())).thenAnswer(invocation -> assignIds(invocation.getArgument(0)));
+    byte[] text = "Aboba kek. ".repeat(500).getBytes(StandardCharsets.UTF_8);
+    byte[] binary = new byte[4096];
+    new Random(42).nextBytes(binary);
+    byte[] archive = zip(
+        new ZipContent("course/", null),
+        new ZipContent("course/aboba.txt", text),
+        new ZipContent("course/group/kek.bin", binary),
+        new ZipContent("course/group/aboba-copy.txt", text));
+
+    List<BulkIngestResult> results = bulkIngestService.ingestArchive(new ByteArrayInputStream(archive));
+
+    assertThat(results).extracting(BulkIngestResult::getFileName).containsExactly("aboba.txt", "kek.bin", "aboba-copy.txt");
+    assertThat(results).extracting(BulkIngestResult::getStatus).containsExactly(
+        BulkIngestResult.Status.STORED, BulkIngestResult.Status.STORED, BulkIngestResult.Status.DEDUPLICATED);
+
+    verify(fileRepository).saveAll(savedCaptor.capture());
+    FileEntity textEntity = savedCaptor.getValue().get(0);
+    FileEntity binaryEntity = savedCaptor.getValue().get(1);
+    assertThat(textEntity.getContentType()).isEqualTo(MediaType.TEXT_PLAIN_VALUE);
+    assertThat(textEntity.getHash()).isEqualTo(sha256(text));
+    assertThat(textEntity.getStorageCodec()).isEqualTo(BlobCompression.GZIP);
+    assertThat(textEntity.getStoredSize()).isLessThan(text.length);
+    assertThat(binaryEntity.getContentType()).isEqualTo(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+    assertThat(binaryEntity.getStorageCodec()).isNull();
+    assertThat(Files.readAllBytes(blobLayout.resolve(sha256(binary)))).isEqualTo(binary);
+    assertTempDirectoryEmpty();
+  }
+
+  @Test
+  void ingestArchiveRejectsMalformedArchiveTest() {
+    byte[] archive = zip(new ZipContent("aboba.txt", "aboba".getBytes(StandardCharsets.UTF_8)));
+    byte[] truncated = Arrays.copyOf(archive, 40);
+
+    assertThrows(IOException.class,
+        () -> bulkIngestService.ingestArchive(new ByteArrayInputStream(truncated)));
+    verify(fileRepository, never()).saveAll(any());
+    assertTempDirectoryEmpty();
+  }
+
+  @Test
+  void ingestFilesInsertsOneByOneAfterUniqueViolationTest() {
+    byte[] kek = "kek".getBytes(StandardCharsets.UTF_8);
+    byte[] lol = "lol".getBytes(StandardCharsets.UTF_8);
+    FileEntity kekEntity = new FileEntity("kek-elsewhere.txt", MediaType.TEXT_PLAIN_VALUE, 3L, LocalDateTime.now(),
+        blobLayout.resolve(sha256(kek)).toString(), sha256(kek));
+    kekEntity.setId(UUID.randomUUID());
+    FileEntity lolEntity = new FileEntity("lol-elsewhere.txt", MediaType.TEXT_PLAIN_VALUE, 3L, LocalDateTime.now(),
+        blobLayout.resolve(sha256(lol)).toString(), sha256(lol));
+    lolEntity.setId(UUID.randomUUID());
+    when(fileRepository.findByHashIn(anyCollection())).thenReturn(List.of()).thenReturn(List.of(kekEntity));
+    when(fileRepository.saveAll(any())).thenThrow(new DataIntegrityViolationException("files_hash_key"));
+    when(fileRepository.save(any(FileEntity.class))).thenAnswer(invocation -> {
+      FileEntity entity = invocation.getArgument(0);
+      if (entity.getHash().equals(sha256(lol))) {
+        throw new DataIntegrityViolationException("files_hash_key");
+      }
+      entity.setId(UUID.randomUUID());
+      return entity;
+    });
+    when(fileRepository.findByHash(sha256(lol))).thenReturn(Optional.of(lolEntity));
+
+    List<BulkIngestResult> results = bulkIngestService.ingestFiles(List.of(
+        new MockMultipartFile("files", "aboba.txt", MediaType.TEXT_PLAIN_VALUE, "aboba".getBytes(StandardCharsets.UTF_8)),
+        new MockMultipartFile("files", "kek.txt", MediaType.TEXT_PLAIN_VALUE, kek),
+        new MockMultipartFile("files", "lol.txt", MediaType.TEXT_PLAIN_VALUE, lol)));
+
+    assertThat(results).extracting(BulkIngestResult::getStatus).containsExactly(
+        BulkIngestResult.Status.STORED, BulkIngestResult.Status.DEDUPLICATED, BulkIngestResult.Status.DEDUPLICATED);
+    assertThat(results.get(0).getFileId()).isNotNull();
+    assertThat(results.get(1).getFileId()).isEqualTo(kekEntity.getId());
+    assertThat(results.get(2).getFileId()).isEqualTo(lolEntity.getId());
+    verify(fileRepository, times(2)).save(any(FileEntity.class));
+    verify(fileStoredEventPublisher, times(1)).publishAfterCommit(any(FileEntity.class));
+    assertTempDirectoryEmpty();
+  }
+
+  @Test
+  void ingestArchiveRejectsTooManyEntriesTest() {
+    BulkIngestServiceImpl limitedService = newService(2, 1L << 30, 1L << 32);
+    byte[] archive = zip(
+        new ZipContent("aboba.txt", "aboba".getBytes(StandardCharsets.UTF_8)),
+        new ZipContent("kek.txt", "kek".getBytes(StandardCharsets.UTF_8)),
+        new ZipContent("lol.txt", "lol".getBytes(StandardCharsets.UTF_8)));
+
+    try {
+      ArchiveTooLargeException ex = assertThrows(ArchiveTooLargeException.class,
+          () -> limitedService.ingestArchive(new ByteArrayInputStream(archive)));
+      assertThat(ex.getMessage()).isEqualTo("Archive has more than 2 files");
+    } finally {
+      limitedService.shutdown();
+    }
+    verify(fileRepository, never()).saveAll(any());
+    assertTempDirectoryEmpty();
+  }
+
+  @Test
+  void ingestArchiveFailsEntryOverSizeLimitTest() throws IOException {
+    BulkIngestServiceImpl limitedService = newService(1000, 100, 1L << 32);
+    when(fileRepository.findByHashIn(anyCollection())).thenReturn(List.of());
+    when(fileRepository.saveAll(any())).thenAnswer(invocation -> assignIds(invocation.getArgument(0)));
+    byte[] archive = zip(
+        new ZipContent("aboba.txt", "aboba".getBytes(StandardCharsets.UTF_8)),
+        new ZipContent("kek.bin", new byte[1 << 20]),
+        new ZipContent("lol.txt", "lol".getBytes(StandardCharsets.UTF_8)));
+
+    List<BulkIngestResult> results;
+    try {
+      results = limitedService.ingestArchive(new ByteArrayInputStream(archive));
+    } finally {
+      limitedService.shutdown();
+    }
+
+    assertThat(results).extracting(BulkIngestResult::getStatus).containsExactly(
+        BulkIngestResult.Status.STORED, BulkIngestResult.Status.FAILED, BulkIngestResult.Status.STORED);
+    assertThat(results.get(1).getError()).isEqualTo("File is larger than 100 bytes");
+    assertThat(blobLayout.resolve(sha256(new byte[1 << 20]))).doesNotExist();
+    assertTempDirectoryEmpty();
+  }
+
+  @Test
+  void ingestArchiveRejectsArchiveExpandingTooMuchTest() {
+    BulkIngestServiceImpl limitedService = newService(1000, 1L << 30, 1000);
+    byte[] archive = zip(
+        new ZipContent("aboba.bin", new byte[400]),
+        new ZipContent("kek.bin", new byte[400]),
+        new ZipContent("lol.bin", new byte[1 << 20]));
+
+    try {
+      ArchiveTooLargeException ex = assertThrows(ArchiveTooLargeException.class,
+          () -> limitedService.ingestArchive(new ByteArrayInputStream(archive)));
+      assertThat(ex.getMessage()).isEqualTo("Files of the archive are larger than 1000 bytes in total");
+    } finally {
+      limitedService.shutdown();
+    }
+    verify(fileRepository, never()).saveAll(any());
+    assertTempDirectoryEmpty();
+  }
+
+  private void assertTempDirectoryEmpty() {
+    try (Stream<Path> tempFiles = Files.list(blobLayout.getTempDirectory())) {
+      assertThat(tempFiles).isEmpty();
+    } catch (IOException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private static List<FileEntity> assignIds(List<FileEntity> entities) {
+    for (FileEntity entity : entities) {
+      entity.setId(UUID.randomUUID());
+    }
+    return entities;
+  }
+
+  private static String sha256(byte[] content) {
+    return FileHashUtil.toHex(FileHashUtil.newSha256Digest().digest(content));
+  }
+
+  private static byte[] zip(ZipContent... entries) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ZipOutputStream zipOutputStream = new ZipOutputStream(bytes)) {
+      for (ZipContent entry : entries) {
+        zipOutputStream.putNextEntry(new ZipEntry(entry.name()));
+        if (entry.content() != null) {
+          zipOutputStream.write(entry.content());
+        }
+        zipOutputStream.closeEntry();
+      }
+    } catch (IOException ex) {
+      throw new IllegalStateException(ex);
+    }
+    return bytes.toByteArray();
+  }
+
+  private record ZipContent(String name, byte[] content) {
+  }
+}
@@ -0,0 +1,241 @@
+package ru.hse.antiplag.filestorageservice.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.Resource;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.hse.antiplag.filestorageservice.cache.FileMetadataCache;
+import ru.hse.antiplag.filestorageservice.cache.StoredHashFilter;
+import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+import ru.hse.antiplag.filestorageservice.events.NoOpFileStoredEventPublisher;
+import ru.hse.antiplag.filestorageservice.domain.UploadSessionEntity;
+import ru.hse.antiplag.filestorageservice.repository.FileRepository;
+import ru.hse.antiplag.filestorageservice.repository.UploadSessionRepository;
+import ru.hse.antiplag.filestorageservice.storage.BlobCompression;
+import ru.hse.antiplag.filestorageservice.storage.BlobLayout;
+import ru.hse.antiplag.filestorageservice.storage.ChunkManifest;
+import ru.hse.antiplag.filestorageservice.storage.ContentDefinedChunker;
+import ru.hse.antiplag.filestorageservice.utils.FileHashUtil;
+
+@ExtendWith(MockitoExtension.class)
+class ChunkedUploadServiceImplTest {
+
+  @Mock
+  private FileRepository fileRepository;
+
+  @Mock
+  private UploadSessionRepository uploadSessionRepository;
+
+  @TempDir
+  Path tempDir;
+
+  private BlobLayout blobLayout;
+  private ContentDefinedChunker chunker;
+  private FileStorageService fileStorageService;
+  private ChunkedUploadService chunkedUploadService;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    blobLayout = new BlobLayout(tempDir.toString());
+    chunker = new ContentDefinedChunker(4096);
+    fileStorageService = new FileStorageServiceImpl(blobLayout, 64 * 1024, fileRepository, new FileMetadataCache(1 << 20),
+        new StoredHashFilter(blobLayout, fileRepository, TransactionOperations.withoutTransaction(), 1000, 0.01),
+        chunker, new BlobCompression(false, List.of(), 1024, 6, new SimpleMeterRegistry()),
+        new InFlightUploads(Duration.ofMinutes(1)), new NoOpFileStoredEventPublisher());
+    chunkedUploadService = new ChunkedUploadServiceImpl(blobLayout, uploadSessionRepository, fileStorageService,
+        chunker, 64 * 1024, Duration.ofHours(1));
+  }
+
+  @Test
+  void resumableUploadTest() throws IOException {
+    byte[] content = randomBytes(300_000, 42);
+    UploadSessionEntity session = startSession("aboba.bin");
+
+    assertTrue(chunkedUploadService.appendChunk(session.getId(), 0, new ByteArrayInputStream(content, 0, 100_000))
+        .orElseThrow().isAccepted());
+    UploadProgress rejected = chunkedUploadService.appendChunk(session.getId(), 0, new ByteArrayInputStream(content))
+        .orElseThrow();
+    assertFalse(rejected.isAccepted());
+    assertEquals(100_000, rejected.getOffset());
+
+    long offset = chunkedUploadService.getProgress(session.getId()).orElseThrow().getOffset();
+    UploadProgress progress = chunkedUploadService.appendChunk(session.getId(), offset,
+        new ByteArrayInputStream(content, (int) offset, content.length - (int) offset)).orElseThrow();
+    assertTrue(progress.isAccepted());
+    assertEquals(content.length, progress.getOffset());
+
+    FileEntity stored = chunkedUploadService.completeUpload(session.getId()).orElseThrow();
+
+    assertEquals(content.length, stored.getSize());
+    assertThat(stored.getChunkManifest()).isNotNull();
+    assertThat(readAll(stored)).isEqualTo(content);
+    assertFalse(chunkedUploadService.getProgress(session.getId()).isPresent());
+    verify(uploadSessionRepository).delete(session);
+    try (Stream<Path> leftovers = Files.list(blobLayout.getTempDirectory())) {
+      assertThat(leftovers).isEmpty();
+    }
+  }
+
+  @Test
+  void resubmissionStoresOnlyChangedChunksTest() throws IOException {
+    byte[] original = randomBytes(200_000, 7);
+    byte[] edited = original.clone();
+    System.arraycopy("kek".getBytes(), 0, edited, 150_000, 3);
+
+    FileEntity first = upload("aboba-v1.bin", original);
+    long chunksAfterFirst = countChunks();
+    FileEntity second = upload("aboba-v2.bin", edited);
+
+    ChunkManifest firstManifest = ChunkManifest.fromBytes(first.getChunkManifest());
+    assertEquals(firstManifest.getChunks().size(), chunksAfterFirst);
+    assertTrue(countChunks() - chunksAfterFirst <= 2, "New chunks: " + (countChunks() - chunksAfterFirst));
+    assertThat(readAll(second)).isEqualTo(edited);
+  }
+
+  @Test
+  void manifestResubmissionSendsOnlyChangedChunksTest() throws IOException {
+    byte[] original = randomBytes(200_000, 11);
+    byte[] edited = original.clone();
+    System.arraycopy("lol".getBytes(), 0, edited, 120_000, 3);
+    upload("aboba-v1.bin", original);
+
+    UploadSessionEntity session = startSession("aboba-v2.bin");
+    ChunkManifest manifest = new ChunkManifest(chunker.split(new ByteArrayInputStream(edited),
+        FileHashUtil.newSha256Digest()));
+    List<String> missing = chunkedUploadService.submitManifest(session.getId(), manifest).orElseThrow().getHashes();
+
+    assertThat(missing).isNotEmpty().hasSizeLessThanOrEqualTo(2);
+    assertThrows(MissingChunksException.class, () -> chunkedUploadService.completeUpload(session.getId()));
+    for (ChunkManifest.Chunk chunk : manifest.getChunks()) {
+      if (missing.contains(chunk.getHash())) {
+        assertTrue(chunkedUploadService.storeChunk(session.getId(), chunk.getHash(), new ByteArrayInputStream(
+            edited, (int) chunk.getOffset(), chunk.getLength())));
+      }
+    }
+    assertThat(chunkedUploadService.submitManifest(session.getId(), manifest).orElseThrow().getHashes()).isEmpty();
+    FileEntity stored = chunkedUploadService.completeUpload(session.getId()).orElseThrow();
+
+    assertEquals(FileHashUtil.toHex(FileHashUtil.newSha256Digest().digest(edited)), stored.getHash());
+    assertEquals(edited.length, stored.getSize());
+    assertThat(readAll(stored)).isEqualTo(edited);
+  }
+
+  @Test
+  void storeChunkRejectsMismatchingContentTest() throws IOException {
+    byte[] content = randomBytes(10_000, 5);
+    UploadSessionEntity session = startSession("aboba.bin");
+    ChunkManifest manifest = new ChunkManifest(chunker.split(new ByteArrayInputStream(content),
+        FileHashUtil.newSha256Digest()));
+    chunkedUploadService.submitManifest(session.getId(), manifest);
+    ChunkManifest.Chunk first = manifest.getChunks().get(0);
+
+    assertThrows(IllegalArgumentException.class, () -> chunkedUploadService.storeChunk(session.getId(),
+        first.getHash(), new ByteArrayInputStream(randomBytes(first.getLength(), 6))));
+    assertFalse(chunkedUploadService.storeChunk(session.getId(), "ab".repeat(32), new ByteArrayInputStream(new byte[1])));
+    assertFalse(Files.exists(blobLayout.resolveChunk(first.getHash())));
+    try (Stream<Path> leftovers = Files.list(blobLayout.getTempDirectory())) {
+      assertThat(leftovers).allMatch(path -> path.getFileName().toString().startsWith("session-"));
+    }
+  }
+
+  @Test
+  void rangeReadOfChunkedFileTest() throws IOException {
+    byte[] content = randomBytes(100_000, 3);
+    FileEntity stored = upload("aboba.bin", content);
+    Resource resource = fileStorageService.loadFileAsResource(stored.getId()).orElseThrow();
+
+    assertEquals(content.length, resource.contentLength());
+    try (InputStream inputStream = resource.getInputStream()) {
+      assertEquals(70_000, inputStream.skip(70_000));
+      assertThat(inputStream.readNBytes(1000)).isEqualTo(Arrays.copyOfRange(content, 70_000, 71_000));
+    }
+  }
+
+  @Test
+  void unknownUploadTest() throws IOException {
+    UUID uploadId = UUID.randomUUID();
+
+    assertFalse(chunkedUploadService.getProgress(uploadId).isPresent());
+    assertFalse(chunkedUploadService.appendChunk(uploadId, 0, new ByteArrayInputStream(new byte[1])).isPresent());
+    assertFalse(chunkedUploadService.completeUpload(uploadId).isPresent());
+  }
+
+  @Test
+  void deleteExpiredSessionsTest() throws IOException {
+    UploadSessionEntity session = startSession("old-aboba.bin");
+    when(uploadSessionRepository.findByCreatedAtBefore(any(LocalDateTime.class))).thenReturn(List.of(session));
+
+    ((ChunkedUploadServiceImpl) chunkedUploadService).deleteExpiredSessions();
+
+    assertFalse(chunkedUploadService.getProgress(session.getId()).isPresent());
+    verify(uploadSessionRepository).delete(session);
+  }
+
+  private FileEntity upload(String fileName, byte[] content) throws IOException {
+    UploadSessionEntity session = startSession(fileName);
+    chunkedUploadService.appendChunk(session.getId(), 0, new ByteArrayInputStream(content));
+    return chunkedUploadService.completeUpload(session.getId()).orElseThrow();
+  }
+
+  private UploadSessionEntity startSession(String fileName) throws IOException {
+    UploadSessionEntity session = new UploadSessionEntity(fileName, "application/octet-stream", LocalDateTime.now());
+    session.setId(UUID.randomUUID());
+    when(uploadSessionRepository.save(any(UploadSessionEntity.class))).thenReturn(session);
+    lenient().when(uploadSessionRepository.findById(session.getId())).thenReturn(Optional.of(session));
+    lenient().when(fileRepository.save(any(FileEntity.class))).thenAnswer(invocation -> {
+      FileEntity fileEntity = invocation.getArgument(0);
+      fileEntity.setId(UUID.randomUUID());
+      lenient().when(fileRepository.findById(fileEntity.getId())).thenReturn(Optional.of(fileEntity));
+      return fileEntity;
+    });
+    chunkedUploadService.startUpload(fileName, "application/octet-stream");
+    return session;
+  }
+
+  private byte[] readAll(FileEntity fileEntity) throws IOException {
+    Resource resource = fileStorageService.loadFileAsResource(fileEntity.getId()).orElseThrow();
+    try (InputStream inputStream = resource.getInputStream()) {
+      return inputStream.readAllBytes();
+    }
+  }
+
+  private long countChunks() throws IOException {
+    try (Stream<Path> chunks = Files.walk(blobLayout.getChunkRoot())) {
+      return chunks.filter(Files::isRegularFile).count();
+    }
+  }
+
+  private static byte[] randomBytes(int size, long seed) {
+    byte[] bytes = new byte[size];
+    new SplittableRandom(seed).nextBytes(bytes);
+    return bytes;
+  }
+}
@@ -3,21 +3,33 @@ package ru.hse.antiplag.filestorageservice.service;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -27,13 +39,22 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.core.io.Resource;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.support.TransactionOperations;
 import org.springframework.web.multipart.MultipartFile;
 
 
+import ru.hse.antiplag.filestorageservice.cache.FileMetadataCache;
+import ru.hse.antiplag.filestorageservice.cache.StoredHashFilter;
 import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+import ru.hse.antiplag.filestorageservice.events.FileStoredEventPublisher;
 import ru.hse.antiplag.filestorageservice.repository.FileRepository;
+import ru.hse.antiplag.filestorageservice.storage.BlobCompression;
+import ru.hse.antiplag.filestorageservice.storage.BlobLayout;
+import ru.hse.antiplag.filestorageservice.storage.ContentDefinedChunker;
+import ru.hse.antiplag.filestorageservice.utils.FileHashUtil;
 
 @ExtendWith(MockitoExtension.class)
 class FileStorageServiceImplTest {
@@ -41,14 +62,25 @@ class FileStorageServiceImplTest {
   @Mock
   private FileRepository fileRepository;
 
+  @Mock
+  private FileStoredEventPublisher fileStoredEventPublisher;
+
   @TempDir
   Path tempDir;
 
+  private BlobLayout blobLayout;
+  private StoredHashFilter storedHashFilter;
+  private InFlightUploads inFlightUploads;
   private FileStorageService fileStorageService;
 
   @BeforeEach
   void setUp() throws IOException {
-    fileStorageService = new FileStorageServiceImpl(tempDir.toString(), fileRepository);
+    blobLayout = new BlobLayout(tempDir.toString());
+    inFlightUploads = new InFlightUploads(Duration.ofSeconds(10));
+    storedHashFilter = new StoredHashFilter(blobLayout, fileRepository, TransactionOperations.withoutTransaction(), 1000, 0.01);
+    fileStorageService = new FileStorageServiceImpl(blobLayout, 64 * 1024, fileRepository, new FileMetadataCache(1 << 20), storedHashFilter,
+        new ContentDefinedChunker(16384), new BlobCompression(true, List.of("text/*"), 1024, 6, new SimpleMeterRegistry()),
+        inFlightUploads, fileStoredEventPublisher);
   }
 
   @Test
@@ -76,6 +108,193 @@ class FileStorageServiceImplTest {
     verify(fileRepository).save(fileEntityArgumentCaptor.capture());
     FileEntity capturedEntity = fileEntityArgumentCaptor.getValue();
     assertThat(capturedEntity.getFileName()).isEqualTo("test-aboba.txt");
+    verify(fileStoredEventPublisher).publishAfterCommit(savedEntity);
+  }
+
+  @Test
+  void storeFileHashTest() throws Exception {
+    byte[] content = "Aboba, Kek!".getBytes();
+    MockMultipartFile multipartFile = new MockMultipartFile("file", "hash-aboba.txt", MediaType.TEXT_PLAIN_VALUE, content);
+    when(fileRepository.save(any(FileEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+    FileEntity savedEntity = fileStorageService.storeFile(multipartFile);
+
+    String expectedHash = FileHashUtil.calculateSHA256(new ByteArrayInputStream(content));
+    assertEquals(expectedHash, savedEntity.getHash());
+    assertEquals(tempDir.resolve(expectedHash.substring(0, 2)).resolve(expectedHash.substring(2, 4)).resolve(expectedHash).toString(),
+        savedEntity.getFilePath());
+    assertThat(Files.readAllBytes(Path.of(savedEntity.getFilePath()))).isEqualTo(content);
+    try (Stream<Path> leftovers = Files.list(tempDir.resolve(".tmp"))) {
+      assertThat(leftovers).isEmpty();
+    }
+  }
+
+  @Test
+  void storeDuplicateFileTest() throws IOException {
+    Path existingPath = tempDir.resolve("existing-aboba.txt");
+    Files.writeString(existingPath, "Aboba, Kek!");
+    FileEntity existingEntity = new FileEntity("existing-aboba.txt", MediaType.TEXT_PLAIN_VALUE, 11L, LocalDateTime.now(), existingPath.toString(), "hash");
+    when(fileRepository.findByHash(any(String.class))).thenReturn(Optional.of(existingEntity));
+
+    FileEntity result = fileStorageService.storeFile(
+        new MockMultipartFile("file", "dup-aboba.txt", MediaType.TEXT_PLAIN_VALUE, "Aboba, Kek!".getBytes()));
+
+    assertEquals(existingEntity, result);
+    verify(fileRepository, never()).save(any(FileEntity.class));
+    verify(fileStoredEventPublisher, never()).publishAfterCommit(any(FileEntity.class));
+    try (Stream<Path> stored = Files.list(tempDir)) {
+      assertThat(stored).containsExactlyInAnyOrder(existingPath, tempDir.resolve(".tmp"));
+    }
+    try (Stream<Path> leftovers = Files.list(tempDir.resolve(".tmp"))) {
+      assertThat(leftovers).isEmpty();
+    }
+  }
+
+  @Test
+  void storeNewFileSkipsLookupTest() throws IOException {
+    when(fileRepository.streamAllHashes()).thenReturn(Stream.of("hash-aboba", "hash-kek"));
+    when(fileRepository.save(any(FileEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    storedHashFilter.rebuild();
+
+    FileEntity savedEntity = fileStorageService.storeFile(
+        new MockMultipartFile("file", "new-aboba.txt", MediaType.TEXT_PLAIN_VALUE, "Aboba, Kek!".getBytes()));
+
+    verify(fileRepository, never()).findByHash(any(String.class));
+    assertTrue(storedHashFilter.mightContain(savedEntity.getHash()));
+  }
+
+  @Test
+  void storeFileStoredElsewhereAfterFilterMissTest() throws IOException {
+    when(fileRepository.streamAllHashes()).thenReturn(Stream.empty());
+    storedHashFilter.rebuild();
+    FileEntity existingEntity = new FileEntity("other-node-aboba.txt", MediaType.TEXT_PLAIN_VALUE, 11L,
+        LocalDateTime.now(), tempDir.resolve("other-node-aboba.txt").toString(), "hash");
+    when(fileRepository.save(any(FileEntity.class))).thenThrow(new DataIntegrityViolationException("files_hash_key"));
+    when(fileRepository.findByHash(any(String.class))).thenReturn(Optional.of(existingEntity));
+
+    FileEntity result = fileStorageService.storeFile(
+        new MockMultipartFile("file", "aboba.txt", MediaType.TEXT_PLAIN_VALUE, "Aboba, Kek!".getBytes()));
+
+    assertSame(existingEntity, result);
+    verify(fileRepository, times(1)).findByHash(any(String.class));
+    verify(fileStoredEventPublisher, never()).publishAfterCommit(any(FileEntity.class));
+    assertTrue(storedHashFilter.mightContain(FileHashUtil.toHex(
+        FileHashUtil.newSha256Digest().digest("Aboba, Kek!".getBytes()))));
+  }
+
+  @Test
+  void storeFileUniqueViolationWithoutRowTest() throws IOException {
+    when(fileRepository.save(any(FileEntity.class))).thenThrow(new DataIntegrityViolationException("files_hash_key"));
+    when(fileRepository.findByHash(any(String.class))).thenReturn(Optional.empty());
+
+    assertThrows(DataIntegrityViolationException.class, () -> fileStorageService.storeFile(
+        new MockMultipartFile("file", "aboba.txt", MediaType.TEXT_PLAIN_VALUE, "Aboba, Kek!".getBytes())));
+  }
+
+  @Test
+  void storeRawFileLosingRaceToCompressedBlobTest() throws IOException {
+    byte[] content = "Aboba, Kek! ".repeat(2000).getBytes();
+    String hash = FileHashUtil.toHex(FileHashUtil.newSha256Digest().digest(content));
+    Path compressedBlob = blobLayout.prepare(hash, BlobCompression.GZIP);
+    try (OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(compressedBlob))) {
+      outputStream.write(content);
+    }
+    byte[] compressedBytes = Files.readAllBytes(compressedBlob);
+    FileEntity winnerEntity = new FileEntity("aboba.txt", MediaType.TEXT_PLAIN_VALUE, (long) content.length,
+        LocalDateTime.now(), compressedBlob.toString(), hash);
+    winnerEntity.setId(UUID.randomUUID());
+    winnerEntity.setStorageCodec(BlobCompression.GZIP);
+    when(fileRepository.streamAllHashes()).thenReturn(Stream.empty());
+    storedHashFilter.rebuild();
+    when(fileRepository.save(any(FileEntity.class))).thenThrow(new DataIntegrityViolationException("files_hash_key"));
+    when(fileRepository.findByHash(hash)).thenReturn(Optional.of(winnerEntity));
+    when(fileRepository.findById(winnerEntity.getId())).thenReturn(Optional.of(winnerEntity));
+
+    FileEntity result = fileStorageService.storeFile(
+        new MockMultipartFile("file", "aboba.bin", MediaType.APPLICATION_OCTET_STREAM_VALUE, content));
+
+    assertSame(winnerEntity, result);
+    assertThat(Files.readAllBytes(compressedBlob)).isEqualTo(compressedBytes);
+    Resource decoded = fileStorageService.loadFileAsResource(result.getId()).orElseThrow();
+    try (InputStream inputStream = decoded.getInputStream()) {
+      assertThat(inputStream.readAllBytes()).isEqualTo(content);
+    }
+  }
+
+  @Test
+  void storeCompressedTextTest() throws IOException {
+    byte[] content = "Aboba, Kek! ".repeat(2000).getBytes();
+    when(fileRepository.save(any(FileEntity.class))).thenAnswer(invocation -> {
+      FileEntity fileEntity = invocation.getArgument(0);
+      fileEntity.setId(UUID.randomUUID());
+      return fileEntity;
+    });
+
+    FileEntity savedEntity = fileStorageService.storeFile(
+        new MockMultipartFile("file", "long-aboba.txt", MediaType.TEXT_PLAIN_VALUE, content));
+
+    assertEquals(BlobCompression.GZIP, savedEntity.getStorageCodec());
+    assertThat(savedEntity.getStoredSize()).isLessThan(content.length / 10L);
+    assertEquals(savedEntity.getStoredSize(), Files.size(Path.of(savedEntity.getFilePath())));
+    assertThat(savedEntity.getCompressionCpuNanos()).isNotNull();
+    assertEquals(FileHashUtil.toHex(FileHashUtil.newSha256Digest().digest(content)), savedEntity.getHash());
+
+    Resource decoded = fileStorageService.loadFileAsResource(savedEntity.getId()).orElseThrow();
+    assertEquals(content.length, decoded.contentLength());
+    try (InputStream inputStream = decoded.getInputStream()) {
+      assertThat(inputStream.readAllBytes()).isEqualTo(content);
+    }
+    Resource stored = fileStorageService.loadStoredResource(savedEntity.getId()).orElseThrow();
+    try (InputStream inputStream = new GZIPInputStream(stored.getInputStream())) {
+      assertThat(inputStream.readAllBytes()).isEqualTo(content);
+    }
+  }
+
+  @Test
+  void storeConcurrentDuplicateSharesFileTest() throws Exception {
+    byte[] content = "Aboba, Kek!".getBytes();
+    String hash = FileHashUtil.toHex(FileHashUtil.newSha256Digest().digest(content));
+    FileEntity sharedEntity = new FileEntity("aboba.txt", MediaType.TEXT_PLAIN_VALUE, (long) content.length,
+        LocalDateTime.now(), blobLayout.resolve(hash).toString(), hash);
+    sharedEntity.setId(UUID.randomUUID());
+    InFlightUploads.Flight leader = inFlightUploads.claim(hash);
+
+    FutureTask<FileEntity> follower = new FutureTask<>(() -> fileStorageService.storeFile(
+        new MockMultipartFile("file", "aboba-copy.txt", MediaType.TEXT_PLAIN_VALUE, content)));
+    Thread followerThread = new Thread(follower);
+    followerThread.start();
+    awaitTimedWaiting(followerThread);
+    leader.succeed(sharedEntity);
+
+    assertSame(sharedEntity, follower.get(10, TimeUnit.SECONDS));
+    verify(fileRepository, never()).save(any(FileEntity.class));
+    try (Stream<Path> tempFiles = Files.list(blobLayout.getTempDirectory())) {
+      assertThat(tempFiles).isEmpty();
+    }
+  }
+
+  @Test
+  void storeAfterAbandonedConcurrentUploadTest() throws Exception {
+    byte[] content = "Aboba, Kek!".getBytes();
+    String hash = FileHashUtil.toHex(FileHashUtil.newSha256Digest().digest(content));
+    when(fileRepository.save(any(FileEntity.class))).thenAnswer(invocation -> {
+      FileEntity fileEntity = invocation.getArgument(0);
+      fileEntity.setId(UUID.randomUUID());
+      return fileEntity;
+    });
+    InFlightUploads.Flight leader = inFlightUploads.claim(hash);
+
+    FutureTask<FileEntity> follower = new FutureTask<>(() -> fileStorageService.storeFile(
+        new MockMultipartFile("file", "aboba-copy.txt", MediaType.TEXT_PLAIN_VALUE, content)));
+    Thread followerThread = new Thread(follower);
+    followerThread.start();
+    awaitTimedWaiting(followerThread);
+    leader.abandon();
+
+    FileEntity savedEntity = follower.get(10, TimeUnit.SECONDS);
+    assertEquals(hash, savedEntity.getHash());
+    assertTrue(Files.exists(blobLayout.resolve(hash)));
+    verify(fileRepository, times(1)).save(any(FileEntity.class));
   }
 
   @Test
@@ -105,6 +324,21 @@ class FileStorageServiceImplTest {
     verify(fileRepository).findById(fileId);
   }
 
+  @Test
+  void getMetadataCachedTest() {
+    UUID fileId = UUID.randomUUID();
+    FileEntity mockEntity = new FileEntity("aboba.txt", "text/plain", 100L, LocalDateTime.now(), "/path/to/aboba.txt", "hash-aboba");
+    mockEntity.setId(fileId);
+    when(fileRepository.findById(fileId)).thenReturn(Optional.of(mockEntity));
+
+    fileStorageService.getFileMetadata(fileId);
+    fileStorageService.loadFileAsResource(fileId);
+    Optional<FileEntity> foundEntityOptional = fileStorageService.getFileMetadata(fileId);
+
+    assertEquals(mockEntity, foundEntityOptional.orElseThrow());
+    verify(fileRepository, times(1)).findById(fileId);
+  }
+
   @Test
   void getMetadataNotFoundTest() {
     UUID fileId = UUID.randomUUID();
@@ -154,4 +388,11 @@ class FileStorageServiceImplTest {
     assertTrue(resourceOptional.isEmpty());
   }
 
+  private static void awaitTimedWaiting(Thread thread) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (thread.getState() != Thread.State.TIMED_WAITING) {
+      assertTrue(System.nanoTime() < deadline, "Upload did not start waiting for the concurrent upload");
+      Thread.sleep(5);
+    }
+  }
 }
@@ -0,0 +1,111 @@
+package ru.hse.antiplag.filestorageservice.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.web.multipart.MultipartFile;
+import ru.hse.antiplag.filestorageservice.cache.FileMetadataCache;
+import ru.hse.antiplag.filestorageservice.cache.StoredHashFilter;
+import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+import ru.hse.antiplag.filestorageservice.events.NoOpFileStoredEventPublisher;
+import ru.hse.antiplag.filestorageservice.repository.FileRepository;
+import ru.hse.antiplag.filestorageservice.storage.BlobCompression;
+import ru.hse.antiplag.filestorageservice.storage.BlobLayout;
+import ru.hse.antiplag.filestorageservice.storage.ContentDefinedChunker;
+import ru.hse.antiplag.filestorageservice.utils.FileHashUtil;
+
+/**
+ * Throughput test for the single-pass upload path on multi-gigabyte inputs.
+ * Disabled by default, run with {@code mvn test -Dstorage.throughput.gb=4}.
+ */
+@ExtendWith(MockitoExtension.class)
+@EnabledIfSystemProperty(named = "storage.throughput.gb", matches = "\\d+")
+class FileStorageThroughputTest {
+
+  private static final int BLOCK_SIZE = 4 * 1024 * 1024;
+
+  @Mock
+  private FileRepository fileRepository;
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void singlePassUploadThroughputTest() throws Exception {
+    long size = Long.getLong("storage.throughput.gb") * 1024L * 1024L * 1024L;
+    int bufferSize = Integer.getInteger("storage.throughput.buffer-size", FileHashUtil.DEFAULT_BUFFER_SIZE);
+    boolean compress = Boolean.getBoolean("storage.throughput.compress");
+    BlobLayout blobLayout = new BlobLayout(tempDir.toString());
+    FileStorageService service = new FileStorageServiceImpl(blobLayout, bufferSize, fileRepository, new FileMetadataCache(1 << 20),
+        new StoredHashFilter(blobLayout, fileRepository, TransactionOperations.withoutTransaction(), 1000, 0.01),
+        new ContentDefinedChunker(16384),
+        new BlobCompression(compress, List.of("*/*"), 0, 6, new SimpleMeterRegistry()),
+        new InFlightUploads(Duration.ofMinutes(1)), new NoOpFileStoredEventPublisher());
+
+    MultipartFile multipartFile = Mockito.mock(MultipartFile.class);
+    when(multipartFile.getOriginalFilename()).thenReturn("throughput-aboba.bin");
+    when(multipartFile.getContentType()).thenReturn("application/octet-stream");
+    when(multipartFile.getSize()).thenReturn(size);
+    when(multipartFile.getInputStream()).thenAnswer(invocation -> new SyntheticInputStream(size));
+    when(fileRepository.save(any(FileEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+    long start = System.nanoTime();
+    FileEntity stored = service.storeFile(multipartFile);
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    assertThat(Files.size(Path.of(stored.getFilePath()))).isEqualTo(stored.getStoredSize());
+    System.out.printf("Stored %d MB in %.2f s: %.1f MB/s (buffer %d bytes, codec %s, %d MB on disk)%n",
+        size >> 20, seconds, (size >> 20) / seconds, bufferSize, stored.getStorageCodec(), stored.getStoredSize() >> 20);
+  }
+
+  /**
+   * Stream of pseudo-random bytes that repeats a single pre-generated block.
+   */
+  private static final class SyntheticInputStream extends InputStream {
+    private final byte[] block = new byte[BLOCK_SIZE];
+    private final long size;
+    private long position;
+
+    SyntheticInputStream(long size) {
+      this.size = size;
+      new SplittableRandom(42).nextBytes(block);
+    }
+
+    @Override
+    public int read() {
+      if (position >= size) {
+        return -1;
+      }
+      return block[(int) (position++ % BLOCK_SIZE)] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      if (position >= size) {
+        return -1;
+      }
+      int blockOffset = (int) (position % BLOCK_SIZE);
+      int count = (int) Math.min(Math.min(length, BLOCK_SIZE - blockOffset), size - position);
+      System.arraycopy(block, blockOffset, buffer, offset, count);
+      position += count;
+      return count;
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package ru.hse.antiplag.filestorageservice.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+
+class InFlightUploadsTest {
+
+  private final InFlightUploads inFlightUploads = new InFlightUploads(Duration.ofMillis(200));
+
+  @AfterEach
+  void tearDown() {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  @Test
+  void followerGetsFileOfLeaderTest() throws IOException {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    inFlightUploads.bindTo(registry);
+    InFlightUploads.Flight leader = inFlightUploads.claim("aboba");
+    InFlightUploads.Flight follower = inFlightUploads.claim("aboba");
+    FileEntity fileEntity = fileEntity("aboba");
+
+    assertTrue(leader.isLeader());
+    assertFalse(follower.isLeader());
+    assertThat(registry.get("file.upload.in.flight").gauge().value()).isEqualTo(1.0);
+
+    leader.succeed(fileEntity);
+
+    assertThat(follower.await()).containsSame(fileEntity);
+    assertTrue(inFlightUploads.claim("aboba").isLeader());
+    assertThat(registry.get("file.upload.single.flight.shared").functionCounter().count()).isEqualTo(1.0);
+  }
+
+  @Test
+  void differentHashesDoNotWaitForEachOtherTest() {
+    assertTrue(inFlightUploads.claim("aboba").isLeader());
+    assertTrue(inFlightUploads.claim("kek").isLeader());
+  }
+
+  @Test
+  void abandonedFlightReleasesFollowersTest() throws IOException {
+    InFlightUploads.Flight leader = inFlightUploads.claim("aboba");
+    InFlightUploads.Flight follower = inFlightUploads.claim("aboba");
+
+    leader.abandon();
+
+    assertThat(follower.await()).isEmpty();
+    assertTrue(inFlightUploads.claim("aboba").isLeader());
+  }
+
+  @Test
+  void flightEndsWhenTransactionCommitsTest() throws IOException {
+    TransactionSynchronizationManager.initSynchronization();
+    InFlightUploads.Flight leader = inFlightUploads.claim("aboba");
+    InFlightUploads.Flight follower = inFlightUploads.claim("aboba");
+    FileEntity fileEntity = fileEntity("aboba");
+
+    leader.succeed(fileEntity);
+    assertFalse(inFlightUploads.claim("aboba").isLeader());
+
+    completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+    assertThat(follower.await()).containsSame(fileEntity);
+  }
+
+  @Test
+  void rolledBackFlightReleasesFollowersTest() throws IOException {
+    TransactionSynchronizationManager.initSynchronization();
+    InFlightUploads.Flight leader = inFlightUploads.claim("aboba");
+    InFlightUploads.Flight follower = inFlightUploads.claim("aboba");
+
+    leader.succeed(fileEntity("aboba"));
+    completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+    assertThat(follower.await()).isEmpty();
+  }
+
+  @Test
+  void followerTimesOutTest() {
+    inFlightUploads.claim("aboba");
+    InFlightUploads.Flight follower = inFlightUploads.claim("aboba");
+
+    IOException exception = assertThrows(IOException.class, follower::await);
+    assertThat(exception.getMessage()).contains("aboba");
+  }
+
+  private static void completeTransaction(int status) {
+    for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+      synchronization.afterCompletion(status);
+    }
+    TransactionSynchronizationManager.clearSynchronization();
+  }
+
+  private static FileEntity fileEntity(String hash) {
+    FileEntity fileEntity = new FileEntity("aboba.txt", "text/plain", 5L, LocalDateTime.now(), "/tmp/" + hash, hash);
+    fileEntity.setId(UUID.randomUUID());
+    return fileEntity;
+  }
+}
@@ -0,0 +1,232 @@
+package ru.hse.antiplag.filestorageservice.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+import ru.hse.antiplag.filestorageservice.events.FileStoredEventPublisher;
+import ru.hse.antiplag.filestorageservice.repository.ReactiveFileRepository;
+import ru.hse.antiplag.filestorageservice.storage.BlobCompression;
+import ru.hse.antiplag.filestorageservice.storage.BlobLayout;
+import ru.hse.antiplag.filestorageservice.storage.ChunkManifest;
+import ru.hse.antiplag.filestorageservice.utils.FileHashUtil;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveFileStorageServiceImplTest {
+
+  @Mock
+  private ReactiveFileRepository fileRepository;
+
+  @Mock
+  private FileStoredEventPublisher fileStoredEventPublisher;
+
+  @TempDir
+  Path tempDir;
+
+  private BlobLayout blobLayout;
+  private ReactiveFileStorageServiceImpl service;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    blobLayout = new BlobLayout(tempDir.toString());
+    service = new ReactiveFileStorageServiceImpl(blobLayout, fileRepository,
+        new BlobCompression(true, List.of("text/*"), 1024, 6, new SimpleMeterRegistry()), 4,
+        fileStoredEventPublisher);
+  }
+
+  @Test
+  void storeNewFileTest() throws IOException {
+    String hash = sha256("abobakek");
+    when(fileRepository.findByHash(hash)).thenReturn(Mono.empty());
+    when(fileRepository.insert(any(FileEntity.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+    StepVerifier.create(service.storeFile("aboba.txt", "text/plain", buffers("aboba", "kek")))
+        .assertNext(stored -> {
+          assertThat(stored.getHash()).isEqualTo(hash);
+          assertThat(stored.getSize()).isEqualTo(8L);
+          assertThat(stored.getStorageCodec()).isNull();
+          assertThat(Path.of(stored.getFilePath())).isEqualTo(blobLayout.resolve(hash));
+        })
+        .verifyComplete();
+
+    assertThat(Files.readString(blobLayout.resolve(hash))).isEqualTo("abobakek");
+    verify(fileStoredEventPublisher).publishAfterCommit(argThat(stored -> hash.equals(stored.getHash())));
+    assertThat(blobLayout.getTempDirectory()).isEmptyDirectory();
+  }
+
+  @Test
+  void storeDuplicateReturnsExistingFileTest() throws IOException {
+    String hash = sha256("aboba");
+    Path existingBlob = blobLayout.prepare(hash);
+    Files.writeString(existingBlob, "aboba");
+    FileEntity existing = fileEntity("aboba.txt", existingBlob, hash);
+    when(fileRepository.findByHash(hash)).thenReturn(Mono.just(existing));
+
+    StepVerifier.create(service.storeFile("kek.txt", "text/plain", buffers("aboba")))
+        .expectNext(existing)
+        .verifyComplete();
+
+    verify(fileRepository, never()).insert(any(FileEntity.class));
+    verify(fileStoredEventPublisher, never()).publishAfterCommit(any(FileEntity.class));
+    assertThat(blobLayout.getTempDirectory()).isEmptyDirectory();
+  }
+
+  @Test
+  void storeReplacesRecordWithMissingBlobTest() {
+    String hash = sha256("aboba");
+    FileEntity stale = fileEntity("aboba.txt", tempDir.resolve("missing"), hash);
+    when(fileRepository.findByHash(hash)).thenReturn(Mono.just(stale));
+    when(fileRepository.deleteById(stale.getId())).thenReturn(Mono.empty());
+    when(fileRepository.insert(any(FileEntity.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+    StepVerifier.create(service.storeFile("aboba.txt", "text/plain", buffers("aboba")))
+        .assertNext(stored -> assertThat(Path.of(stored.getFilePath())).isEqualTo(blobLayout.resolve(hash)))
+        .verifyComplete();
+
+    verify(fileRepository).deleteById(stale.getId());
+  }
+
+  @Test
+  void storeConcurrentDuplicateReturnsWinnerTest() {
+    String hash = sha256("aboba");
+    FileEntity winner = fileEntity("aboba.txt", blobLayout.resolve(hash), hash);
+    when(fileRepository.findByHash(hash)).thenReturn(Mono.empty()).thenReturn(Mono.just(winner));
+    when(fileRepository.insert(any(FileEntity.class)))
+        .thenReturn(Mono.error(new DataIntegrityViolationException("duplicate key value violates unique constraint")));
+
+    StepVerifier.create(service.storeFile("aboba.txt", "text/plain", buffers("aboba")))
+        .expectNext(winner)
+        .verifyComplete();
+
+    verify(fileStoredEventPublisher, never()).publishAfterCommit(any(FileEntity.class));
+  }
+
+  @Test
+  void storeEmptyContentTest() {
+    StepVerifier.create(service.storeFile("aboba.txt", "text/plain", Flux.empty()))
+        .verifyComplete();
+
+    verify(fileRepository, never()).findByHash(any());
+    assertThat(blobLayout.getTempDirectory()).isEmptyDirectory();
+  }
+
+  @Test
+  void storeFailedUploadDeletesTempFileTest() {
+    Flux<DataBuffer> content = buffers("aboba").concatWith(Flux.error(new IOException("Connection reset")));
+
+    StepVerifier.create(service.storeFile("aboba.txt", "text/plain", content))
+        .verifyErrorMessage("Connection reset");
+
+    assertThat(blobLayout.getTempDirectory()).isEmptyDirectory();
+  }
+
+  @Test
+  void readPlainFileTest() throws IOException {
+    String hash = sha256("abobakek");
+    Path blob = blobLayout.prepare(hash);
+    Files.writeString(blob, "abobakek");
+
+    Optional<Flux<DataBuffer>> content = service.readFile(fileEntity("aboba.txt", blob, hash), true);
+
+    assertThat(content).isPresent();
+    assertThat(join(content.get())).isEqualTo("abobakek");
+  }
+
+  @Test
+  void readMissingFileTest() {
+    assertThat(service.readFile(fileEntity("aboba.txt", tempDir.resolve("missing"), sha256("aboba")), true)).isEmpty();
+  }
+
+  @Test
+  void readCompressedFileTest() throws IOException {
+    String hash = sha256("abobakek");
+    Path blob = blobLayout.prepare(hash);
+    try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(blob))) {
+      out.write("abobakek".getBytes(StandardCharsets.UTF_8));
+    }
+    FileEntity fileEntity = fileEntity("aboba.txt", blob, hash);
+    fileEntity.setStorageCodec(BlobCompression.GZIP);
+
+    assertThat(join(service.readFile(fileEntity, true).orElseThrow())).isEqualTo("abobakek");
+    byte[] stored = DataBufferUtils.join(service.readFile(fileEntity, false).orElseThrow())
+        .map(ReactiveFileStorageServiceImplTest::toBytes)
+        .block();
+    assertThat(stored).isEqualTo(Files.readAllBytes(blob));
+  }
+
+  @Test
+  void readChunkedFileTest() throws IOException {
+    String firstHash = sha256("aboba");
+    String secondHash = sha256("kek");
+    writeChunk(firstHash, "aboba");
+    writeChunk(secondHash, "kek");
+    FileEntity fileEntity = fileEntity("aboba.txt", null, sha256("abobakek"));
+    fileEntity.setChunkManifest(new ChunkManifest(List.of(
+        new ChunkManifest.Chunk(firstHash, 0, 5),
+        new ChunkManifest.Chunk(secondHash, 5, 3))).toBytes());
+
+    assertThat(join(service.readFile(fileEntity, true).orElseThrow())).isEqualTo("abobakek");
+  }
+
+  private void writeChunk(String hash, String content) throws IOException {
+    Path chunk = blobLayout.resolveChunk(hash);
+    Files.createDirectories(chunk.getParent());
+    Files.writeString(chunk, content);
+  }
+
+  private static Flux<DataBuffer> buffers(String... parts) {
+    return Flux.fromArray(parts)
+        .map(part -> DefaultDataBufferFactory.sharedInstance.wrap(part.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static String join(Flux<DataBuffer> content) {
+    return new String(DataBufferUtils.join(content).map(ReactiveFileStorageServiceImplTest::toBytes).block(),
+        StandardCharsets.UTF_8);
+  }
+
+  private static byte[] toBytes(DataBuffer buffer) {
+    byte[] bytes = new byte[buffer.readableByteCount()];
+    buffer.read(bytes);
+    DataBufferUtils.release(buffer);
+    return bytes;
+  }
+
+  private static String sha256(String content) {
+    return FileHashUtil.toHex(FileHashUtil.newSha256Digest().digest(content.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static FileEntity fileEntity(String fileName, Path filePath, String hash) {
+    FileEntity fileEntity = new FileEntity(fileName, "text/plain", 5L, LocalDateTime.now(),
+        filePath != null ? filePath.toString() : null, hash);
+    fileEntity.setId(UUID.randomUUID());
+    return fileEntity;
+  }
+}
@@ -0,0 +1,192 @@
+package ru.hse.antiplag.filestorageservice.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.hse.antiplag.filestorageservice.cache.FileMetadataCache;
+import ru.hse.antiplag.filestorageservice.cache.StoredHashFilter;
+import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+import ru.hse.antiplag.filestorageservice.events.NoOpFileStoredEventPublisher;
+import ru.hse.antiplag.filestorageservice.repository.FileRepository;
+import ru.hse.antiplag.filestorageservice.repository.ReactiveFileRepository;
+import ru.hse.antiplag.filestorageservice.storage.BlobCompression;
+import ru.hse.antiplag.filestorageservice.storage.BlobLayout;
+import ru.hse.antiplag.filestorageservice.storage.ContentDefinedChunker;
+
+/**
+ * Load test comparing slow concurrent uploads on the blocking and the reactive stacks.
+ * Every client sends its file in small pieces with a pause between them; the blocking stack
+ * gets a pool of 200 threads like the default Tomcat connector. Disabled by default, run with
+ * {@code mvn test -Dstorage.load.uploads=2000}.
+ */
+@ExtendWith(MockitoExtension.class)
+@EnabledIfSystemProperty(named = "storage.load.uploads", matches = "\\d+")
+class ReactiveUploadLoadTest {
+
+  private static final int SERVLET_THREADS = 200;
+
+  @Mock
+  private FileRepository fileRepository;
+
+  @Mock
+  private ReactiveFileRepository reactiveFileRepository;
+
+  @TempDir
+  Path tempDir;
+
+  private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+  @Test
+  void slowUploadsTest() throws Exception {
+    int uploads = Integer.getInteger("storage.load.uploads");
+    int pieces = Integer.getInteger("storage.load.pieces", 8);
+    int pieceSize = Integer.getInteger("storage.load.piece-size", 8192);
+    Duration pause = Duration.ofMillis(Long.getLong("storage.load.pause-ms", 100));
+    BlobLayout blobLayout = new BlobLayout(tempDir.toString());
+    BlobCompression blobCompression = new BlobCompression(false, List.of("*/*"), 0, 6, new SimpleMeterRegistry());
+
+    FileStorageService blockingService = new FileStorageServiceImpl(blobLayout, 65536, fileRepository,
+        new FileMetadataCache(1 << 20),
+        new StoredHashFilter(blobLayout, fileRepository, TransactionOperations.withoutTransaction(), 1000, 0.01),
+        new ContentDefinedChunker(16384), blobCompression, new InFlightUploads(Duration.ofMinutes(1)),
+        new NoOpFileStoredEventPublisher());
+    when(fileRepository.save(any(FileEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+    ExecutorService servletPool = Executors.newFixedThreadPool(SERVLET_THREADS);
+    threadMXBean.resetPeakThreadCount();
+    long start = System.nanoTime();
+    List<Future<FileEntity>> stored = new ArrayList<>();
+    for (int i = 0; i < uploads; i++) {
+      MultipartFile multipartFile = slowMultipartFile(i, pieces, pieceSize, pause);
+      stored.add(servletPool.submit(() -> blockingService.storeFile(multipartFile)));
+    }
+    for (Future<FileEntity> upload : stored) {
+      assertThat(upload.get()).isNotNull();
+    }
+    report("blocking", uploads, System.nanoTime() - start);
+    servletPool.shutdown();
+
+    ReactiveFileStorageService reactiveService =
+        new ReactiveFileStorageServiceImpl(blobLayout, reactiveFileRepository, blobCompression, 65536,
+            new NoOpFileStoredEventPublisher());
+    when(reactiveFileRepository.findByHash(any())).thenReturn(Mono.empty());
+    when(reactiveFileRepository.insert(any(FileEntity.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+    threadMXBean.resetPeakThreadCount();
+    start = System.nanoTime();
+    Long count = Flux.range(uploads, uploads)
+        .flatMap(i -> reactiveService.storeFile("load-aboba-" + i + ".bin", "application/octet-stream",
+            slowContent(i, pieces, pieceSize, pause)), uploads)
+        .count()
+        .block();
+    assertThat(count).isEqualTo(uploads);
+    report("reactive", uploads, System.nanoTime() - start);
+  }
+
+  private void report(String stack, int uploads, long nanos) {
+    double seconds = nanos / 1e9;
+    System.out.printf("%s: %d slow uploads in %.2f s, %.1f uploads/s, peak %d live threads%n",
+        stack, uploads, seconds, uploads / seconds, threadMXBean.getPeakThreadCount());
+  }
+
+  private static Flux<DataBuffer> slowContent(int upload, int pieces, int pieceSize, Duration pause) {
+    return Flux.range(0, pieces)
+        .delayElements(pause)
+        .map(piece -> DefaultDataBufferFactory.sharedInstance.wrap(piece(upload, piece, pieceSize)));
+  }
+
+  private static MultipartFile slowMultipartFile(int upload, int pieces, int pieceSize, Duration pause)
+      throws IOException {
+    MultipartFile multipartFile = Mockito.mock(MultipartFile.class);
+    when(multipartFile.getOriginalFilename()).thenReturn("load-aboba-" + upload + ".bin");
+    when(multipartFile.getContentType()).thenReturn("application/octet-stream");
+    when(multipartFile.getSize()).thenReturn((long) pieces * pieceSize);
+    when(multipartFile.getInputStream()).thenAnswer(invocation -> new SlowInputStream(upload, pieces, pieceSize, pause));
+    return multipartFile;
+  }
+
+  private static byte[] piece(int upload, int piece, int pieceSize) {
+    byte[] bytes = new byte[pieceSize];
+    for (int i = 0; i < pieceSize; i++) {
+      bytes[i] = (byte) (upload * 31 + piece * 7 + i);
+    }
+    bytes[0] = (byte) upload;
+    bytes[1] = (byte) (upload >>> 8);
+    bytes[2] = (byte) (upload >>> 16);
+    return bytes;
+  }
+
+  /**
+   * Stream that hands out one piece at a time and sleeps before each, like a slow client.
+   */
+  private static final class SlowInputStream extends InputStream {
+    private final int upload;
+    private final int pieces;
+    private final int pieceSize;
+    private final Duration pause;
+    private int piece;
+    private byte[] current = new byte[0];
+    private int position;
+
+    SlowInputStream(int upload, int pieces, int pieceSize, Duration pause) {
+      this.upload = upload;
+      this.pieces = pieces;
+      this.pieceSize = pieceSize;
+      this.pause = pause;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[1];
+      return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      if (position == current.length) {
+        if (piece == pieces) {
+          return -1;
+        }
+        try {
+          Thread.sleep(pause.toMillis());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException();
+        }
+        current = piece(upload, piece++, pieceSize);
+        position = 0;
+      }
+      int count = Math.min(length, current.length - position);
+      System.arraycopy(current, position, buffer, offset, count);
+      position += count;
+      return count;
+    }
+  }
+}
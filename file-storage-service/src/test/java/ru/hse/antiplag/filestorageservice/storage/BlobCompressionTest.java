@@ -0,0 +1,51 @@
+package ru.hse.antiplag.filestorageservice.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class BlobCompressionTest {
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final BlobCompression blobCompression =
+      new BlobCompression(true, List.of("text/*", "application/json"), 1024, 6, registry);
+
+  @Test
+  void codecForContentTypeTest() {
+    assertEquals(BlobCompression.GZIP, blobCompression.codecFor("text/plain", 4096));
+    assertEquals(BlobCompression.GZIP, blobCompression.codecFor("text/x-java-source; charset=UTF-8", 4096));
+    assertEquals(BlobCompression.GZIP, blobCompression.codecFor("application/json", 4096));
+    assertNull(blobCompression.codecFor("image/png", 4096));
+    assertNull(blobCompression.codecFor("text/plain", 100));
+    assertNull(blobCompression.codecFor(null, 4096));
+    assertNull(blobCompression.codecFor("aboba", 4096));
+    assertNull(new BlobCompression(false, List.of("*/*"), 0, 6, registry).codecFor("text/plain", 4096));
+  }
+
+  @Test
+  void roundTripTest() throws IOException {
+    byte[] content = "Aboba, Kek!\n".repeat(1000).getBytes();
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+    BlobCompression.CompressingOutputStream outputStream = blobCompression.compress(BlobCompression.GZIP, compressed);
+    try (outputStream) {
+      outputStream.write(content, 0, content.length);
+    }
+    blobCompression.record(BlobCompression.GZIP, content.length, compressed.size(), outputStream.getCpuNanos());
+
+    assertTrue(compressed.size() < content.length / 10);
+    try (InputStream inputStream = blobCompression.decompress(BlobCompression.GZIP, new ByteArrayInputStream(compressed.toByteArray()))) {
+      assertEquals(new String(content), new String(inputStream.readAllBytes()));
+    }
+    assertTrue(registry.get("file.compression.ratio").tag("codec", "gzip").summary().mean() > 10);
+    assertEquals(1, registry.get("file.compression.cpu").tag("codec", "gzip").timer().count());
+  }
+}
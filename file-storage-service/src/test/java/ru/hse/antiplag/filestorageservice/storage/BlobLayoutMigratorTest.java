@@ -0,0 +1,97 @@
+package ru.hse.antiplag.filestorageservice.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import ru.hse.antiplag.filestorageservice.cache.FileMetadataCache;
+import ru.hse.antiplag.filestorageservice.domain.FileEntity;
+import ru.hse.antiplag.filestorageservice.repository.FileRepository;
+
+@ExtendWith(MockitoExtension.class)
+class BlobLayoutMigratorTest {
+
+  private static final String HASH_ABOBA = "aabbccddeeff00112233445566778899aabbccddeeff00112233445566778899";
+  private static final String HASH_KEK = "00112233445566778899aabbccddeeff00112233445566778899aabbccddeeff";
+
+  @Mock
+  private FileRepository fileRepository;
+
+  @TempDir
+  Path tempDir;
+
+  private BlobLayout blobLayout;
+  private BlobLayoutMigrator migrator;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    blobLayout = new BlobLayout(tempDir.toString());
+    migrator = new BlobLayoutMigrator(blobLayout, fileRepository, new FileMetadataCache(1 << 20), false, 2, 10);
+  }
+
+  @Test
+  void migrateLegacyFilesTest() throws IOException {
+    Path legacyAboba = tempDir.resolve(UUID.randomUUID() + ".txt");
+    Files.writeString(legacyAboba, "aboba");
+    FileEntity aboba = fileEntity(legacyAboba.toString(), HASH_ABOBA);
+    Path migratedKek = blobLayout.prepare(HASH_KEK);
+    Files.writeString(migratedKek, "kek");
+    FileEntity kek = fileEntity(migratedKek.toString(), HASH_KEK);
+    FileEntity ghost = fileEntity(tempDir.resolve("ghost-aboba.txt").toString(), HASH_ABOBA.replace('a', 'b'));
+
+    when(fileRepository.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(List.of(aboba, kek, ghost)));
+    when(fileRepository.findByIdGreaterThan(eq(ghost.getId()), any(Pageable.class))).thenReturn(List.of());
+
+    BlobLayoutMigrator.MigrationReport report = migrator.migrate();
+
+    assertEquals(1, report.getMigrated());
+    assertEquals(1, report.getAlreadyMigrated());
+    assertEquals(1, report.getMissing());
+    assertEquals(0, report.getFailed());
+    Path abobaTarget = blobLayout.resolve(HASH_ABOBA);
+    assertFalse(Files.exists(legacyAboba));
+    assertTrue(Files.exists(abobaTarget));
+    assertEquals("aboba", Files.readString(abobaTarget));
+    verify(fileRepository).updateFilePath(aboba.getId(), abobaTarget.toString());
+    verify(fileRepository, never()).updateFilePath(eq(kek.getId()), any());
+    verify(fileRepository, never()).updateFilePath(eq(ghost.getId()), any());
+  }
+
+  @Test
+  void locateDuringMigrationTest() throws IOException {
+    Path legacyAboba = tempDir.resolve(UUID.randomUUID() + ".txt");
+    Files.writeString(legacyAboba, "aboba");
+    FileEntity aboba = fileEntity(legacyAboba.toString(), HASH_ABOBA);
+
+    assertEquals(legacyAboba, blobLayout.locate(aboba).orElseThrow());
+
+    Files.move(legacyAboba, blobLayout.prepare(HASH_ABOBA));
+
+    assertEquals(blobLayout.resolve(HASH_ABOBA), blobLayout.locate(aboba).orElseThrow());
+  }
+
+  private FileEntity fileEntity(String filePath, String hash) {
+    FileEntity fileEntity = new FileEntity("aboba.txt", "text/plain", 5L, LocalDateTime.now(), filePath, hash);
+    fileEntity.setId(UUID.randomUUID());
+    return fileEntity;
+  }
+}
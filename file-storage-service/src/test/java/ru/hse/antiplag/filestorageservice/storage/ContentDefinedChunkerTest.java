@@ -0,0 +1,99 @@
+package ru.hse.antiplag.filestorageservice.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import ru.hse.antiplag.filestorageservice.utils.FileHashUtil;
+
+class ContentDefinedChunkerTest {
+
+  private static final int AVERAGE_SIZE = 4096;
+
+  private final ContentDefinedChunker chunker = new ContentDefinedChunker(AVERAGE_SIZE);
+
+  @Test
+  void chunkSizesAndOffsetsTest() throws Exception {
+    byte[] content = randomBytes(1 << 20, 42);
+    MessageDigest contentDigest = FileHashUtil.newSha256Digest();
+
+    List<ChunkManifest.Chunk> chunks = chunker.split(new ByteArrayInputStream(content), contentDigest);
+
+    long offset = 0;
+    for (int i = 0; i < chunks.size(); i++) {
+      ChunkManifest.Chunk chunk = chunks.get(i);
+      assertEquals(offset, chunk.getOffset());
+      assertTrue(chunk.getLength() <= AVERAGE_SIZE * 4);
+      if (i < chunks.size() - 1) {
+        assertTrue(chunk.getLength() >= AVERAGE_SIZE / 4);
+      }
+      offset += chunk.getLength();
+    }
+    assertEquals(content.length, offset);
+    double averageLength = (double) content.length / chunks.size();
+    assertTrue(averageLength > AVERAGE_SIZE / 2.0 && averageLength < AVERAGE_SIZE * 2.0, "Average: " + averageLength);
+    assertEquals(FileHashUtil.toHex(MessageDigest.getInstance("SHA-256").digest(content)),
+        FileHashUtil.toHex(contentDigest.digest()));
+  }
+
+  @Test
+  void insertionKeepsMostChunksTest() throws IOException {
+    byte[] original = randomBytes(512 * 1024, 7);
+    byte[] edited = new byte[original.length + 100];
+    System.arraycopy(original, 0, edited, 0, 200_000);
+    System.arraycopy(randomBytes(100, 8), 0, edited, 200_000, 100);
+    System.arraycopy(original, 200_000, edited, 200_100, original.length - 200_000);
+
+    Set<String> originalHashes = hashes(original);
+    Set<String> editedHashes = hashes(edited);
+
+    Set<String> changed = new HashSet<>(editedHashes);
+    changed.removeAll(originalHashes);
+    assertTrue(changed.size() <= 3, "Changed chunks: " + changed.size() + " of " + editedHashes.size());
+  }
+
+  @Test
+  void emptyAndSmallContentTest() throws IOException {
+    assertEquals(0, chunker.split(new ByteArrayInputStream(new byte[0]), FileHashUtil.newSha256Digest()).size());
+    List<ChunkManifest.Chunk> chunks = chunker.split(new ByteArrayInputStream("aboba".getBytes()), FileHashUtil.newSha256Digest());
+    assertEquals(1, chunks.size());
+    assertEquals(5, chunks.get(0).getLength());
+  }
+
+  @Test
+  void manifestRoundTripTest() throws IOException {
+    ChunkManifest manifest = new ChunkManifest(chunker.split(
+        new ByteArrayInputStream(randomBytes(100_000, 1)), FileHashUtil.newSha256Digest()));
+
+    ChunkManifest restored = ChunkManifest.fromBytes(manifest.toBytes());
+
+    assertEquals(manifest.getTotalSize(), restored.getTotalSize());
+    assertEquals(manifest.getChunks().size(), restored.getChunks().size());
+    for (int i = 0; i < manifest.getChunks().size(); i++) {
+      assertEquals(manifest.getChunks().get(i).getHash(), restored.getChunks().get(i).getHash());
+      assertEquals(manifest.getChunks().get(i).getOffset(), restored.getChunks().get(i).getOffset());
+    }
+    assertThrows(IllegalArgumentException.class, () -> new ContentDefinedChunker(1000));
+  }
+
+  private Set<String> hashes(byte[] content) throws IOException {
+    return chunker.split(new ByteArrayInputStream(content), FileHashUtil.newSha256Digest()).stream()
+        .map(ChunkManifest.Chunk::getHash)
+        .collect(Collectors.toSet());
+  }
+
+  private static byte[] randomBytes(int size, long seed) {
+    byte[] bytes = new byte[size];
+    new SplittableRandom(seed).nextBytes(bytes);
+    return bytes;
+  }
+}